@@ -0,0 +1,267 @@
+/*
+ * Copyright (C) Bigly Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+
+package com.biglybt.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.biglybt.core.util.BDecoder;
+import com.biglybt.core.util.BEncoder;
+
+/**
+ * Decoding and encoding of a synthetic torrent-like structure: an info dictionary with a
+ * file list and a pieces blob, plus an announce list and some nested metadata. The number
+ * of files scales the map/list/string work, the pieces blob is a single large byte string.
+ * <p>
+ * Besides the Map based decode/encode this covers decoding with the pieces as a slice,
+ * decoding from a direct buffer, visiting without building a Map and writing the same
+ * structure with the streaming writer.
+ */
+
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+@State( Scope.Thread )
+public class
+BEncodingBenchmark
+{
+	@Param({ "10", "1000", "10000" })
+	int			files;
+
+	private Map<String,Object>	map;
+	private byte[]				encoded;
+	private ByteBuffer			encoded_direct;
+
+	private long[]				file_lengths;
+	private byte[][]			file_folders;
+	private byte[][]			file_names;
+	private byte[]				pieces;
+
+	private final ByteArrayOutputStream	stream_os = new ByteArrayOutputStream( 1024*1024 );
+
+	@Setup
+	public void
+	setup()
+
+		throws Exception
+	{
+		Random	random = new Random( 1234 );
+
+		map = new HashMap<>();
+
+		map.put( "announce", "http://tracker.example.com:6969/announce".getBytes( "UTF-8" ));
+
+		List<Object>	announce_list = new ArrayList<>();
+
+		for ( int i=0;i<8;i++){
+
+			List<Object>	tier = new ArrayList<>();
+
+			tier.add(( "udp://tracker" + i + ".example.com:1337/announce" ).getBytes( "UTF-8" ));
+
+			announce_list.add( tier );
+		}
+
+		map.put( "announce-list", announce_list );
+		map.put( "creation date", Long.valueOf( 1700000000L ));
+		map.put( "comment", "synthetic benchmark torrent".getBytes( "UTF-8" ));
+
+		Map<String,Object>	info = new HashMap<>();
+
+		List<Object>	file_list = new ArrayList<>();
+
+		long	total = 0;
+
+		file_lengths	= new long[files];
+		file_folders	= new byte[files][];
+		file_names		= new byte[files][];
+
+		for ( int i=0;i<files;i++){
+
+			Map<String,Object>	file = new HashMap<>();
+
+			long	length = 1 + random.nextInt( 64*1024*1024 );
+
+			total += length;
+
+			file.put( "length", Long.valueOf( length ));
+
+			List<Object>	path = new ArrayList<>();
+
+			file_lengths[i]	= length;
+			file_folders[i]	= ( "folder " + ( i/100 )).getBytes( "UTF-8" );
+			file_names[i]	= ( "file number " + i + ".dat" ).getBytes( "UTF-8" );
+
+			path.add( file_folders[i] );
+			path.add( file_names[i] );
+
+			file.put( "path", path );
+
+			file_list.add( file );
+		}
+
+		int	piece_length = 256*1024;
+
+		pieces = new byte[ (int)Math.min( 20*((total+piece_length-1)/piece_length), 8*1024*1024 )];
+
+		random.nextBytes( pieces );
+
+		info.put( "files", file_list );
+		info.put( "name", "benchmark".getBytes( "UTF-8" ));
+		info.put( "piece length", Long.valueOf( piece_length ));
+		info.put( "pieces", pieces );
+
+		map.put( "info", info );
+
+		encoded = BEncoder.encode( map );
+
+		encoded_direct = ByteBuffer.allocateDirect( encoded.length );
+
+		encoded_direct.put( encoded );
+
+		encoded_direct.flip();
+	}
+
+	@Benchmark
+	public Map
+	decode()
+
+		throws Exception
+	{
+		return( new BDecoder().decodeByteArray( encoded ));
+	}
+
+	@Benchmark
+	public Map
+	decodeSlicePieces()
+
+		throws Exception
+	{
+		BDecoder	decoder = new BDecoder();
+
+		decoder.setSliceKeys( Collections.singleton( "pieces" ));
+
+		return( decoder.decodeByteArray( encoded ));
+	}
+
+	@Benchmark
+	public Map
+	decodeDirect()
+
+		throws Exception
+	{
+		return( new BDecoder().decodeByteBuffer( encoded_direct.duplicate(), true ));
+	}
+
+	@Benchmark
+	public long
+	visit()
+
+		throws Exception
+	{
+		final long[]	result = { 0 };
+
+		BDecoder.visit(
+			encoded_direct.duplicate(),
+			new BDecoder.Visitor()
+			{
+				@Override
+				public void mapStart(){ result[0]++; }
+
+				@Override
+				public void mapKey( ByteBuffer key ){ result[0] += key.remaining(); }
+
+				@Override
+				public void mapEnd(){}
+
+				@Override
+				public void listStart(){ result[0]++; }
+
+				@Override
+				public void listEnd(){}
+
+				@Override
+				public void valueLong( long value ){ result[0] += value; }
+
+				@Override
+				public void valueBytes( ByteBuffer value ){ result[0] += value.remaining(); }
+			});
+
+		return( result[0] );
+	}
+
+	@Benchmark
+	public byte[]
+	encode()
+
+		throws Exception
+	{
+		return( BEncoder.encode( map ));
+	}
+
+	@Benchmark
+	public int
+	encodeStream()
+
+		throws Exception
+	{
+		stream_os.reset();
+
+		BEncoder.StreamWriter	writer = new BEncoder.StreamWriter( stream_os );
+
+		writer.mapStart();
+
+		writer.key( "announce" ).value( map.get( "announce" ));
+		writer.key( "announce-list" ).value( map.get( "announce-list" ));
+		writer.key( "comment" ).value( map.get( "comment" ));
+		writer.key( "creation date" ).value( 1700000000L );
+
+		writer.key( "info" ).mapStart();
+
+		writer.key( "files" ).listStart();
+
+		for ( int i=0;i<files;i++){
+
+			writer.mapStart();
+			writer.key( "length" ).value( file_lengths[i] );
+			writer.key( "path" ).listStart().value( file_folders[i] ).value( file_names[i] ).end();
+			writer.end();
+		}
+
+		writer.end();
+
+		writer.key( "name" ).value( "benchmark".getBytes( "UTF-8" ));
+		writer.key( "piece length" ).value( 256*1024L );
+		writer.key( "pieces" ).value( pieces );
+
+		writer.end();
+
+		writer.end();
+
+		writer.finish();
+
+		return( stream_os.size());
+	}
+}
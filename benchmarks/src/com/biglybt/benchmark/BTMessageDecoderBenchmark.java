@@ -0,0 +1,338 @@
+/*
+ * Copyright (C) Bigly Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+
+package com.biglybt.benchmark;
+
+import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.biglybt.core.config.COConfigurationManager;
+import com.biglybt.core.networkmanager.Transport;
+import com.biglybt.core.peermanager.messaging.Message;
+import com.biglybt.core.peermanager.messaging.MessageManager;
+import com.biglybt.core.peermanager.messaging.bittorrent.BTMessageDecoder;
+import com.biglybt.core.peermanager.messaging.bittorrent.BTPiece;
+import com.biglybt.core.util.DirectByteBuffer;
+import com.biglybt.core.util.FileUtil;
+
+/**
+ * Stream decoding of a synthetic BitTorrent message stream fed from memory through a
+ * stub transport. The stream is a mix of have, request and 16K piece messages in the
+ * proportions seen on a connection that is both uploading and downloading; 'piece_percent'
+ * controls how much of the stream is bulk data versus small control messages.
+ * <p>
+ * Alternatively 'recording' names a file holding the bytes received on a real connection, the
+ * handshake is skipped if present and the messages are repeated or cut to length as needed.
+ * Pieces are consumed the way the peer code does, the data is taken off the message and
+ * returned to the pool (as the disk manager would) before the message is destroyed.
+ * <p>
+ * 'flyweight' switches between decoding into recycled message instances and the original
+ * path via the message manager.
+ * <p>
+ * Each invocation decodes the whole stream, which is {@link #MESSAGES} messages long.
+ */
+
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+@State( Scope.Thread )
+public class
+BTMessageDecoderBenchmark
+{
+	public static final int	MESSAGES	= 1024;
+
+	private static final int	BLOCK_SIZE	= 16*1024;
+
+	@Param({ "0", "10", "50" })
+	int			piece_percent;
+
+	@Param({ "65536" })
+	int			read_size;
+
+	@Param({ "" })
+	String		recording;
+
+	@Param({ "true", "false" })
+	boolean		flyweight;
+
+	private byte[]			stream;
+	private int				stream_pos;
+
+	private Transport			transport;
+	private BTMessageDecoder	decoder;
+
+	@Setup
+	public void
+	setup()
+
+		throws Exception
+	{
+		COConfigurationManager.setParameter( "network.bt.decoder.flyweight", flyweight );
+
+		MessageManager.getSingleton().initialize();
+
+		if ( recording.length() > 0 ){
+
+			stream = loadRecording( new File( recording ));
+
+		}else{
+
+			stream = generate();
+		}
+
+		transport = (Transport)Proxy.newProxyInstance(
+			Transport.class.getClassLoader(),
+			new Class[]{ Transport.class },
+			new InvocationHandler()
+			{
+				@Override
+				public Object
+				invoke(
+					Object		proxy,
+					Method		method,
+					Object[]	args )
+				{
+					if ( method.getName().equals( "read" )){
+
+						return( read((ByteBuffer[])args[0], (Integer)args[1], (Integer)args[2] ));
+					}
+
+					Class<?>	rt = method.getReturnType();
+
+					if ( rt == boolean.class ){
+
+						return( false );
+
+					}else if ( rt == int.class ){
+
+						return( 0 );
+
+					}else if ( rt == long.class ){
+
+						return( 0L );
+					}
+
+					return( null );
+				}
+			});
+
+		decoder = new BTMessageDecoder();
+	}
+
+	private byte[]
+	generate()
+	{
+		Random	random = new Random( 1234 );
+
+		ByteBuffer	bb = ByteBuffer.allocate( MESSAGES*( 4 + 9 + BLOCK_SIZE ));
+
+		byte[]	block = new byte[BLOCK_SIZE];
+
+		random.nextBytes( block );
+
+		for ( int i=0;i<MESSAGES;i++){
+
+			int	r = random.nextInt( 100 );
+
+			int	piece = random.nextInt( 100000 );
+
+			if ( r < piece_percent ){
+
+				bb.putInt( 9 + BLOCK_SIZE );
+				bb.put((byte)7 );
+				bb.putInt( piece );
+				bb.putInt( random.nextInt( 16 )*BLOCK_SIZE );
+				bb.put( block );
+
+			}else if ( r < piece_percent + ( 100 - piece_percent )/2 ){
+
+				bb.putInt( 13 );
+				bb.put((byte)6 );
+				bb.putInt( piece );
+				bb.putInt( random.nextInt( 16 )*BLOCK_SIZE );
+				bb.putInt( BLOCK_SIZE );
+
+			}else{
+
+				bb.putInt( 5 );
+				bb.put((byte)4 );
+				bb.putInt( piece );
+			}
+		}
+
+		byte[]	result = new byte[bb.position()];
+
+		bb.flip();
+
+		bb.get( result );
+
+		return( result );
+	}
+
+	private byte[]
+	loadRecording(
+		File		file )
+
+		throws Exception
+	{
+		byte[]	data = FileUtil.readFileAsByteArray( file );
+
+		int	pos = 0;
+
+		if ( data.length >= 68 && data[0] == 19 && data[1] == 'B' ){
+
+			pos = 68;	// BT handshake
+		}
+
+		int	start = pos;
+
+		ByteBuffer	bb = ByteBuffer.allocate( MESSAGES*( 4 + 9 + BLOCK_SIZE ));
+
+		int	messages = 0;
+
+		while( messages < MESSAGES ){
+
+			if ( pos + 4 > data.length ){
+
+				if ( messages == 0 ){
+
+					throw( new Exception( "No complete messages in " + file ));
+				}
+
+				pos = start;	// wrap, the recording is shorter than a run
+
+				continue;
+			}
+
+			int	len = ByteBuffer.wrap( data, pos, 4 ).getInt();
+
+			if ( len < 0 || len > 128*1024 || pos + 4 + len > data.length ){
+
+				pos = data.length;	// torn tail
+
+				continue;
+			}
+
+			if ( bb.remaining() < 4 + len ){
+
+				ByteBuffer	temp = ByteBuffer.allocate( bb.capacity()*2 + 4 + len );
+
+				bb.flip();
+
+				temp.put( bb );
+
+				bb = temp;
+			}
+
+			bb.put( data, pos, 4 + len );
+
+			pos += 4 + len;
+
+			messages++;
+		}
+
+		byte[]	result = new byte[bb.position()];
+
+		bb.flip();
+
+		bb.get( result );
+
+		return( result );
+	}
+
+	@TearDown
+	public void
+	tearDown()
+	{
+		decoder.destroy();
+	}
+
+	long
+	read(
+		ByteBuffer[]	buffers,
+		int				offset,
+		int				length )
+	{
+		long	total = 0;
+
+		for ( int i=offset;i<offset+length;i++){
+
+			ByteBuffer	buffer = buffers[i];
+
+			int	chunk = Math.min( buffer.remaining(), stream.length - stream_pos );
+
+			buffer.put( stream, stream_pos, chunk );
+
+			stream_pos	+= chunk;
+			total		+= chunk;
+		}
+
+		return( total );
+	}
+
+	@Benchmark
+	@OperationsPerInvocation( MESSAGES )
+	public void
+	decode(
+		Blackhole	bh )
+
+		throws Exception
+	{
+		stream_pos = 0;
+
+		while( stream_pos < stream.length ){
+
+			bh.consume( decoder.performStreamDecode( transport, read_size ));
+
+			Message[]	messages = decoder.removeDecodedMessages();
+
+			if ( messages != null ){
+
+				for ( Message message: messages ){
+
+					bh.consume( message.getID());
+
+					if ( message instanceof BTPiece ){
+
+						BTPiece	piece = (BTPiece)message;
+
+						DirectByteBuffer	data = piece.getPieceData();
+
+						bh.consume( piece.getPieceNumber());
+
+						piece.releasePieceData();
+
+						data.returnToPool();
+					}
+
+					message.destroy();
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) Bigly Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+
+package com.biglybt.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.biglybt.core.util.bloom.BloomFilter;
+import com.biglybt.core.util.bloom.BloomFilterFactory;
+
+/**
+ * Add/contains/remove on the bloom filter flavours used for connection and DHT spam
+ * tracking. Keys are 6 byte address+port values as used by the peer connection filters.
+ * The filters are half populated so both hits and misses are exercised.
+ */
+
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+@State( Scope.Thread )
+public class
+BloomFilterBenchmark
+{
+	public static final String	BF_ADD_ONLY			= "addonly";
+	public static final String	BF_ADD_REMOVE_4BIT	= "addremove4";
+	public static final String	BF_ADD_REMOVE_8BIT	= "addremove8";
+
+	@Param({ BF_ADD_ONLY, BF_ADD_REMOVE_4BIT, BF_ADD_REMOVE_8BIT })
+	String		type;
+
+	@Param({ "10000", "1000000" })
+	int			size;
+
+	private static final int	KEYS	= 1<<16;
+
+	private BloomFilter		filter;
+	private boolean			add_only;
+
+	private byte[][]		keys;
+	private int				pos;
+
+	@Setup
+	public void
+	setup()
+	{
+		add_only = type.equals( BF_ADD_ONLY );
+
+		if ( add_only ){
+
+			filter = BloomFilterFactory.createAddOnly( size );
+
+		}else if ( type.equals( BF_ADD_REMOVE_4BIT )){
+
+			filter = BloomFilterFactory.createAddRemove4Bit( size );
+
+		}else{
+
+			filter = BloomFilterFactory.createAddRemove8Bit( size );
+		}
+
+		Random	random = new Random( 1234 );
+
+		keys = new byte[KEYS][6];
+
+		for ( byte[] key: keys ){
+
+			random.nextBytes( key );
+		}
+
+		for ( int i=0;i<KEYS;i+=2 ){
+
+			filter.add( keys[i] );
+		}
+	}
+
+	private byte[]
+	nextKey()
+	{
+		return( keys[ ( pos++ ) & ( KEYS - 1 )]);
+	}
+
+	@Benchmark
+	public boolean
+	contains()
+	{
+		return( filter.contains( nextKey()));
+	}
+
+	@Benchmark
+	public int
+	count()
+	{
+		return( filter.count( nextKey()));
+	}
+
+		/**
+		 * add followed by remove so the population stays stable, the add-only filter doesn't
+		 * support removal so just adds
+		 */
+
+	@Benchmark
+	public void
+	addRemove(
+		Blackhole	bh )
+	{
+		byte[]	key = nextKey();
+
+		bh.consume( filter.add( key ));
+
+		if ( !add_only ){
+
+			bh.consume( filter.remove( key ));
+		}
+	}
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright (C) Bigly Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+
+package com.biglybt.benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.net.URL;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.biglybt.core.diskmanager.cache.CacheFile;
+import com.biglybt.core.diskmanager.cache.CacheFileManagerException;
+import com.biglybt.core.diskmanager.cache.CacheFileManagerFactory;
+import com.biglybt.core.diskmanager.cache.CacheFileOwner;
+import com.biglybt.core.torrent.TOTorrent;
+import com.biglybt.core.torrent.TOTorrentFactory;
+import com.biglybt.core.torrent.TOTorrentFile;
+import com.biglybt.core.util.DirectByteBuffer;
+import com.biglybt.core.util.DirectByteBufferPool;
+import com.biglybt.core.util.FileUtil;
+import com.biglybt.core.util.StringInterner;
+
+/**
+ * Block sized reads and writes through the write cache (CacheFileWithCache) against a
+ * temporary file, with random block offsets within the file. Writes hand their buffer over
+ * to the cache as the disk manager does, so flushes happen as the cache fills. Reads are
+ * served from the cache where the block was recently written and from the file otherwise.
+ */
+
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+@State( Scope.Thread )
+public class
+CacheFileBenchmark
+{
+	private static final int	BLOCK_SIZE	= 16*1024;
+
+	@Param({ "64" })
+	int			file_mb;
+
+	private File			dir;
+	private CacheFile		cache_file;
+
+	private long[]			offsets;
+	private int				pos;
+
+	private byte[]			block;
+
+	@Setup
+	public void
+	setup()
+
+		throws Exception
+	{
+		dir = File.createTempFile( "biglybt", "bench" );
+
+		dir.delete();
+
+		dir.mkdirs();
+
+		final File	file = new File( dir, "data.dat" );
+
+		long	length = file_mb*1024L*1024;
+
+		Random	random = new Random( 1234 );
+
+		block = new byte[BLOCK_SIZE];
+
+		random.nextBytes( block );
+
+			// populate the whole file so reads always have real data, the cache works in
+			// terms of torrent pieces so we need a torrent over it too
+
+		FileOutputStream	fos = new FileOutputStream( file );
+
+		try{
+			for ( long offset=0;offset<length;offset+=BLOCK_SIZE ){
+
+				fos.write( block );
+			}
+		}finally{
+
+			fos.close();
+		}
+
+		TOTorrent	torrent =
+			TOTorrentFactory.createFromFileOrDirWithFixedPieceLength(
+				file, new URL( "http://tracker.example.com/announce" ), 256*1024 ).create();
+
+		final TOTorrentFile	torrent_file = torrent.getFiles()[0];
+
+		cache_file =
+			CacheFileManagerFactory.getSingleton().createFile(
+				new CacheFileOwner()
+				{
+					@Override
+					public String
+					getCacheFileOwnerName()
+					{
+						return( "benchmark" );
+					}
+
+					@Override
+					public TOTorrentFile
+					getCacheFileTorrentFile()
+					{
+						return( torrent_file );
+					}
+
+					@Override
+					public File
+					getCacheFileControlFileDir()
+					{
+						return( dir );
+					}
+
+					@Override
+					public int
+					getCacheMode()
+					{
+						return( CACHE_MODE_NORMAL );
+					}
+
+					@Override
+					public StringInterner.FileKey
+					getCacheFileLink(
+						StringInterner.FileKey	key )
+					{
+						return( key );
+					}
+
+					@Override
+					public long
+					getFileAllocationStrategy()
+					{
+						return( 0 );
+					}
+				},
+				new StringInterner.FileKey( file ),
+				CacheFile.CT_LINEAR,
+				false );
+
+		cache_file.setAccessMode( CacheFile.CF_WRITE );
+
+		offsets = new long[1024];
+
+		int	blocks = (int)( length/BLOCK_SIZE );
+
+		for ( int i=0;i<offsets.length;i++){
+
+			offsets[i] = (long)random.nextInt( blocks )*BLOCK_SIZE;
+		}
+
+		cache_file.flushCache();
+	}
+
+	@TearDown
+	public void
+	tearDown()
+
+		throws Exception
+	{
+		cache_file.close();
+
+		cache_file.delete();
+
+		FileUtil.recursiveDelete( dir );
+	}
+
+	private void
+	writeBlock(
+		long	offset )
+
+		throws Exception
+	{
+		DirectByteBuffer	buffer = DirectByteBufferPool.getBuffer( DirectByteBuffer.AL_CACHE_WRITE, BLOCK_SIZE );
+
+		buffer.put( DirectByteBuffer.SS_CACHE, block );
+
+		buffer.flip( DirectByteBuffer.SS_CACHE );
+
+		try{
+			cache_file.writeAndHandoverBuffer( buffer, offset );
+
+		}catch( CacheFileManagerException e ){
+
+				// buffer not taken on failure
+
+			buffer.returnToPool();
+
+			throw( e );
+		}
+	}
+
+	private long
+	nextOffset()
+	{
+		return( offsets[ ( pos++ ) & ( offsets.length - 1 )]);
+	}
+
+	@Benchmark
+	public void
+	write()
+
+		throws Exception
+	{
+		writeBlock( nextOffset());
+	}
+
+	@Benchmark
+	public int
+	read()
+
+		throws Exception
+	{
+		DirectByteBuffer	buffer = DirectByteBufferPool.getBuffer( DirectByteBuffer.AL_CACHE_READ, BLOCK_SIZE );
+
+		try{
+			cache_file.read( buffer, nextOffset(), CacheFile.CP_READ_CACHE );
+
+			return( buffer.position( DirectByteBuffer.SS_CACHE ));
+
+		}finally{
+
+			buffer.returnToPool();
+		}
+	}
+}
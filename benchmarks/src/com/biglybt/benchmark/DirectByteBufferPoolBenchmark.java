@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) Bigly Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+
+package com.biglybt.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.biglybt.core.config.COConfigurationManager;
+import com.biglybt.core.util.DirectByteBuffer;
+import com.biglybt.core.util.DirectByteBufferPool;
+
+/**
+ * Allocate/free through the DirectByteBufferPool with the mix of sizes seen on a busy
+ * client: small message headers, protocol messages and 16K blocks. Run with a range of
+ * thread counts (-t) to see monitor contention.
+ * <p>
+ * The pool implementation is fixed at class load so 'cached' selects the thread cached
+ * pool via its hidden config before the pool is first touched in the fork.
+ */
+
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+@State( Scope.Benchmark )
+public class
+DirectByteBufferPoolBenchmark
+{
+	@Param({ "false", "true" })
+	boolean		cached;
+
+	private static final int[]	SIZES = { 9, 13, 17, 68, 1024, 16*1024, 16*1024 + 13 };
+
+	@Setup
+	public void
+	setup()
+	{
+		COConfigurationManager.setParameter( "memory.dbb.pool.thread.cache", cached );
+	}
+
+	@State( Scope.Thread )
+	public static class
+	Sizes
+	{
+		final int[]		sizes = new int[1024];
+
+		int		pos;
+
+		public
+		Sizes()
+		{
+			Random	random = new Random( Thread.currentThread().getId());
+
+			for ( int i=0;i<sizes.length;i++){
+
+				sizes[i] = SIZES[ random.nextInt( SIZES.length )];
+			}
+		}
+
+		int
+		next()
+		{
+			return( sizes[ ( pos++ ) & ( sizes.length - 1 )]);
+		}
+	}
+
+	@Benchmark
+	public int
+	allocFree(
+		Sizes		sizes )
+	{
+		DirectByteBuffer	buffer = DirectByteBufferPool.getBuffer( DirectByteBuffer.AL_MSG, sizes.next());
+
+		int	limit = buffer.limit( DirectByteBuffer.SS_MSG );
+
+		buffer.returnToPool();
+
+		return( limit );
+	}
+
+		/**
+		 * holds a batch of buffers before returning them, as the network layer does for
+		 * messages queued on a connection
+		 */
+
+	@Benchmark
+	@OperationsPerInvocation( 32 )
+	public int
+	allocFreeBatch(
+		Sizes		sizes )
+	{
+		DirectByteBuffer[]	buffers = new DirectByteBuffer[32];
+
+		for ( int i=0;i<buffers.length;i++){
+
+			buffers[i] = DirectByteBufferPool.getBuffer( DirectByteBuffer.AL_MSG, sizes.next());
+		}
+
+		int	total = 0;
+
+		for ( DirectByteBuffer buffer: buffers ){
+
+			total += buffer.limit( DirectByteBuffer.SS_MSG );
+
+			buffer.returnToPool();
+		}
+
+		return( total );
+	}
+}
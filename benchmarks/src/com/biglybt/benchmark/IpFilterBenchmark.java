@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) Bigly Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+
+package com.biglybt.benchmark;
+
+import java.net.InetAddress;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.biglybt.core.config.COConfigurationManager;
+import com.biglybt.core.config.ConfigKeys;
+import com.biglybt.core.ipfilter.IpFilter;
+import com.biglybt.core.ipfilter.IpFilterManagerFactory;
+import com.biglybt.core.ipfilter.IpRange;
+
+/**
+ * Address lookups against a synthetic session-only block list of non-overlapping v4 ranges,
+ * roughly the shape of a loaded level1 list. Lookups are spread over the whole address
+ * space so most miss - hits are recorded as blocked addresses which would otherwise
+ * dominate the measurement.
+ * <p>
+ * The filter is a process wide singleton so each fork builds a single list.
+ */
+
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+@State( Scope.Benchmark )
+public class
+IpFilterBenchmark
+{
+	@Param({ "1000", "250000" })
+	int			ranges;
+
+	private static final int	ADDRESSES	= 1<<16;
+
+	private IpFilter			filter;
+
+	private InetAddress[]		addresses;
+
+	@Setup
+	public void
+	setup()
+
+		throws Exception
+	{
+		COConfigurationManager.setParameter( ConfigKeys.IPFilter.BCFG_IP_FILTER_ENABLED, true );
+		COConfigurationManager.setParameter( ConfigKeys.IPFilter.BCFG_IP_FILTER_ALLOW, false );
+
+		filter = IpFilterManagerFactory.getSingleton().getIPFilter();
+
+		Random	random = new Random( 1234 );
+
+			// spread ranges evenly with a random gap and size so they don't overlap
+
+		long	stride	= ( 1L<<32 ) / ranges;
+
+		for ( int i=0;i<ranges;i++){
+
+			long	start	= i*stride + random.nextInt( (int)Math.max( 1, stride/2 ));
+			long	end		= start + random.nextInt( (int)Math.max( 1, stride/64 ));
+
+			IpRange	range = filter.createRange( 1, true );
+
+			range.setDescription( "range " + i );
+			range.setStartIp( toAddress( start ));
+			range.setEndIp( toAddress( end ));
+
+			filter.addRange( range );
+		}
+
+		addresses = new InetAddress[ADDRESSES];
+
+		byte[]	bytes = new byte[4];
+
+		for ( int i=0;i<ADDRESSES;i++){
+
+			random.nextBytes( bytes );
+
+			addresses[i] = InetAddress.getByAddress( bytes );
+		}
+	}
+
+	private static String
+	toAddress(
+		long	address )
+	{
+		return(( address>>24 & 0xff ) + "." + ( address>>16 & 0xff ) + "." + ( address>>8 & 0xff ) + "." + ( address & 0xff ));
+	}
+
+	@State( Scope.Thread )
+	public static class
+	Cursor
+	{
+		int		pos;
+	}
+
+	@Benchmark
+	public boolean
+	isInRange(
+		Cursor		cursor )
+	{
+		InetAddress	address = addresses[ ( cursor.pos++ ) & ( ADDRESSES - 1 )];
+
+		return( filter.isInRange( address, "", null, false, false ));
+	}
+}
@@ -0,0 +1,338 @@
+/*
+ * Copyright (C) Bigly Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+
+package com.biglybt.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.biglybt.core.peermanager.piecepicker.impl.PieceAvailabilityIndex;
+
+/**
+ * Availability maintenance and rarest-first selection on a synthetic swarm, comparing the
+ * bucketed availability index with the previous approach of copying the availability array
+ * on the first change after each snapshot and rescanning every piece.
+ * <p>
+ * Each invocation is one picker cycle: a burst of have messages and a peer disconnect/
+ * reconnect, an availability update, then a rarest piece is chosen for a number of peers.
+ * Piece rarity is skewed so that a few percent of pieces are rare, as in a real swarm.
+ */
+
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+@State( Scope.Thread )
+public class
+PiecePickerBenchmark
+{
+	@Param({ "10000", "100000" })
+	int			pieces;
+
+	@Param({ "50", "500" })
+	int			peers;
+
+	private static final int	HAVES_PER_CYCLE		= 200;
+	private static final int	PICKS_PER_CYCLE		= 50;
+
+	private boolean[][]		peer_has;
+	private boolean[]		done;
+
+	private int[]			have_peers;
+	private int[]			have_pieces;
+	private int				have_pos;
+
+	private Random			random;
+
+		// legacy state
+
+	private int[]			legacy_availability;
+	private int[]			legacy_asynch;
+
+		// indexed state
+
+	private PieceAvailabilityIndex	index;
+	private int[]					index_snapshot;
+
+	@Setup
+	public void
+	setup()
+	{
+		random = new Random( 1234 );
+
+		peer_has	= new boolean[peers][pieces];
+		done		= new boolean[pieces];
+
+		int[]	counts = new int[pieces];
+
+		for ( int i=0;i<pieces;i++){
+
+			done[i] = random.nextInt( 10 ) == 0;
+
+			if ( done[i] ){
+
+				counts[i]++;
+			}
+
+				// most pieces are common, 5% are held by very few peers
+
+			double	p = random.nextInt( 20 ) == 0 ? 0.01 : 0.5;
+
+			for ( int j=0;j<peers;j++){
+
+				if ( random.nextDouble() < p ){
+
+					peer_has[j][i] = true;
+
+					counts[i]++;
+				}
+			}
+		}
+
+		legacy_availability = counts.clone();
+
+		index = new PieceAvailabilityIndex( pieces );
+
+		index.set( counts );
+
+		index_snapshot = index.getCounts();
+
+			// pre-generate have messages for pieces the peers don't have yet
+
+		have_peers	= new int[1<<16];
+		have_pieces	= new int[1<<16];
+
+		for ( int i=0;i<have_peers.length;i++){
+
+			have_peers[i]	= random.nextInt( peers );
+			have_pieces[i]	= random.nextInt( pieces );
+		}
+	}
+
+	@Benchmark
+	public void
+	legacyCycle(
+		Blackhole	bh )
+	{
+			// haves, each cycle's first change clones the array
+
+		for ( int k=0;k<HAVES_PER_CYCLE;k++){
+
+			int	pos = ( have_pos++ ) & ( have_peers.length - 1 );
+
+			if ( legacy_asynch == null ){
+
+				legacy_asynch = legacy_availability.clone();
+			}
+
+			legacy_asynch[have_pieces[pos]]++;
+		}
+
+		int	peer = random.nextInt( peers );
+
+		boolean[]	has = peer_has[peer];
+
+		for ( int i=0;i<pieces;i++){
+
+			if ( has[i] ){
+
+				legacy_asynch[i]--;
+			}
+		}
+
+		for ( int i=0;i<pieces;i++){
+
+			if ( has[i] ){
+
+				legacy_asynch[i]++;
+			}
+		}
+
+			// snapshot and rescan everything
+
+		legacy_availability	= legacy_asynch;
+		legacy_asynch		= null;
+
+		int[]	avail = legacy_availability;
+
+		int	all_min		= Integer.MAX_VALUE;
+		int	all_max		= 0;
+		int	rarest_min	= Integer.MAX_VALUE;
+
+		for ( int i=0;i<pieces;i++){
+
+			int	a = avail[i];
+
+			if ( a > 0 && a < rarest_min && !done[i] ){
+
+				rarest_min = a;
+			}
+
+			if ( a < all_min ){
+
+				all_min = a;
+			}
+
+			if ( a > all_max ){
+
+				all_max = a;
+			}
+		}
+
+		long	total = 0;
+
+		for ( int i=0;i<pieces;i++){
+
+			total += avail[i];
+		}
+
+		bh.consume( all_min + all_max + total );
+
+			// rarest-first selection scans every piece the peer has
+
+		for ( int k=0;k<PICKS_PER_CYCLE;k++){
+
+			boolean[]	p_has = peer_has[ random.nextInt( peers )];
+
+			int	chosen	= -1;
+			int	found	= 0;
+
+			for ( int i=0;i<pieces;i++){
+
+				if ( p_has[i] && !done[i] && avail[i] <= rarest_min ){
+
+						// reservoir pick to mimic the random choice among candidates
+
+					if ( random.nextInt( ++found ) == 0 ){
+
+						chosen = i;
+					}
+				}
+			}
+
+			bh.consume( chosen );
+		}
+	}
+
+	@Benchmark
+	public void
+	indexedCycle(
+		Blackhole	bh )
+	{
+		for ( int k=0;k<HAVES_PER_CYCLE;k++){
+
+			int	pos = ( have_pos++ ) & ( have_peers.length - 1 );
+
+			index.increment( have_pieces[pos] );
+		}
+
+		int	peer = random.nextInt( peers );
+
+		boolean[]	has = peer_has[peer];
+
+		for ( int i=0;i<pieces;i++){
+
+			if ( has[i] ){
+
+				index.decrement( i, done[i]?1:0 );
+			}
+		}
+
+		for ( int i=0;i<pieces;i++){
+
+			if ( has[i] ){
+
+				index.increment( i );
+			}
+		}
+
+			// snapshot, then walk the levels from the rarest up
+
+		index_snapshot = index.getCounts();
+
+		int	all_min		= index.getMin();
+		int	all_max		= index.getMax();
+		int	rarest_min	= Integer.MAX_VALUE;
+
+		for ( int level=Math.max( 1, all_min ); level<=all_max && rarest_min==Integer.MAX_VALUE; level++ ){
+
+			for ( int i=index.getFirst( level ); i>=0; i=index.getNext( i )){
+
+				if ( !done[i] ){
+
+					rarest_min = level;
+
+					break;
+				}
+			}
+		}
+
+		int	rare_count = 0;
+
+		for ( int level=0; level<=Math.min( rarest_min, all_max ); level++ ){
+
+			rare_count += index.getBucketSize( level );
+		}
+
+		int[]	rare = new int[rare_count];
+
+		int	pos = 0;
+
+		for ( int level=0; level<=Math.min( rarest_min, all_max ); level++ ){
+
+			for ( int i=index.getFirst( level ); i>=0; i=index.getNext( i )){
+
+				if ( !done[i] ){
+
+					rare[pos++] = i;
+				}
+			}
+		}
+
+		bh.consume( all_min + all_max + index.getTotal());
+
+			// rarest-first selection only looks at the rare pieces
+
+		for ( int k=0;k<PICKS_PER_CYCLE;k++){
+
+			boolean[]	p_has = peer_has[ random.nextInt( peers )];
+
+			int	chosen	= -1;
+			int	found	= 0;
+
+			for ( int j=0;j<pos;j++){
+
+				int	i = rare[j];
+
+				if ( p_has[i] && index_snapshot[i] <= rarest_min ){
+
+					if ( random.nextInt( ++found ) == 0 ){
+
+						chosen = i;
+					}
+				}
+			}
+
+			bh.consume( chosen );
+		}
+	}
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) Bigly Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+
+package com.biglybt.benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.net.URL;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.biglybt.core.torrent.TOTorrent;
+import com.biglybt.core.torrent.TOTorrentCreator;
+import com.biglybt.core.torrent.TOTorrentFactory;
+import com.biglybt.core.util.FileUtil;
+
+/**
+ * Creation of a torrent over a directory of generated files, 'total_mb' of random data spread
+ * over a mix of large and small files so that pieces span file boundaries. Files are written
+ * once in setup and will mostly be in the OS cache, so this measures hashing rather than the
+ * disk.
+ * <p>
+ * 'type' selects V1, V2 or hybrid and 'threads' sets the number of hashing threads, 0 being the
+ * default of one per processor and 1 hashing on the creating thread. Rate is total_mb over the
+ * average time.
+ */
+
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 2, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+@State( Scope.Thread )
+public class
+TOTorrentCreateBenchmark
+{
+	@Param({ "256" })
+	int			total_mb;
+
+	@Param({ "1048576" })
+	long		piece_length;
+
+	@Param({ "v1", "v2", "hybrid" })
+	String		type;
+
+	@Param({ "1", "0" })
+	int			threads;
+
+	private File	dir;
+	private URL		announce_url;
+	private int		torrent_type;
+
+	@Setup
+	public void
+	setup()
+
+		throws Exception
+	{
+		System.setProperty( "az.create.torrent.hash.threads", String.valueOf( threads ));
+
+		torrent_type = type.equals( "v1" )?TOTorrent.TT_V1:( type.equals( "v2" )?TOTorrent.TT_V2:TOTorrent.TT_V1_V2 );
+
+		announce_url = new URL( "http://tracker.example.com/announce" );
+
+		dir = File.createTempFile( "biglybt", "bench" );
+
+		dir.delete();
+
+		dir.mkdirs();
+
+		Random	random = new Random( 1234 );
+
+		byte[]	block = new byte[64*1024];
+
+		long	remaining = total_mb*1024L*1024;
+
+		int		file_num = 0;
+
+		while( remaining > 0 ){
+
+				// alternate big files with a few odd sized small ones
+
+			long	size = ( file_num % 4 == 0 )?( 32*1024L*1024 + random.nextInt( 1024*1024 )):( random.nextInt( 512*1024 ) + 1 );
+
+			size = Math.min( size, remaining );
+
+			File	sub_dir = new File( dir, "dir" + ( file_num % 3 ));
+
+			sub_dir.mkdirs();
+
+			FileOutputStream	fos = new FileOutputStream( new File( sub_dir, "file" + file_num + ".dat" ));
+
+			try{
+				long	rem = size;
+
+				while( rem > 0 ){
+
+					random.nextBytes( block );
+
+					int	len = (int)Math.min( rem, block.length );
+
+					fos.write( block, 0, len );
+
+					rem -= len;
+				}
+			}finally{
+
+				fos.close();
+			}
+
+			remaining -= size;
+
+			file_num++;
+		}
+	}
+
+	@TearDown
+	public void
+	tearDown()
+	{
+		FileUtil.recursiveDelete( dir );
+	}
+
+	@Benchmark
+	public TOTorrent
+	create()
+
+		throws Exception
+	{
+		TOTorrentCreator	creator =
+			TOTorrentFactory.createFromFileOrDirWithFixedPieceLength(
+				torrent_type, dir, announce_url, false, piece_length );
+
+		return( creator.create());
+	}
+}
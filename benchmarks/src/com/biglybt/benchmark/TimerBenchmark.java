@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) Bigly Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+
+package com.biglybt.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.biglybt.core.util.SystemTime;
+import com.biglybt.core.util.Timer;
+import com.biglybt.core.util.TimerEvent;
+import com.biglybt.core.util.TimerEventPerformer;
+
+/**
+ * Add and cancel of one-off events on a Timer that already has 'pending' events queued, the
+ * pattern of timeouts that are mostly cancelled before they fire. Delays are spread from a
+ * second to an hour so none fire during the run. Run with -t to see contention on the timer.
+ */
+
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+@State( Scope.Benchmark )
+public class
+TimerBenchmark
+{
+	private static final TimerEventPerformer	NULL_PERFORMER =
+		new TimerEventPerformer()
+		{
+			@Override
+			public void
+			perform(
+				TimerEvent	event )
+			{
+			}
+		};
+
+	@Param({ "100", "10000" })
+	int			pending;
+
+	private Timer		timer;
+
+	private long[]		delays;
+
+	@Setup
+	public void
+	setup()
+	{
+		timer = new Timer( "TimerBenchmark" );
+
+		Random	random = new Random( 1234 );
+
+		delays = new long[4096];
+
+		for ( int i=0;i<delays.length;i++){
+
+			delays[i] = 1000 + random.nextInt( 60*60*1000 );
+		}
+
+		long	now = SystemTime.getCurrentTime();
+
+		for ( int i=0;i<pending;i++){
+
+			timer.addEvent( now + delays[ i % delays.length ], NULL_PERFORMER );
+		}
+	}
+
+	@TearDown
+	public void
+	tearDown()
+	{
+		timer.destroy();
+	}
+
+	@State( Scope.Thread )
+	public static class
+	ThreadState
+	{
+		int		pos;
+	}
+
+	@Benchmark
+	public void
+	addCancel(
+		ThreadState		state )
+	{
+		long	when = SystemTime.getCurrentTime() + delays[ state.pos++ & ( delays.length - 1 )];
+
+		TimerEvent	event = timer.addEvent( when, NULL_PERFORMER );
+
+		event.cancel();
+	}
+}
@@ -0,0 +1,246 @@
+package com.biglybt.core.dht.db.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.biglybt.testutil.junit5.DefaultTestCoreConfiguration;
+
+@ExtendWith(DefaultTestCoreConfiguration.class)
+public class DHTDBValueStoreImplTest
+{
+	private static final long MAX_BYTES = 4 * 1024 * 1024;
+
+	@TempDir
+	Path tempDir;
+
+	private File file;
+
+	@BeforeEach
+	public void setFile() {
+		file = tempDir.resolve("values.dat").toFile();
+	}
+
+	@Test
+	public void recordsSurviveReopen() {
+		DHTDBValueStoreImpl store = new DHTDBValueStoreImpl(file, MAX_BYTES);
+
+		assertThat(store.putRecord(key(1), record(1, 10))).isTrue();
+		assertThat(store.putRecord(key(2), record(2, 20))).isTrue();
+		assertThat(store.putRecord(key(3), record(3, 30))).isTrue();
+
+		assertThat(store.putRecord(key(2), record(22, 5))).isTrue();
+
+		store.removeRecord(key(3));
+		store.removeRecord(key(4));
+
+		assertThat(store.getRecordCount()).isEqualTo(2);
+		assertThat(store.getRecordBytes()).isEqualTo(15);
+
+		store.close();
+
+		store = new DHTDBValueStoreImpl(file, MAX_BYTES);
+
+		assertThat(records(store)).containsOnly(
+				entry(1, record(1, 10)),
+				entry(2, record(22, 5)));
+
+		assertThat(store.getRecordBytes()).isEqualTo(15);
+
+		store.close();
+	}
+
+	@Test
+	public void tornTailIsTruncated() throws Exception {
+		DHTDBValueStoreImpl store = new DHTDBValueStoreImpl(file, MAX_BYTES);
+
+		store.putRecord(key(1), record(1, 10));
+		store.putRecord(key(2), record(2, 20));
+
+		store.close();
+
+		long length = file.length();
+
+			// lose the end of the last record
+
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.setLength(length - 5);
+		}
+
+		store = new DHTDBValueStoreImpl(file, MAX_BYTES);
+
+		assertThat(records(store)).containsOnly(entry(1, record(1, 10)));
+
+			// header plus the first entry (key length, key, record length, record)
+
+		assertThat(file.length()).isEqualTo(8 + 1 + 3 + 4 + 10);
+
+			// appends carry on from the good data
+
+		store.putRecord(key(3), record(3, 30));
+
+		store.close();
+
+		store = new DHTDBValueStoreImpl(file, MAX_BYTES);
+
+		assertThat(records(store)).containsOnly(
+				entry(1, record(1, 10)),
+				entry(3, record(3, 30)));
+
+		store.close();
+	}
+
+	@Test
+	public void unknownHeaderResetsFile() throws Exception {
+		Files.write(file.toPath(), new byte[] { 'n', 'o', 't', ' ', 'a', ' ', 's', 't', 'o', 'r', 'e' });
+
+		DHTDBValueStoreImpl store = new DHTDBValueStoreImpl(file, MAX_BYTES);
+
+		assertThat(store.getRecordCount()).isZero();
+
+		assertThat(store.putRecord(key(1), record(1, 10))).isTrue();
+
+		store.close();
+
+		store = new DHTDBValueStoreImpl(file, MAX_BYTES);
+
+		assertThat(records(store)).containsOnly(entry(1, record(1, 10)));
+
+		store.close();
+	}
+
+	@Test
+	public void putsBeyondLimitAreRejected() {
+		DHTDBValueStoreImpl store = new DHTDBValueStoreImpl(file, 100);
+
+		assertThat(store.putRecord(key(1), record(1, 60))).isTrue();
+		assertThat(store.putRecord(key(2), record(2, 60))).isFalse();
+
+			// an update that doesn't fit drops the stale copy
+
+		store.putRecord(key(3), record(3, 30));
+
+		assertThat(store.putRecord(key(3), record(33, 50))).isFalse();
+
+		assertThat(records(store)).containsOnly(entry(1, record(1, 60)));
+
+		store.close();
+	}
+
+	@Test
+	public void compactionDropsDeadRecords() {
+		DHTDBValueStoreImpl store = new DHTDBValueStoreImpl(file, MAX_BYTES);
+
+		store.putRecord(key(1), record(1, 10));
+
+		for (int i = 0; i < 30; i++) {
+			store.putRecord(key(2), record(i, 100 * 1024));
+		}
+
+		assertThat(file.length()).isLessThan(1024 * 1024);
+
+		assertThat(records(store)).containsOnly(
+				entry(1, record(1, 10)),
+				entry(2, record(29, 100 * 1024)));
+
+		store.close();
+
+		assertThat(new File(file.getParentFile(), "values.dat.compact")).doesNotExist();
+		assertThat(new File(file.getParentFile(), "values.dat.old")).doesNotExist();
+
+		store = new DHTDBValueStoreImpl(file, MAX_BYTES);
+
+		assertThat(records(store)).containsOnly(
+				entry(1, record(1, 10)),
+				entry(2, record(29, 100 * 1024)));
+
+		store.close();
+	}
+
+	@Test
+	public void interruptedSwapAdoptsCompactedCopy() throws Exception {
+		DHTDBValueStoreImpl store = new DHTDBValueStoreImpl(file, MAX_BYTES);
+
+		store.putRecord(key(1), record(1, 10));
+
+		store.close();
+
+			// crashed after moving the old file aside, before the compacted copy was renamed
+
+		File old = new File(file.getParentFile(), "values.dat.old");
+		File compact = new File(file.getParentFile(), "values.dat.compact");
+
+		Files.copy(file.toPath(), compact.toPath());
+		Files.move(file.toPath(), old.toPath());
+
+		store = new DHTDBValueStoreImpl(file, MAX_BYTES);
+
+		assertThat(records(store)).containsOnly(entry(1, record(1, 10)));
+
+		assertThat(old).doesNotExist();
+		assertThat(compact).doesNotExist();
+
+		store.close();
+	}
+
+	@Test
+	public void interruptedSwapRestoresOldFile() throws Exception {
+		DHTDBValueStoreImpl store = new DHTDBValueStoreImpl(file, MAX_BYTES);
+
+		store.putRecord(key(1), record(1, 10));
+
+		store.close();
+
+		File old = new File(file.getParentFile(), "values.dat.old");
+
+		Files.move(file.toPath(), old.toPath());
+
+		store = new DHTDBValueStoreImpl(file, MAX_BYTES);
+
+		assertThat(records(store)).containsOnly(entry(1, record(1, 10)));
+
+		assertThat(old).doesNotExist();
+
+		store.close();
+	}
+
+	private static byte[] key(int k) {
+		return new byte[] { (byte) k, (byte) (k >> 8), 0x55 };
+	}
+
+	private static byte[] record(int seed, int length) {
+		byte[] record = new byte[length];
+
+		Arrays.fill(record, (byte) seed);
+
+		return record;
+	}
+
+	private static Map.Entry<String, String> entry(int k, byte[] record) {
+		return new AbstractMap.SimpleEntry<>(Arrays.toString(key(k)), describe(record));
+	}
+
+	private static String describe(byte[] record) {
+		return record.length + "x" + (record.length == 0 ? 0 : record[0]);
+	}
+
+	private static Map<String, String> records(DHTDBValueStoreImpl store) {
+		Map<String, String> result = new TreeMap<>();
+
+		store.visitRecords((key, record) -> result.put(Arrays.toString(key), describe(record)));
+
+		return result;
+	}
+}
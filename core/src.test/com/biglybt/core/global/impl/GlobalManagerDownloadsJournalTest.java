@@ -0,0 +1,355 @@
+package com.biglybt.core.global.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import com.biglybt.core.util.BDecoder;
+import com.biglybt.core.util.BEncoder;
+import com.biglybt.core.util.ByteFormatter;
+import com.biglybt.core.util.FileUtil;
+import com.biglybt.core.util.HashWrapper;
+import com.biglybt.testutil.junit5.DefaultTestCoreConfiguration;
+
+@ExtendWith(DefaultTestCoreConfiguration.class)
+public class GlobalManagerDownloadsJournalTest
+{
+	private final File configFile = FileUtil.getUserFile(GlobalManagerDownloadsJournal.CONFIG_FILE);
+	private final File journalFile = FileUtil.getUserFile(GlobalManagerDownloadsJournal.JOURNAL_FILE);
+
+	@BeforeEach
+	@AfterEach
+	public void deleteFiles() {
+			// the test core isn't started so nothing else uses these
+
+		FileUtil.deleteResilientConfigFile(GlobalManagerDownloadsJournal.CONFIG_FILE);
+
+		journalFile.delete();
+	}
+
+	@Test
+	public void fullSaveRoundTrips() {
+		GlobalManagerDownloadsJournal journal = load(new ArrayList<>());
+
+		journal.save(downloads(download(1, 10), download(2, 20), download(3, 30)), null, true);
+
+		assertThat(configFile).exists();
+
+		assertThat(loadAll()).containsExactly("01=10", "02=20", "03=30");
+	}
+
+	@Test
+	public void changesAreAppendedToJournal() throws Exception {
+		GlobalManagerDownloadsJournal journal = load(new ArrayList<>());
+
+		journal.save(downloads(download(1, 10), download(2, 20), download(3, 30)), null, true);
+
+		byte[] base = FileUtil.readFileAsByteArray(configFile);
+
+		long journalSize = journalFile.length();
+
+			// unchanged save appends nothing
+
+		journal.save(downloads(download(1, 10), download(2, 20), download(3, 30)), null, false);
+
+		assertThat(journalFile.length()).isEqualTo(journalSize);
+
+			// change 2, remove 3, add 4
+
+		journal.save(downloads(download(1, 10), download(2, 21), download(4, 40)), null, false);
+
+		assertThat(FileUtil.readFileAsByteArray(configFile)).isEqualTo(base);
+		assertThat(journalFile.length()).isGreaterThan(journalSize);
+
+		List<String> loaded = new ArrayList<>();
+
+		GlobalManagerDownloadsJournal reloaded = load(loaded);
+
+		assertThat(loaded).containsExactly("01=10", "02=21", "04=40");
+
+			// digests come from the load so a save of the same state appends nothing
+
+		journalSize = journalFile.length();
+
+		reloaded.save(downloads(download(1, 10), download(2, 21), download(4, 40)), null, false);
+
+		assertThat(journalFile.length()).isEqualTo(journalSize);
+	}
+
+	@Test
+	public void pauseDataIsJournalled() {
+		GlobalManagerDownloadsJournal journal = load(new ArrayList<>());
+
+		journal.save(downloads(download(1, 10)), null, true);
+
+		List pauseData = new ArrayList();
+
+		Map pause = new HashMap();
+
+		pause.put("hash", new byte[] { 1 });
+		pause.put("force", 1L);
+
+		pauseData.add(pause);
+
+		journal.save(downloads(download(1, 10)), pauseData, false);
+
+		GlobalManagerDownloadsJournal.LoadResult result = new GlobalManagerDownloadsJournal().load();
+
+		assertThat(result.getPauseData()).hasSize(1);
+		assertThat(((Map) result.getPauseData().get(0)).get("force")).isEqualTo(1L);
+	}
+
+	@Test
+	public void tornFinalRecordIsIgnored() throws Exception {
+		GlobalManagerDownloadsJournal journal = load(new ArrayList<>());
+
+		journal.save(downloads(download(1, 10), download(2, 20)), null, true);
+
+		journal.save(downloads(download(1, 11), download(2, 20)), null, false);
+
+		long goodLength = journalFile.length();
+
+		journal.save(downloads(download(1, 11), download(2, 22)), null, false);
+
+			// lose the end of the last record
+
+		truncate(journalFile, journalFile.length() - 3);
+
+		List<String> loaded = new ArrayList<>();
+
+		journal = load(loaded);
+
+		assertThat(loaded).containsExactly("01=11", "02=20");
+
+			// next save mustn't append after the junk, it compacts
+
+		journal.save(downloads(download(1, 11), download(2, 23)), null, false);
+
+		assertThat(journalFile.length()).isLessThan(goodLength);
+
+		assertThat(loadAll()).containsExactly("01=11", "02=23");
+	}
+
+	@Test
+	public void corruptRecordEndsReplay() throws Exception {
+		GlobalManagerDownloadsJournal journal = load(new ArrayList<>());
+
+		journal.save(downloads(download(1, 10), download(2, 20)), null, true);
+
+		journal.save(downloads(download(1, 11), download(2, 20)), null, false);
+
+		journal.save(downloads(download(1, 11), download(2, 22)), null, false);
+
+			// flip a bit in the body of the last record so its CRC fails
+
+		flipByte(journalFile, journalFile.length() - 2);
+
+		assertThat(loadAll()).containsExactly("01=11", "02=20");
+	}
+
+	@Test
+	public void journalForOtherGenerationIsDiscarded() throws Exception {
+		GlobalManagerDownloadsJournal journal = load(new ArrayList<>());
+
+		journal.save(downloads(download(1, 10), download(2, 20)), null, true);
+
+		byte[] oldBase = FileUtil.readFileAsByteArray(configFile);
+
+			// compaction moves to the next generation, changes are then journalled against it
+
+		journal.save(downloads(download(1, 11), download(2, 20)), null, true);
+
+		journal.save(downloads(download(1, 11), download(2, 22)), null, false);
+
+			// e.g. base restored from an earlier copy
+
+		FileUtil.writeBytesAsFile(configFile.getAbsolutePath(), oldBase);
+		new File(configFile.getParentFile(), configFile.getName() + ".bak").delete();
+
+		assertThat(loadAll()).containsExactly("01=10", "02=20");
+	}
+
+	@Test
+	public void baseStaysPlainBencodedMap() throws Exception {
+		GlobalManagerDownloadsJournal journal = load(new ArrayList<>());
+
+		journal.save(downloads(download(1, 10), download(2, 20)), null, true);
+
+		journal.save(downloads(download(1, 11)), null, false);
+
+			// compacting save (as on close) folds the journal in for older versions
+
+		journal.save(downloads(download(1, 11)), null, true);
+
+		Map base = BDecoder.decode(FileUtil.readFileAsByteArray(configFile));
+
+		List list = (List) base.get("downloads");
+
+		assertThat(list).hasSize(1);
+		assertThat(describe((Map) list.get(0))).isEqualTo("01=11");
+	}
+
+	@Test
+	public void onlyReportedChangesAreJournalled() throws Exception {
+		GlobalManagerDownloadsJournal journal = load(new ArrayList<>());
+
+		journal.save(downloads(download(1, 10), download(2, 20), download(3, 30)), null, true);
+
+		assertThat(journal.isFullSaveRequired()).isFalse();
+
+		long journalSize = journalFile.length();
+
+			// reported as changed but encodes the same, nothing to write
+
+		assertThat(journal.saveChanges(keys(1, 2, 3), downloads(download(2, 20)), null)).isTrue();
+
+		assertThat(journalFile.length()).isEqualTo(journalSize);
+
+			// 3 has gone, 2 changed and 1 isn't reported so stays as it was
+
+		assertThat(journal.saveChanges(keys(1, 2), downloads(download(2, 21)), null)).isTrue();
+
+		assertThat(journalFile.length()).isGreaterThan(journalSize);
+
+		assertThat(loadAll()).containsExactly("01=10", "02=21");
+	}
+
+	@Test
+	public void unkeyedChangeNeedsFullSave() {
+		GlobalManagerDownloadsJournal journal = load(new ArrayList<>());
+
+		journal.save(downloads(download(1, 10)), null, true);
+
+		Map unkeyed = new HashMap();
+
+		unkeyed.put("value", 1L);
+
+		assertThat(journal.saveChanges(keys(1), downloads(unkeyed), null)).isFalse();
+	}
+
+	@Test
+	public void baseFromOlderVersionIsScanned() throws Exception {
+			// no generation, no journal
+
+		Map base = new HashMap();
+
+		base.put("downloads", downloads(download(1, 10), download(2, 20)));
+
+		List pauseData = new ArrayList();
+
+		Map pause = new HashMap();
+
+		pause.put("hash", new byte[] { 2 });
+		pause.put("force", 0L);
+
+		pauseData.add(pause);
+
+		base.put("pause_data", pauseData);
+
+		FileUtil.writeBytesAsFile(configFile.getAbsolutePath(), BEncoder.encode(base));
+
+		GlobalManagerDownloadsJournal journal = new GlobalManagerDownloadsJournal();
+
+		GlobalManagerDownloadsJournal.LoadResult result = journal.load();
+
+		assertThat(result.getCount()).isEqualTo(2);
+		assertThat(result.getPauseData()).hasSize(1);
+
+		List<String> loaded = new ArrayList<>();
+
+		while (result.hasNext()) {
+			loaded.add(describe(result.next()));
+		}
+
+		assertThat(loaded).containsExactly("01=10", "02=20");
+
+			// no journal for it so the first save is a full one
+
+		assertThat(journal.isFullSaveRequired()).isTrue();
+	}
+
+	@Test
+	public void preDownloadsListFormatIsRead() throws Exception {
+		Map base = new HashMap();
+
+		base.put("a", download(1, 10));
+		base.put("b", download(2, 20));
+
+		FileUtil.writeBytesAsFile(configFile.getAbsolutePath(), BEncoder.encode(base));
+
+		assertThat(loadAll()).containsExactlyInAnyOrder("01=10", "02=20");
+	}
+
+	private List<String> loadAll() {
+		List<String> loaded = new ArrayList<>();
+
+		load(loaded);
+
+		return loaded;
+	}
+
+	private GlobalManagerDownloadsJournal load(List<String> loaded) {
+		GlobalManagerDownloadsJournal journal = new GlobalManagerDownloadsJournal();
+
+		GlobalManagerDownloadsJournal.LoadResult result = journal.load();
+
+		while (result.hasNext()) {
+			loaded.add(describe(result.next()));
+		}
+
+		return journal;
+	}
+
+	private static List<Map> downloads(Map... maps) {
+		return new ArrayList<>(Arrays.asList(maps));
+	}
+
+	private static List<HashWrapper> keys(int... hashes) {
+		List<HashWrapper> keys = new ArrayList<>();
+
+		for (int hash : hashes) {
+			keys.add(new HashWrapper(new byte[] { (byte) hash }));
+		}
+
+		return keys;
+	}
+
+	private static Map download(int hash, long value) {
+		Map map = new HashMap();
+
+		map.put("torrent_hash", new byte[] { (byte) hash });
+		map.put("value", value);
+
+		return map;
+	}
+
+	private static String describe(Map map) {
+		return ByteFormatter.encodeString((byte[]) map.get("torrent_hash")) + "=" + map.get("value");
+	}
+
+	private static void truncate(File file, long length) throws Exception {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.setLength(length);
+		}
+	}
+
+	private static void flipByte(File file, long pos) throws Exception {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.seek(pos);
+			int b = raf.read();
+			raf.seek(pos);
+			raf.write(b ^ 0x01);
+		}
+	}
+}
@@ -0,0 +1,148 @@
+package com.biglybt.core.ipfilter.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.biglybt.core.util.FileUtil;
+import com.biglybt.testutil.junit5.DefaultTestCoreConfiguration;
+
+@ExtendWith(DefaultTestCoreConfiguration.class)
+public class IpFilterBlocklistCacheTest
+{
+	@TempDir
+	Path tempDir;
+
+	private final File cacheFile = FileUtil.getUserFile("ipfilter.bin");
+
+	private File source;
+
+	@BeforeEach
+	public void createSource() throws Exception {
+		cacheFile.delete();
+
+		source = tempDir.resolve("blocklist.dat").toFile();
+
+		Files.write(source.toPath(), "1.2.3.4 - 1.2.3.10 , 100 , Example\n".getBytes("UTF-8"));
+	}
+
+	@AfterEach
+	public void deleteCache() {
+		cacheFile.delete();
+	}
+
+	@Test
+	public void rangesRoundTripSortedByStart() throws Exception {
+		List<IpRangeV4Impl> ranges = new ArrayList<>();
+
+		ranges.add(range("Shared", "10.0.0.0", "10.255.255.255"));
+		ranges.add(range("", "0.0.0.0", "0.0.0.0"));
+		ranges.add(range("Top", "255.255.255.0", "255.255.255.255"));
+		ranges.add(range("Shared", "1.2.3.4", "1.2.3.4"));
+		ranges.add(range("Other \u00e9", "1.2.3.5", "9.0.0.0"));
+
+		byte[] hash = IpFilterBlocklistCache.hashSource(source);
+
+		IpFilterBlocklistCache.write(source, hash, ranges);
+
+		assertThat(cacheFile).exists();
+
+		List<IpRangeV4Impl> read = IpFilterBlocklistCache.read(source, hash);
+
+		assertThat(describe(read)).containsExactly(
+				"0.0.0.0-0.0.0.0:",
+				"1.2.3.4-1.2.3.4:Shared",
+				"1.2.3.5-9.0.0.0:Other \u00e9",
+				"10.0.0.0-10.255.255.255:Shared",
+				"255.255.255.0-255.255.255.255:Top");
+	}
+
+	@Test
+	public void invalidRangesAreNotWritten() throws Exception {
+		IpRangeV4Impl invalid = range("Backwards", "1.2.3.10", "1.2.3.4");
+
+		assertThat(invalid.isValid()).isFalse();
+
+		byte[] hash = IpFilterBlocklistCache.hashSource(source);
+
+		IpFilterBlocklistCache.write(source, hash, Arrays.asList(invalid, range("Ok", "5.6.7.8", "5.6.7.9")));
+
+		assertThat(describe(IpFilterBlocklistCache.read(source, hash))).containsExactly("5.6.7.8-5.6.7.9:Ok");
+	}
+
+	@Test
+	public void changedSourceMakesCacheStale() throws Exception {
+		byte[] hash = IpFilterBlocklistCache.hashSource(source);
+
+		IpFilterBlocklistCache.write(source, hash, Arrays.asList(range("Example", "1.2.3.4", "1.2.3.10")));
+
+			// same length, different content
+
+		Files.write(source.toPath(), "1.2.3.4 - 1.2.3.11 , 100 , Example\n".getBytes("UTF-8"));
+
+		byte[] newHash = IpFilterBlocklistCache.hashSource(source);
+
+		assertThat(newHash).isNotEqualTo(hash);
+		assertThat(IpFilterBlocklistCache.read(source, newHash)).isNull();
+
+			// same hash but the length recorded doesn't match
+
+		Files.write(source.toPath(), "1.2.3.4 - 1.2.3.10 , 100 , Example\n\n".getBytes("UTF-8"));
+
+		assertThat(IpFilterBlocklistCache.read(source, hash)).isNull();
+	}
+
+	@Test
+	public void corruptCacheIsIgnored() throws Exception {
+		byte[] hash = IpFilterBlocklistCache.hashSource(source);
+
+		IpFilterBlocklistCache.write(source, hash, Arrays.asList(range("Example", "1.2.3.4", "1.2.3.10")));
+
+		try (RandomAccessFile raf = new RandomAccessFile(cacheFile, "rw")) {
+			long pos = raf.length() - 6;
+			raf.seek(pos);
+			int b = raf.read();
+			raf.seek(pos);
+			raf.write(b ^ 0x01);
+		}
+
+		assertThat(IpFilterBlocklistCache.read(source, hash)).isNull();
+
+		try (RandomAccessFile raf = new RandomAccessFile(cacheFile, "rw")) {
+			raf.setLength(10);
+		}
+
+		assertThat(IpFilterBlocklistCache.read(source, hash)).isNull();
+	}
+
+	@Test
+	public void missingCacheReadsAsNull() throws Exception {
+		assertThat(IpFilterBlocklistCache.read(source, IpFilterBlocklistCache.hashSource(source))).isNull();
+	}
+
+	private static IpRangeV4Impl range(String description, String start, String end) {
+		return new IpRangeV4Impl(description, start, end, true);
+	}
+
+	private static List<String> describe(List<IpRangeV4Impl> ranges) {
+		List<String> result = new ArrayList<>();
+
+		for (IpRangeV4Impl range : ranges) {
+			result.add(range.getStartIp() + "-" + range.getEndIp() + ":" + range.getDescription());
+		}
+
+		return result;
+	}
+}
@@ -0,0 +1,364 @@
+package com.biglybt.core.networkmanager.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.biglybt.core.networkmanager.RawMessage;
+import com.biglybt.core.networkmanager.Transport;
+import com.biglybt.core.peermanager.messaging.Message;
+import com.biglybt.core.util.DirectByteBuffer;
+
+/**
+ * Drives the queue through a transport that records what it is given and can accept less
+ * than is offered
+ */
+public class OutgoingMessageQueueImplTest
+{
+	private final ByteArrayOutputStream written = new ByteArrayOutputStream();
+
+	private final List<Integer> gatherCounts = new ArrayList<>();
+
+	private final Map<Integer, Integer> sizes = new HashMap<>();
+
+	private int writeLimit;
+
+	private OutgoingMessageQueueImpl queue;
+
+	@BeforeEach
+	public void createQueue() {
+		writeLimit = Integer.MAX_VALUE;
+
+		queue = new OutgoingMessageQueueImpl(message -> {
+			TestMessage tm = (TestMessage) message;
+
+			return new RawMessage[] { new RawMessageImpl(tm, tm.buffers(), tm.priority, false, null) };
+		});
+
+		queue.setTransport((Transport) Proxy.newProxyInstance(
+				Transport.class.getClassLoader(),
+				new Class<?>[] { Transport.class },
+				(proxy, method, args) -> {
+					switch (method.getName()) {
+						case "write":
+							return write((ByteBuffer[]) args[0], (Integer) args[1], (Integer) args[2]);
+						case "isFileRegionWriteSupported":
+							return false;
+						default:
+							throw new UnsupportedOperationException(method.getName());
+					}
+				}));
+	}
+
+	@Test
+	public void smallProtocolMessagesAreCoalesced() throws Exception {
+		add(1, "A", Message.TYPE_PROTOCOL_PAYLOAD, 5, RawMessage.PRIORITY_NORMAL);
+		add(2, "A", Message.TYPE_PROTOCOL_PAYLOAD, 5, RawMessage.PRIORITY_NORMAL);
+		add(3, "A", Message.TYPE_PROTOCOL_PAYLOAD, 5, RawMessage.PRIORITY_NORMAL);
+
+		int[] delivered = queue.deliverToTransport(1000, false, false);
+
+		assertThat(delivered).containsExactly(0, 15);
+
+			// six message buffers in one gathered buffer
+
+		assertThat(gatherCounts).containsExactly(1);
+
+		assertThat(written.toByteArray()).isEqualTo(expected(1, 2, 3));
+		assertThat(queue.getTotalSize()).isZero();
+		assertThat(queue.peekFirstMessage()).isNull();
+	}
+
+	@Test
+	public void largeMessageEndsCoalescedRun() throws Exception {
+		add(1, "A", Message.TYPE_PROTOCOL_PAYLOAD, 5, RawMessage.PRIORITY_NORMAL);
+		add(2, "A", Message.TYPE_PROTOCOL_PAYLOAD, 100, RawMessage.PRIORITY_NORMAL);
+		add(3, "A", Message.TYPE_PROTOCOL_PAYLOAD, 5, RawMessage.PRIORITY_NORMAL);
+		add(4, "A", Message.TYPE_PROTOCOL_PAYLOAD, 5, RawMessage.PRIORITY_NORMAL);
+
+		queue.deliverToTransport(1000, false, false);
+
+			// run, header and body of the large message, run
+
+		assertThat(gatherCounts).containsExactly(4);
+
+		assertThat(written.toByteArray()).isEqualTo(expected(1, 2, 3, 4));
+	}
+
+	@Test
+	public void partialWriteOfCoalescedRunResumes() throws Exception {
+		add(1, "A", Message.TYPE_PROTOCOL_PAYLOAD, 5, RawMessage.PRIORITY_NORMAL);
+		add(2, "A", Message.TYPE_PROTOCOL_PAYLOAD, 5, RawMessage.PRIORITY_NORMAL);
+		add(3, "A", Message.TYPE_PROTOCOL_PAYLOAD, 5, RawMessage.PRIORITY_NORMAL);
+
+		writeLimit = 7;
+
+		assertThat(queue.deliverToTransport(1000, false, false)).containsExactly(0, 7);
+
+			// the bytes taken from the run are handed back to the message buffers
+
+		assertThat(queue.getTotalSize()).isEqualTo(8);
+		assertThat(queue.getCurrentMessageProgress()).startsWith(5, 2);
+
+			// a half sent message can't be overtaken
+
+		add(4, "A", Message.TYPE_PROTOCOL_PAYLOAD, 5, RawMessage.PRIORITY_HIGH);
+
+		writeLimit = Integer.MAX_VALUE;
+
+		assertThat(queue.deliverToTransport(1000, false, false)).containsExactly(0, 13);
+
+		assertThat(written.toByteArray()).isEqualTo(expected(1, 2, 4, 3));
+		assertThat(queue.getTotalSize()).isZero();
+	}
+
+	@Test
+	public void coalescedRunIsTrimmedToMaxBytes() throws Exception {
+		add(1, "A", Message.TYPE_PROTOCOL_PAYLOAD, 5, RawMessage.PRIORITY_NORMAL);
+		add(2, "A", Message.TYPE_PROTOCOL_PAYLOAD, 5, RawMessage.PRIORITY_NORMAL);
+		add(3, "A", Message.TYPE_PROTOCOL_PAYLOAD, 5, RawMessage.PRIORITY_NORMAL);
+
+		assertThat(queue.deliverToTransport(7, false, false)).containsExactly(0, 7);
+
+		assertThat(written.size()).isEqualTo(7);
+
+		assertThat(queue.deliverToTransport(1000, false, false)).containsExactly(0, 8);
+
+		assertThat(written.toByteArray()).isEqualTo(expected(1, 2, 3));
+	}
+
+	@Test
+	public void dataPayloadIsCountedSeparately() throws Exception {
+		add(1, "A", Message.TYPE_DATA_PAYLOAD, 113, RawMessage.PRIORITY_LOW);
+
+		assertThat(queue.deliverToTransport(50, false, false)).containsExactly(37, 13);
+
+		assertThat(queue.getDataQueuedBytes()).isEqualTo(63);
+		assertThat(queue.getCurrentMessageProgress()).startsWith(113, 50);
+
+		assertThat(queue.deliverToTransport(1000, false, false)).containsExactly(63, 0);
+
+		assertThat(written.toByteArray()).isEqualTo(expected(1));
+	}
+
+	@Test
+	public void ringKeepsOrderWhenWrapped() throws Exception {
+		for (int id = 1; id <= 6; id++) {
+			add(id, id == 6 ? "B" : "A", Message.TYPE_PROTOCOL_PAYLOAD, 100, RawMessage.PRIORITY_NORMAL);
+		}
+
+			// four whole messages go, the head moves along the ring
+
+		queue.deliverToTransport(400, false, false);
+
+		assertThat(written.toByteArray()).isEqualTo(expected(1, 2, 3, 4));
+
+		written.reset();
+
+			// these wrap round to the start of the array
+
+		add(7, "A", Message.TYPE_PROTOCOL_PAYLOAD, 100, RawMessage.PRIORITY_NORMAL);
+		add(8, "B", Message.TYPE_PROTOCOL_PAYLOAD, 100, RawMessage.PRIORITY_NORMAL);
+		add(9, "A", Message.TYPE_PROTOCOL_PAYLOAD, 100, RawMessage.PRIORITY_NORMAL);
+
+			// in at the head, at the tail and in the middle
+
+		add(10, "A", Message.TYPE_PROTOCOL_PAYLOAD, 100, RawMessage.PRIORITY_HIGH);
+		add(11, "A", Message.TYPE_PROTOCOL_PAYLOAD, 100, RawMessage.PRIORITY_LOW);
+		add(12, "A", Message.TYPE_PROTOCOL_PAYLOAD, 100, RawMessage.PRIORITY_NORMAL);
+
+		queue.removeMessagesOfType(new Message[] { new TestMessage(0, "B", Message.TYPE_PROTOCOL_PAYLOAD, 0, 0) }, false);
+
+			// enough to grow the ring
+
+		for (int id = 13; id <= 20; id++) {
+			add(id, "A", Message.TYPE_PROTOCOL_PAYLOAD, 100, RawMessage.PRIORITY_NORMAL);
+		}
+
+		assertThat(queue.getTotalSize()).isEqualTo(14 * 100);
+
+		queue.deliverToTransport(100_000, false, false);
+
+		assertThat(written.toByteArray()).isEqualTo(expected(10, 5, 7, 9, 12, 13, 14, 15, 16, 17, 18, 19, 20, 11));
+		assertThat(queue.getTotalSize()).isZero();
+
+			// and the queue is usable after draining
+
+		written.reset();
+
+		add(21, "A", Message.TYPE_PROTOCOL_PAYLOAD, 100, RawMessage.PRIORITY_NORMAL);
+
+		queue.deliverToTransport(100_000, false, false);
+
+		assertThat(written.toByteArray()).isEqualTo(expected(21));
+	}
+
+	@Test
+	public void deliveredCountsBelongToTheCaller() throws Exception {
+		add(1, "A", Message.TYPE_PROTOCOL_PAYLOAD, 5, RawMessage.PRIORITY_NORMAL);
+
+		int[] first = queue.deliverToTransport(1000, false, false);
+
+		int[] second = queue.deliverToTransport(1000, false, false);
+
+		assertThat(first).containsExactly(0, 5);
+		assertThat(second).isNotSameAs(first).containsExactly(0, 0);
+	}
+
+	@Test
+	public void progressArrayIsReused() throws Exception {
+		add(1, "A", Message.TYPE_DATA_PAYLOAD, 113, RawMessage.PRIORITY_LOW);
+
+		queue.deliverToTransport(20, false, false);
+
+		int[] progress = queue.getCurrentMessageProgress();
+
+		assertThat(progress).startsWith(113, 20);
+
+		queue.deliverToTransport(30, false, false);
+
+		assertThat(queue.getCurrentMessageProgress()).isSameAs(progress).startsWith(113, 50);
+
+		queue.deliverToTransport(1000, false, false);
+
+		assertThat(queue.getCurrentMessageProgress()).isNull();
+	}
+
+	private void add(int id, String type, int messageType, int size, int priority) {
+		sizes.put(id, size);
+
+		queue.addMessage(new TestMessage(id, type, messageType, size, priority), false);
+	}
+
+	private byte[] expected(int... ids) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+		for (int id : ids) {
+			byte[] content = new byte[sizes.get(id)];
+
+			Arrays.fill(content, (byte) id);
+
+			bytes.write(content, 0, content.length);
+		}
+
+		return bytes.toByteArray();
+	}
+
+	private long write(ByteBuffer[] buffers, int offset, int length) {
+		int count = 0;
+
+		for (int i = offset; i < offset + length; i++) {
+			if (buffers[i].hasRemaining()) {
+				count++;
+			}
+		}
+
+		gatherCounts.add(count);
+
+		long total = 0;
+
+		for (int i = offset; i < offset + length && total < writeLimit; i++) {
+			ByteBuffer buffer = buffers[i];
+
+			while (buffer.hasRemaining() && total < writeLimit) {
+				written.write(buffer.get());
+
+				total++;
+			}
+		}
+
+		return total;
+	}
+
+	private static class TestMessage implements Message
+	{
+		private final int id;
+		private final String type;
+		private final int messageType;
+		private final int size;
+		final int priority;
+
+		TestMessage(int id, String type, int messageType, int size, int priority) {
+			this.id = id;
+			this.type = type;
+			this.messageType = messageType;
+			this.size = size;
+			this.priority = priority;
+		}
+
+		DirectByteBuffer[] buffers() {
+				// data messages have a 13 byte header (as a BT piece does), the rest a single byte
+
+			int header = messageType == TYPE_DATA_PAYLOAD ? 13 : 1;
+
+			return new DirectByteBuffer[] { buffer(header), buffer(size - header) };
+		}
+
+		private DirectByteBuffer buffer(int length) {
+			byte[] content = new byte[length];
+
+			Arrays.fill(content, (byte) id);
+
+			return new DirectByteBuffer(ByteBuffer.wrap(content));
+		}
+
+		@Override
+		public String getID() {
+			return type;
+		}
+
+		@Override
+		public byte[] getIDBytes() {
+			return type.getBytes();
+		}
+
+		@Override
+		public String getFeatureID() {
+			return "test";
+		}
+
+		@Override
+		public int getFeatureSubID() {
+			return 0;
+		}
+
+		@Override
+		public byte getVersion() {
+			return 1;
+		}
+
+		@Override
+		public int getType() {
+			return messageType;
+		}
+
+		@Override
+		public String getDescription() {
+			return type + id;
+		}
+
+		@Override
+		public DirectByteBuffer[] getData() {
+			return new DirectByteBuffer[0];
+		}
+
+		@Override
+		public Message deserialize(DirectByteBuffer data, byte version) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void destroy() {
+		}
+	}
+}
@@ -0,0 +1,231 @@
+package com.biglybt.core.peermanager.piecepicker.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the buckets and min/max/total against a plain count array
+ */
+public class PieceAvailabilityIndexTest
+{
+	@Test
+	public void setGroupsPiecesByCount() {
+		PieceAvailabilityIndex index = new PieceAvailabilityIndex(6);
+
+		index.set(new int[] { 2, 0, 2, 5, 0, 2 });
+
+		assertThat(bucket(index, 0)).containsExactly(1, 4);
+		assertThat(bucket(index, 2)).containsExactly(0, 2, 5);
+		assertThat(bucket(index, 5)).containsExactly(3);
+		assertThat(bucket(index, 1)).isEmpty();
+
+		assertThat(index.getBucketSize(2)).isEqualTo(3);
+		assertThat(index.getMin()).isZero();
+		assertThat(index.getMax()).isEqualTo(5);
+		assertThat(index.getTotal()).isEqualTo(11);
+	}
+
+	@Test
+	public void incrementAndDecrementMoveOneBucket() {
+		PieceAvailabilityIndex index = new PieceAvailabilityIndex(4);
+
+		index.set(new int[] { 1, 1, 1, 1 });
+
+			// remove from the middle of a bucket
+
+		index.increment(2);
+
+		assertThat(bucket(index, 1)).containsExactly(0, 1, 3);
+		assertThat(bucket(index, 2)).containsExactly(2);
+
+			// remove the head and the tail
+
+		index.increment(0);
+		index.increment(3);
+
+		assertThat(bucket(index, 1)).containsExactly(1);
+		assertThat(bucket(index, 2)).containsOnly(0, 2, 3);
+
+		assertThat(index.decrement(2, 0)).isTrue();
+
+		assertThat(bucket(index, 1)).containsOnly(1, 2);
+		assertThat(bucket(index, 2)).containsOnly(0, 3);
+
+		assertThat(index.get(2)).isEqualTo(1);
+		assertThat(index.getTotal()).isEqualTo(6);
+	}
+
+	@Test
+	public void decrementStopsAtFloor() {
+		PieceAvailabilityIndex index = new PieceAvailabilityIndex(2);
+
+		index.set(new int[] { 1, 3 });
+
+		assertThat(index.decrement(0, 0)).isTrue();
+		assertThat(index.decrement(0, 0)).isFalse();
+
+		assertThat(index.decrement(1, 2)).isTrue();
+		assertThat(index.decrement(1, 2)).isFalse();
+
+		assertThat(index.getCounts()).containsExactly(0, 2);
+		assertThat(index.getTotal()).isEqualTo(2);
+	}
+
+	@Test
+	public void minAndMaxFollowEmptiedBuckets() {
+		PieceAvailabilityIndex index = new PieceAvailabilityIndex(3);
+
+		index.set(new int[] { 0, 1, 1 });
+
+		assertThat(index.getMin()).isZero();
+
+			// last piece leaves the min bucket
+
+		index.increment(0);
+
+		assertThat(index.getMin()).isEqualTo(1);
+
+		index.increment(0);
+		index.increment(1);
+		index.increment(2);
+
+		assertThat(index.getMin()).isEqualTo(2);
+		assertThat(index.getMax()).isEqualTo(2);
+
+		index.increment(1);
+
+		assertThat(index.getMax()).isEqualTo(3);
+
+			// last piece leaves the max bucket
+
+		index.decrement(1, 0);
+
+		assertThat(index.getMax()).isEqualTo(2);
+
+		index.decrement(2, 0);
+
+		assertThat(index.getMin()).isEqualTo(1);
+		assertThat(index.getMax()).isEqualTo(2);
+	}
+
+	@Test
+	public void bucketsGrowPastInitialSize() {
+		PieceAvailabilityIndex index = new PieceAvailabilityIndex(2);
+
+		for (int i = 0; i < 100; i++) {
+			index.increment(1);
+		}
+
+		assertThat(index.getMax()).isEqualTo(100);
+		assertThat(bucket(index, 100)).containsExactly(1);
+		assertThat(index.getFirst(1000)).isEqualTo(-1);
+		assertThat(index.getBucketSize(1000)).isZero();
+
+		index.set(new int[] { 40, 40 });
+
+		assertThat(bucket(index, 100)).isEmpty();
+		assertThat(bucket(index, 40)).containsExactly(0, 1);
+		assertThat(index.getMin()).isEqualTo(40);
+	}
+
+	@Test
+	public void emptyIndex() {
+		PieceAvailabilityIndex index = new PieceAvailabilityIndex(0);
+
+		assertThat(index.getMin()).isZero();
+		assertThat(index.getMax()).isZero();
+		assertThat(index.getTotal()).isZero();
+	}
+
+	@Test
+	public void matchesCountArrayModel() {
+		Random random = new Random(11);
+
+		int pieces = 50;
+
+		int[] model = new int[pieces];
+
+		PieceAvailabilityIndex index = new PieceAvailabilityIndex(pieces);
+
+		for (int round = 0; round < 100_000; round++) {
+			int piece = random.nextInt(pieces);
+
+			int op = random.nextInt(100);
+
+			if (op < 50) {
+				index.increment(piece);
+
+				model[piece]++;
+
+			} else if (op < 99) {
+				boolean moved = index.decrement(piece, 0);
+
+				assertThat(moved).isEqualTo(model[piece] > 0);
+
+				if (moved) {
+					model[piece]--;
+				}
+
+			} else {
+				for (int i = 0; i < pieces; i++) {
+					model[i] = random.nextInt(20);
+				}
+
+				index.set(model.clone());
+			}
+
+			checkAgainst(index, model, round);
+		}
+	}
+
+	private static void checkAgainst(PieceAvailabilityIndex index, int[] model, int round) {
+		int min = Integer.MAX_VALUE;
+		int max = 0;
+		long total = 0;
+
+		for (int count : model) {
+			min = Math.min(min, count);
+			max = Math.max(max, count);
+			total += count;
+		}
+
+		assertThat(index.getMin()).as("round %d", round).isEqualTo(min);
+		assertThat(index.getMax()).as("round %d", round).isEqualTo(max);
+		assertThat(index.getTotal()).as("round %d", round).isEqualTo(total);
+
+		assertThat(index.getCounts()).isEqualTo(model);
+
+			// every piece is in exactly the bucket of its count
+
+		int seen = 0;
+
+		for (int count = min; count <= max; count++) {
+			List<Integer> bucket = bucket(index, count);
+
+			assertThat(bucket).hasSize(index.getBucketSize(count));
+
+			for (int piece : bucket) {
+				assertThat(model[piece]).as("round %d", round).isEqualTo(count);
+			}
+
+			seen += bucket.size();
+		}
+
+		assertThat(seen).isEqualTo(model.length);
+	}
+
+	private static List<Integer> bucket(PieceAvailabilityIndex index, int count) {
+		List<Integer> pieces = new ArrayList<>();
+
+		for (int piece = index.getFirst(count); piece != -1; piece = index.getNext(piece)) {
+			pieces.add(piece);
+		}
+
+		return pieces;
+	}
+}
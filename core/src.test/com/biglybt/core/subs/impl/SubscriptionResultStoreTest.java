@@ -0,0 +1,300 @@
+package com.biglybt.core.subs.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.biglybt.core.subs.SubscriptionHistory;
+import com.biglybt.testutil.junit5.DefaultTestCoreConfiguration;
+
+@ExtendWith(DefaultTestCoreConfiguration.class)
+public class SubscriptionResultStoreTest
+{
+	@TempDir
+	Path tempDir;
+
+	private File file;
+
+	@BeforeEach
+	public void setFile() {
+		file = tempDir.resolve("subs.resultstore").toFile();
+	}
+
+	@Test
+	public void resultsSurviveReopenInOrder() {
+		SubscriptionResultStore store = new SubscriptionResultStore(file);
+
+		store.save(results(result(3, "c", false), result(1, "a", true), result(2, "b", false)));
+
+		store.close();
+
+		store = new SubscriptionResultStore(file);
+
+		assertThat(describe(store, SubscriptionHistory.RESULTS_ALL)).containsExactly("c:unread", "a:read", "b:unread");
+		assertThat(describe(store, SubscriptionHistory.RESULTS_READ)).containsExactly("a:read");
+		assertThat(describe(store, SubscriptionHistory.RESULTS_UNREAD)).containsExactly("c:unread", "b:unread");
+
+		assertThat(store.getCount(SubscriptionHistory.RESULTS_UNREAD)).isEqualTo(2);
+
+		List<SubscriptionResultImpl> page = store.getResults(null, SubscriptionHistory.RESULTS_ALL, 1, 1);
+
+		assertThat(page).hasSize(1);
+		assertThat(name(page.get(0))).isEqualTo("a");
+
+		store.close();
+	}
+
+	@Test
+	public void saveAppendsOnlyChanges() {
+		SubscriptionResultStore store = new SubscriptionResultStore(file);
+
+		store.save(results(result(1, "a", false), result(2, "b", false), result(3, "c", false)));
+
+		long length = file.length();
+
+		store.save(results(result(1, "a", false), result(2, "b", false), result(3, "c", false)));
+
+		assertThat(file.length()).isEqualTo(length);
+
+			// remove 2, change 3, add 4
+
+		store.save(results(result(1, "a", false), result(3, "cc", false), result(4, "d", false)));
+
+		store.close();
+
+		store = new SubscriptionResultStore(file);
+
+		assertThat(describe(store, SubscriptionHistory.RESULTS_ALL)).containsExactly("a:unread", "cc:unread", "d:unread");
+
+		store.close();
+	}
+
+	@Test
+	public void readStateIsWrittenAsFlagsRecord() {
+		SubscriptionResultStore store = new SubscriptionResultStore(file);
+
+		SubscriptionResultImpl a = result(1, "a", false);
+		SubscriptionResultImpl b = result(2, "b", false);
+
+		store.save(results(a, b));
+
+		long length = file.length();
+
+		List<String> changed = store.setRead(Collections.singletonMap(a.getID(), true));
+
+		assertThat(changed).containsExactly(a.getID());
+
+			// type, id length, id, flags
+
+		long flagsRecord = 2 + a.getID().length() + 1;
+
+		assertThat(file.length()).isEqualTo(length + flagsRecord);
+
+			// no change, nothing written
+
+		assertThat(store.setRead(Collections.singletonMap(a.getID(), true))).isEmpty();
+
+			// a save where only the read state differs also writes flags, a already matches
+
+		a.setReadInternal(true);
+		b.setReadInternal(true);
+
+		store.save(results(a, b));
+
+		assertThat(file.length()).isEqualTo(length + 2 * flagsRecord);
+
+		store.close();
+
+		store = new SubscriptionResultStore(file);
+
+		assertThat(describe(store, SubscriptionHistory.RESULTS_ALL)).containsExactly("a:read", "b:read");
+
+		store.close();
+	}
+
+	@Test
+	public void deletedResultsAreFiltered() {
+		SubscriptionResultStore store = new SubscriptionResultStore(file);
+
+		SubscriptionResultImpl b = result(2, "b", false);
+
+		b.deleteInternal();
+
+		store.save(results(result(1, "a", false), b));
+
+		assertThat(store.getCount(SubscriptionHistory.RESULTS_ALL)).isEqualTo(2);
+		assertThat(store.getCount(SubscriptionHistory.RESULTS_NON_DELETED)).isEqualTo(1);
+
+			// deleted results can't be marked read
+
+		assertThat(store.setRead(Collections.singletonMap(b.getID(), true))).isEmpty();
+
+		store.close();
+	}
+
+	@Test
+	public void tornTailIsTruncated() throws Exception {
+		SubscriptionResultStore store = new SubscriptionResultStore(file);
+
+		store.save(results(result(1, "a", false)));
+
+		long length = file.length();
+
+		store.save(results(result(1, "a", false), result(2, "b", false)));
+
+		store.close();
+
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.setLength(raf.length() - 1);
+		}
+
+		store = new SubscriptionResultStore(file);
+
+		assertThat(describe(store, SubscriptionHistory.RESULTS_ALL)).containsExactly("a:unread");
+
+		assertThat(file.length()).isEqualTo(length);
+
+		store.close();
+	}
+
+	@Test
+	public void compactionKeepsLiveResults() {
+		SubscriptionResultStore store = new SubscriptionResultStore(file);
+
+		String big = repeat('x', 64 * 1024);
+
+		for (int i = 0; i < 20; i++) {
+			store.save(results(result(1, "a", false), result(2, big + i, false)));
+		}
+
+			// without compaction this would be 20 copies of the large result
+
+		assertThat(file.length()).isLessThan(10 * 64 * 1024);
+
+		assertThat(new File(file.getParentFile(), file.getName() + ".compact")).doesNotExist();
+		assertThat(new File(file.getParentFile(), file.getName() + ".old")).doesNotExist();
+
+		store.close();
+
+		store = new SubscriptionResultStore(file);
+
+		List<SubscriptionResultImpl> read = store.getResults(null, SubscriptionHistory.RESULTS_ALL, 0, -1);
+
+		assertThat(read).hasSize(2);
+		assertThat(name(read.get(0))).isEqualTo("a");
+		assertThat(name(read.get(1))).isEqualTo(big + 19);
+
+		store.close();
+	}
+
+	@Test
+	public void interruptedSwapAdoptsCompactedCopy() throws Exception {
+		SubscriptionResultStore store = new SubscriptionResultStore(file);
+
+		store.save(results(result(1, "a", false)));
+
+		store.close();
+
+			// crashed after moving the old file aside, before the compacted copy was renamed
+
+		File old = new File(file.getParentFile(), file.getName() + ".old");
+		File compact = new File(file.getParentFile(), file.getName() + ".compact");
+
+		Files.copy(file.toPath(), compact.toPath());
+		Files.move(file.toPath(), old.toPath());
+
+		store = new SubscriptionResultStore(file);
+
+		assertThat(describe(store, SubscriptionHistory.RESULTS_ALL)).containsExactly("a:unread");
+
+		assertThat(old).doesNotExist();
+		assertThat(compact).doesNotExist();
+
+		store.close();
+	}
+
+	@Test
+	public void interruptedSwapRestoresOldFile() throws Exception {
+		SubscriptionResultStore store = new SubscriptionResultStore(file);
+
+		store.save(results(result(1, "a", false)));
+
+		store.close();
+
+		File old = new File(file.getParentFile(), file.getName() + ".old");
+
+			// a partial compacted copy left while the live file is still there is stale
+
+		File compact = new File(file.getParentFile(), file.getName() + ".compact");
+
+		Files.write(compact.toPath(), new byte[] { 1, 2, 3 });
+
+		store = new SubscriptionResultStore(file);
+
+		assertThat(compact).doesNotExist();
+
+		store.close();
+
+		Files.move(file.toPath(), old.toPath());
+
+		store = new SubscriptionResultStore(file);
+
+		assertThat(describe(store, SubscriptionHistory.RESULTS_ALL)).containsExactly("a:unread");
+
+		assertThat(old).doesNotExist();
+
+		store.close();
+	}
+
+	private static SubscriptionResultImpl[] results(SubscriptionResultImpl... results) {
+		return results;
+	}
+
+	private static SubscriptionResultImpl result(int key, String name, boolean read) {
+		Map map = new HashMap();
+
+		map.put("key", new byte[] { (byte) key, 1, 2, 3, 4, 5, 6, 7, 8, 9 });
+		map.put("read", read ? 1L : 0L);
+		map.put("result_json", ("{\"n\":\"" + name + "\"}").getBytes(StandardCharsets.UTF_8));
+		map.put("tz", 1_700_000_000L);
+
+		return new SubscriptionResultImpl(null, map);
+	}
+
+	private static String name(SubscriptionResultImpl result) {
+		return (String) result.toJSONMap().get("n");
+	}
+
+	private static List<String> describe(SubscriptionResultStore store, int filter) {
+		List<String> result = new ArrayList<>();
+
+		for (SubscriptionResultImpl r : store.getResults(null, filter, 0, -1)) {
+			result.add(name(r) + ":" + (r.getRead() ? "read" : "unread"));
+		}
+
+		return result;
+	}
+
+	private static String repeat(char c, int count) {
+		char[] chars = new char[count];
+
+		Arrays.fill(chars, c);
+
+		return new String(chars);
+	}
+}
@@ -0,0 +1,166 @@
+package com.biglybt.core.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the wheel against a TreeSet of the same events (the structure Timer used before)
+ */
+public class TimerWheelTest
+{
+	private static final long START = 1_700_000_000_000L;
+
+	private static final TimerEventPerformer NULL_PERFORMER = event -> {};
+
+	private long nextId;
+
+	private TimerEvent event(long created, long when) {
+		return new TimerEvent(null, nextId++, created, when, false, NULL_PERFORMER);
+	}
+
+	@Test
+	public void firstIsEarliestEvent() {
+		TimerWheel wheel = new TimerWheel(START);
+
+		TimerEvent later = event(START, START + 60_000);
+		TimerEvent sooner = event(START, START + 20);
+		TimerEvent farAway = event(START, START + 400L * 24 * 60 * 60 * 1000);
+
+		wheel.add(later);
+		wheel.add(farAway);
+		wheel.add(sooner);
+
+		assertThat(wheel.size()).isEqualTo(3);
+		assertThat(wheel.getFirst()).isSameAs(sooner);
+
+		assertThat(wheel.remove(sooner)).isTrue();
+		assertThat(wheel.remove(sooner)).isFalse();
+		assertThat(wheel.contains(sooner)).isFalse();
+
+		assertThat(wheel.getFirst()).isSameAs(later);
+
+		wheel.advance(START + 120_000);
+
+		assertThat(wheel.getFirst()).isSameAs(later);
+		assertThat(wheel.getSortedEvents()).containsExactly(later, farAway);
+	}
+
+	@Test
+	public void overdueEventsAreReturnedFirst() {
+		TimerWheel wheel = new TimerWheel(START);
+
+		wheel.advance(START + 10_000);
+
+		TimerEvent due = event(START, START + 5_000);
+		TimerEvent overdue = event(START, START - 5_000);
+
+		wheel.add(due);
+		wheel.add(overdue);
+
+		assertThat(wheel.getFirst()).isSameAs(overdue);
+		assertThat(wheel.getEvents(START - 4_000)).containsExactly(overdue);
+		assertThat(wheel.getEvents(START - 5_000)).isEmpty();
+	}
+
+	@Test
+	public void matchesTreeSetModel() {
+		Random random = new Random(7);
+
+		long now = START;
+
+		TimerWheel wheel = new TimerWheel(now);
+
+		TreeSet<TimerEvent> model = new TreeSet<>();
+
+		List<TimerEvent> live = new ArrayList<>();
+
+		for (int round = 0; round < 200_000; round++) {
+			int op = random.nextInt(100);
+
+			if (op < 40) {
+				TimerEvent ev = event(now, now + randomDelay(random));
+
+				wheel.add(ev);
+				model.add(ev);
+				live.add(ev);
+
+			} else if (op < 55 && !live.isEmpty()) {
+				TimerEvent ev = live.remove(random.nextInt(live.size()));
+
+				assertThat(wheel.remove(ev)).isEqualTo(model.remove(ev));
+
+			} else if (op < 85) {
+				now += random.nextInt(5) == 0 ? random.nextInt(100_000) : random.nextInt(40);
+
+				wheel.advance(now);
+
+				while (!model.isEmpty() && model.first().getWhen() <= now) {
+					TimerEvent expected = model.pollFirst();
+
+					assertThat(wheel.getFirst()).as("round %d", round).isSameAs(expected);
+
+					wheel.remove(expected);
+					live.remove(expected);
+				}
+
+			} else if (op < 95) {
+				long upTo = now + randomDelay(random);
+
+				List<TimerEvent> due = wheel.getEvents(upTo);
+
+				Collections.sort(due);
+
+				List<TimerEvent> expected = new ArrayList<>();
+
+				for (TimerEvent ev : model) {
+					if (ev.getWhen() >= upTo) {
+						break;
+					}
+					expected.add(ev);
+				}
+
+				assertThat(due).as("round %d", round).isEqualTo(expected);
+
+			} else if (op < 96) {
+					// times changed in place (clock change) then re-queued
+
+				for (TimerEvent ev : wheel.getEvents()) {
+					ev.setWhen(ev.getWhen() + (random.nextBoolean() ? 3_600_000 : -3_600_000));
+				}
+
+				model = new TreeSet<>(wheel.getEvents());
+
+				wheel.rebuild(now);
+			}
+
+			assertThat(wheel.getFirst()).as("round %d", round).isSameAs(model.isEmpty() ? null : model.first());
+			assertThat(wheel.size()).isEqualTo(model.size());
+		}
+
+		assertThat(wheel.getSortedEvents()).containsExactlyElementsOf(model);
+	}
+
+	private static long randomDelay(Random random) {
+		switch (random.nextInt(6)) {
+			case 0:
+				return random.nextInt(50) - 25;
+			case 1:
+				return random.nextInt(2_000);
+			case 2:
+				return random.nextInt(200_000);
+			case 3:
+				return (long) (random.nextDouble() * 1e10);
+			case 4:
+				return (long) (random.nextDouble() * 4e12);
+			default:
+				return -random.nextInt(100_000);
+		}
+	}
+}
@@ -8,6 +8,7 @@ import org.junit.jupiter.api.extension.ExtensionContext;
 
 import com.biglybt.core.CoreFactory;
 import com.biglybt.core.internat.MessageText;
+import com.biglybt.core.util.Debug;
 import com.biglybt.core.util.SystemProperties;
 
 /**
@@ -32,6 +33,10 @@ public class DefaultTestCoreConfiguration
 			throws Exception {
 
 		if (!CoreFactory.isCoreAvailable()) {
+			// Debug's static init needs the configuration manager, initialise it up front
+			// so it isn't started by a background thread while the core holds that lock
+			Class.forName(Debug.class.getName());
+
 			CoreFactory.create();
 		}
 	}
@@ -48,6 +48,8 @@ public class
 BackupManagerImpl
 	implements BackupManager
 {
+	private static final String	DOWNLOADS_JOURNAL	= "downloads.config.journal";
+
 	private static BackupManagerImpl	singleton;
 
 	public static synchronized BackupManager
@@ -1066,6 +1068,7 @@ BackupManagerImpl
 						}else if ( 	name.equals( ".lock" ) ||
 									name.equals( ".azlock" ) ||
 									name.equals( "update.properties" ) ||
+									name.equals( DOWNLOADS_JOURNAL ) ||		// folded into downloads.config by saveState
 									name.endsWith( ".log" )){
 
 							continue;
@@ -1322,6 +1325,29 @@ BackupManagerImpl
 
 				File[] files = backup_folder.listFiles();
 
+					// the downloads journal isn't bencoded and is only valid against the downloads.config
+					// it was written with. Ignore any in the backup (pre-dates them being skipped) and
+					// remove the current one so it isn't applied to the restored file
+
+				List<File>	restore_files = new ArrayList<>( files.length );
+
+				for ( File f: files ){
+
+					if ( !f.getName().equals( DOWNLOADS_JOURNAL )){
+
+						restore_files.add( f );
+					}
+				}
+
+				files = restore_files.toArray( new File[ restore_files.size()]);
+
+				File	current_journal = FileUtil.newFile( current_user_dir, DOWNLOADS_JOURNAL );
+
+				if ( current_journal.exists()){
+
+					installer.addRemoveAction( current_journal.getAbsolutePath());
+				}
+
 				if ( COConfigurationManager.getBooleanParameter("br.restore.autopause")){
 					
 					File	cf = CustomizationManagerFactory.getSingleton().getNewUserCustomizationFile( "restore_ap" );
@@ -82,6 +82,7 @@ public final class ConfigKeys {
 		public static final String ICFG_NETWORK_TCP_READ_SELECT_MIN_TIME = "network.tcp.read.select.min.time";
 		public static final String ICFG_NETWORK_TCP_WRITE_SELECT_TIME = "network.tcp.write.select.time";
 		public static final String ICFG_NETWORK_TCP_WRITE_SELECT_MIN_TIME = "network.tcp.write.select.min.time";
+		public static final String BCFG_NETWORK_TCP_WRITE_ZERO_COPY_ENABLE = "network.tcp.write.zero.copy.enable";
 		public static final String BCFG_IPV_6_ENABLE_SUPPORT = "IPV6 Enable Support";
 		public static final String BCFG_IPV_6_CHECK_MULTIPLE_ADDRESS_CHECKS = "IPV6 Enable Multiple Address Checks";
 		public static final String SCFG_IPV_6_EXTRA_GLOBALS = "IPV6 Extra Globals";
@@ -217,6 +218,9 @@ public final class ConfigKeys {
 		public static final String BCFG_DISKMANAGER_PERF_CACHE_ENABLE_WRITE = "diskmanager.perf.cache.enable.write";
 		public static final String BCFG_DISKMANAGER_PERF_CACHE_FLUSHPIECES = "diskmanager.perf.cache.flushpieces";
 		public static final String BCFG_DISKMANAGER_PERF_CACHE_TRACE = "diskmanager.perf.cache.trace";
+		public static final String ICFG_DISKMANAGER_PERF_CACHE_SEGMENTS = "diskmanager.perf.cache.segments";
+		public static final String BCFG_DISKMANAGER_PERF_CACHE_PREFETCH_ENABLE = "diskmanager.perf.cache.prefetch.enable";
+		public static final String ICFG_DISKMANAGER_PERF_MMAP_POOL_MAXMB = "diskmanager.perf.mmap.pool.maxmb";
 		public static final String ICFG_DISKMANAGER_HASHCHECKING_STRATEGY = "diskmanager.hashchecking.strategy";
 		public static final String BCFG_DISKMANAGER_HASHCHECKING_SMALLESTFIRST = "diskmanager.hashchecking.smallestfirst";
 		public static final String BCFG_DISKMANAGER_ALLOC_SMALLESTFIRST = "diskmanager.alloc.smallestfirst";
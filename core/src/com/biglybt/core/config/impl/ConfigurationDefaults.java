@@ -270,6 +270,7 @@ public class ConfigurationDefaults {
     def.put("Ip Filter Banning Persistent", TRUE);
     def.put(ConfigKeys.IPFilter.BCFG_IP_FILTER_DONT_BAN_LAN, FALSE );
     def.put("Ip Filter Enable Description Cache", TRUE);
+    def.put("Ip Filter Binary Cache Enable", TRUE);	// compiled copy of the auto-load list in ipfilter.bin
     def.put(ConfigKeys.IPFilter.SCFG_IP_FILTER_AUTOLOAD_FILE, "" );
     def.put(ConfigKeys.IPFilter.SCFG_IP_FILTER_V6_AUTOLOAD_FILE, "");
     def.put(ConfigKeys.IPFilter.ICFG_IP_FILTER_AUTOLOAD_LAST, ZERO );
@@ -288,6 +289,8 @@ public class ConfigurationDefaults {
     def.put("LRMS UDP Peers", TRUE );
     def.put("LRMS DHT Sleep", TRUE );
     
+    def.put("dht.values.persist.enable", TRUE );	// values stored for others survive restarts (dht/values.dat)
+
     def.put("Auto Register App", FALSE );
 
     def.put("Pause Downloads On Exit", FALSE );
@@ -557,6 +560,7 @@ public class ConfigurationDefaults {
     def_put( "Tracker IP", "", new IPVerifier());
 
     def.put( "Tracker Port UDP Enable", FALSE );
+    def.put( "Tracker UDP Batch Size", new Long(32) );		// datagrams drained per wakeup, <= 1 for one task per packet
     //def.put( "Tracker Port UDP Version", new Long(2) );
     def.put( "Tracker Send Peer IDs", TRUE );
     def.put( "Tracker Max Peers Returned", new Long(100) );
@@ -665,6 +669,9 @@ public class ConfigurationDefaults {
     def.put( "diskmanager.perf.cache.enable.write", TRUE);
     def.put( "diskmanager.perf.cache.size", new Long(4));		// 4 MB
     def.put( "diskmanager.perf.cache.notsmallerthan", new Long(1024));	// 1024 K
+    def.put( ConfigKeys.File.ICFG_DISKMANAGER_PERF_CACHE_SEGMENTS, ZERO );	// 0 -> single LRU
+    def.put( ConfigKeys.File.BCFG_DISKMANAGER_PERF_CACHE_PREFETCH_ENABLE, FALSE );
+    def.put( ConfigKeys.File.ICFG_DISKMANAGER_PERF_MMAP_POOL_MAXMB, ZERO );	// 0 -> disabled
     def.put( "diskmanager.perf.read.maxthreads", new Long(32));
     def.put( "diskmanager.perf.read.maxmb", new Long(10));
     def.put( "diskmanager.perf.write.maxthreads", new Long(32));
@@ -716,6 +723,7 @@ public class ConfigurationDefaults {
     def.put( "network.tcp.read.select.min.time", ZERO );
     def.put( "network.tcp.write.select.time", new Long(25));
     def.put( "network.tcp.write.select.min.time", ZERO );
+    def.put( "network.tcp.write.zero.copy.enable", FALSE );
     def.put( "network.tcp.connect.select.time", new Long( 100 ));
     def.put( "network.tcp.connect.select.min.time", ZERO );
 
@@ -725,8 +733,9 @@ public class ConfigurationDefaults {
     def.put( "network.control.write.aggressive", FALSE );
     def.put( "network.control.read.idle.time", new Long(50));
     def.put( "network.control.read.aggressive", FALSE );
-    def.put( "network.control.read.processor.count", new Long(3));
-    def.put( "network.control.write.processor.count", new Long(4));
+    def.put( "network.bt.decoder.flyweight", TRUE );
+    def.put( "network.control.read.processor.count", new Long(3));		// <= 0 -> one per core
+    def.put( "network.control.write.processor.count", new Long(4));		// <= 0 -> one per core
     def.put( "peermanager.schedule.time", new Long(100));
     def.put( "enable_small_osx_fonts", TRUE );
     def.put( "Play Download Finished Announcement", FALSE);
@@ -743,6 +752,7 @@ public class ConfigurationDefaults {
 
     def.put( "network.transport.encrypted.require", FALSE );
     def.put( "network.transport.encrypted.min_level", "RC4" );
+    def.put( "network.transport.encrypted.allow.aes", FALSE );
     def.put( "network.transport.encrypted.fallback.outgoing", FALSE );
     def.put( "network.transport.encrypted.fallback.incoming", FALSE );
     def.put( "network.transport.encrypted.use.crypto.port", FALSE );
@@ -759,6 +769,8 @@ public class ConfigurationDefaults {
     // Memory settings
 
     def.put( "memory.slice.limit.multiplier", new Long(1));
+    def.put( "memory.dbb.pool.thread.cache", FALSE );
+    def.put( "torrent.metadata.memory.budget.mb", new Long(0));	// 0 -> piece hashes only discarded when idle
 
     // Move on completion settings.
     def.put( "Move Completed When Done", FALSE );
@@ -777,6 +789,9 @@ public class ConfigurationDefaults {
     // This is intended to be used once as part of an upgrade.
     def.put( "Set Completion Flag For Completed Downloads On Start", TRUE );
 
+    // false -> downloads.config is rewritten in full on every save rather than journalled
+    def.put( "downloads.config.journal.enable", TRUE );
+
     // Move on removal settings.
     def.put( "File.move.download.removed.enabled", FALSE );
     def.put( "File.move.download.removed.path", "" );
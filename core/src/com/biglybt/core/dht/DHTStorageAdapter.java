@@ -22,6 +22,7 @@ package com.biglybt.core.dht;
 import java.io.DataInputStream;
 import java.io.IOException;
 
+import com.biglybt.core.dht.db.DHTDBValueStore;
 import com.biglybt.core.dht.transport.DHTTransportContact;
 import com.biglybt.core.dht.transport.DHTTransportValue;
 import com.biglybt.core.util.HashWrapper;
@@ -141,4 +142,12 @@ DHTStorageAdapter
 
 	public int
 	getKeyCount();
+
+		/**
+		 * Persistent store for values held on behalf of other contacts
+		 * @return null if they shouldn't survive a restart
+		 */
+
+	public DHTDBValueStore
+	getValueStore();
 }
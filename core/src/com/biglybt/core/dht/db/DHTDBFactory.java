@@ -19,9 +19,12 @@
 
 package com.biglybt.core.dht.db;
 
+import java.io.File;
+
 import com.biglybt.core.dht.DHTLogger;
 import com.biglybt.core.dht.DHTStorageAdapter;
 import com.biglybt.core.dht.db.impl.DHTDBImpl;
+import com.biglybt.core.dht.db.impl.DHTDBValueStoreImpl;
 
 /**
  * @author parg
@@ -46,4 +49,12 @@ DHTDBFactory
 					protocol_version,
 					logger ));
 	}
+
+	public static DHTDBValueStore
+	createValueStore(
+		File				file,
+		long				max_bytes )
+	{
+		return( new DHTDBValueStoreImpl( file, max_bytes ));
+	}
 }
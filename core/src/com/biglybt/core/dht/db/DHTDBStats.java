@@ -51,4 +51,19 @@ DHTDBStats
 
 	public int[]
 	getValueDetails();
+
+		/**
+		 * Estimated heap used per stored key (mapping, values and their indexing), averaged
+		 * over all keys
+		 */
+
+	public int
+	getMemoryPerKey();
+
+		/**
+		 * @return size of the values held in the persistent store, 0 if there isn't one
+		 */
+
+	public long
+	getPersistedSize();
 }
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) Bigly Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+
+package com.biglybt.core.dht.db;
+
+/**
+ * Persistent backing for the values a database holds on behalf of other contacts so that they
+ * survive a restart. Records are opaque to the store and are keyed by the DHT key, a put replaces
+ * any existing record for the key. Failures are handled (and logged) by the store itself, the
+ * database carries on regardless.
+ */
+
+public interface
+DHTDBValueStore
+{
+		/**
+		 * @return false if the record was rejected (e.g. the store is full)
+		 */
+
+	public boolean
+	putRecord(
+		byte[]		key,
+		byte[]		record );
+
+	public void
+	removeRecord(
+		byte[]		key );
+
+	public void
+	visitRecords(
+		RecordVisitor	visitor );
+
+		/**
+		 * Makes previous puts and removes durable
+		 */
+
+	public void
+	flush();
+
+	public int
+	getRecordCount();
+
+		/**
+		 * @return total size of the live records
+		 */
+
+	public long
+	getRecordBytes();
+
+	public void
+	close();
+
+	public interface
+	RecordVisitor
+	{
+		public void
+		record(
+			byte[]		key,
+			byte[]		record );
+	}
+}
@@ -19,7 +19,10 @@
 
 package com.biglybt.core.dht.db.impl;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.util.*;
 import java.util.Map.Entry;
@@ -30,8 +33,10 @@ import com.biglybt.core.dht.db.DHTDB;
 import com.biglybt.core.dht.db.DHTDBLookupResult;
 import com.biglybt.core.dht.db.DHTDBStats;
 import com.biglybt.core.dht.db.DHTDBValue;
+import com.biglybt.core.dht.db.DHTDBValueStore;
 import com.biglybt.core.dht.impl.DHTLog;
 import com.biglybt.core.dht.router.DHTRouter;
+import com.biglybt.core.dht.transport.DHTTransport;
 import com.biglybt.core.dht.transport.DHTTransportContact;
 import com.biglybt.core.dht.transport.DHTTransportQueryStoreReply;
 import com.biglybt.core.dht.transport.DHTTransportReplyHandlerAdapter;
@@ -147,6 +152,17 @@ DHTDBImpl
 
 	private volatile boolean	destroyed;
 
+		// values held for others are written back to the value store (if any) periodically so
+		// they can be restored on restart
+
+	private static final int	PERSIST_PERIOD			= 5*60*1000;
+	private static final byte	PERSIST_RECORD_VERSION	= 1;
+
+	private final DHTDBValueStore		value_store;
+	private final Set<HashWrapper>		persist_dirty	= new HashSet<>();
+	private boolean						persist_loading;
+	private TimerEventPeriodic			persist_timer;
+
 	public
 	DHTDBImpl(
 		DHTStorageAdapter	_adapter,
@@ -156,6 +172,7 @@ DHTDBImpl
 		DHTLogger			_logger )
 	{
 		adapter							= _adapter==null?null:new adapterFacade( _adapter );
+		value_store						= adapter==null?null:adapter.getValueStore();
 		original_republish_interval		= _original_republish_interval;
 		cache_republish_interval		= _cache_republish_interval;
 		logger							= _logger;
@@ -304,6 +321,23 @@ DHTDBImpl
 						}
 					});
 		}
+
+		if ( value_store != null ){
+
+			persist_timer = SimpleTimer.addPeriodicEvent(
+					"DHTDB:persist",
+					PERSIST_PERIOD,
+					new TimerEventPerformer()
+					{
+						@Override
+						public void
+						perform(
+							TimerEvent	event )
+						{
+							AEThread2.createAndStartDaemon( "DHTDB:persist", ()->persistValues());
+						}
+					});
+		}
 	}
 
 
@@ -314,6 +348,8 @@ DHTDBImpl
 	{
 		control			= _control;
 
+		boolean	first_control = router == null;
+
 			// trigger an "original value republish" if router has changed
 
 		force_original_republish = router != null;
@@ -340,6 +376,11 @@ DHTDBImpl
 
 			this_mon.exit();
 		}
+
+		if ( first_control && value_store != null ){
+
+			restorePersistedValues();
+		}
 	}
 
 	@Override
@@ -890,6 +931,40 @@ DHTDBImpl
 		}
 	}
 
+	@Override
+	public int
+	getMemoryPerKey()
+	{
+		try{
+			this_mon.enter();
+
+			if ( stored_values.isEmpty()){
+
+				return( 0 );
+			}
+
+			long	total = 0;
+
+			for ( DHTDBMapping mapping: stored_values.values()){
+
+				total += mapping.getMemoryEstimate();
+			}
+
+			return((int)( total / stored_values.size()));
+
+		}finally{
+
+			this_mon.exit();
+		}
+	}
+
+	@Override
+	public long
+	getPersistedSize()
+	{
+		return( value_store==null?0:value_store.getRecordBytes());
+	}
+
 	@Override
 	public int
 	getKeyBlockCount()
@@ -1599,6 +1674,286 @@ DHTDBImpl
 		}
 	}
 
+	protected void
+	persistedValueChanged(
+		DHTDBMapping		mapping,
+		DHTDBValueImpl		value )
+	{
+		if ( value_store == null || value.isLocal()){
+
+				// local values are republished by their owners on restart
+
+			return;
+		}
+
+		try{
+			this_mon.enter();
+
+			if ( !persist_loading ){
+
+				persist_dirty.add( mapping.getKey());
+			}
+		}finally{
+
+			this_mon.exit();
+		}
+	}
+
+	protected void
+	persistValues()
+	{
+		List<Object[]>	updates;
+
+		try{
+			this_mon.enter();
+
+			if ( persist_dirty.isEmpty()){
+
+				return;
+			}
+
+			updates = new ArrayList<>( persist_dirty.size());
+
+			for ( HashWrapper key: persist_dirty ){
+
+				DHTDBMapping	mapping = stored_values.get( key );
+
+				updates.add( new Object[]{ key.getBytes(), mapping==null?null:encodeMapping( mapping )});
+			}
+
+			persist_dirty.clear();
+
+		}finally{
+
+			this_mon.exit();
+		}
+
+		for ( Object[] update: updates ){
+
+			byte[]	key		= (byte[])update[0];
+			byte[]	record	= (byte[])update[1];
+
+			if ( record == null ){
+
+				value_store.removeRecord( key );
+
+			}else{
+
+				value_store.putRecord( key, record );
+			}
+		}
+
+		value_store.flush();
+	}
+
+	private byte[]
+	encodeMapping(
+		DHTDBMapping		mapping )
+	{
+		List<DHTDBValueImpl>	values = new ArrayList<>();
+
+		Iterator<DHTDBValueImpl>	it = mapping.getValues();
+
+		while( it.hasNext()){
+
+			DHTDBValueImpl	value = it.next();
+
+			if ( !value.isLocal()){
+
+				values.add( value );
+			}
+		}
+
+		if ( values.isEmpty()){
+
+			return( null );
+		}
+
+		try{
+			ByteArrayOutputStream	baos = new ByteArrayOutputStream( 128*values.size());
+
+			DataOutputStream	dos = new DataOutputStream( baos );
+
+			dos.writeByte( PERSIST_RECORD_VERSION );
+			dos.writeShort( values.size());
+
+			for ( DHTDBValueImpl value: values ){
+
+				DHTTransportContact	originator	= value.getOriginator();
+				DHTTransportContact	sender		= value.getSender();
+
+				boolean	direct = Arrays.equals( originator.getID(), sender.getID());
+
+				byte[]	bytes = value.getValue();
+
+				dos.writeBoolean( direct );
+				dos.writeLong( value.getCreationTime());
+				dos.writeLong( value.getStoreTime());
+				dos.writeInt( value.getVersion());
+				dos.writeByte( value.getFlags());
+				dos.writeByte( value.getLifeTimeHours());
+				dos.writeByte( value.getReplicationControl());
+				dos.writeShort( bytes.length );
+				dos.write( bytes );
+
+				originator.exportContact( dos );
+
+				if ( !direct ){
+
+					sender.exportContact( dos );
+				}
+			}
+
+			dos.flush();
+
+			return( baos.toByteArray());
+
+		}catch( Throwable e ){
+
+			Debug.out( e );
+
+			return( null );
+		}
+	}
+
+	private void
+	restorePersistedValues()
+	{
+		final DHTTransport	transport = control.getTransport();
+
+		final int[]	counts = { 0, 0 };
+
+		long	start = SystemTime.getMonotonousTime();
+
+		value_store.visitRecords(
+			new DHTDBValueStore.RecordVisitor()
+			{
+				@Override
+				public void
+				record(
+					byte[]		key,
+					byte[]		record )
+				{
+					HashWrapper	hw = new HashWrapper( key );
+
+					try{
+						this_mon.enter();
+
+						persist_loading = true;
+
+						try{
+								// same limit as applies to remote stores
+
+							if ( total_size + ( total_values*4 ) > MAX_TOTAL_SIZE ){
+
+								persist_dirty.add( hw );
+
+								return;
+							}
+
+							DataInputStream	dis = new DataInputStream( new ByteArrayInputStream( record ));
+
+							if ( dis.readByte() != PERSIST_RECORD_VERSION ){
+
+								persist_dirty.add( hw );
+
+								return;
+							}
+
+							int	num = dis.readUnsignedShort();
+
+							List<DHTDBValueImpl>	values = new ArrayList<>( num );
+
+							for ( int i=0;i<num;i++){
+
+								boolean	direct			= dis.readBoolean();
+								long	creation_time	= dis.readLong();
+								long	store_time		= dis.readLong();
+								int		version			= dis.readInt();
+								byte	flags			= dis.readByte();
+								byte	life_hours		= dis.readByte();
+								byte	rep_control		= dis.readByte();
+
+								byte[]	bytes = new byte[ dis.readUnsignedShort()];
+
+								dis.readFully( bytes );
+
+								DHTTransportContact	originator	= transport.importContact( dis, false );
+								DHTTransportContact	sender		= direct?originator:transport.importContact( dis, false );
+
+								DHTDBValueImpl	value =
+									new DHTDBValueImpl(
+										creation_time, bytes, version, originator, sender,
+										false, flags, life_hours, rep_control );
+
+									// keep the original store time so cache republishing carries on as before
+
+								value.setStoreTime( Math.min( store_time, value.getStoreTime()));
+
+								values.add( value );
+							}
+
+							DHTDBMapping	mapping = stored_values.get( hw );
+
+							if ( mapping == null ){
+
+								mapping = new DHTDBMapping( DHTDBImpl.this, hw, false );
+
+								stored_values.put( hw, mapping );
+
+								addToPrefixMap( mapping );
+							}
+
+								// goes through the normal add so diversification and flood rules apply
+
+							for ( DHTDBValueImpl value: values ){
+
+								mapping.add( value );
+							}
+
+							int	restored = mapping.getValueCount();
+
+							if ( restored == 0 ){
+
+								stored_values.remove( hw );
+
+								removeFromPrefixMap( mapping );
+
+								mapping.destroy();
+							}
+
+							if ( restored != num ){
+
+								persist_dirty.add( hw );
+							}
+
+							counts[0]++;
+							counts[1] += restored;
+
+						}finally{
+
+							persist_loading = false;
+						}
+					}catch( Throwable e ){
+
+						persist_dirty.add( hw );
+
+						Debug.out( "Failed to restore DHT values for " + DHTLog.getString2( key ), e );
+
+					}finally{
+
+						this_mon.exit();
+					}
+				}
+			});
+
+			// expire anything that went stale while we were down
+
+		checkCacheExpiration( true );
+
+		logger.log( "Restored " + counts[1] + " values for " + counts[0] + " keys from value store in " + ( SystemTime.getMonotonousTime() - start ) + "ms" );
+	}
+
 	protected void
 	addToPrefixMap(
 		DHTDBMapping		mapping )
@@ -3764,6 +4119,18 @@ DHTDBImpl
 
 			survey_timer.cancel();
 		}
+
+		if ( persist_timer != null ){
+
+			persist_timer.cancel();
+		}
+
+		if ( value_store != null ){
+
+			persistValues();
+
+			value_store.close();
+		}
 	}
 
 	protected class
@@ -4013,6 +4380,13 @@ DHTDBImpl
 		{
 			return( delegate.getRemoteSizeDivCount());
 		}
+
+		@Override
+		public DHTDBValueStore
+		getValueStore()
+		{
+			return( delegate.getValueStore());
+		}
 	}
 
 	protected static class
@@ -323,6 +323,18 @@ DHTDBMapping
 		return( hits );
 	}
 
+		/**
+		 * Rough heap estimate assuming compressed oops: the mapping with its keys and maps, then
+		 * per value the value object, its byte[] and map entry/key. Contacts are shared so
+		 * aren't counted
+		 */
+
+	protected int
+	getMemoryEstimate()
+	{
+		return( 256 + getValueCount()*160 + direct_data_size + indirect_data_size );
+	}
+
 	protected int
 	getIndirectSize()
 	{
@@ -869,6 +881,8 @@ DHTDBMapping
 			removeFromBloom( value );
 		}
 
+		db.persistedValueChanged( this, value );
+
 		try{
 			if ( adapter_key != null ){
 
@@ -895,6 +909,8 @@ DHTDBMapping
 			addToBloom( value );
 		}
 
+		db.persistedValueChanged( this, value );
+
 		try{
 			if ( adapter_key != null ){
 
@@ -926,6 +942,8 @@ DHTDBMapping
 			addToBloom( new_value );
 		}
 
+		db.persistedValueChanged( this, new_value );
+
 		try{
 			if ( adapter_key != null ){
 
@@ -0,0 +1,697 @@
+/*
+ * Copyright (C) Bigly Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+
+package com.biglybt.core.dht.db.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+
+import com.biglybt.core.dht.db.DHTDBValueStore;
+import com.biglybt.core.util.AEMonitor;
+import com.biglybt.core.util.Debug;
+import com.biglybt.core.util.FileUtil;
+import com.biglybt.core.util.HashWrapper;
+
+/**
+ * Append-only file of key to record entries with an in-memory index of where the current record
+ * for each key lives. Replaced and removed records are left in place until the dead space
+ * outweighs the live data at which point the live records are copied to a new file. The total
+ * size of live records is bounded, puts beyond this are rejected.
+ * <pre>
+ *   int magic | int version
+ *   entries: byte key_len | key | int record_len (-1 for a remove) | record
+ * </pre>
+ * A torn entry at the end (e.g. from a crash during a write) is truncated on open. A compacted
+ * copy replaces the file by renaming the old one aside first, an interrupted swap is completed on
+ * open.
+ */
+
+public class
+DHTDBValueStoreImpl
+	implements DHTDBValueStore
+{
+	private static final int	MAGIC	= 0x44485456;	// DHTV
+	private static final int	VERSION	= 1;
+
+	private static final int	HEADER_SIZE	= 8;
+
+	private static final int	MAX_RECORD_SIZE	= 512*1024;
+
+	private static final long	COMPACT_SLACK	= 1024*1024;
+
+	private static final String	SUFFIX_COMPACT	= ".compact";
+	private static final String	SUFFIX_OLD		= ".old";
+
+	private final File		file;
+	private final long		max_bytes;
+
+	private RandomAccessFile	raf;
+	private FileChannel			channel;
+
+	private long	file_end;
+	private long	live_bytes;
+
+		// value is position << 20 | length, records are well under 1MB
+
+	private final Map<HashWrapper,Long>	index = new HashMap<>();
+
+	private final ByteBuffer	entry_header = ByteBuffer.allocateDirect( 1 + 255 + 4 );
+
+	private boolean	failed;
+
+	private final AEMonitor	this_mon	= new AEMonitor( "DHTDBValueStore" );
+
+	public
+	DHTDBValueStoreImpl(
+		File		_file,
+		long		_max_bytes )
+	{
+		file		= _file;
+		max_bytes	= _max_bytes;
+
+		try{
+			open();
+
+		}catch( Throwable e ){
+
+			Debug.out( "Failed to open DHT value store " + file, e );
+
+			closeFile();
+
+			failed = true;
+		}
+	}
+
+	private void
+	open()
+
+		throws IOException
+	{
+		recoverCompaction();
+
+		raf		= new RandomAccessFile( file, "rw" );
+		channel	= raf.getChannel();
+
+		long	size = channel.size();
+
+		if ( size < HEADER_SIZE ){
+
+			resetFile();
+
+			return;
+		}
+
+		ByteBuffer	header = ByteBuffer.allocate( HEADER_SIZE );
+
+		readFully( header, 0 );
+
+		if ( header.getInt( 0 ) != MAGIC || header.getInt( 4 ) != VERSION ){
+
+			resetFile();
+
+			return;
+		}
+
+		long	pos = HEADER_SIZE;
+
+		while( pos < size ){
+
+			entry_header.clear();
+			entry_header.limit( 1 );
+
+			if ( !readFully( entry_header, pos )){
+
+				break;
+			}
+
+			int	key_len = entry_header.get( 0 )&0xff;
+
+			entry_header.clear();
+			entry_header.limit( key_len + 4 );
+
+			if ( !readFully( entry_header, pos + 1 )){
+
+				break;
+			}
+
+			byte[]	key = new byte[key_len];
+
+			entry_header.get( key );
+
+			int	record_len = entry_header.getInt();
+
+			long	record_pos = pos + 1 + key_len + 4;
+
+			if ( record_len > MAX_RECORD_SIZE || record_pos + Math.max( 0, record_len ) > size ){
+
+				break;
+			}
+
+			HashWrapper	hw = new HashWrapper( key );
+
+			Long	existing;
+
+			if ( record_len < 0 ){
+
+				existing = index.remove( hw );
+
+			}else{
+
+				existing = index.put( hw, ( record_pos << 20 ) | record_len );
+
+				live_bytes += record_len;
+
+				record_pos += record_len;
+			}
+
+			if ( existing != null ){
+
+				live_bytes -= existing & 0xfffff;
+			}
+
+			pos = record_pos;
+		}
+
+		if ( pos < size ){
+
+				// torn or corrupt tail, drop it
+
+			channel.truncate( pos );
+		}
+
+		file_end = pos;
+
+		channel.position( file_end );
+	}
+
+	private void
+	resetFile()
+
+		throws IOException
+	{
+		channel.truncate( 0 );
+
+		ByteBuffer	header = ByteBuffer.allocate( HEADER_SIZE );
+
+		header.putInt( MAGIC );
+		header.putInt( VERSION );
+
+		header.flip();
+
+		channel.write( header, 0 );
+
+		file_end = HEADER_SIZE;
+
+		channel.position( file_end );
+
+		index.clear();
+
+		live_bytes = 0;
+	}
+
+	private boolean
+	readFully(
+		ByteBuffer	buffer,
+		long		pos )
+
+		throws IOException
+	{
+		while( buffer.hasRemaining()){
+
+			int	len = channel.read( buffer, pos );
+
+			if ( len <= 0 ){
+
+				return( false );
+			}
+
+			pos += len;
+		}
+
+		buffer.flip();
+
+		return( true );
+	}
+
+	private void
+	writeEntry(
+		byte[]		key,
+		byte[]		record )
+
+		throws IOException
+	{
+		entry_header.clear();
+
+		entry_header.put((byte)key.length );
+		entry_header.put( key );
+		entry_header.putInt( record==null?-1:record.length );
+
+		entry_header.flip();
+
+		while( entry_header.hasRemaining()){
+
+			channel.write( entry_header );
+		}
+
+		if ( record != null ){
+
+			ByteBuffer	bb = ByteBuffer.wrap( record );
+
+			while( bb.hasRemaining()){
+
+				channel.write( bb );
+			}
+		}
+
+		file_end += 1 + key.length + 4 + ( record==null?0:record.length );
+	}
+
+	@Override
+	public boolean
+	putRecord(
+		byte[]		key,
+		byte[]		record )
+	{
+		if ( key.length > 255 || record.length > MAX_RECORD_SIZE ){
+
+			return( false );
+		}
+
+		try{
+			this_mon.enter();
+
+			if ( failed ){
+
+				return( false );
+			}
+
+			HashWrapper	hw = new HashWrapper( key );
+
+			Long	existing = index.get( hw );
+
+			long	existing_len = existing==null?0:( existing & 0xfffff );
+
+			if ( live_bytes - existing_len + record.length > max_bytes ){
+
+					// over budget - drop any stale copy rather than keep an out of date one
+
+				if ( existing != null ){
+
+					removeRecord( key );
+				}
+
+				return( false );
+			}
+
+			long	record_pos = file_end + 1 + key.length + 4;
+
+			writeEntry( key, record );
+
+			index.put( hw, ( record_pos << 20 ) | record.length );
+
+			live_bytes += record.length - existing_len;
+
+			checkCompaction();
+
+			return( true );
+
+		}catch( Throwable e ){
+
+			fail( e );
+
+			return( false );
+
+		}finally{
+
+			this_mon.exit();
+		}
+	}
+
+	@Override
+	public void
+	removeRecord(
+		byte[]		key )
+	{
+		try{
+			this_mon.enter();
+
+			if ( failed ){
+
+				return;
+			}
+
+			Long	existing = index.remove( new HashWrapper( key ));
+
+			if ( existing != null ){
+
+				writeEntry( key, null );
+
+				live_bytes -= existing & 0xfffff;
+
+				checkCompaction();
+			}
+		}catch( Throwable e ){
+
+			fail( e );
+
+		}finally{
+
+			this_mon.exit();
+		}
+	}
+
+	private File
+	getSideFile(
+		String		suffix )
+	{
+		return( FileUtil.newFile( file.getParentFile(), file.getName() + suffix ));
+	}
+
+		/**
+		 * The compacted copy is complete before the file is renamed aside so if the file is missing
+		 * the copy is adopted, failing that the old file is put back
+		 */
+
+	private void
+	recoverCompaction()
+
+		throws IOException
+	{
+		File	temp	= getSideFile( SUFFIX_COMPACT );
+		File	old		= getSideFile( SUFFIX_OLD );
+
+		if ( !file.exists()){
+
+			if ( temp.exists() && old.exists()){
+
+				if ( !temp.renameTo( file )){
+
+					throw( new IOException( "Failed to rename " + temp + " to " + file ));
+				}
+			}else if ( old.exists()){
+
+				if ( !old.renameTo( file )){
+
+					throw( new IOException( "Failed to rename " + old + " to " + file ));
+				}
+			}
+		}
+
+		temp.delete();
+		old.delete();
+	}
+
+	private void
+	checkCompaction()
+
+		throws IOException
+	{
+		if ( file_end - HEADER_SIZE <= 2*live_bytes + COMPACT_SLACK ){
+
+			return;
+		}
+
+		File	temp	= getSideFile( SUFFIX_COMPACT );
+		File	old		= getSideFile( SUFFIX_OLD );
+
+		temp.delete();
+		old.delete();
+
+		Map<HashWrapper,Long>	new_index = new HashMap<>( index.size()*2 );
+
+		RandomAccessFile	temp_raf = new RandomAccessFile( temp, "rw" );
+
+		try{
+			FileChannel	temp_channel = temp_raf.getChannel();
+
+			ByteBuffer	header = ByteBuffer.allocate( HEADER_SIZE );
+
+			header.putInt( MAGIC );
+			header.putInt( VERSION );
+
+			header.flip();
+
+			temp_channel.write( header );
+
+			ByteBuffer	buffer = ByteBuffer.allocateDirect( 64*1024 );
+
+			long	pos = HEADER_SIZE;
+
+			for ( Map.Entry<HashWrapper,Long> entry: index.entrySet()){
+
+				byte[]	key 		= entry.getKey().getBytes();
+				long	location	= entry.getValue();
+
+				int		len			= (int)( location & 0xfffff );
+				long	record_pos	= location >>> 20;
+
+				ByteBuffer	eh = ByteBuffer.allocate( 1 + key.length + 4 );
+
+				eh.put((byte)key.length );
+				eh.put( key );
+				eh.putInt( len );
+
+				eh.flip();
+
+				temp_channel.write( eh );
+
+				pos += 1 + key.length + 4;
+
+				new_index.put( entry.getKey(), ( pos << 20 ) | len );
+
+					// copy the record across without pulling it onto the heap
+
+				long	done = 0;
+
+				while( done < len ){
+
+					buffer.clear();
+
+					buffer.limit((int)Math.min( buffer.capacity(), len - done ));
+
+					if ( !readFully( buffer, record_pos + done )){
+
+						throw( new IOException( "Record truncated" ));
+					}
+
+					while( buffer.hasRemaining()){
+
+						temp_channel.write( buffer );
+					}
+
+					done += buffer.limit();
+				}
+
+				pos += len;
+			}
+
+			temp_channel.force( false );
+
+		}finally{
+
+			temp_raf.close();
+		}
+
+		closeFile();
+
+			// never without one of the two complete files, see recoverCompaction
+
+		if ( !file.renameTo( old )){
+
+			temp.delete();
+
+			throw( new IOException( "Failed to rename " + file + " to " + old ));
+		}
+
+		if ( !temp.renameTo( file )){
+
+			old.renameTo( file );
+
+			throw( new IOException( "Failed to replace " + file + " with compacted copy" ));
+		}
+
+		old.delete();
+
+		raf		= new RandomAccessFile( file, "rw" );
+		channel	= raf.getChannel();
+
+		file_end = channel.size();
+
+		channel.position( file_end );
+
+		index.clear();
+		index.putAll( new_index );
+	}
+
+	@Override
+	public void
+	visitRecords(
+		RecordVisitor	visitor )
+	{
+		List<Object[]>	records = new ArrayList<>( index.size());
+
+		try{
+			this_mon.enter();
+
+			if ( failed ){
+
+				return;
+			}
+
+			for ( Map.Entry<HashWrapper,Long> entry: index.entrySet()){
+
+				long	location	= entry.getValue();
+
+				int		len			= (int)( location & 0xfffff );
+
+				ByteBuffer	bb = ByteBuffer.allocate( len );
+
+				if ( !readFully( bb, location >>> 20 )){
+
+					throw( new IOException( "Record truncated" ));
+				}
+
+				records.add( new Object[]{ entry.getKey().getBytes(), bb.array()});
+			}
+		}catch( Throwable e ){
+
+			fail( e );
+
+			return;
+
+		}finally{
+
+			this_mon.exit();
+		}
+
+			// call out without holding our lock as the visitor may well write back
+
+		for ( Object[] record: records ){
+
+			try{
+				visitor.record((byte[])record[0], (byte[])record[1] );
+
+			}catch( Throwable e ){
+
+				Debug.out( e );
+			}
+		}
+	}
+
+	@Override
+	public void
+	flush()
+	{
+		try{
+			this_mon.enter();
+
+			if ( !failed ){
+
+				channel.force( false );
+			}
+		}catch( Throwable e ){
+
+			fail( e );
+
+		}finally{
+
+			this_mon.exit();
+		}
+	}
+
+	@Override
+	public int
+	getRecordCount()
+	{
+		try{
+			this_mon.enter();
+
+			return( index.size());
+
+		}finally{
+
+			this_mon.exit();
+		}
+	}
+
+	@Override
+	public long
+	getRecordBytes()
+	{
+		return( live_bytes );
+	}
+
+	@Override
+	public void
+	close()
+	{
+		try{
+			this_mon.enter();
+
+			if ( !failed ){
+
+				channel.force( false );
+			}
+		}catch( Throwable e ){
+
+			Debug.out( e );
+
+		}finally{
+
+			closeFile();
+
+			failed = true;
+
+			this_mon.exit();
+		}
+	}
+
+	private void
+	fail(
+		Throwable	e )
+	{
+			// don't risk making things worse, the database carries on without persistence and the
+			// file will be checked on the next open
+
+		Debug.out( "DHT value store " + file + " failed", e );
+
+		closeFile();
+
+		failed = true;
+	}
+
+	private void
+	closeFile()
+	{
+		if ( raf != null ){
+
+			try{
+				raf.close();
+
+			}catch( Throwable e ){
+			}
+
+			raf		= null;
+			channel	= null;
+		}
+	}
+}
@@ -29,6 +29,7 @@ import com.biglybt.core.download.DownloadManager;
 import com.biglybt.core.peermanager.piecepicker.util.BitFlags;
 import com.biglybt.core.torrent.TOTorrent;
 import com.biglybt.core.util.DirectByteBuffer;
+import com.biglybt.core.util.DirectFileRegion;
 import com.biglybt.core.util.IndentWriter;
 
 /**
@@ -143,6 +144,20 @@ DiskManager
 		DiskManagerReadRequest 			request,
 		DiskManagerReadRequestListener 	listener );
 
+		/**
+		 * Resolves a read request to a region of a single, complete file so that the data
+		 * can be sent without being read into memory first
+		 * @param request
+		 * @return region or null if the request has to be read normally
+		 */
+
+	public default DirectFileRegion
+	getReadRegion(
+		DiskManagerReadRequest			request )
+	{
+		return( null );
+	}
+
 	public boolean
 	hasOutstandingReadRequestForPiece(
 		int		piece_number );
@@ -1734,6 +1734,14 @@ DiskManagerImpl
         reader.readBlock( request, listener );
     }
 
+	@Override
+	public DirectFileRegion
+	getReadRegion(
+		DiskManagerReadRequest	request )
+	{
+		return( reader.getReadRegion( request ));
+	}
+
 	@Override
 	public boolean
 	hasOutstandingReadRequestForPiece(
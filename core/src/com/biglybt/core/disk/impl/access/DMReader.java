@@ -22,6 +22,7 @@ package com.biglybt.core.disk.impl.access;
 import com.biglybt.core.disk.DiskManagerReadRequest;
 import com.biglybt.core.disk.DiskManagerReadRequestListener;
 import com.biglybt.core.util.DirectByteBuffer;
+import com.biglybt.core.util.DirectFileRegion;
 
 
 /**
@@ -59,6 +60,14 @@ DMReader
 		DiskManagerReadRequest 			request,
 		DiskManagerReadRequestListener 	listener );
 
+		/**
+		 * @return a region the request can be satisfied from directly, null if it must be read
+		 */
+
+	public DirectFileRegion
+	getReadRegion(
+		DiskManagerReadRequest	request );
+
 	public boolean
 	hasOutstandingReadRequestForPiece(
 		int		piece_number );
@@ -59,6 +59,11 @@ DMCheckerImpl
 
 	private static final boolean	fully_async = COConfigurationManager.getBooleanParameter( "diskmanager.perf.checking.fully.async" );
 
+		// a complete recheck keeps this much piece data in flight so reads of later pieces overlap
+		// with hashing of earlier ones
+
+	private static final int		RECHECK_IN_FLIGHT_BYTES	= 32*1024*1024;
+
 	static{
 		if ( fully_async ){
 
@@ -328,7 +333,11 @@ DMCheckerImpl
 
 		  				int	checks_submitted	= 0;
 
-			            final AESemaphore	 run_sem = new AESemaphore( "DMChecker::completeRecheck:runsem", 2 );
+			            int	in_flight = RECHECK_IN_FLIGHT_BYTES / Math.max( 1, disk_manager.getPieceLength());
+
+			            in_flight = Math.min( in_flight, Runtime.getRuntime().availableProcessors()*2 );
+
+			            final AESemaphore	 run_sem = new AESemaphore( "DMChecker::completeRecheck:runsem", Math.max( 2, in_flight ));
 
 			            int nbPieces = disk_manager.getNbPieces();
 
@@ -302,6 +302,77 @@ DMReaderImpl
 		return( new DiskManagerReadRequestImpl( pieceNumber, offset, length ));
 	}
 
+	@Override
+	public DirectFileRegion
+	getReadRegion(
+		DiskManagerReadRequest	request )
+	{
+		if ( stopped ){
+
+			return( null );
+		}
+
+		int	pieceNumber	= request.getPieceNumber();
+		int	offset		= request.getOffset();
+		int	length		= request.getLength();
+
+		DMPieceList pieceList = disk_manager.getPieceList(pieceNumber);
+
+		if ( pieceList == null || pieceList.size() == 0 ){
+
+			return( null );
+		}
+
+		long previousFilesLength = 0;
+
+		int currentFile = 0;
+
+		long fileOffset = pieceList.get(0).getOffset();
+
+		while (currentFile < pieceList.size() && pieceList.getCumulativeLengthToPiece(currentFile) < offset) {
+
+			previousFilesLength = pieceList.getCumulativeLengthToPiece(currentFile);
+
+			currentFile++;
+
+			fileOffset = 0;
+		}
+
+		if ( currentFile >= pieceList.size()){
+
+			return( null );
+		}
+
+		fileOffset += offset - previousFilesLength;
+
+		DMPieceMapEntry map_entry = pieceList.get( currentFile );
+
+		int	length_available = map_entry.getLength() - (int)( fileOffset - map_entry.getOffset());
+
+		if ( length_available < length ){
+
+				// spans files, leave it to a normal read
+
+			return( null );
+		}
+
+		DiskManagerFileInfoImpl	file = (DiskManagerFileInfoImpl)map_entry.getFile();
+
+		CacheFile	cache_file = file.getCacheFile();
+
+			// read access mode means the file is complete and the cache has been flushed so the
+			// data on disk is current. other storage types don't map file offsets 1-1
+
+		if ( 	cache_file == null ||
+				cache_file.getAccessMode() != CacheFile.CF_READ ||
+				cache_file.getStorageType() != CacheFile.CT_LINEAR ){
+
+			return( null );
+		}
+
+		return( DirectFileRegion.create( file.getFile( true ), fileOffset, length ));
+	}
+
 	@Override
 	public boolean
 	hasOutstandingReadRequestForPiece(
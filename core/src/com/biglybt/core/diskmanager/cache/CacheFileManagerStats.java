@@ -71,6 +71,45 @@ CacheFileManagerStats
 	public long
 	getFileWriteCount();
 
+		// asynchronous prefetch for sequential readers. 'used' counts prefetched data that was
+		// subsequently read, 'wasted' data evicted without being read, 'rejected' prefetches
+		// refused as they would have exceeded the prefetch budget
+
+	public long
+	getPrefetchBytesMade();
+
+	public long
+	getPrefetchBytesUsed();
+
+	public long
+	getPrefetchBytesWasted();
+
+	public long
+	getPrefetchRejectedCount();
+
+		// segmented cache, 0 segments if the single LRU is in use
+
+	public int
+	getSegmentCount();
+
+	public long
+	getSegmentUsedSize(
+		int		segment );
+
+		// percentage of reads satisfied from cache
+
+	public int
+	getSegmentHitRate(
+		int		segment );
+
+	public long
+	getSegmentLockCount(
+		int		segment );
+
+	public long
+	getSegmentContentionCount(
+		int		segment );
+
 		// returns the number of bytes in the requested range that are in cache
 
 	public boolean[] getBytesInCache(TOTorrent torrent, long[] absoluteOffsets, long[] lengths);
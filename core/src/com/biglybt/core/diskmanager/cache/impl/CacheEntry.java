@@ -33,6 +33,7 @@ CacheEntry
 {
 	protected static final int	CT_DATA_WRITE		= 0;
 	protected static final int	CT_READ_AHEAD		= 1;
+	protected static final int	CT_PREFETCH			= 2;
 
 	private final CacheFileWithCache	file;
 	private final DirectByteBuffer		buffer;
@@ -26,6 +26,7 @@ package com.biglybt.core.diskmanager.cache.impl;
 
 import java.io.File;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.biglybt.core.config.COConfigurationManager;
 import com.biglybt.core.diskmanager.cache.*;
@@ -108,8 +109,11 @@ CacheFileManagerImpl
 	protected long		cache_size;
 	protected long		cache_files_not_smaller_than;
 
+	protected boolean	prefetch_enabled;
+	protected long		prefetch_budget;
+
 	protected long		cache_minimum_free_size;
-	protected long		cache_space_free;
+	protected final AtomicLong	cache_space_free	= new AtomicLong();
 
 	private long	cache_file_id_next	= 0;
 
@@ -124,6 +128,10 @@ CacheFileManagerImpl
 
 	protected final LinkedHashMap		cache_entries = new LinkedHashMap(1024, 0.75f, true );
 
+		// segmented mode, null if the single LRU above is in use
+
+	protected CacheSegment[]			segments;
+
 	protected CacheFileManagerStatsImpl	stats;
 
 
@@ -139,6 +147,16 @@ CacheFileManagerImpl
 	protected long				file_read_count;
 	protected long				file_write_count;
 
+		// asynchronous prefetch of the rest of a piece for sequential readers
+
+	protected final AsyncDispatcher		prefetch_dispatcher	= new AsyncDispatcher( "CacheFile:prefetch" );
+
+	protected final AtomicLong			prefetch_outstanding	= new AtomicLong();
+	protected final AtomicLong			prefetch_bytes_made		= new AtomicLong();
+	protected final AtomicLong			prefetch_bytes_used		= new AtomicLong();
+	protected final AtomicLong			prefetch_bytes_wasted	= new AtomicLong();
+	protected final AtomicLong			prefetch_rejected		= new AtomicLong();
+
 	protected final AEMonitor			this_mon	= new AEMonitor( "CacheFileManager" );
 
 	long	cleaner_ticks	= CACHE_CLEANER_TICKS;
@@ -166,6 +184,20 @@ CacheFileManagerImpl
 
 		int		not_smaller_than	= 1024*COConfigurationManager.getIntParameter( "notsmallerthan" );
 
+			// 0 -> single LRU
+
+		int		segment_count		= COConfigurationManager.getIntParameter( "diskmanager.perf.cache.segments" );
+
+		if ( segment_count > 0 ){
+
+			segments = new CacheSegment[ Math.min( segment_count, 256 )];
+
+			for ( int i=0;i<segments.length;i++){
+
+				segments[i] = new CacheSegment( i );
+			}
+		}
+
 		if ( size <= 0 ){
 
 			Debug.out( "Invalid cache size parameter (" + size + "), caching disabled" );
@@ -196,7 +228,13 @@ CacheFileManagerImpl
 
 		cache_minimum_free_size	= cache_size/4;
 
-		cache_space_free		= cache_size;
+		prefetch_enabled		= cache_read_enabled && COConfigurationManager.getBooleanParameter( "diskmanager.perf.cache.prefetch.enable" );
+
+			// unused prefetched data is limited to a quarter of the cache
+
+		prefetch_budget			= cache_size/4;
+
+		cache_space_free.set( cache_size );
 
 		stats = new CacheFileManagerStatsImpl( this );
 
@@ -207,7 +245,8 @@ CacheFileManagerImpl
 		if (Logger.isEnabled())
 			Logger.log(new LogEvent(LOGID, "DiskCache: enabled = " + cache_enabled
 					+ ", read = " + cache_read_enabled + ", write = "
-					+ cache_write_enabled + ", size = " + cache_size + " B"));
+					+ cache_write_enabled + ", size = " + cache_size + " B, segments = "
+					+ ( segments==null?0:segments.length ) + ", prefetch = " + prefetch_enabled ));
 	}
 
 	protected boolean
@@ -222,6 +261,113 @@ CacheFileManagerImpl
 		return( cache_read_enabled );
 	}
 
+	protected boolean
+	isPrefetchEnabled()
+	{
+		return( prefetch_enabled );
+	}
+
+		/**
+		 * Queues an asynchronous read of the given file area into the cache. Prefetched data
+		 * counts against the prefetch budget until it is either used or evicted
+		 * @return false if the request was rejected as over budget
+		 */
+
+	protected boolean
+	schedulePrefetch(
+		final CacheFileWithCache	file,
+		final long					position,
+		int							length )
+	{
+		final int	prefetch_length = (int)Math.min( length, prefetch_budget/2 );
+
+		if ( prefetch_length <= 0 ){
+
+			return( false );
+		}
+
+		if ( prefetch_outstanding.addAndGet( prefetch_length ) > prefetch_budget ){
+
+			prefetch_outstanding.addAndGet( -prefetch_length );
+
+			prefetch_rejected.incrementAndGet();
+
+			return( false );
+		}
+
+		prefetch_dispatcher.dispatch(
+			new AERunnable()
+			{
+				@Override
+				public void
+				runSupport()
+				{
+					int	cached = 0;
+
+					try{
+						cached = file.prefetch( position, prefetch_length );
+
+					}catch( CacheFileManagerException e ){
+
+							// prefetch is best effort, any real problem will be reported on the next
+							// read or write of the file
+
+						if ( DEBUG ){
+
+							Debug.printStackTrace( e );
+						}
+					}finally{
+
+							// whatever made it into cache stays outstanding until used or released
+
+						prefetch_outstanding.addAndGet( cached - prefetch_length );
+					}
+				}
+			});
+
+		return( true );
+	}
+
+	protected void
+	prefetchMade(
+		CacheEntry		entry )
+	{
+		prefetch_bytes_made.addAndGet( entry.getLength());
+	}
+
+	protected void
+	prefetchUsed(
+		CacheEntry		entry )
+	{
+		prefetch_bytes_used.addAndGet( entry.getLength());
+
+		prefetch_outstanding.addAndGet( -entry.getLength());
+	}
+
+	protected long
+	getPrefetchBytesMade()
+	{
+		return( prefetch_bytes_made.get());
+	}
+
+	protected long
+	getPrefetchBytesUsed()
+	{
+		return( prefetch_bytes_used.get());
+	}
+
+	protected long
+	getPrefetchBytesWasted()
+	{
+		return( prefetch_bytes_wasted.get());
+	}
+
+	protected long
+	getPrefetchRejectedCount()
+	{
+		return( prefetch_rejected.get());
+	}
+
 	@Override
 	public CacheFile
 	createFile(
@@ -301,7 +447,9 @@ CacheFileManagerImpl
 
 			}else{
 
-				cf = new CacheFileWithCache( this, fm_file, tf );
+				CacheSegment segment = segments==null?null:segments[(int)( my_id % segments.length )];
+
+				cf = new CacheFileWithCache( this, fm_file, tf, segment );
 
 				try{
 					this_mon.enter();
@@ -385,27 +533,50 @@ CacheFileManagerImpl
 
 			CacheEntry	oldest_entry	= null;
 
-			try{
-				this_mon.enter();
+			if ( segments != null ){
+
+				long	free = cache_space_free.get();
 
-				if ( length < cache_space_free || cache_space_free == cache_size ){
+				if ( length < free || free == cache_size ){
 
 					ok	= true;
 
 				}else{
 
-					oldest_entry = (CacheEntry)cache_entries.keySet().iterator().next();
+					oldest_entry = getOldestSegmentEntry();
+
+					if ( oldest_entry == null ){
+
+							// space is in the process of being added/released by other threads
+
+						ok	= true;
+					}
 				}
-			}finally{
+			}else{
+				try{
+					this_mon.enter();
 
-				this_mon.exit();
+					long	free = cache_space_free.get();
+
+					if ( length < free || free == cache_size ){
+
+						ok	= true;
+
+					}else{
+
+						oldest_entry = (CacheEntry)cache_entries.keySet().iterator().next();
+					}
+				}finally{
+
+					this_mon.exit();
+				}
 			}
 
 			if ( !ok ){
 
 				log	= true;
 
-				long	old_free	= cache_space_free;
+				long	old_free	= cache_space_free.get();
 
 				CacheFileWithCache	oldest_file = oldest_entry.getFile();
 
@@ -429,7 +600,7 @@ CacheFileManagerImpl
 					}
 				}
 
-				long	flushed = cache_space_free - old_free;
+				long	flushed = cache_space_free.get() - old_free;
 
 				if (Logger.isEnabled()) {
 					TOTorrentFile tf = file.getTorrentFile();
@@ -439,7 +610,13 @@ CacheFileManagerImpl
 									+ oldest_file.getName()));
 				}
 
-				if ( flushed == 0 ){
+				if ( flushed == 0 && segments != null ){
+
+					if ( oldest_file.getSegment().getOldestEntry() == oldest_entry ){
+
+						throw( new CacheFileManagerException( null, "Cache inconsistent: 0 flushed"));
+					}
+				}else if ( flushed == 0 ){
 
 					try{
 						this_mon.enter();
@@ -516,7 +693,13 @@ CacheFileManagerImpl
 								updated_cache_files	= null;
 							}
 
-							if ( cache_entries.size() > 0 ){
+							if ( segments != null ){
+
+								for ( CacheSegment segment: segments ){
+
+									segment.addDirtyFiles( dirty_files );
+								}
+							}else if ( cache_entries.size() > 0 ){
 
 								Iterator it = cache_entries.keySet().iterator();
 
@@ -591,10 +774,19 @@ CacheFileManagerImpl
 
 		throws CacheFileManagerException
 	{
+		if ( segments != null ){
+
+			new_entry.getFile().getSegment().addEntry( new_entry );
+
+			cache_space_free.addAndGet( -new_entry.getLength());
+
+			return;
+		}
+
 		try{
 			this_mon.enter();
 
-			cache_space_free	-= new_entry.getLength();
+			cache_space_free.addAndGet( -new_entry.getLength());
 
 				// 	System.out.println( "Total cache space = " + cache_space_free );
 
@@ -633,9 +825,9 @@ CacheFileManagerImpl
 					//System.out.println( "Cache: file_count = " + my_count );
 				}
 
-				if ( total_cache_size != cache_size - cache_space_free ){
+				if ( total_cache_size != cache_size - cache_space_free.get()){
 
-					Debug.out( "Cache inconsistency: used_size = " + total_cache_size + ", free = " + cache_space_free + ", size = " + cache_size );
+					Debug.out( "Cache inconsistency: used_size = " + total_cache_size + ", free = " + cache_space_free.get() + ", size = " + cache_size );
 
 					throw( new CacheFileManagerException( null, "Cache inconsistency: sizes differ"));
 
@@ -656,6 +848,18 @@ CacheFileManagerImpl
 
 		throws CacheFileManagerException
 	{
+		if ( segments != null ){
+
+			if ( !entry.getFile().getSegment().useEntry( entry )){
+
+				Debug.out( "Cache inconsistency: entry missing on usage" );
+
+				throw( new CacheFileManagerException( null, "Cache inconsistency: entry missing on usage"));
+			}
+
+			return;
+		}
+
 		try{
 			this_mon.enter();
 
@@ -685,10 +889,31 @@ CacheFileManagerImpl
 	{
 		entry.getBuffer().returnToPool();
 
+		if ( entry.getType() == CacheEntry.CT_PREFETCH && entry.getUsageCount() == 0 ){
+
+			prefetch_bytes_wasted.addAndGet( entry.getLength());
+
+			prefetch_outstanding.addAndGet( -entry.getLength());
+		}
+
+		if ( segments != null ){
+
+			cache_space_free.addAndGet( entry.getLength());
+
+			if ( !entry.getFile().getSegment().removeEntry( entry )){
+
+				Debug.out( "Cache inconsistency: entry missing on removal" );
+
+				throw( new CacheFileManagerException( null, "Cache inconsistency: entry missing on removal"));
+			}
+
+			return;
+		}
+
 		try{
 			this_mon.enter();
 
-			cache_space_free	+= entry.getLength();
+			cache_space_free.addAndGet( entry.getLength());
 
 			if ( cache_entries.remove( entry ) == null ){
 
@@ -718,6 +943,26 @@ CacheFileManagerImpl
 		}
 	}
 
+	protected CacheEntry
+	getOldestSegmentEntry()
+	{
+			// each segment is LRU ordered so the oldest overall entry is the oldest of the segment heads
+
+		CacheEntry	oldest = null;
+
+		for ( CacheSegment segment: segments ){
+
+			CacheEntry	entry = segment.getOldestEntry();
+
+			if ( entry != null && ( oldest == null || entry.getLastUsed() < oldest.getLastUsed())){
+
+				oldest = entry;
+			}
+		}
+
+		return( oldest );
+	}
+
 	protected long
 	getCacheSize()
 	{
@@ -727,7 +972,7 @@ CacheFileManagerImpl
 	protected long
 	getCacheUsed()
 	{
-		long free = cache_space_free;
+		long free = cache_space_free.get();
 
 		if ( free < 0 ){
 
@@ -804,52 +1049,150 @@ CacheFileManagerImpl
 		}
 	}
 
+		// variants used by cached files, these are accounted against the file's segment
+		// when segmented to avoid the manager monitor
+
+	protected void
+	cacheBytesWritten(
+		CacheFileWithCache	file,
+		long				num )
+	{
+		CacheSegment	segment = file.getSegment();
+
+		if ( segment == null ){
+
+			cacheBytesWritten( num );
+
+		}else{
+
+			segment.update( CacheSegment.ST_CACHE_BYTES_WRITTEN, CacheSegment.ST_CACHE_WRITE_COUNT, num );
+		}
+	}
+
+	protected void
+	cacheBytesRead(
+		CacheFileWithCache	file,
+		int					num )
+	{
+		CacheSegment	segment = file.getSegment();
+
+		if ( segment == null ){
+
+			cacheBytesRead( num );
+
+		}else{
+
+			segment.update( CacheSegment.ST_CACHE_BYTES_READ, CacheSegment.ST_CACHE_READ_COUNT, num );
+		}
+	}
+
+	protected void
+	fileBytesWritten(
+		CacheFileWithCache	file,
+		long				num )
+	{
+		CacheSegment	segment = file.getSegment();
+
+		if ( segment == null ){
+
+			fileBytesWritten( num );
+
+		}else{
+
+			segment.update( CacheSegment.ST_FILE_BYTES_WRITTEN, CacheSegment.ST_FILE_WRITE_COUNT, num );
+		}
+	}
+
+	protected void
+	fileBytesRead(
+		CacheFileWithCache	file,
+		int					num )
+	{
+		CacheSegment	segment = file.getSegment();
+
+		if ( segment == null ){
+
+			fileBytesRead( num );
+
+		}else{
+
+			segment.update( CacheSegment.ST_FILE_BYTES_READ, CacheSegment.ST_FILE_READ_COUNT, num );
+		}
+	}
+
+	private long
+	getSegmentTotal(
+		int		type )
+	{
+		CacheSegment[]	segs = segments;
+
+		if ( segs == null ){
+
+			return( 0 );
+		}
+
+		long	total = 0;
+
+		for ( CacheSegment segment: segs ){
+
+			total += segment.getStat( type );
+		}
+
+		return( total );
+	}
+
 	protected long
 	getBytesWrittenToCache()
 	{
-		return( cache_bytes_written );
+		return( cache_bytes_written + getSegmentTotal( CacheSegment.ST_CACHE_BYTES_WRITTEN ));
 	}
 
 	protected long
 	getBytesWrittenToFile()
 	{
-		return( file_bytes_written );
+		return( file_bytes_written + getSegmentTotal( CacheSegment.ST_FILE_BYTES_WRITTEN ));
 	}
 
 	protected long
 	getBytesReadFromCache()
 	{
-		return( cache_bytes_read );
+		return( cache_bytes_read + getSegmentTotal( CacheSegment.ST_CACHE_BYTES_READ ));
 	}
 
 	protected long
 	getBytesReadFromFile()
 	{
-		return( file_bytes_read );
+		return( file_bytes_read + getSegmentTotal( CacheSegment.ST_FILE_BYTES_READ ));
 	}
 
 	public long
 	getCacheReadCount()
 	{
-		return( cache_read_count );
+		return( cache_read_count + getSegmentTotal( CacheSegment.ST_CACHE_READ_COUNT ));
 	}
 
 	public long
 	getCacheWriteCount()
 	{
-		return( cache_write_count );
+		return( cache_write_count + getSegmentTotal( CacheSegment.ST_CACHE_WRITE_COUNT ));
 	}
 
 	public long
 	getFileReadCount()
 	{
-		return( file_read_count );
+		return( file_read_count + getSegmentTotal( CacheSegment.ST_FILE_READ_COUNT ));
 	}
 
 	public long
 	getFileWriteCount()
 	{
-		return( file_write_count );
+		return( file_write_count + getSegmentTotal( CacheSegment.ST_FILE_WRITE_COUNT ));
+	}
+
+	protected CacheSegment[]
+	getSegments()
+	{
+		return( segments );
 	}
 
 	protected void
@@ -998,17 +1341,35 @@ CacheFileManagerImpl
 				// grab a copy to avoid potential deadlock as we never take the manager monitor
 				// and then the file's own monitor, always the other way around
 
-			try{
-				this_mon.enter();
+			if ( segments != null ){
 
-				it = new ArrayList( cache_entries.keySet()).iterator();
+				List	entries = new ArrayList();
 
-			}finally{
+				for ( CacheSegment segment: segments ){
 
-				this_mon.exit();
-			}
+					entries.addAll( segment.getEntries());
+
+					writer.println( segment.getString());
+				}
 
-			writer.println( "Entries = " + cache_entries.size());
+				it = entries.iterator();
+
+				writer.println( "Entries = " + entries.size());
+
+			}else{
+
+				try{
+					this_mon.enter();
+
+					it = new ArrayList( cache_entries.keySet()).iterator();
+
+				}finally{
+
+					this_mon.exit();
+				}
+
+				writer.println( "Entries = " + cache_entries.size());
+			}
 
 			Set	files = new HashSet();
 
@@ -205,6 +205,75 @@ CacheFileManagerStatsImpl
 		return( manager.getFileWriteCount());
 	}
 
+	@Override
+	public long
+	getPrefetchBytesMade()
+	{
+		return( manager.getPrefetchBytesMade());
+	}
+
+	@Override
+	public long
+	getPrefetchBytesUsed()
+	{
+		return( manager.getPrefetchBytesUsed());
+	}
+
+	@Override
+	public long
+	getPrefetchBytesWasted()
+	{
+		return( manager.getPrefetchBytesWasted());
+	}
+
+	@Override
+	public long
+	getPrefetchRejectedCount()
+	{
+		return( manager.getPrefetchRejectedCount());
+	}
+
+	@Override
+	public int
+	getSegmentCount()
+	{
+		CacheSegment[]	segments = manager.getSegments();
+
+		return( segments==null?0:segments.length );
+	}
+
+	@Override
+	public long
+	getSegmentUsedSize(
+		int		segment )
+	{
+		return( manager.getSegments()[segment].getUsedSize());
+	}
+
+	@Override
+	public int
+	getSegmentHitRate(
+		int		segment )
+	{
+		return( manager.getSegments()[segment].getHitRate());
+	}
+
+	@Override
+	public long
+	getSegmentLockCount(
+		int		segment )
+	{
+		return( manager.getSegments()[segment].getLockCount());
+	}
+
+	@Override
+	public long
+	getSegmentContentionCount(
+		int		segment )
+	{
+		return( manager.getSegments()[segment].getContendedCount());
+	}
+
 	@Override
 	public boolean[] getBytesInCache(TOTorrent torrent, long[] absoluteOffsets, long[] lengths)
 	{
@@ -127,8 +127,12 @@ CacheFileWithCache
 
 	protected final AEMonitor				this_mon		= new AEMonitor( "CacheFile" );
 
+	protected final CacheSegment			segment;
+
 	protected volatile CacheFileManagerException	pending_exception;
 
+	protected volatile boolean	prefetch_pending;
+
 	private long	bytes_written;
 	private long	bytes_read;
 
@@ -136,10 +140,12 @@ CacheFileWithCache
 	CacheFileWithCache(
 		CacheFileManagerImpl	_manager,
 		FMFile					_file,
-		TOTorrentFile			_torrent_file )
+		TOTorrentFile			_torrent_file,
+		CacheSegment			_segment )
 	{
 		manager		= _manager;
 		file		= _file;
+		segment		= _segment;
 
 		if ( _torrent_file != null ){
 
@@ -169,6 +175,12 @@ CacheFileWithCache
 		return( torrent_file );
 	}
 
+	protected CacheSegment
+	getSegment()
+	{
+		return( segment );
+	}
+
 	protected void
 	updateStats()
 	{
@@ -265,6 +277,7 @@ CacheFileWithCache
 				boolean	ok 				= true;
 				int		used_entries	= 0;
 				long	used_read_ahead	= 0;
+				boolean	sequential		= false;
 
 
 
@@ -280,6 +293,21 @@ CacheFileWithCache
 					{
 						read_history = new long[ READAHEAD_HISTORY ];
 						Arrays.fill( read_history, -1 );
+
+					}else if ( !recursive && manager.isPrefetchEnabled()){
+
+							// a read that continues a recent one is likely to be a peer working its way
+							// through a piece
+
+						for (int j=0;j<READAHEAD_HISTORY;j++){
+
+							if ( read_history[j] == file_position ){
+
+								sequential	= true;
+
+								break;
+							}
+						}
 					}
 
 						// record the position of the byte *following* the end of this read
@@ -349,6 +377,11 @@ CacheFileWithCache
 
 								manager.cacheEntryUsed( entry );
 
+								if ( entry.getType() == CacheEntry.CT_PREFETCH && entry.getUsageCount() == 1 ){
+
+									manager.prefetchUsed( entry );
+								}
+
 							}finally{
 
 								entry_buffer.limit( SS_CACHE, entry_buffer_limit );
@@ -383,7 +416,7 @@ CacheFileWithCache
 
 					if ( !recursive ){
 
-						manager.cacheBytesRead( read_length );
+						manager.cacheBytesRead( this, read_length );
 
 						bytes_read += read_length;
 					}
@@ -503,7 +536,7 @@ CacheFileWithCache
 
 										read_ahead_bytes_made	+= actual_read_ahead;
 
-										manager.fileBytesRead( actual_read_ahead );
+										manager.fileBytesRead( this, actual_read_ahead );
 
 										bytes_read += actual_read_ahead;
 
@@ -556,7 +589,7 @@ CacheFileWithCache
 									this_mon.exit();
 								}
 
-								manager.fileBytesRead( read_length );
+								manager.fileBytesRead( this, read_length );
 
 								bytes_read += read_length;
 							}
@@ -579,12 +612,17 @@ CacheFileWithCache
 						}
 					}
 				}
+
+				if ( sequential && !disable_read_cache ){
+
+					schedulePrefetch( file_position + read_length );
+				}
 			}else{
 
 				try{
 					getFMFile().read( file_buffer, file_position );
 
-					manager.fileBytesRead( read_length );
+					manager.fileBytesRead( this, read_length );
 
 					bytes_read += read_length;
 
@@ -621,6 +659,176 @@ CacheFileWithCache
 		}
 	}
 
+	private void
+	schedulePrefetch(
+		long		position )
+	{
+		if ( access_mode != CF_READ || torrent_file == null || prefetch_pending ){
+
+			return;
+		}
+
+			// fetch the rest of the piece, or the whole of the next one if the read finished
+			// on a piece boundary
+
+		int	request_piece_offset = (int)((position - piece_offset ) % piece_size);
+
+		if ( request_piece_offset < 0 ){
+
+			request_piece_offset += piece_size;
+		}
+
+		long	length = Math.min( piece_size - request_piece_offset, torrent_file.getLength() - position );
+
+		if ( length <= 0 ){
+
+			return;
+		}
+
+		prefetch_pending = true;
+
+		if ( !manager.schedulePrefetch( this, position, (int)length )){
+
+			prefetch_pending = false;
+		}
+	}
+
+		/**
+		 * Reads the uncached part of the area starting at the given position into the cache
+		 * @return number of bytes added to the cache
+		 */
+
+	protected int
+	prefetch(
+		long		position,
+		int			length )
+
+		throws CacheFileManagerException
+	{
+		try{
+			try{
+				this_mon.enter();
+
+				if ( !file.isOpen()){
+
+					return( 0 );
+				}
+
+				for ( CacheEntry entry: cache ){
+
+					long	entry_file_position 	= entry.getFilePosition();
+					int		entry_length			= entry.getLength();
+
+					if ( entry_file_position + entry_length <= position ){
+
+						continue;
+
+					}else if ( entry_file_position <= position ){
+
+							// start is already cached, skip over it
+
+						length		-= (int)( entry_file_position + entry_length - position );
+						position	= entry_file_position + entry_length;
+
+					}else{
+
+							// stop at the next cached area
+
+						length = (int)Math.min( length, entry_file_position - position );
+
+						break;
+					}
+				}
+			}finally{
+
+				this_mon.exit();
+			}
+
+			if ( length <= 0 ){
+
+				return( 0 );
+			}
+
+			DirectByteBuffer	cache_buffer = DirectByteBufferPool.getBuffer( DirectByteBuffer.AL_CACHE_READ, length );
+
+			boolean	buffer_cached	= false;
+
+			try{
+					// must allocate space OUTSIDE sync block (see manager for details)
+
+				CacheEntry	entry =
+					manager.allocateCacheSpace(
+							CacheEntry.CT_PREFETCH,
+							this,
+							cache_buffer, position, length );
+
+				entry.setClean();
+
+				try{
+					this_mon.enter();
+
+						// the area may have been read or written while we were allocating, in
+						// which case leave it alone
+
+					if ( access_mode != CF_READ || !file.isOpen()){
+
+						return( 0 );
+					}
+
+					for ( CacheEntry existing: cache ){
+
+						if ( existing.getFilePosition() >= position + length ){
+
+							break;
+
+						}else if ( existing.getFilePosition() + existing.getLength() > position ){
+
+							return( 0 );
+						}
+					}
+
+					getFMFile().read( cache_buffer, position );
+
+					manager.fileBytesRead( this, length );
+
+					bytes_read += length;
+
+					cache_buffer.position( SS_CACHE, 0 );
+
+					cache.add( entry );
+
+					manager.addCacheSpace( entry );
+
+					manager.prefetchMade( entry );
+
+				}finally{
+
+					this_mon.exit();
+				}
+
+				buffer_cached	= true;
+
+				return( length );
+
+			}finally{
+
+				if ( !buffer_cached ){
+
+					cache_buffer.returnToPool();
+				}
+			}
+		}catch( FMFileManagerException e ){
+
+			manager.rethrow(this,e);
+
+			return( 0 );
+
+		}finally{
+
+			prefetch_pending = false;
+		}
+	}
+
 	protected void
 	writeCache(
 		DirectByteBuffer	file_buffer,
@@ -742,7 +950,7 @@ CacheFileWithCache
 						this_mon.exit();
 					}
 
-					manager.cacheBytesWritten( write_length );
+					manager.cacheBytesWritten( this, write_length );
 
 					bytes_written += write_length;
 
@@ -766,7 +974,7 @@ CacheFileWithCache
 						this_mon.exit();
 					}
 
-					manager.fileBytesWritten( write_length );
+					manager.fileBytesWritten( this, write_length );
 
 					bytes_written += write_length;
 				}
@@ -774,7 +982,7 @@ CacheFileWithCache
 
 				getFMFile().write( file_buffer, file_position );
 
-				manager.fileBytesWritten( write_length );
+				manager.fileBytesWritten( this, write_length );
 
 				bytes_written += write_length;
 			}
@@ -1089,7 +1297,7 @@ CacheFileWithCache
 
 			getFMFile().write( buffers, multi_block_start );
 
-			manager.fileBytesWritten( expected_overall_write );
+			manager.fileBytesWritten( this, expected_overall_write );
 
 			// bytes_written += expected_overall_write;
 
@@ -0,0 +1,289 @@
+/*
+ * Copyright (C) Bigly Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+
+package com.biglybt.core.diskmanager.cache.impl;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.biglybt.core.util.AEMonitor;
+
+/**
+ * One stripe of the segmented cache. Each cache file is assigned to a single segment
+ * for its lifetime and all of its entries live in that segment's LRU, so bookkeeping
+ * for files in different segments never contends on the same monitor. The overall
+ * cache size is still enforced by the manager.
+ */
+
+public class
+CacheSegment
+{
+	protected static final int	ST_CACHE_BYTES_WRITTEN	= 0;
+	protected static final int	ST_CACHE_BYTES_READ		= 1;
+	protected static final int	ST_FILE_BYTES_WRITTEN	= 2;
+	protected static final int	ST_FILE_BYTES_READ		= 3;
+	protected static final int	ST_CACHE_READ_COUNT		= 4;
+	protected static final int	ST_CACHE_WRITE_COUNT	= 5;
+	protected static final int	ST_FILE_READ_COUNT		= 6;
+	protected static final int	ST_FILE_WRITE_COUNT		= 7;
+
+	private static final int	ST_MAX					= 8;
+
+	private final int		index;
+
+		// access order
+
+	private final LinkedHashMap<CacheEntry,CacheEntry>	cache_entries = new LinkedHashMap<>(256, 0.75f, true );
+
+		// byte/op counts are updated on every read and write so they're kept out of the monitor,
+		// which is only needed for LRU bookkeeping
+
+	private final AtomicLong[]	stats	= new AtomicLong[ ST_MAX ];
+
+	private long			used_size;
+
+	private long			lock_count;
+	private long			contended_count;
+
+	private final AEMonitor	this_mon;
+
+	protected
+	CacheSegment(
+		int		_index )
+	{
+		index		= _index;
+		this_mon	= new AEMonitor( "CacheSegment:" + index );
+
+		for ( int i=0;i<ST_MAX;i++){
+
+			stats[i] = new AtomicLong();
+		}
+	}
+
+	protected int
+	getIndex()
+	{
+		return( index );
+	}
+
+	private void
+	enter()
+	{
+			// try without blocking first so we can tell how often the segment is contended
+
+		boolean	contended = !this_mon.enter( 0 );
+
+		if ( contended ){
+
+			this_mon.enter();
+		}
+
+		lock_count++;
+
+		if ( contended ){
+
+			contended_count++;
+		}
+	}
+
+	private void
+	exit()
+	{
+		this_mon.exit();
+	}
+
+	protected void
+	addEntry(
+		CacheEntry		entry )
+	{
+		try{
+			enter();
+
+			used_size += entry.getLength();
+
+			cache_entries.put( entry, entry );
+
+		}finally{
+
+			exit();
+		}
+	}
+
+	protected boolean
+	useEntry(
+		CacheEntry		entry )
+	{
+		try{
+			enter();
+
+				// note that the "get" operation updates the MRU
+
+			if ( cache_entries.get( entry ) == null ){
+
+				return( false );
+			}
+
+			entry.used();
+
+			return( true );
+
+		}finally{
+
+			exit();
+		}
+	}
+
+	protected boolean
+	removeEntry(
+		CacheEntry		entry )
+	{
+		try{
+			enter();
+
+			if ( cache_entries.remove( entry ) == null ){
+
+				return( false );
+			}
+
+			used_size -= entry.getLength();
+
+			return( true );
+
+		}finally{
+
+			exit();
+		}
+	}
+
+	protected CacheEntry
+	getOldestEntry()
+	{
+		try{
+			enter();
+
+			if ( cache_entries.isEmpty()){
+
+				return( null );
+			}
+
+			return( cache_entries.keySet().iterator().next());
+
+		}finally{
+
+			exit();
+		}
+	}
+
+	protected List<CacheEntry>
+	getEntries()
+	{
+		try{
+			enter();
+
+			return( new ArrayList<>( cache_entries.keySet()));
+
+		}finally{
+
+			exit();
+		}
+	}
+
+	protected void
+	addDirtyFiles(
+		Set<CacheFileWithCache>		files )
+	{
+		try{
+			enter();
+
+			for ( CacheEntry entry: cache_entries.keySet()){
+
+				if ( entry.isDirty()){
+
+					files.add( entry.getFile());
+				}
+			}
+		}finally{
+
+			exit();
+		}
+	}
+
+	protected void
+	update(
+		int		bytes_type,
+		int		count_type,
+		long	num )
+	{
+		stats[bytes_type].addAndGet( num );
+
+		stats[count_type].incrementAndGet();
+	}
+
+	protected long
+	getStat(
+		int		type )
+	{
+		return( stats[type].get());
+	}
+
+	protected int
+	getEntryCount()
+	{
+		return( cache_entries.size());
+	}
+
+	protected long
+	getUsedSize()
+	{
+		return( used_size );
+	}
+
+		/**
+		 * @return percentage of reads satisfied from cache
+		 */
+
+	protected int
+	getHitRate()
+	{
+		long	hits	= stats[ ST_CACHE_READ_COUNT ].get();
+		long	misses	= stats[ ST_FILE_READ_COUNT ].get();
+
+		long	total = hits + misses;
+
+		return( total==0?0:(int)( hits*100/total ));
+	}
+
+	protected long
+	getLockCount()
+	{
+		return( lock_count );
+	}
+
+	protected long
+	getContendedCount()
+	{
+		return( contended_count );
+	}
+
+	protected String
+	getString()
+	{
+		return( "Segment " + index + ": entries=" + cache_entries.size() + ", used=" + used_size +
+				", hit=" + getHitRate() + "%, locks=" + lock_count + ", contended=" + contended_count );
+	}
+}
@@ -26,6 +26,7 @@ import java.nio.channels.FileChannel;
 import java.nio.channels.FileChannel.MapMode;
 import java.util.Locale;
 
+import com.biglybt.core.diskmanager.file.FMFile;
 import com.biglybt.core.diskmanager.file.FMFileManagerException;
 import com.biglybt.core.util.*;
 
@@ -250,6 +251,18 @@ FMFileAccessLinear
 
 		// AEThread2.setDebug( owner );
 
+			// complete files can be served from long-lived mapped regions if enabled
+
+		if ( !USE_MMAP && owner.getAccessMode() == FMFile.FM_READ ){
+
+			FMFileMappedRegionPool pool = FMFileMappedRegionPool.getSingleton();
+
+			if ( pool.isEnabled() && pool.read( owner, fc, buffers, offset )){
+
+				return;
+			}
+		}
+
 		int[]	original_positions = new int[buffers.length];
 
 		long read_start = SystemTime.getHighPrecisionCounter();
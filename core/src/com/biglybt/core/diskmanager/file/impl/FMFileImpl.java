@@ -747,6 +747,14 @@ FMFileImpl
 	{
 		FMFileManagerException	flush_exception = null;
 
+		if ( explicit ){
+
+				// don't hold the file open for direct transfers beyond an explicit close as
+				// it may be about to be moved or deleted
+
+			DirectFileRegion.closeChannels( getLinkedFile());
+		}
+
 		try{
 			flush();
 
@@ -767,6 +775,8 @@ FMFileImpl
 			}
 		}else{
 
+			FMFileMappedRegionPool.getSingleton().release( this );
+
 			try{
 				fa.close();
 
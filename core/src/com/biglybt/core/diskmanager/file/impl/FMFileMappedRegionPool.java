@@ -0,0 +1,610 @@
+/*
+ * Copyright (C) Bigly Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+
+package com.biglybt.core.diskmanager.file.impl;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.*;
+
+import com.biglybt.core.config.COConfigurationManager;
+import com.biglybt.core.config.ConfigKeys;
+import com.biglybt.core.config.ParameterListener;
+import com.biglybt.core.util.*;
+
+/**
+ * Pool of long-lived, read-only memory mapped windows onto files that are open for
+ * reading (i.e. complete). Reads are served by copying out of the mapped window
+ * rather than issuing a read per request and windows are kept in LRU order, subject
+ * to an overall address space limit.
+ * <p>
+ * Windows are reference counted while a read is copying out of them and are explicitly
+ * unmapped once evicted or released and no longer in use, rather than waiting for the
+ * buffer to be garbage collected. A window stays counted against the limit until it is
+ * unmapped so the limit bounds address space actually in use. If the JVM doesn't allow
+ * explicit unmapping the pool is disabled on Windows, where a mapped file can't be moved
+ * or deleted.
+ */
+
+public class
+FMFileMappedRegionPool
+{
+	private static final int	WINDOW_SIZE	= 8*1024*1024;
+
+	private static final Method	unmap_method;
+	private static final Object	unmap_target;
+
+	static{
+		Method	method	= null;
+		Object	target	= null;
+
+		try{
+				// Java 9+
+
+			Class<?>	unsafe_class = Class.forName( "sun.misc.Unsafe" );
+
+			method = unsafe_class.getMethod( "invokeCleaner", ByteBuffer.class );
+
+			Field	field = unsafe_class.getDeclaredField( "theUnsafe" );
+
+			field.setAccessible( true );
+
+			target = field.get( null );
+
+		}catch( Throwable e ){
+
+			method	= null;
+			target	= null;
+
+			try{
+					// Java 8, target is the buffer's cleaner
+
+				method = Class.forName( "sun.misc.Cleaner" ).getMethod( "clean" );
+
+			}catch( Throwable f ){
+
+				method = null;
+			}
+		}
+
+		unmap_method	= method;
+		unmap_target	= target;
+	}
+
+	private static final FMFileMappedRegionPool	singleton = new FMFileMappedRegionPool();
+
+	protected static FMFileMappedRegionPool
+	getSingleton()
+	{
+		return( singleton );
+	}
+
+	volatile long		max_mapped_bytes;
+
+		// access order
+
+	private final LinkedHashMap<Window,Window>	windows = new LinkedHashMap<>( 64, 0.75f, true );
+
+	private long	mapped_bytes;
+
+	private long	hit_count;
+	private long	map_count;
+	private long	evict_count;
+	private long	fail_count;
+	private long	unmap_fail_count;
+
+	private volatile boolean	unmap_disabled = unmap_method == null;
+
+	private final AEMonitor	this_mon	= new AEMonitor( "FMFileMappedRegionPool" );
+
+	private
+	FMFileMappedRegionPool()
+	{
+		COConfigurationManager.addAndFireParameterListener(
+			ConfigKeys.File.ICFG_DISKMANAGER_PERF_MMAP_POOL_MAXMB,
+			new ParameterListener()
+			{
+				@Override
+				public void
+				parameterChanged(
+					String	name )
+				{
+					max_mapped_bytes = 1024L*1024*COConfigurationManager.getIntParameter( name );
+
+					if ( max_mapped_bytes <= 0 ){
+
+						releaseAll();
+					}
+				}
+			});
+
+		AEDiagnostics.addEvidenceGenerator(
+			new AEDiagnosticsEvidenceGenerator()
+			{
+				@Override
+				public void
+				generate(
+					IndentWriter		writer )
+				{
+					generateEvidence( writer );
+				}
+			});
+	}
+
+	protected boolean
+	isEnabled()
+	{
+		return( max_mapped_bytes > 0 && !( unmap_disabled && Constants.isWindows ));
+	}
+
+		/**
+		 * Attempts to satisfy a read from mapped windows
+		 * @return false if the read couldn't be satisfied this way, in which case the buffers
+		 * are unchanged and a normal read should be performed
+		 */
+
+	protected boolean
+	read(
+		FMFileImpl			file,
+		FileChannel			fc,
+		DirectByteBuffer[]	buffers,
+		long				offset )
+	{
+		int[]	original_positions = new int[buffers.length];
+
+		for ( int i=0;i<buffers.length;i++){
+
+			original_positions[i] = buffers[i].position( DirectByteBuffer.SS_FILE );
+		}
+
+		boolean	ok = false;
+
+		try{
+			long	file_size	= fc.size();
+
+			long	position	= offset;
+
+			for ( DirectByteBuffer buffer: buffers ){
+
+				while( buffer.hasRemaining( DirectByteBuffer.SS_FILE ) && position < file_size ){
+
+					long	window_index	= position / WINDOW_SIZE;
+
+					Window	window = getWindow( file, fc, file_size, window_index );
+
+					if ( window == null ){
+
+						return( false );
+					}
+
+					try{
+						ByteBuffer	view = window.buffer.duplicate();
+
+						int	window_offset	= (int)( position - window_index*WINDOW_SIZE );
+
+						int	chunk = Math.min( buffer.remaining( DirectByteBuffer.SS_FILE ), view.capacity() - window_offset );
+
+						view.limit( window_offset + chunk );
+						view.position( window_offset );
+
+						buffer.put( DirectByteBuffer.SS_FILE, view );
+
+						position += chunk;
+
+					}finally{
+
+						releaseWindow( window );
+					}
+				}
+			}
+
+			ok = true;
+
+			return( true );
+
+		}catch( Throwable e ){
+
+			try{
+				this_mon.enter();
+
+				fail_count++;
+
+			}finally{
+
+				this_mon.exit();
+			}
+
+			return( false );
+
+		}finally{
+
+			if ( !ok ){
+
+				for ( int i=0;i<buffers.length;i++){
+
+					buffers[i].position( DirectByteBuffer.SS_FILE, original_positions[i] );
+				}
+			}
+		}
+	}
+
+		/**
+		 * @return the window with a reference taken that must be given back via releaseWindow,
+		 * null if it couldn't be mapped
+		 */
+
+	private Window
+	getWindow(
+		FMFileImpl		file,
+		FileChannel		fc,
+		long			file_size,
+		long			window_index )
+
+		throws Exception
+	{
+		Window	key = new Window( file, fc, window_index, null );
+
+		try{
+			this_mon.enter();
+
+			Window	window = windows.get( key );
+
+			if ( window != null ){
+
+				hit_count++;
+
+				window.refs++;
+
+				return( window );
+			}
+		}finally{
+
+			this_mon.exit();
+		}
+
+		long	start 	= window_index*WINDOW_SIZE;
+
+		int		size	= (int)Math.min( WINDOW_SIZE, file_size - start );
+
+		if ( size <= 0 || size > max_mapped_bytes ){
+
+			return( null );
+		}
+
+			// map outside of the monitor, it's a system call
+
+		MappedByteBuffer	buffer = fc.map( MapMode.READ_ONLY, start, size );
+
+		List<MappedByteBuffer>	to_unmap = new ArrayList<>();
+
+		Window	result;
+
+		try{
+			this_mon.enter();
+
+			Window	existing = windows.get( key );
+
+			if ( existing != null ){
+
+					// someone else got there first
+
+				existing.refs++;
+
+				to_unmap.add( buffer );
+
+				result = existing;
+
+			}else{
+
+				Iterator<Window>	it = windows.keySet().iterator();
+
+				while( mapped_bytes + size > max_mapped_bytes && it.hasNext()){
+
+					Window	oldest = it.next();
+
+					it.remove();
+
+					retire( oldest, to_unmap );
+
+					evict_count++;
+				}
+
+				if ( mapped_bytes + size > max_mapped_bytes ){
+
+						// what's left is still being read from, don't exceed the limit
+
+					to_unmap.add( buffer );
+
+					fail_count++;
+
+					result = null;
+
+				}else{
+
+					Window	window = new Window( file, fc, window_index, buffer );
+
+					window.refs++;
+
+					windows.put( window, window );
+
+					mapped_bytes += size;
+
+					map_count++;
+
+					result = window;
+				}
+			}
+		}finally{
+
+			this_mon.exit();
+		}
+
+		unmap( to_unmap );
+
+		return( result );
+	}
+
+	private void
+	releaseWindow(
+		Window		window )
+	{
+		MappedByteBuffer	to_unmap = null;
+
+		try{
+			this_mon.enter();
+
+			window.refs--;
+
+			if ( window.refs == 0 && window.retired ){
+
+				mapped_bytes -= window.buffer.capacity();
+
+				to_unmap = window.buffer;
+			}
+		}finally{
+
+			this_mon.exit();
+		}
+
+		if ( to_unmap != null ){
+
+			unmap( to_unmap );
+		}
+	}
+
+		/**
+		 * Called with the monitor held for a window that has been removed from the pool, it is
+		 * unmapped now if unused, otherwise by the last reader
+		 */
+
+	private void
+	retire(
+		Window					window,
+		List<MappedByteBuffer>	to_unmap )
+	{
+		window.retired = true;
+
+		if ( window.refs == 0 ){
+
+			mapped_bytes -= window.buffer.capacity();
+
+			to_unmap.add( window.buffer );
+		}
+	}
+
+	protected void
+	release(
+		FMFileImpl		file )
+	{
+		List<MappedByteBuffer>	to_unmap = new ArrayList<>();
+
+		try{
+			this_mon.enter();
+
+			if ( windows.isEmpty()){
+
+				return;
+			}
+
+			Iterator<Window>	it = windows.keySet().iterator();
+
+			while( it.hasNext()){
+
+				Window	window = it.next();
+
+				if ( window.file == file ){
+
+					it.remove();
+
+					retire( window, to_unmap );
+				}
+			}
+		}finally{
+
+			this_mon.exit();
+		}
+
+		unmap( to_unmap );
+	}
+
+	void
+	releaseAll()
+	{
+		List<MappedByteBuffer>	to_unmap = new ArrayList<>();
+
+		try{
+			this_mon.enter();
+
+			for ( Window window: windows.keySet()){
+
+				retire( window, to_unmap );
+			}
+
+			windows.clear();
+
+		}finally{
+
+			this_mon.exit();
+		}
+
+		unmap( to_unmap );
+	}
+
+	private void
+	unmap(
+		List<MappedByteBuffer>	buffers )
+	{
+		for ( MappedByteBuffer buffer: buffers ){
+
+			unmap( buffer );
+		}
+	}
+
+	private void
+	unmap(
+		MappedByteBuffer	buffer )
+	{
+		if ( unmap_disabled ){
+
+			return;
+		}
+
+		try{
+			if ( unmap_target != null ){
+
+				unmap_method.invoke( unmap_target, buffer );
+
+			}else{
+
+				Object	cleaner = Class.forName( "sun.nio.ch.DirectBuffer" ).getMethod( "cleaner" ).invoke( buffer );
+
+				if ( cleaner != null ){
+
+					unmap_method.invoke( cleaner );
+				}
+			}
+		}catch( Throwable e ){
+
+				// leave it to the garbage collector from now on
+
+			unmap_disabled = true;
+
+			try{
+				this_mon.enter();
+
+				unmap_fail_count++;
+
+			}finally{
+
+				this_mon.exit();
+			}
+
+			Debug.out( "Unmap of mapped region failed, explicit unmapping disabled", e );
+
+			if ( Constants.isWindows ){
+
+				releaseAll();
+			}
+		}
+	}
+
+	void
+	generateEvidence(
+		IndentWriter	writer )
+	{
+		writer.println( "FMFile Mapped Regions" );
+
+		try{
+			writer.indent();
+
+			try{
+				this_mon.enter();
+
+				writer.println(
+					"max=" + DisplayFormatters.formatByteCountToKiBEtc( max_mapped_bytes ) +
+					", mapped=" + DisplayFormatters.formatByteCountToKiBEtc( mapped_bytes ) +
+					", windows=" + windows.size() + ", hits=" + hit_count + ", maps=" + map_count +
+					", evictions=" + evict_count + ", fails=" + fail_count +
+					", unmap=" + ( unmap_disabled?( "disabled (" + unmap_fail_count + ")" ):"ok" ));
+
+			}finally{
+
+				this_mon.exit();
+			}
+		}finally{
+
+			writer.exdent();
+		}
+	}
+
+	private static class
+	Window
+	{
+		final FMFileImpl		file;
+		final FileChannel		channel;
+		final long				index;
+		final MappedByteBuffer	buffer;
+
+			// readers currently copying out of the window and whether it has left the pool,
+			// both under the pool's monitor
+
+		int						refs;
+		boolean					retired;
+
+		Window(
+			FMFileImpl			_file,
+			FileChannel			_channel,
+			long				_index,
+			MappedByteBuffer	_buffer )
+		{
+			file	= _file;
+			channel	= _channel;
+			index	= _index;
+			buffer	= _buffer;
+		}
+
+		@Override
+		public boolean
+		equals(
+			Object	other )
+		{
+			if ( other instanceof Window ){
+
+				Window	o = (Window)other;
+
+					// the channel changes if the file is reopened, in which case old
+					// windows are no longer of interest
+
+				return( file == o.file && channel == o.channel && index == o.index );
+			}
+
+			return( false );
+		}
+
+		@Override
+		public int
+		hashCode()
+		{
+			return( System.identityHashCode( file ) + (int)index );
+		}
+	}
+}
@@ -1922,6 +1922,17 @@ DownloadManagerController
 		getDiskManager().enqueueReadRequest( request, listener );
 	}
 
+	@Override
+	public DirectFileRegion
+	getReadRegion(
+		PEPeer							peer,
+		DiskManagerReadRequest 			request )
+	{
+		DiskManager	dm = getDiskManager();
+
+		return( dm==null?null:dm.getReadRegion( request ));
+	}
+
 	@Override
 	public int
 	activateRequest(
@@ -25,6 +25,7 @@ import java.net.URL;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
@@ -44,6 +45,8 @@ import com.biglybt.core.logging.LogIDs;
 import com.biglybt.core.logging.LogRelation;
 import com.biglybt.core.logging.Logger;
 import com.biglybt.core.peer.PEPeerSource;
+import com.biglybt.core.stats.CoreStats;
+import com.biglybt.core.stats.CoreStatsProvider;
 import com.biglybt.core.torrent.*;
 import com.biglybt.core.tracker.client.TRTrackerAnnouncer;
 import com.biglybt.core.util.*;
@@ -274,8 +277,26 @@ DownloadManagerStateImpl
 		COConfigurationManager.addParameterListener( "Max Uploads Seeding", listener );
 		COConfigurationManager.addParameterListener( "Max Seeds Per Torrent", listener );
 		COConfigurationManager.addParameterListener( "enable.seedingonly.maxuploads", listener );
+
+		CoreStats.registerProvider(
+			Collections.singleton( CoreStats.ST_DOWNLOAD_STATE_LOAD_COUNT ),
+			new CoreStatsProvider()
+			{
+				@Override
+				public void
+				updateStats(
+					Set<String>				types,
+					Map<String, Object>		values )
+				{
+					values.put( CoreStats.ST_DOWNLOAD_STATE_LOAD_COUNT, cached_state_load_count.get());
+				}
+			});
 	}
 
+		// number of downloads whose full state had to be loaded behind a cached summary
+
+	static final AtomicLong	cached_state_load_count = new AtomicLong();
+
 
 	private static final Map					global_state_cache			= new HashMap();
 	private static final ArrayList			global_state_cache_wrappers	= new ArrayList();
@@ -440,7 +461,9 @@ DownloadManagerStateImpl
 
 		throws TOTorrentException
 	{
-		boolean	discard_pieces = state_map.size() > 32;
+			// with a metadata memory budget set piece hashes are only read when needed
+
+		boolean	discard_pieces = state_map.size() > 32 || TorrentUtils.getPieceHashBudget() > 0;
 
 		if ( debug_on ){
 
@@ -463,7 +486,7 @@ DownloadManagerStateImpl
 					FileUtil.log("    saved state 1: got cached state" );
 				}
 						
-				CachedStateWrapper wrapper = new CachedStateWrapper( download_manager, torrent_file, torrent_hash, cached_state, inactive );
+				CachedStateWrapper wrapper = new CachedStateWrapper( download_manager, torrent_file, torrent_hash, cached_state, inactive || TorrentUtils.getPieceHashBudget() > 0 );
 
 				global_state_cache_wrappers.add( wrapper );
 
@@ -4478,6 +4501,8 @@ DownloadManagerStateImpl
 							
 							delegate = loadRealState();
 
+							cached_state_load_count.incrementAndGet();
+
 							if ( discard_fluff ){
 
 								delegate.setDiscardFluff( discard_fluff );
@@ -0,0 +1,1317 @@
+/*
+ * Copyright (C) Bigly Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+
+package com.biglybt.core.global.impl;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.zip.CRC32;
+
+import com.biglybt.core.util.*;
+
+/**
+ * Persistence of the download list as downloads.config plus an append-only journal of the
+ * entries that have changed since it was written. Saves only append records for the downloads
+ * the caller reports as changed (and whose encoding differs from what was last persisted), the
+ * full file is rewritten (compacted) when the journal grows beyond the size of the base file or
+ * when the journal can't be trusted.
+ * <p>
+ * Records are length and CRC prefixed and the journal starts with a header carrying the
+ * generation of the base file it applies to. A torn write at the end of the journal is
+ * ignored on load, a journal left over from before a compaction (generation mismatch) is
+ * discarded.
+ * <p>
+ * downloads.config itself stays a single bencoded map. The journal is folded into it on
+ * close and on an explicit state save (e.g. before a backup), backups skip the journal.
+ * Older versions only read downloads.config so changes still in the journal after a crash
+ * are lost to them.
+ */
+
+class
+GlobalManagerDownloadsJournal
+{
+	static final String	CONFIG_FILE		= "downloads.config";
+	static final String	JOURNAL_FILE	= "downloads.config.journal";
+
+	private static final String	KEY_GENERATION	= "journal_gen";
+	private static final String	KEY_DOWNLOADS	= "downloads";
+	private static final String	KEY_PAUSE_DATA	= "pause_data";
+
+	private static final byte[]	KEY_TORRENT_HASH	= { 't','o','r','r','e','n','t','_','h','a','s','h' };
+
+	private static final byte	RT_HEADER	= 1;
+	private static final byte	RT_PUT		= 2;
+	private static final byte	RT_REMOVE	= 3;
+	private static final byte	RT_PAUSE	= 4;
+
+	private static final int	MAX_RECORD_SIZE		= 16*1024*1024;
+	private static final long	MIN_COMPACT_SIZE	= 1024*1024;
+
+	private final File		journal_file;
+
+	private long			generation;
+
+	private boolean			journal_valid;
+	private long			journal_size;
+	private long			base_size;
+
+		// digests of what has been persisted for each download, null until known
+
+	private Map<HashWrapper,HashWrapper>	persisted;
+	private HashWrapper						persisted_pause;
+
+	private long	stats_appends;
+	private long	stats_records;
+	private long	stats_compactions;
+
+	GlobalManagerDownloadsJournal()
+	{
+		journal_file = FileUtil.getUserFile( JOURNAL_FILE );
+	}
+
+		/**
+		 * Reads downloads.config and replays the journal over it. The base file is scanned for
+		 * the extent of each download entry and entries are only decoded as the caller iterates,
+		 * as are journal entries. If the scan fails the file is read the usual way so that the
+		 * .bak and recovery handling still applies.
+		 */
+
+	LoadResult
+	load()
+	{
+		persisted = new HashMap<>();
+
+		File	base_file = FileUtil.getUserFile( CONFIG_FILE );
+
+		base_size	= base_file.length();
+
+		Base	base = scanBase( base_file );
+
+		if ( base == null ){
+
+			Map	map = FileUtil.readResilientConfigFile( CONFIG_FILE );
+
+			base = new Base( map );
+
+			base_size = base_file.length();
+		}
+
+		generation = base.generation;
+
+		if ( !base.has_downloads ){
+
+				// pre 2.0.3.0 format, no journal can apply
+
+			journal_valid = false;
+
+			return( new LoadResult( base, base.pause_data, new LinkedHashMap<HashWrapper,byte[]>(), new HashSet<HashWrapper>()));
+		}
+
+		LinkedHashMap<HashWrapper,byte[]>	puts 	= new LinkedHashMap<>();
+		Set<HashWrapper>					removes	= new HashSet<>();
+
+		byte[][]	pause = { null };
+
+		journal_valid = replay( puts, removes, pause );
+
+		List	pause_data = base.pause_data;
+
+		if ( pause[0] != null ){
+
+			try{
+				pause_data = (List)BDecoder.decode( pause[0] ).get( KEY_PAUSE_DATA );
+
+			}catch( Throwable e ){
+
+				Debug.out( e );
+			}
+		}
+
+		try{
+			persisted_pause = new HashWrapper( new SHA1Hasher().calculateHash( encodePauseData( pause_data )));
+
+		}catch( Throwable e ){
+		}
+
+		return( new LoadResult( base, pause_data, puts, removes ));
+	}
+
+		/**
+		 * Walks the top level of the file without decoding the download entries, just noting
+		 * where each starts and ends and its torrent hash
+		 * @return null if the file is missing or doesn't scan, the caller falls back to a full read
+		 */
+
+	private static Base
+	scanBase(
+		File		file )
+	{
+		long	length = file.length();
+
+		if ( length <= 1 || length > Integer.MAX_VALUE ){
+
+			return( null );
+		}
+
+		try{
+			byte[]	data = FileUtil.readFileAsByteArray( file );
+
+			ByteBuffer	buffer = ByteBuffer.wrap( data );
+
+			Scanner	scanner = new Scanner();
+
+			Base	base = new Base( data );
+
+			if ( data[0] != 'd' ){
+
+				return( null );
+			}
+
+			int	pos = 1;
+
+			while( true ){
+
+				if ( pos >= data.length ){
+
+					return( null );
+				}
+
+				if ( data[pos] == 'e' ){
+
+					pos++;
+
+					break;
+				}
+
+				pos = scan( buffer, pos, scanner );
+
+				String	key = scanner.bytes==null?null:new String( scanner.bytes, Constants.BYTE_ENCODING_CHARSET );
+
+				if ( key == null ){
+
+					return( null );
+				}
+
+				if ( key.equals( KEY_DOWNLOADS )){
+
+					if ( pos >= data.length || data[pos++] != 'l' ){
+
+						return( null );
+					}
+
+					while( true ){
+
+						if ( pos >= data.length ){
+
+							return( null );
+						}
+
+						if ( data[pos] == 'e' ){
+
+							pos++;
+
+							break;
+						}
+
+						if ( data[pos] != 'd' ){
+
+							return( null );
+						}
+
+						int	start = pos;
+
+						pos = scan( buffer, pos, scanner );
+
+						base.addEntry( start, pos, scanner.hash );
+					}
+
+					base.has_downloads = true;
+
+				}else{
+
+					int	start = pos;
+
+					pos = scan( buffer, pos, scanner );
+
+					if ( key.equals( KEY_GENERATION )){
+
+						base.generation = scanner.value;
+
+					}else if ( key.equals( KEY_PAUSE_DATA )){
+
+							// small, decode it wrapped up as a map
+
+						ByteArrayOutputStream	baos = new ByteArrayOutputStream( pos - start + 16 );
+
+						baos.write( "d10:pause_data".getBytes( Constants.BYTE_ENCODING_CHARSET ));
+						baos.write( data, start, pos - start );
+						baos.write( 'e' );
+
+						base.pause_data = (List)BDecoder.decode( baos.toByteArray()).get( KEY_PAUSE_DATA );
+					}
+				}
+			}
+
+				// trailing junk or the pre 2.0.3.0 format, let the full read deal with it
+
+			if ( pos != data.length || !base.has_downloads ){
+
+				return( null );
+			}
+
+			return( base );
+
+		}catch( Throwable e ){
+
+			Debug.out( "Failed to scan " + CONFIG_FILE + ", reading in full", e );
+
+			return( null );
+		}
+	}
+
+	private static int
+	scan(
+		ByteBuffer		buffer,
+		int				pos,
+		Scanner			scanner )
+
+		throws IOException
+	{
+		buffer.position( pos );
+
+		scanner.reset();
+
+		BDecoder.visit( buffer, scanner );
+
+		return( buffer.position());
+	}
+
+	private static byte[]
+	encodePauseData(
+		List	pause_data )
+
+		throws IOException
+	{
+		Map	pause_map = new HashMap();
+
+		if ( pause_data != null ){
+
+			pause_map.put( KEY_PAUSE_DATA, pause_data );
+		}
+
+		return( BEncoder.encode( pause_map ));
+	}
+
+	private boolean
+	replay(
+		LinkedHashMap<HashWrapper,byte[]>	puts,
+		Set<HashWrapper>					removes,
+		byte[][]							pause )
+	{
+		if ( !journal_file.exists()){
+
+			journal_size = 0;
+
+			return( false );
+		}
+
+		long	valid_length = 0;
+
+		try{
+			DataInputStream	dis = new DataInputStream( new BufferedInputStream( FileUtil.newFileInputStream( journal_file ), 64*1024 ));
+
+			try{
+				boolean	first = true;
+
+				while( true ){
+
+					Record	record = readRecord( dis );
+
+					if ( record == null ){
+
+						break;
+					}
+
+					if ( first ){
+
+						first = false;
+
+						if ( 	record.type != RT_HEADER ||
+								record.data.length != 8 ||
+								new DataInputStream( new ByteArrayInputStream( record.data )).readLong() != generation ){
+
+								// journal belongs to a different base file (e.g. compaction was interrupted
+								// or the base was restored from .bak) so it can't be applied
+
+							return( false );
+						}
+					}else{
+
+						HashWrapper	hw = record.key.length==0?null:new HashWrapper( record.key );
+
+						switch( record.type ){
+
+							case RT_PUT:{
+
+								removes.remove( hw );
+
+									// re-insert so journal order is retained for new downloads
+
+								puts.remove( hw );
+
+								puts.put( hw, record.data );
+
+								break;
+							}
+							case RT_REMOVE:{
+
+								puts.remove( hw );
+
+								removes.add( hw );
+
+								break;
+							}
+							case RT_PAUSE:{
+
+								pause[0] = record.data;
+
+								break;
+							}
+						}
+					}
+
+					valid_length += 8 + record.length;
+				}
+			}finally{
+
+				dis.close();
+			}
+		}catch( Throwable e ){
+
+			Debug.out( "Failed to read " + JOURNAL_FILE, e );
+		}
+
+		journal_size = valid_length;
+
+			// if there's junk at the end (torn write) then don't append after it, compact instead
+
+		return( valid_length > 0 && valid_length == journal_file.length());
+	}
+
+	private static Record
+	readRecord(
+		DataInputStream		dis )
+
+		throws IOException
+	{
+		int		length;
+		int		crc;
+		byte[]	body;
+
+		try{
+			length = dis.readInt();
+
+			if ( length < 3 || length > MAX_RECORD_SIZE ){
+
+				return( null );
+			}
+
+			crc = dis.readInt();
+
+			body = new byte[length];
+
+			dis.readFully( body );
+
+		}catch( EOFException e ){
+
+				// end of journal or a torn final record
+
+			return( null );
+		}
+
+		CRC32	crc32 = new CRC32();
+
+		crc32.update( body );
+
+		if ((int)crc32.getValue() != crc ){
+
+			return( null );
+		}
+
+		int	key_length = (( body[1]&0xff ) << 8 ) | ( body[2]&0xff );
+
+		if ( 3 + key_length > length ){
+
+			return( null );
+		}
+
+		Record	record = new Record();
+
+		record.length	= length;
+		record.type		= body[0];
+		record.key		= Arrays.copyOfRange( body, 3, 3+key_length );
+		record.data		= Arrays.copyOfRange( body, 3+key_length, length );
+
+		return( record );
+	}
+
+	private static void
+	writeRecord(
+		DataOutputStream	dos,
+		byte				type,
+		byte[]				key,
+		byte[]				data )
+
+		throws IOException
+	{
+		int	length = 3 + key.length + data.length;
+
+		byte[]	body = new byte[length];
+
+		body[0] = type;
+		body[1]	= (byte)( key.length >> 8 );
+		body[2]	= (byte)key.length;
+
+		System.arraycopy( key, 0, body, 3, key.length );
+		System.arraycopy( data, 0, body, 3+key.length, data.length );
+
+		CRC32	crc32 = new CRC32();
+
+		crc32.update( body );
+
+		dos.writeInt( length );
+		dos.writeInt((int)crc32.getValue());
+		dos.write( body );
+	}
+
+		/**
+		 * @return true if the next save has to be a full one, e.g. the journal is too large or
+		 * isn't valid
+		 */
+
+	boolean
+	isFullSaveRequired()
+	{
+		return( !journal_valid || persisted == null || journal_size > Math.max( MIN_COMPACT_SIZE, base_size ));
+	}
+
+		/**
+		 * Saves the complete list, appending the entries that differ from what was persisted
+		 * unless a full rewrite is needed
+		 * @param downloads		exported download maps in position order
+		 * @param pause_data	null if nothing is paused
+		 * @param compact		force a full rewrite
+		 */
+
+	void
+	save(
+		List<Map>		downloads,
+		List			pause_data,
+		boolean			compact )
+	{
+		if ( !compact && !isFullSaveRequired()){
+
+			List<HashWrapper>	keys = new ArrayList<>( downloads.size());
+
+			for ( Map dm_map: downloads ){
+
+				byte[]	hash = (byte[])dm_map.get( "torrent_hash" );
+
+				if ( hash == null ){
+
+					keys = null;
+
+					break;
+				}
+
+				keys.add( new HashWrapper( hash ));
+			}
+
+			if ( keys != null && saveChanges( keys, downloads, pause_data )){
+
+				return;
+			}
+		}
+
+		writeFull( downloads, pause_data );
+	}
+
+		/**
+		 * Appends records for the changed downloads whose encoding differs from what was persisted
+		 * and removals for persisted downloads no longer listed
+		 * @param keys			torrent hashes of all current downloads
+		 * @param changed		exported maps of the downloads that may have changed
+		 * @param pause_data	null if nothing is paused
+		 * @return false if nothing was saved and a full save is needed
+		 */
+
+	boolean
+	saveChanges(
+		List<HashWrapper>	keys,
+		List<Map>			changed,
+		List				pause_data )
+	{
+		if ( isFullSaveRequired()){
+
+			return( false );
+		}
+
+		try{
+			SHA1Hasher	hasher = new SHA1Hasher();
+
+			ByteArrayOutputStream	baos = new ByteArrayOutputStream( 16*1024 );
+
+			DataOutputStream	dos = new DataOutputStream( baos );
+
+			int	records = 0;
+
+			List<HashWrapper>	updated_keys	= new ArrayList<>( changed.size());
+			List<HashWrapper>	updated_digests	= new ArrayList<>( changed.size());
+
+			for ( Map dm_map: changed ){
+
+				byte[]	hash = (byte[])dm_map.get( "torrent_hash" );
+
+				if ( hash == null || hash.length > 0xffff ){
+
+						// can't key it in the journal
+
+					return( false );
+				}
+
+				HashWrapper	hw = new HashWrapper( hash );
+
+				byte[]	bytes = BEncoder.encode( dm_map );
+
+				HashWrapper	digest = new HashWrapper( hasher.calculateHash( bytes ));
+
+				if ( !digest.equals( persisted.get( hw ))){
+
+					writeRecord( dos, RT_PUT, hash, bytes );
+
+					records++;
+
+					updated_keys.add( hw );
+					updated_digests.add( digest );
+				}
+			}
+
+			List<HashWrapper>	removed = getRemoved( keys );
+
+			for ( HashWrapper hw: removed ){
+
+				writeRecord( dos, RT_REMOVE, hw.getBytes(), new byte[0] );
+
+				records++;
+			}
+
+			byte[]		pause_encoded	= encodePauseData( pause_data );
+			HashWrapper	pause_digest	= new HashWrapper( hasher.calculateHash( pause_encoded ));
+
+			if ( !pause_digest.equals( persisted_pause )){
+
+				writeRecord( dos, RT_PAUSE, new byte[0], pause_encoded );
+
+				records++;
+			}
+
+			if ( records > 0 ){
+
+				dos.flush();
+
+				append( baos.toByteArray());
+
+				stats_appends++;
+				stats_records += records;
+			}
+
+			for ( int i=0;i<updated_keys.size();i++){
+
+				persisted.put( updated_keys.get(i), updated_digests.get(i));
+			}
+
+			for ( HashWrapper hw: removed ){
+
+				persisted.remove( hw );
+			}
+
+			persisted_pause	= pause_digest;
+
+			return( true );
+
+		}catch( Throwable e ){
+
+			Debug.out( "Failed to append to " + JOURNAL_FILE + ", compacting", e );
+
+			journal_valid	= false;
+			persisted		= null;
+
+			return( false );
+		}
+	}
+
+	private List<HashWrapper>
+	getRemoved(
+		List<HashWrapper>	keys )
+	{
+			// usual case is the same set of downloads, which needs no allocation to check
+
+		if ( keys.size() == persisted.size()){
+
+			boolean	same = true;
+
+			for ( HashWrapper hw: keys ){
+
+				if ( !persisted.containsKey( hw )){
+
+					same = false;
+
+					break;
+				}
+			}
+
+			if ( same ){
+
+				return( Collections.emptyList());
+			}
+		}
+
+		Set<HashWrapper>	current = new HashSet<>( keys );
+
+		List<HashWrapper>	removed = new ArrayList<>();
+
+		for ( HashWrapper hw: persisted.keySet()){
+
+			if ( !current.contains( hw )){
+
+				removed.add( hw );
+			}
+		}
+
+		return( removed );
+	}
+
+	private void
+	append(
+		byte[]		bytes )
+
+		throws IOException
+	{
+		RandomAccessFile	raf = new RandomAccessFile( journal_file, "rw" );
+
+		try{
+				// trim anything beyond the last good record
+
+			raf.setLength( journal_size );
+
+			raf.seek( journal_size );
+
+			raf.write( bytes );
+
+			raf.getFD().sync();
+
+			journal_size += bytes.length;
+
+		}finally{
+
+			raf.close();
+		}
+	}
+
+	private void
+	writeFull(
+		List<Map>						downloads,
+		List							pause_data )
+	{
+			// base gets the next generation first, any crash before the journal is reset leaves
+			// a journal for the old generation which will then be ignored
+
+		generation++;
+
+		Map	map = new HashMap();
+
+		map.put( KEY_DOWNLOADS, downloads );
+
+		if ( pause_data != null ){
+
+			map.put( KEY_PAUSE_DATA, pause_data );
+		}
+
+		map.put( KEY_GENERATION, new Long( generation ));
+
+		FileUtil.writeResilientConfigFile( CONFIG_FILE, map );
+
+		base_size = FileUtil.getUserFile( CONFIG_FILE ).length();
+
+		stats_compactions++;
+
+			// journalling can start from here as long as every download can be keyed
+
+		Map<HashWrapper,HashWrapper>	digests 		= new HashMap<>( downloads.size()*2 );
+		HashWrapper						pause_digest	= null;
+
+		try{
+			SHA1Hasher	hasher = new SHA1Hasher();
+
+			for ( Map dm_map: downloads ){
+
+				byte[]	hash = (byte[])dm_map.get( "torrent_hash" );
+
+				if ( hash == null || hash.length > 0xffff ){
+
+					digests = null;
+
+					break;
+				}
+
+				digests.put( new HashWrapper( hash ), new HashWrapper( hasher.calculateHash( BEncoder.encode( dm_map ))));
+			}
+
+			pause_digest = new HashWrapper( hasher.calculateHash( encodePauseData( pause_data )));
+
+		}catch( Throwable e ){
+
+			Debug.out( e );
+
+			digests = null;
+		}
+
+		try{
+			ByteArrayOutputStream	baos = new ByteArrayOutputStream( 64 );
+
+			DataOutputStream	dos = new DataOutputStream( baos );
+
+			ByteArrayOutputStream	gen_baos = new ByteArrayOutputStream( 8 );
+
+			new DataOutputStream( gen_baos ).writeLong( generation );
+
+			writeRecord( dos, RT_HEADER, new byte[0], gen_baos.toByteArray());
+
+			dos.flush();
+
+			journal_size = 0;
+
+			append( baos.toByteArray());
+
+			journal_valid	= true;
+			persisted		= digests;
+			persisted_pause	= pause_digest;
+
+		}catch( Throwable e ){
+
+			Debug.out( "Failed to reset " + JOURNAL_FILE, e );
+
+			journal_valid	= false;
+			persisted		= null;
+		}
+	}
+
+	String
+	getStatus()
+	{
+		return( "gen=" + generation + ", journal=" + DisplayFormatters.formatByteCountToKiBEtc( journal_size ) +
+				", base=" + DisplayFormatters.formatByteCountToKiBEtc( base_size ) + ", appends=" + stats_appends +
+				", records=" + stats_records + ", compactions=" + stats_compactions );
+	}
+
+	private static class
+	Record
+	{
+		int			length;
+		byte		type;
+		byte[]		key;
+		byte[]		data;
+	}
+
+		/**
+		 * downloads.config entries, either as extents of the raw file (scanned) or as already
+		 * decoded maps (full read)
+		 */
+
+	private static class
+	Base
+	{
+		private final byte[]	data;
+		private final List		maps;
+
+		private int				count;
+		private int[]			starts;
+		private int[]			ends;
+		private HashWrapper[]	hashes;
+
+		long		generation;
+		List		pause_data;
+		boolean		has_downloads;
+
+		Base(
+			byte[]		_data )
+		{
+			data	= _data;
+			maps	= null;
+
+			starts	= new int[64];
+			ends	= new int[64];
+			hashes	= new HashWrapper[64];
+		}
+
+		Base(
+			Map			map )
+		{
+			data	= null;
+
+			Long	l_gen = (Long)map.get( KEY_GENERATION );
+
+			generation	= l_gen==null?0:l_gen.longValue();
+			pause_data	= (List)map.get( KEY_PAUSE_DATA );
+
+			List	list = (List)map.get( KEY_DOWNLOADS );
+
+			if ( list == null ){
+
+				list = new ArrayList( map.values());
+
+			}else{
+
+				has_downloads = true;
+			}
+
+			maps	= list;
+			count	= list.size();
+			hashes	= new HashWrapper[count];
+
+			for ( int i=0;i<count;i++){
+
+				byte[]	hash = (byte[])((Map)list.get(i)).get( "torrent_hash" );
+
+				hashes[i] = hash==null?null:new HashWrapper( hash );
+			}
+		}
+
+		void
+		addEntry(
+			int			start,
+			int			end,
+			byte[]		hash )
+		{
+			if ( count == starts.length ){
+
+				starts	= Arrays.copyOf( starts, count*2 );
+				ends	= Arrays.copyOf( ends, count*2 );
+				hashes	= Arrays.copyOf( hashes, count*2 );
+			}
+
+			starts[count]	= start;
+			ends[count]		= end;
+			hashes[count]	= hash==null?null:new HashWrapper( hash );
+
+			count++;
+		}
+
+		HashWrapper
+		getHash(
+			int		index )
+		{
+			return( hashes[index] );
+		}
+
+		boolean
+		isEncoded()
+		{
+			return( data != null );
+		}
+
+		Map
+		getMap(
+			int		index )
+
+			throws IOException
+		{
+			if ( data == null ){
+
+				Map	map = (Map)maps.get( index );
+
+					// release as we go
+
+				maps.set( index, null );
+
+				return( map );
+			}
+
+			return( BDecoder.decode( data, starts[index], ends[index] - starts[index] ));
+		}
+
+		ByteBuffer
+		getEncoded(
+			int		index )
+		{
+			return( ByteBuffer.wrap( data, starts[index], ends[index] - starts[index] ));
+		}
+	}
+
+		/**
+		 * Picks out the top level byte string or integer of a value, or the torrent hash of a
+		 * download entry
+		 */
+
+	private static class
+	Scanner
+		implements BDecoder.Visitor
+	{
+		private int			depth;
+		private boolean		hash_next;
+
+		byte[]		bytes;
+		long		value;
+		byte[]		hash;
+
+		void
+		reset()
+		{
+			depth		= 0;
+			hash_next	= false;
+			bytes		= null;
+			value		= 0;
+			hash		= null;
+		}
+
+		@Override
+		public void
+		mapStart()
+		{
+			depth++;
+
+			hash_next = false;
+		}
+
+		@Override
+		public void
+		mapKey(
+			ByteBuffer	key )
+		{
+			hash_next = depth == 1 && matches( key, KEY_TORRENT_HASH );
+		}
+
+		@Override
+		public void
+		mapEnd()
+		{
+			depth--;
+		}
+
+		@Override
+		public void
+		listStart()
+		{
+			depth++;
+
+			hash_next = false;
+		}
+
+		@Override
+		public void
+		listEnd()
+		{
+			depth--;
+		}
+
+		@Override
+		public void
+		valueLong(
+			long		v )
+		{
+			if ( depth == 0 ){
+
+				value = v;
+			}
+
+			hash_next = false;
+		}
+
+		@Override
+		public void
+		valueBytes(
+			ByteBuffer	v )
+		{
+			if ( depth == 0 ){
+
+				bytes = copy( v );
+
+			}else if ( hash_next ){
+
+				hash = copy( v );
+			}
+
+			hash_next = false;
+		}
+
+		private static boolean
+		matches(
+			ByteBuffer	buffer,
+			byte[]		bytes )
+		{
+			if ( buffer.remaining() != bytes.length ){
+
+				return( false );
+			}
+
+			int	pos = buffer.position();
+
+			for ( int i=0;i<bytes.length;i++){
+
+				if ( buffer.get( pos+i ) != bytes[i] ){
+
+					return( false );
+				}
+			}
+
+			return( true );
+		}
+
+		private static byte[]
+		copy(
+			ByteBuffer	buffer )
+		{
+			byte[]	result = new byte[buffer.remaining()];
+
+			buffer.duplicate().get( result );
+
+			return( result );
+		}
+	}
+
+		/**
+		 * The downloads to load in order: base entries with their journal updates applied and
+		 * removed ones skipped, then downloads only present in the journal
+		 */
+
+	class
+	LoadResult
+		implements Iterator<Map>
+	{
+		private final Base								base;
+		private final List								pause_data;
+		private final LinkedHashMap<HashWrapper,byte[]>	puts;
+		private final Set<HashWrapper>					removes;
+
+		private final int	count;
+
+		private int							base_pos;
+		private Iterator<byte[]>			puts_it;
+		private Map							next;
+
+		private final SHA1Hasher			hasher	= new SHA1Hasher();
+
+		LoadResult(
+			Base								_base,
+			List								_pause_data,
+			LinkedHashMap<HashWrapper,byte[]>	_puts,
+			Set<HashWrapper>					_removes )
+		{
+			base			= _base;
+			pause_data		= _pause_data;
+			puts			= _puts;
+			removes			= _removes;
+
+			int	num 		= base.count + puts.size();
+
+			for ( int i=0;i<base.count;i++){
+
+				HashWrapper	hw = base.getHash( i );
+
+				if ( hw != null && ( removes.contains( hw ) || puts.containsKey( hw ))){
+
+					num--;
+				}
+			}
+
+			count = num;
+		}
+
+		int
+		getCount()
+		{
+			return( count );
+		}
+
+		List
+		getPauseData()
+		{
+			return( pause_data );
+		}
+
+		@Override
+		public boolean
+		hasNext()
+		{
+			if ( next == null ){
+
+				next = getNext();
+			}
+
+			return( next != null );
+		}
+
+		@Override
+		public Map
+		next()
+		{
+			if ( !hasNext()){
+
+				throw( new NoSuchElementException());
+			}
+
+			Map	result = next;
+
+			next = null;
+
+			return( result );
+		}
+
+		private Map
+		getNext()
+		{
+			while( base_pos < base.count ){
+
+				int	index = base_pos++;
+
+				HashWrapper	hw = base.getHash( index );
+
+				if ( hw != null ){
+
+					if ( removes.contains( hw )){
+
+						continue;
+					}
+
+					byte[]	update = puts.remove( hw );
+
+					if ( update != null ){
+
+						Map	decoded = decode( hw, update );
+
+						if ( decoded != null ){
+
+							return( decoded );
+						}
+					}
+				}
+
+				Map	map;
+
+				try{
+					map = base.getMap( index );
+
+				}catch( Throwable e ){
+
+					Debug.out( e );
+
+					continue;
+				}
+
+				if ( hw != null ){
+
+					try{
+						if ( base.isEncoded()){
+
+								// the file's bytes are the entry's encoding
+
+							persisted.put( hw, new HashWrapper( hasher.calculateHash( base.getEncoded( index ))));
+
+						}else{
+
+							recordPersisted( hw, BEncoder.encode( map ));
+						}
+					}catch( Throwable e ){
+					}
+				}
+
+				return( map );
+			}
+
+			if ( puts_it == null ){
+
+				puts_it = puts.values().iterator();
+			}
+
+			while( puts_it.hasNext()){
+
+				byte[]	data = puts_it.next();
+
+				puts_it.remove();
+
+				Map	decoded = decode( null, data );
+
+				if ( decoded != null ){
+
+					return( decoded );
+				}
+			}
+
+			return( null );
+		}
+
+		private Map
+		decode(
+			HashWrapper		hw,
+			byte[]			data )
+		{
+			try{
+				Map	map = BDecoder.decode( data );
+
+				if ( hw == null ){
+
+					byte[] hash = (byte[])map.get( "torrent_hash" );
+
+					if ( hash != null ){
+
+						hw = new HashWrapper( hash );
+					}
+				}
+
+				if ( hw != null ){
+
+					recordPersisted( hw, data );
+				}
+
+				return( map );
+
+			}catch( Throwable e ){
+
+				Debug.out( e );
+
+				return( null );
+			}
+		}
+
+		private void
+		recordPersisted(
+			HashWrapper		hw,
+			byte[]			data )
+		{
+			persisted.put( hw, new HashWrapper( hasher.calculateHash( data )));
+		}
+
+		@Override
+		public void
+		remove()
+		{
+			throw( new UnsupportedOperationException());
+		}
+	}
+}
@@ -318,6 +318,8 @@ public class GlobalManagerImpl
     // Do *NOT* change this - only the constructor should set it once.
 	private final boolean cripple_downloads_config;
 
+	private final GlobalManagerDownloadsJournal	downloads_journal = new GlobalManagerDownloadsJournal();
+
 	private final TRTrackerScraper 			trackerScraper;
 	private GlobalManagerStatsWriter 	stats_writer;
 	private GlobalManagerHostSupport	host_support;
@@ -2197,11 +2199,11 @@ public class GlobalManagerImpl
 
 		  stopAllDownloads( true, new GlobalMangerProgressListener.GlobalMangerProgressAdapter( listener, 0, 49 ));
 
-		  saveDownloads( false, new GlobalMangerProgressListener.GlobalMangerProgressAdapter( listener, 50, 100 ) );
+		  saveDownloads( false, true, new GlobalMangerProgressListener.GlobalMangerProgressAdapter( listener, 50, 100 ) );
 
 	  }else{
 
-		  saveDownloads( false, new GlobalMangerProgressListener.GlobalMangerProgressAdapter( listener, 0, 49 ) );
+		  saveDownloads( false, true, new GlobalMangerProgressListener.GlobalMangerProgressAdapter( listener, 0, 49 ) );
 
 		  stopAllDownloads( true, new GlobalMangerProgressListener.GlobalMangerProgressAdapter( listener, 50, 100 ) );
 	  }
@@ -2950,26 +2952,17 @@ public class GlobalManagerImpl
 				  progress_listener.reportCurrentTask(MessageText.getString("splash.loadingTorrents"));
 			  }
 
-			  Map map = FileUtil.readResilientConfigFile("downloads.config");
+				  // downloads.config with any journalled changes applied, entries are decoded as
+				  // we iterate rather than up front
+
+			  GlobalManagerDownloadsJournal.LoadResult iter = downloads_journal.load();
 
-			  ArrayList pause_data = (ArrayList)map.get( "pause_data" );
+			  List pause_data = iter.getPauseData();
 
 			  boolean debug = Boolean.getBoolean("debug");
 
-			  Iterator iter = null;
-			  //v2.0.3.0+ vs older mode
-			  List downloads = (List) map.get("downloads");
-			  int nbDownloads;
-			  if (downloads == null) {
-				  //No downloads entry, then use the old way
-				  iter = map.values().iterator();
-				  nbDownloads = map.size();
-			  }
-			  else {
-				  //New way, downloads stored in a list
-				  iter = downloads.iterator();
-				  nbDownloads = downloads.size();
-			  }
+			  int nbDownloads = iter.getCount();
+
 			  int currentDownload = 0;
 			  while (iter.hasNext()) {
 				  currentDownload++;
@@ -3074,7 +3067,7 @@ public class GlobalManagerImpl
 			  // Someone could have mucked with the config file and set weird positions,
 			  // so fix them up.
 			  fixUpDownloadManagerPositions();
-			  Logger.log(new LogEvent(LOGID, "Loaded " + managers_list_cow.length + " torrents"));
+			  Logger.log(new LogEvent(LOGID, "Loaded " + managers_list_cow.length + " torrents (" + downloads_journal.getStatus() + ")"));
 
 		  }catch( Throwable e ){
 			  // there's been problems with corrupted download files stopping AZ from starting
@@ -3116,12 +3109,23 @@ public class GlobalManagerImpl
   public void
   saveState()
   {
-	  saveDownloads( false,null );
+		// explicit sync (e.g. prior to a backup) so fold the journal into downloads.config
+
+	  saveDownloads( false, true, null );
+  }
+
+  protected void
+  saveDownloads(
+	boolean							interim,
+	GlobalMangerProgressListener 	listener_maybe_null  )
+  {
+	  saveDownloads( interim, false, listener_maybe_null );
   }
 
   protected void
   saveDownloads(
 	boolean							interim,
+	boolean							compact,
 	GlobalMangerProgressListener 	listener_maybe_null  )
   {
 	  if (!loadingComplete) {
@@ -3156,36 +3160,12 @@ public class GlobalManagerImpl
 			  Logger.log(new LogEvent(LOGID, "Saving Download List ("	+ managers_temp.length + " items)"));
 		  }
 
-		  Map map = new HashMap();
-
-		  int nbDownloads = managers_temp.length;
-
-		  List<Map> list = new ArrayList<>(nbDownloads);
-
-		  String prefix = MessageText.getString( "label.saving.downloads" );
-		  
-		  for ( int i=0;i<nbDownloads;i++){
-			  
-			  DownloadManager dm = managers_temp[i];
-
-			  if ( listener_maybe_null != null ){
-				
-				  listener_maybe_null.reportCurrentTask( prefix + ": " + dm.getDisplayName());
-				  
-				  listener_maybe_null.reportPercent((i*100)/nbDownloads );
-			  }
-			  
-			  Map dmMap = exportDownloadStateToMapSupport( dm, true, interim );
-
-			  list.add(dmMap);
-		  }
-
-		  map.put("downloads", list);
+		  List pause_data = null;
 
 		  //save pause/resume state
 		  try {  paused_state_mon.enter();
 			  if( !paused_state.isEmpty() ) {
-				  ArrayList pause_data = new ArrayList();
+				  pause_data = new ArrayList();
 				  for ( Map.Entry<HashWrapper,PauseState> entry: paused_state.entrySet()){
 	
 					  HashWrapper 	hash 	= entry.getKey();
@@ -3199,14 +3179,122 @@ public class GlobalManagerImpl
 	
 					  pause_data.add( m );
 				  }
-				  map.put( "pause_data", pause_data );
 			  }
 		  }
 		  finally {  paused_state_mon.exit();  }
 
+			  // only changed entries are appended to the journal, the full file gets rewritten
+			  // when the journal grows too large and on close so that downloads.config is
+			  // complete for older versions
+
+		  if ( !COConfigurationManager.getBooleanParameter( "downloads.config.journal.enable" )){
+
+			  compact = true;
+		  }
+
+		  if ( 	compact ||
+				downloads_journal.isFullSaveRequired() ||
+				!saveDownloadChanges( managers_temp, interim, pause_data, listener_maybe_null )){
+
+			  int nbDownloads = managers_temp.length;
+
+			  List<Map> list = new ArrayList<>(nbDownloads);
+
+			  String prefix = MessageText.getString( "label.saving.downloads" );
+
+			  for ( int i=0;i<nbDownloads;i++){
+
+				  DownloadManager dm = managers_temp[i];
+
+				  if ( listener_maybe_null != null ){
+
+					  listener_maybe_null.reportCurrentTask( prefix + ": " + dm.getDisplayName());
+
+					  listener_maybe_null.reportPercent((i*100)/nbDownloads );
+				  }
+
+				  dm.saveDownload( interim );
+
+				  getSaveState( dm ).update( dm );
+
+				  list.add( exportDownloadStateToMapSupport( dm, true ));
+			  }
+
+			  downloads_journal.save( list, pause_data, true );
+		  }
+	  }
+  }
+
+  	/**
+  	 * Exports and journals just the downloads whose persisted values have changed since the
+  	 * last save
+  	 * @return false if a full save is needed
+  	 */
+
+  private boolean
+  saveDownloadChanges(
+	DownloadManager[]				managers,
+	boolean							interim,
+	List							pause_data,
+	GlobalMangerProgressListener 	listener_maybe_null )
+  {
+	  int nbDownloads = managers.length;
+
+	  List<HashWrapper>	keys	= new ArrayList<>( nbDownloads );
+	  List<Map>			changed	= new ArrayList<>();
+
+	  String prefix = listener_maybe_null==null?null:MessageText.getString( "label.saving.downloads" );
+
+	  for ( int i=0;i<nbDownloads;i++){
+
+		  DownloadManager dm = managers[i];
+
+		  if ( listener_maybe_null != null ){
+
+			  listener_maybe_null.reportCurrentTask( prefix + ": " + dm.getDisplayName());
+
+			  listener_maybe_null.reportPercent((i*100)/nbDownloads );
+		  }
+
+		  dm.saveDownload( interim );
+
+		  DownloadSaveState save_state = getSaveState( dm );
+
+		  HashWrapper hash = save_state.getHash( dm );
+
+		  if ( hash == null ){
+
+			  return( false );
+		  }
 
-		  FileUtil.writeResilientConfigFile("downloads.config", map );
+		  keys.add( hash );
+
+			  // values are captured before the export so anything changing in between is
+			  // picked up by the next save rather than lost
+
+		  if ( save_state.update( dm )){
+
+			  changed.add( exportDownloadStateToMapSupport( dm, true ));
+		  }
+	  }
+
+	  return( downloads_journal.saveChanges( keys, changed, pause_data ));
+  }
+
+  private static DownloadSaveState
+  getSaveState(
+	DownloadManager		dm )
+  {
+	  DownloadSaveState save_state = (DownloadSaveState)dm.getUserData( SAVE_STATE_KEY );
+
+	  if ( save_state == null ){
+
+		  save_state = new DownloadSaveState();
+
+		  dm.setUserData( SAVE_STATE_KEY, save_state );
 	  }
+
+	  return( save_state );
   }
 
   public DownloadManager
@@ -3402,7 +3490,9 @@ public class GlobalManagerImpl
   exportDownloadStateToMap(
 	  DownloadManager		dm )
   {
-	  return( exportDownloadStateToMapSupport( dm, false, false ));
+	  dm.saveDownload( false );
+
+	  return( exportDownloadStateToMapSupport( dm, false ));
   }
 
   @Override
@@ -3431,11 +3521,44 @@ public class GlobalManagerImpl
 	  return( dm );
   }
 
+  private static int
+  getExportedState(
+	DownloadManager		dm )
+  {
+	  int state = dm.getState();
+
+	  if (state == DownloadManager.STATE_ERROR ){
+
+		  // torrents in error state always come back stopped
+		  // well, since 2203_B11 we remember the error state across restarts so we can continue
+		  // attempting restarts
+
+		  state = DownloadManager.STATE_STOPPED;	// keep stopped rather than error state for the moment for backwards compatibility
+
+	  }else if (	dm.getAssumedComplete() && !dm.isForceStart() &&
+			  state != DownloadManager.STATE_STOPPED) {
+
+		  state = DownloadManager.STATE_QUEUED;
+
+	  }else if (	state != DownloadManager.STATE_STOPPED &&
+			  state != DownloadManager.STATE_QUEUED &&
+			  state != DownloadManager.STATE_WAITING){
+
+		  state = DownloadManager.STATE_WAITING;
+
+	  }
+
+	  return( state );
+  }
+
+  	/**
+  	 * Callers are responsible for dm.saveDownload() first so the file priorities are current
+  	 */
+
   private Map
   exportDownloadStateToMapSupport(
 	DownloadManager 	dm,
-	boolean				internal_export,
-	boolean				interim )
+	boolean				internal_export )
   {
 	  DownloadManagerStats dm_stats = dm.getStats();
 	  Map<String, Object> dmMap = new HashMap<>();
@@ -3460,13 +3583,7 @@ public class GlobalManagerImpl
 	  dmMap.put("maxdl", new Long( dm_stats.getDownloadRateLimitBytesPerSecond() ));
 	  dmMap.put("maxul", new Long( dm_stats.getUploadRateLimitBytesPerSecond() ));
 
-	  int state = dm.getState();
-
-	  if (state == DownloadManager.STATE_ERROR ){
-
-		  // torrents in error state always come back stopped
-		  // well, since 2203_B11 we remember the error state across restarts so we can continue
-		  // attempting restarts
+	  if ( dm.getState() == DownloadManager.STATE_ERROR ){
 
 		  int errorType = dm.getErrorType();
 
@@ -3480,22 +3597,10 @@ public class GlobalManagerImpl
 				  dmMap.put( "errorDetails", errorDetails );
 			  }
 		  }
-		  
-		  state = DownloadManager.STATE_STOPPED;	// keep stopped rather than error state for the moment for backwards compatibility
-
-	  }else if (	dm.getAssumedComplete() && !dm.isForceStart() &&
-			  state != DownloadManager.STATE_STOPPED) {
-
-		  state = DownloadManager.STATE_QUEUED;
-
-	  }else if (	state != DownloadManager.STATE_STOPPED &&
-			  state != DownloadManager.STATE_QUEUED &&
-			  state != DownloadManager.STATE_WAITING){
-
-		  state = DownloadManager.STATE_WAITING;
-
 	  }
 
+	  int state = getExportedState( dm );
+
 	  dmMap.put("state", new Long(state));
 
 	  if ( internal_export ){
@@ -3519,8 +3624,6 @@ public class GlobalManagerImpl
 
 	  //save file priorities
 
-	  dm.saveDownload( interim );
-
 	  List file_priorities = (List)dm.getUserData( "file_priorities" );
 	  if ( file_priorities != null ) {
 	  	int count = file_priorities.size();
@@ -3676,6 +3779,8 @@ public class GlobalManagerImpl
   
   private static final Object MOVE_POS_KEY = new Object();
 
+  private static final Object SAVE_STATE_KEY = new Object();
+
   @Override
   public void
   moveTo(
@@ -5704,4 +5809,157 @@ public class GlobalManagerImpl
 			owner			= _owner;
 		}
 	}
+
+		/**
+		 * The values a download's downloads.config entry is built from as of the last save, so
+		 * that only downloads that have changed need exporting and encoding
+		 */
+
+	private static class
+	DownloadSaveState
+	{
+		private static final int	V_PERSISTENT		= 0;
+		private static final int	V_MAX_DOWN			= 1;
+		private static final int	V_MAX_UP			= 2;
+		private static final int	V_STATE				= 3;
+		private static final int	V_ERROR_TYPE		= 4;
+		private static final int	V_ERROR_FLAGS		= 5;
+		private static final int	V_POSITION			= 6;
+		private static final int	V_DOWNLOADED		= 7;
+		private static final int	V_UPLOADED			= 8;
+		private static final int	V_COMPLETED			= 9;
+		private static final int	V_DISCARDED			= 10;
+		private static final int	V_HASH_FAILS		= 11;
+		private static final int	V_FORCE_START		= 12;
+		private static final int	V_SECS_DOWNLOADING	= 13;
+		private static final int	V_SECS_SEEDING		= 14;
+		private static final int	V_MAX_UPLOADS		= 15;
+		private static final int	V_CREATION_TIME		= 16;
+		private static final int	V_ALLOCATED			= 17;
+
+		private final long[]	values = new long[V_ALLOCATED+1];
+
+		private String		torrent_file;
+		private File		save_location;
+		private String		error_details;
+		private List		file_priorities;
+
+		private boolean		initialised;
+		private boolean		changed;
+
+		private HashWrapper	hash;
+
+		HashWrapper
+		getHash(
+			DownloadManager		dm )
+		{
+			if ( hash == null ){
+
+				TOTorrent torrent = dm.getTorrent();
+
+				if ( torrent != null ){
+
+					try{
+						hash = torrent.getHashWrapper();
+
+					}catch( TOTorrentException e ){
+					}
+				}
+			}
+
+			return( hash );
+		}
+
+			/**
+			 * @return true if any value differs from the last update (always on the first)
+			 */
+
+		boolean
+		update(
+			DownloadManager		dm )
+		{
+			DownloadManagerStats dm_stats = dm.getStats();
+
+			changed = !initialised;
+
+			initialised = true;
+
+			boolean error = dm.getState() == DownloadManager.STATE_ERROR;
+
+			set( V_PERSISTENT, dm.isPersistent()?1:0 );
+			set( V_MAX_DOWN, dm_stats.getDownloadRateLimitBytesPerSecond());
+			set( V_MAX_UP, dm_stats.getUploadRateLimitBytesPerSecond());
+			set( V_STATE, getExportedState( dm ));
+			set( V_ERROR_TYPE, error?dm.getErrorType():0 );
+			set( V_ERROR_FLAGS, error?dm.getErrorFlags():0 );
+			set( V_POSITION, dm.getPosition());
+			set( V_DOWNLOADED, dm_stats.getTotalDataBytesReceived());
+			set( V_UPLOADED, dm_stats.getTotalDataBytesSent());
+			set( V_COMPLETED, dm_stats.getDownloadCompletedBytes());
+			set( V_DISCARDED, dm_stats.getDiscarded());
+			set( V_HASH_FAILS, dm_stats.getHashFailBytes());
+			set( V_FORCE_START, dm.isForceStart() && (dm.getState() != DownloadManager.STATE_CHECKING)?1:0 );
+			set( V_SECS_DOWNLOADING, dm_stats.getSecondsDownloading());
+			set( V_SECS_SEEDING, dm_stats.getSecondsOnlySeeding());
+			set( V_MAX_UPLOADS, dm.getMaxUploads());
+			set( V_CREATION_TIME, dm.getCreationTime());
+			set( V_ALLOCATED, dm.isDataAlreadyAllocated()?1:0 );
+
+			String	new_torrent_file = dm.getTorrentFileName();
+
+			if ( !equals( torrent_file, new_torrent_file )){
+
+				torrent_file	= new_torrent_file;
+				changed			= true;
+			}
+
+			File	new_save_location = dm.getAbsoluteSaveLocation();
+
+			if ( !equals( save_location, new_save_location )){
+
+				save_location	= new_save_location;
+				changed			= true;
+			}
+
+			String	new_error_details = error?dm.getErrorDetails():null;
+
+			if ( !equals( error_details, new_error_details )){
+
+				error_details	= new_error_details;
+				changed			= true;
+			}
+
+				// replaced rather than modified when they change so holding on to it is safe
+
+			List	new_file_priorities = (List)dm.getUserData( "file_priorities" );
+
+			if ( !equals( file_priorities, new_file_priorities )){
+
+				file_priorities	= new_file_priorities;
+				changed			= true;
+			}
+
+			return( changed );
+		}
+
+		private void
+		set(
+			int		index,
+			long	value )
+		{
+			if ( values[index] != value ){
+
+				values[index]	= value;
+				changed			= true;
+			}
+		}
+
+		private static boolean
+		equals(
+			Object	o1,
+			Object	o2 )
+		{
+			return( o1 == o2 || ( o1 != null && o1.equals( o2 )));
+		}
+	}
 }
@@ -33,24 +33,37 @@ import com.biglybt.core.logging.LogIDs;
 import com.biglybt.core.logging.Logger;
 import com.biglybt.core.tracker.protocol.PRHelpers;
 import com.biglybt.core.util.AEMonitor;
+import com.biglybt.core.util.AERunnable;
+import com.biglybt.core.util.AsyncDispatcher;
 import com.biglybt.core.util.Debug;
 import com.biglybt.core.util.IdentityHashSet;
+import com.biglybt.core.util.SimpleTimer;
 import com.biglybt.core.util.SystemTime;
+import com.biglybt.core.util.TimerEvent;
+import com.biglybt.core.util.TimerEventPerformer;
 
 public class
 IPAddressRangeManagerV4
 {
 	private static final LogIDs LOGID = LogIDs.CORE;
 
+	private static final AsyncDispatcher	rebuild_dispatcher = new AsyncDispatcher( "IPAddressRangeManager:rebuild", 5000 );
+
 	protected final Set<IpRangeV4Impl> entries = new IdentityHashSet<>();
 
 	protected long		total_span;
 
-	protected boolean	rebuild_required;
-	protected long		last_rebuild_time = -1;
+	protected volatile boolean	rebuild_required;
+	protected long				last_rebuild_time = -1;
+	protected boolean			rebuild_scheduled;
 
 	protected IpRangeV4Impl[] mergedRanges = new IpRangeV4Impl[0];
 
+		// lookups run against an immutable snapshot of the merged ranges without locking, it
+		// is replaced wholesale after each rebuild
+
+	private volatile Snapshot	snapshot = new Snapshot( mergedRanges );
+
 	protected final AEMonitor	this_mon	= new AEMonitor( "IPAddressRangeManager" );
 
 	protected
@@ -102,123 +115,88 @@ IPAddressRangeManagerV4
 
 			return( null );
 		}
-		
-		try{
-			this_mon.enter();
-
-			long address_long = PRHelpers.addressToInt( ip );
 
-			if ( address_long < 0 ){
-
-				address_long += 0x100000000L;
-			}
+		long address_long = PRHelpers.addressToInt( ip );
 
-			IpRangeV4Impl res = isInRange( address_long );
+		if ( address_long < 0 ){
 
-			// LGLogger.log( "IPAddressRangeManager: checking '" + ip + "' against " + entries.size() + "/" + merged_entries.length + " -> " + res );
+			address_long += 0x100000000L;
+		}
 
-			return( res );
+		IpRangeV4Impl res = isInRange( address_long );
 
-		}finally{
+		// LGLogger.log( "IPAddressRangeManager: checking '" + ip + "' against " + entries.size() + "/" + merged_entries.length + " -> " + res );
 
-			this_mon.exit();
-		}
+		return( res );
 	}
 
 	private IpRangeV4Impl
 	isInRange(
 		long	address_long )
 	{
-		try{
-			this_mon.enter();
+		if ( rebuild_required ){
 
 			checkRebuild();
+		}
 
-			if ( mergedRanges.length == 0 ){
-
-				return( null );
-			}
-
-				// assisted binary chop
-
-			int	bottom 	= 0;
-			int	top		= mergedRanges.length-1;
-
-			int	current	= -1;
-
-			while( top >= 0 && bottom < mergedRanges.length && bottom <= top){
-
-				current = (bottom+top)/2;
-
-				IpRangeV4Impl	e = mergedRanges[current];
-
-				long	this_start 	= e.getStartIpLong();
-				long 	this_end	= e.getMergedEndLong();
-
-				if ( address_long == this_start ){
-
-					break;
-
-				}else if ( address_long > this_start ){
-
-					if ( address_long <= this_end ){
-
-						break;
-					}
-
-						// lies to the right of this entry
-
-					bottom	= current + 1;
-
-				}else if ( address_long == this_end ){
+		return( snapshot.lookup( address_long ));
+	}
 
-					break;
+	private void
+	checkRebuild()
+	{
+		try{
+			this_mon.enter();
 
-				}else{
-					// < this_end
+			if ( rebuild_required ){
 
-					if ( address_long >= this_start ){
+				if ( last_rebuild_time == -1 ){
 
-						break;
-					}
+						// nothing to look up against yet so do the first one inline
 
-					top = current - 1;
-				}
-			}
+					last_rebuild_time	= SystemTime.getMonotonousTime();
 
-			if ( top >= 0 && bottom < mergedRanges.length && bottom <= top ){
+					rebuild_required	= false;
 
-				IpRangeV4Impl	e = mergedRanges[current];
+					rebuild();
 
-				if ( address_long <= e.getEndIpLong()){
+				}else if ( !rebuild_scheduled ){
 
-					return( e );
-				}
+						// lookups carry on against the current snapshot while this happens
 
-				IpRangeV4Impl[]	merged = e.getMergedEntries();
+						// with substantial numbers of filters (e.g. 80,000) rebuilding
+						// is a slow process. Therefore prevent frequent rebuilds at the
+						// cost of delaying the effect of the change
 
-				if ( merged == null ){
+						// allow one second per 2000 entries
 
-					Debug.out( "IPAddressRangeManager: inconsistent merged details - no entries" );
+					rebuild_scheduled = true;
 
-					return( null );
-				}
+					long	delay = last_rebuild_time + ( entries.size()/2000 + 1 )*1000L - SystemTime.getMonotonousTime();
 
-				for (int i=0;i<merged.length;i++){
+					if ( delay > 0 ){
 
-					IpRangeV4Impl	me = merged[i];
+							// wait on the timer rather than tying up the shared dispatcher
 
-					if ( me.getStartIpLong() <= address_long && me.getEndIpLong() >= address_long ){
+						SimpleTimer.addEvent(
+							"IPAddressRangeManager:rebuild",
+							SystemTime.getOffsetTime( delay ),
+							new TimerEventPerformer()
+							{
+								@Override
+								public void
+								perform(
+									TimerEvent event )
+								{
+									dispatchRebuild();
+								}
+							});
+					}else{
 
-						return( me );
+						dispatchRebuild();
 					}
 				}
-
-				Debug.out( "IPAddressRangeManager: inconsistent merged details - entry not found" );
 			}
-
-			return( null );
-
 		}finally{
 
 			this_mon.exit();
@@ -226,33 +204,44 @@ IPAddressRangeManagerV4
 	}
 
 	private void
-	checkRebuild()
+	dispatchRebuild()
 	{
-		try{
-			this_mon.enter();
-
-			if ( rebuild_required ){
-
-					// with substantial numbers of filters (e.g. 80,000) rebuilding
-					// is a slow process. Therefore prevent frequent rebuilds at the
-					// cost of delaying the effect of the change
-
-				long	now = SystemTime.getMonotonousTime();
+		rebuild_dispatcher.dispatch(
+			new AERunnable()
+			{
+				@Override
+				public void
+				runSupport()
+				{
+					rebuildAsync();
+				}
+			});
+	}
 
-					// allow one second per 2000 entries
+	private void
+	rebuildAsync()
+	{
+		try{
+			try{
+				this_mon.enter();
 
-				if ( last_rebuild_time == -1 || (now - last_rebuild_time)/1000 > entries.size()/2000 ){
+				if ( rebuild_required ){
 
-					last_rebuild_time	= now;
+					last_rebuild_time	= SystemTime.getMonotonousTime();
 
 					rebuild_required	= false;
 
 					rebuild();
 				}
+			}finally{
+
+				rebuild_scheduled = false;
+
+				this_mon.exit();
 			}
-		}finally{
+		}catch( Throwable e ){
 
-			this_mon.exit();
+			Debug.out( e );
 		}
 	}
 
@@ -351,6 +340,8 @@ IPAddressRangeManagerV4
 
 		me.toArray( mergedRanges );
 
+		snapshot = new Snapshot( mergedRanges );
+
 		total_span	= 0;
 
 		for (int i=0;i<mergedRanges.length;i++){
@@ -371,6 +362,111 @@ IPAddressRangeManagerV4
 
 	}
 
+	private static final class
+	Snapshot
+	{
+			// addresses are stored as ( unsigned address ^ 0x80000000 ) so that signed int
+			// comparisons order them correctly
+
+		private final int[]					starts;
+		private final int[]					merged_ends;
+		private final IpRangeV4Impl[]		ranges;
+		private final IpRangeV4Impl[][]		merged_entries;
+
+		Snapshot(
+			IpRangeV4Impl[]		merged )
+		{
+			int	num = merged.length;
+
+			starts			= new int[num];
+			merged_ends		= new int[num];
+			ranges			= merged.clone();
+			merged_entries	= new IpRangeV4Impl[num][];
+
+			for ( int i=0;i<num;i++){
+
+				IpRangeV4Impl	e = merged[i];
+
+				starts[i]			= toKey( e.getStartIpLong());
+				merged_ends[i]		= toKey( e.getMergedEndLong());
+
+					// the merge arrays are replaced rather than updated by later rebuilds
+
+				merged_entries[i]	= e.getMergedEntries();
+			}
+		}
+
+		private static int
+		toKey(
+			long	address )
+		{
+			return(((int)address ) ^ 0x80000000 );
+		}
+
+		IpRangeV4Impl
+		lookup(
+			long	address_long )
+		{
+			int	key = toKey( address_long );
+
+				// find the last range starting at or before the address
+
+			int	bottom	= 0;
+			int	top		= starts.length - 1;
+			int	found	= -1;
+
+			while( bottom <= top ){
+
+				int	current = ( bottom + top ) >>> 1;
+
+				if ( starts[current] <= key ){
+
+					found	= current;
+					bottom	= current + 1;
+
+				}else{
+
+					top = current - 1;
+				}
+			}
+
+			if ( found == -1 || key > merged_ends[found] ){
+
+				return( null );
+			}
+
+			IpRangeV4Impl	e = ranges[found];
+
+			if ( address_long <= e.getEndIpLong()){
+
+				return( e );
+			}
+
+			IpRangeV4Impl[]	merged = merged_entries[found];
+
+			if ( merged == null ){
+
+				Debug.out( "IPAddressRangeManager: inconsistent merged details - no entries" );
+
+				return( null );
+			}
+
+			for (int i=0;i<merged.length;i++){
+
+				IpRangeV4Impl	me = merged[i];
+
+				if ( me.getStartIpLong() <= address_long && me.getEndIpLong() >= address_long ){
+
+					return( me );
+				}
+			}
+
+			Debug.out( "IPAddressRangeManager: inconsistent merged details - entry not found" );
+
+			return( null );
+		}
+	}
+
 	/**
 	 * @param diff
 	 * @return
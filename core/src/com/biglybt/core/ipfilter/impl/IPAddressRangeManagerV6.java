@@ -22,20 +22,31 @@ import java.net.Inet6Address;
 import java.util.*;
 
 import com.biglybt.core.ipfilter.IpRange;
+import com.biglybt.core.util.AERunnable;
+import com.biglybt.core.util.AsyncDispatcher;
+import com.biglybt.core.util.Debug;
 import com.biglybt.core.util.IdentityHashSet;
+import com.biglybt.core.util.SimpleTimer;
 import com.biglybt.core.util.SystemTime;
+import com.biglybt.core.util.TimerEvent;
+import com.biglybt.core.util.TimerEventPerformer;
 
 public class 
 IPAddressRangeManagerV6
 {
+	private static final AsyncDispatcher	rebuild_dispatcher = new AsyncDispatcher( "IPAddressRangeManagerV6:rebuild", 5000 );
+
 	private Set<IpRangeV6Impl>	ranges = new IdentityHashSet<>();
 	
 	private volatile int	range_count;
 	
-	private IpRangeV6Impl[]	sorted_ranges;
+		// replaced, never modified, once published so lookups can run without locking
+	
+	private volatile IpRangeV6Impl[]	sorted_ranges;
 	
-	protected boolean	rebuild_required;
-	protected long		last_rebuild_time	= -1;
+	protected volatile boolean	rebuild_required;
+	protected long				last_rebuild_time	= -1;
+	protected boolean			rebuild_scheduled;
 	
 	
 	private Comparator<IpRangeV6Impl> range_comparator = 
@@ -115,7 +126,7 @@ IPAddressRangeManagerV6
 				
 			}else{
 					
-				sorted_ranges = new IpRangeV6Impl[ranges.size()];
+				IpRangeV6Impl[] sorted_ranges = new IpRangeV6Impl[ranges.size()];
 								
 				ranges.toArray( sorted_ranges );
 				
@@ -156,9 +167,105 @@ IPAddressRangeManagerV6
 										
 					Arrays.sort( sorted_ranges, range_comparator );
 				}
+				
+				this.sorted_ranges = sorted_ranges;
+			}
+		}
+	}
+	
+	private void
+	checkRebuild()
+	{
+		synchronized( ranges ){
+
+			if ( rebuild_required ){
+
+				if ( last_rebuild_time == -1 ){
+
+						// nothing to look up against yet so do the first one inline
+					
+					last_rebuild_time	= SystemTime.getMonotonousTime();
+
+					rebuild_required	= false;
+
+					rebuild();
+
+				}else if ( !rebuild_scheduled ){
+
+						// lookups carry on against the current ranges while this happens
+
+						// rate limit rebuilds to one second per 2000 entries
+
+					rebuild_scheduled = true;
+
+					long	delay = last_rebuild_time + ( range_count/2000 + 1 )*1000L - SystemTime.getMonotonousTime();
+
+					if ( delay > 0 ){
+
+							// wait on the timer rather than tying up the shared dispatcher
+
+						SimpleTimer.addEvent(
+							"IPAddressRangeManagerV6:rebuild",
+							SystemTime.getOffsetTime( delay ),
+							new TimerEventPerformer()
+							{
+								@Override
+								public void
+								perform(
+									TimerEvent event )
+								{
+									dispatchRebuild();
+								}
+							});
+					}else{
+
+						dispatchRebuild();
+					}
+				}
 			}
 		}
 	}
+	
+	private void
+	dispatchRebuild()
+	{
+		rebuild_dispatcher.dispatch(
+			new AERunnable()
+			{
+				@Override
+				public void
+				runSupport()
+				{
+					rebuildAsync();
+				}
+			});
+	}
+
+	private void
+	rebuildAsync()
+	{
+		try{
+			synchronized( ranges ){
+
+				try{
+					if ( rebuild_required ){
+
+						last_rebuild_time	= SystemTime.getMonotonousTime();
+
+						rebuild_required	= false;
+
+						rebuild();
+					}
+				}finally{
+
+					rebuild_scheduled = false;
+				}
+			}
+		}catch( Throwable e ){
+
+			Debug.out( e );
+		}
+	}
 		
 	protected IpRange
 	isInRange(
@@ -169,49 +276,39 @@ IPAddressRangeManagerV6
 			return( null );
 		}
 
-		IpRangeV6Impl ia_range = new IpRangeV6Impl( "", ia, true );
+		if ( rebuild_required ){
 
-		synchronized( ranges ){
-
-			if ( rebuild_required ){
+			checkRebuild();
+		}
 
-				long	now = SystemTime.getMonotonousTime();
+		IpRangeV6Impl[]	sorted_ranges = this.sorted_ranges;
 
-				if ( last_rebuild_time == -1 || (now - last_rebuild_time)/1000 > range_count/2000 ){
+		if ( sorted_ranges == null ){
 
-					last_rebuild_time	= now;
+			return( null );
+		}
 
-					rebuild_required	= false;
+		IpRangeV6Impl ia_range = new IpRangeV6Impl( "", ia, true );
 
-					rebuild();
-				}
-			}
+		int res = Arrays.binarySearch( sorted_ranges, ia_range, range_comparator );
+		
+		if ( res >= 0 ){
 			
-			if ( sorted_ranges == null ){
-
-				return( null );
-			}
-
-			int res = Arrays.binarySearch( sorted_ranges, ia_range, range_comparator );
+				// exact match
 			
-			if ( res >= 0 ){
-				
-					// exact match
-				
-				return( sorted_ranges[res] );
-				
-			}else{
+			return( sorted_ranges[res] );
+			
+		}else{
+		
+			int prev = (-res) - 2;
 			
-				int prev = (-res) - 2;
+			if ( prev >= 0 ){
+					
+				IpRangeV6Impl range = sorted_ranges[ prev ];
 				
-				if ( prev >= 0 ){
-						
-					IpRangeV6Impl range = sorted_ranges[ prev ];
+				if ( range.isInRange( ia.getAddress())){
 					
-					if ( range.isInRange( ia.getAddress())){
-						
-						return( range );
-					}
+					return( range );
 				}
 			}
 		}
@@ -75,11 +75,12 @@ public class IpFilterAutoLoaderImpl
 	 *
 	 * @since 3.0.1.5
 	 */
-	private void loadDATFilters(InputStream fin) {
+	private List<IpRangeV4Impl> loadDATFilters(InputStream fin) {
+		List<IpRangeV4Impl> new_ipRanges = new ArrayList<>(1024);
+
 		try {
 			class_mon.enter();
 
-			List new_ipRanges = new ArrayList(1024);
 
 			InputStreamReader streamReader = null;
 			BufferedReader reader = null;
@@ -211,11 +212,11 @@ public class IpFilterAutoLoaderImpl
 					}
 				}
 
-				Iterator it = new_ipRanges.iterator();
+				Iterator<IpRangeV4Impl> it = new_ipRanges.iterator();
 
 				while (it.hasNext()) {
 
-					((IpRange) it.next()).checkValid();
+					it.next().checkValid();
 				}
 			}
 		} finally {
@@ -224,6 +225,8 @@ public class IpFilterAutoLoaderImpl
 		}
 		
 		ipFilter.markAsUpToDate();
+
+		return new_ipRanges;
 	}
 
 	private int getP2BFileVersion(InputStream is) {
@@ -324,6 +327,7 @@ public class IpFilterAutoLoaderImpl
 		BufferedInputStream bin = null;
 		boolean isURL = false;
 
+		int firstRange = new_ipRanges.size();
 
 		try{
 			//open the file
@@ -368,6 +372,21 @@ public class IpFilterAutoLoaderImpl
 				}
 			}
 	
+			// a compiled copy of this exact source saves decompressing and parsing it again
+			File sourceFile = filtersFile;
+			byte[] sourceHash = null;
+
+			if (IpFilterBlocklistCache.isEnabled()) {
+				sourceHash = IpFilterBlocklistCache.hashSource(sourceFile);
+
+				List<IpRangeV4Impl> cached = IpFilterBlocklistCache.read(sourceFile, sourceHash);
+
+				if (cached != null) {
+					new_ipRanges.addAll(cached);
+					return( isURL );
+				}
+			}
+
 			fin = FileUtil.newFileInputStream(filtersFile);
 			bin = new BufferedInputStream(fin, 16384);
 	
@@ -428,7 +447,10 @@ public class IpFilterAutoLoaderImpl
 	
 			if (p2bVersion < 1 || p2bVersion > 3) {
 				bin.reset();
-				loadDATFilters(bin);
+				List<IpRangeV4Impl> datRanges = loadDATFilters(bin);
+				if (sourceHash != null) {
+					IpFilterBlocklistCache.write(sourceFile, sourceHash, datRanges);
+				}
 				return( isURL );
 			}
 	
@@ -504,6 +526,10 @@ public class IpFilterAutoLoaderImpl
 					new_ipRanges.add(ipRange);
 				}
 			}
+
+			if (sourceHash != null) {
+				IpFilterBlocklistCache.write(sourceFile, sourceHash, new_ipRanges.subList(firstRange, new_ipRanges.size()));
+			}
 		} catch (IOException e) {
 			Debug.out(e);
 		} finally {
@@ -0,0 +1,472 @@
+/*
+ * Copyright (C) Bigly Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+
+package com.biglybt.core.ipfilter.impl;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+import java.util.zip.CRC32;
+
+import com.biglybt.core.config.COConfigurationManager;
+import com.biglybt.core.ipfilter.IpFilterManager;
+import com.biglybt.core.ipfilter.IpFilterManagerFactory;
+import com.biglybt.core.logging.LogEvent;
+import com.biglybt.core.logging.LogIDs;
+import com.biglybt.core.logging.Logger;
+import com.biglybt.core.util.Constants;
+import com.biglybt.core.util.Debug;
+import com.biglybt.core.util.FileUtil;
+import com.biglybt.core.util.SHA1Hasher;
+import com.biglybt.core.util.SystemTime;
+
+/**
+ * Compiled form of the last auto-loaded v4 block list so that later starts don't have to
+ * decompress and parse the text/p2b source again. Ranges are held sorted by start address
+ * with starts delta encoded and ends relative to their start, all as unsigned varints, and
+ * descriptions are de-duplicated into a table. The file is tied to the SHA1 and length of the
+ * source file it was built from and is memory-mapped for reading.
+ * <pre>
+ *   int magic | int version | byte hash_len | hash | long source_len | int num_descs | int num_ranges
+ *   num_descs * ( varint len | utf-8 bytes )
+ *   num_ranges * ( varint start_delta | varint end - start | varint desc_index )
+ *   int crc32 of everything before it
+ * </pre>
+ */
+
+class
+IpFilterBlocklistCache
+{
+	private static final LogIDs LOGID = LogIDs.CORE;
+
+	private static final String	CACHE_FILE	= "ipfilter.bin";
+
+	private static final int	MAGIC		= 0x42424946;	// BBIF
+	private static final int	VERSION		= 1;
+
+	static boolean
+	isEnabled()
+	{
+		return( COConfigurationManager.getBooleanParameter( "Ip Filter Binary Cache Enable" ));
+	}
+
+	static byte[]
+	hashSource(
+		File		source )
+
+		throws IOException
+	{
+		SHA1Hasher	hasher = new SHA1Hasher();
+
+		byte[]	buffer = new byte[65536];
+
+		InputStream	is = FileUtil.newFileInputStream( source );
+
+		try{
+			while( true ){
+
+				int	len = is.read( buffer );
+
+				if ( len <= 0 ){
+
+					break;
+				}
+
+				hasher.update( buffer, 0, len );
+			}
+		}finally{
+
+			is.close();
+		}
+
+		return( hasher.getDigest());
+	}
+
+	/**
+	 * @return the cached ranges, not yet added to the filter, or null if there is no usable
+	 * cache for this source
+	 */
+
+	static List<IpRangeV4Impl>
+	read(
+		File		source,
+		byte[]		source_hash )
+	{
+		File	file = FileUtil.getUserFile( CACHE_FILE );
+
+		if ( !file.exists()){
+
+			return( null );
+		}
+
+		long	start = SystemTime.getMonotonousTime();
+
+		try{
+			FileInputStream	fis = FileUtil.newFileInputStream( file );
+
+			ByteBuffer	buffer;
+
+			try{
+				FileChannel	fc = fis.getChannel();
+
+				MappedByteBuffer	mapped = fc.map( FileChannel.MapMode.READ_ONLY, 0, fc.size());
+
+				buffer = mapped;
+
+			}finally{
+
+				fis.close();
+			}
+
+			List<IpRangeV4Impl>	result = decode( buffer, source.length(), source_hash );
+
+			if ( result == null ){
+
+				Logger.log(new LogEvent(LOGID, "IP Filter binary cache is stale, ignoring" ));
+
+			}else{
+
+				Logger.log(new LogEvent(LOGID, "IP Filter loaded " + result.size() + " ranges from binary cache in " + ( SystemTime.getMonotonousTime() - start ) + "ms" ));
+			}
+
+			return( result );
+
+		}catch( Throwable e ){
+
+			Logger.log(new LogEvent(LOGID, LogEvent.LT_WARNING, "IP Filter binary cache is corrupt, ignoring: " + Debug.getNestedExceptionMessage( e )));
+
+			return( null );
+		}
+	}
+
+	private static List<IpRangeV4Impl>
+	decode(
+		ByteBuffer	buffer,
+		long		source_len,
+		byte[]		source_hash )
+
+		throws IOException
+	{
+		int	body_len = buffer.limit() - 4;
+
+		if ( body_len < 4 + 4 + 1 ){
+
+			throw( new IOException( "truncated" ));
+		}
+
+		if ( buffer.getInt() != MAGIC ){
+
+			throw( new IOException( "bad magic" ));
+		}
+
+		if ( buffer.getInt() != VERSION ){
+
+			return( null );
+		}
+
+		byte[]	hash = new byte[ buffer.get() & 0xff ];
+
+		buffer.get( hash );
+
+		if ( !Arrays.equals( hash, source_hash ) || buffer.getLong() != source_len ){
+
+			return( null );
+		}
+
+			// only check the crc once we know we're going to use it
+
+		CRC32	crc = new CRC32();
+
+		ByteBuffer	body = buffer.duplicate();
+
+		body.position( 0 );
+		body.limit( body_len );
+
+		crc.update( body );
+
+		if ((int)crc.getValue() != buffer.getInt( body_len )){
+
+			throw( new IOException( "checksum mismatch" ));
+		}
+
+		int	num_descs	= buffer.getInt();
+		int	num_ranges	= buffer.getInt();
+
+		if ( num_descs < 0 || num_ranges < 0 || num_ranges > body_len ){
+
+			throw( new IOException( "bad counts" ));
+		}
+
+		byte[][]	descs = new byte[num_descs][];
+
+		for ( int i=0;i<num_descs;i++){
+
+			int	len = (int)readVarint( buffer );
+
+			if ( len > buffer.remaining()){
+
+				throw( new IOException( "bad description" ));
+			}
+
+			descs[i] = new byte[len];
+
+			buffer.get( descs[i] );
+		}
+
+			// ranges sharing a description share its entry in the description cache rather than
+			// appending a copy each time (which is where most of the time in a text load goes)
+
+		IpFilterManager	manager = IpFilterManagerFactory.getSingleton();
+
+		Object[]	desc_refs 	= new Object[num_descs];
+		boolean[]	desc_done	= new boolean[num_descs];
+
+		List<IpRangeV4Impl>	result = new ArrayList<>( num_ranges );
+
+		long	range_start = 0;
+
+		for ( int i=0;i<num_ranges;i++){
+
+			range_start += readVarint( buffer );
+
+			long	range_end = range_start + readVarint( buffer );
+
+			int	desc_index = (int)readVarint( buffer );
+
+			if ( range_end > 0xffffffffL || desc_index >= num_descs ){
+
+				throw( new IOException( "bad range" ));
+			}
+
+			IpRangeV4Impl ipRange = new IpRangeV4Impl( "", (int)range_start, (int)range_end, true );
+
+			if ( !desc_done[desc_index] ){
+
+				byte[]	desc = descs[desc_index];
+
+				if ( desc.length > 0 ){
+
+					desc_refs[desc_index] = manager.addDescription( ipRange, desc );
+				}
+
+				desc_done[desc_index] = true;
+			}
+
+			ipRange.setDescRef( desc_refs[desc_index] );
+
+			ipRange.setAddedToRangeList( true );
+
+			result.add( ipRange );
+		}
+
+		if ( buffer.position() != body_len ){
+
+			throw( new IOException( "trailing data" ));
+		}
+
+		return( result );
+	}
+
+	static void
+	write(
+		File						source,
+		byte[]						source_hash,
+		List<? extends IpRangeImpl>	ranges )
+	{
+		long	start = SystemTime.getMonotonousTime();
+
+		List<IpRangeV4Impl>	sorted = new ArrayList<>( ranges.size());
+
+		for ( IpRangeImpl range: ranges ){
+
+				// invalid ranges never make it into the filter
+
+			if ( range instanceof IpRangeV4Impl && range.isValid()){
+
+				sorted.add((IpRangeV4Impl)range );
+			}
+		}
+
+		Collections.sort(
+			sorted,
+			new Comparator<IpRangeV4Impl>()
+			{
+				@Override
+				public int
+				compare(
+					IpRangeV4Impl	r1,
+					IpRangeV4Impl	r2 )
+				{
+					return( Long.compare( r1.getStartIpLong(), r2.getStartIpLong()));
+				}
+			});
+
+		Map<String,Integer>	desc_map	= new HashMap<>();
+		List<byte[]>		desc_list	= new ArrayList<>();
+
+		int[]	desc_indexes = new int[sorted.size()];
+
+		for ( int i=0;i<desc_indexes.length;i++){
+
+			String	desc = sorted.get(i).getDescription();
+
+			Integer	index = desc_map.get( desc );
+
+			if ( index == null ){
+
+				index = desc_list.size();
+
+				desc_map.put( desc, index );
+
+				desc_list.add( desc.getBytes( Constants.UTF_8 ));
+			}
+
+			desc_indexes[i] = index;
+		}
+
+		File	file	= FileUtil.getUserFile( CACHE_FILE );
+		File	temp	= FileUtil.getUserFile( CACHE_FILE + ".tmp" );
+
+		try{
+			ByteArrayOutputStream	baos = new ByteArrayOutputStream( 64*1024 + sorted.size()*6 );
+
+			DataOutputStream	dos = new DataOutputStream( baos );
+
+			dos.writeInt( MAGIC );
+			dos.writeInt( VERSION );
+			dos.writeByte( source_hash.length );
+			dos.write( source_hash );
+			dos.writeLong( source.length());
+			dos.writeInt( desc_list.size());
+			dos.writeInt( sorted.size());
+
+			for ( byte[] desc: desc_list ){
+
+				writeVarint( dos, desc.length );
+
+				dos.write( desc );
+			}
+
+			long	previous_start = 0;
+
+			for ( int i=0;i<desc_indexes.length;i++){
+
+				IpRangeV4Impl	range = sorted.get(i);
+
+				long	range_start = range.getStartIpLong();
+
+				writeVarint( dos, range_start - previous_start );
+				writeVarint( dos, range.getEndIpLong() - range_start );
+				writeVarint( dos, desc_indexes[i] );
+
+				previous_start = range_start;
+			}
+
+			dos.flush();
+
+			byte[]	body = baos.toByteArray();
+
+			CRC32	crc = new CRC32();
+
+			crc.update( body );
+
+			FileOutputStream	fos = FileUtil.newFileOutputStream( temp );
+
+			try{
+				fos.write( body );
+
+				fos.write( new byte[]{ (byte)(crc.getValue()>>24), (byte)(crc.getValue()>>16), (byte)(crc.getValue()>>8), (byte)crc.getValue() });
+
+				fos.getFD().sync();
+
+			}finally{
+
+				fos.close();
+			}
+
+				// on some platforms a still-mapped old cache can't be replaced, in which case we
+				// just parse the source again next time
+
+			file.delete();
+
+			if ( !temp.renameTo( file )){
+
+				temp.delete();
+
+				Logger.log(new LogEvent(LOGID, LogEvent.LT_WARNING, "IP Filter binary cache could not be replaced" ));
+
+			}else{
+
+				Logger.log(new LogEvent(LOGID, "IP Filter wrote " + sorted.size() + " ranges to binary cache (" + ( body.length + 4 ) + " bytes) in " + ( SystemTime.getMonotonousTime() - start ) + "ms" ));
+			}
+		}catch( Throwable e ){
+
+			temp.delete();
+
+			Debug.out( e );
+		}
+	}
+
+	private static void
+	writeVarint(
+		DataOutputStream	dos,
+		long				value )
+
+		throws IOException
+	{
+		while(( value & ~0x7fL ) != 0 ){
+
+			dos.writeByte((int)(( value & 0x7f ) | 0x80 ));
+
+			value >>>= 7;
+		}
+
+		dos.writeByte((int)value );
+	}
+
+	private static long
+	readVarint(
+		ByteBuffer		buffer )
+
+		throws IOException
+	{
+		long	result	= 0;
+		int		shift	= 0;
+
+		while( true ){
+
+			int	b = buffer.get();
+
+			result |= (long)( b & 0x7f ) << shift;
+
+			if (( b & 0x80 ) == 0 ){
+
+				return( result );
+			}
+
+			shift += 7;
+
+			if ( shift > 35 ){
+
+				throw( new IOException( "varint too long" ));
+			}
+		}
+	}
+}
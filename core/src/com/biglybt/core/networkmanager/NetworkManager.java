@@ -56,6 +56,10 @@ public class NetworkManager {
   	// 
   
   private static final boolean PARTITION_BY_CONNECTION = true;
+
+  	// upper limit on controller threads when sizing them to the core count
+
+  private static final int MAX_AUTO_CONTROLLERS = 32;
   
   private static final NetworkManager instance = new NetworkManager();
 
@@ -162,7 +166,7 @@ public class NetworkManager {
 
 
   {
-	 int	num_read = COConfigurationManager.getIntParameter( "network.control.read.processor.count" );
+	 int	num_read = getControllerCount( "network.control.read.processor.count" );
 
 	 read_controllers = new ArrayList<>(num_read);
 
@@ -171,7 +175,7 @@ public class NetworkManager {
 		 read_controllers.add( new ReadController( i+1 ));
 	 }
 
-	 int	num_write = COConfigurationManager.getIntParameter( "network.control.write.processor.count" );
+	 int	num_write = getControllerCount( "network.control.write.processor.count" );
 
 	 write_controllers = new ArrayList<>(num_write);
 
@@ -480,6 +484,25 @@ public class NetworkManager {
 
 
 
+  	/**
+  	 * Controller 0 handles unpartitioned entities, the rest are shared by the partitioned ones. A
+  	 * configured count of zero or less means one partitioned controller per core.
+  	 */
+
+  private static int
+  getControllerCount(
+	String	key )
+  {
+	  int	num = COConfigurationManager.getIntParameter( key );
+
+	  if ( num <= 0 ){
+
+		  num = 1 + Math.min( Runtime.getRuntime().availableProcessors(), MAX_AUTO_CONTROLLERS );
+	  }
+
+	  return( num );
+  }
+
   /**
    * Add an upload entity for write processing.
    * @param entity to add
@@ -80,6 +80,17 @@ OutgoingMessageQueue
 
   public boolean isBlocked();
 
+  /**
+   * Whether messages carrying a file region can be delivered, i.e. the transport can
+   * write file data directly.
+   * @return true if supported
+   */
+  public default boolean
+  isFileRegionWriteSupported()
+  {
+	  return( false );
+  }
+
   public boolean getPriorityBoost();
 
   public void setPriorityBoost( boolean	boost );
@@ -21,6 +21,7 @@ package com.biglybt.core.networkmanager;
 
 import com.biglybt.core.peermanager.messaging.Message;
 import com.biglybt.core.util.DirectByteBuffer;
+import com.biglybt.core.util.DirectFileRegion;
 
 
 
@@ -40,6 +41,12 @@ public interface RawMessage extends Message {
    */
   public DirectByteBuffer[] getRawData();
 
+  /**
+   * Get the file region that follows the raw data, if any.
+   * @return region to be written after the raw data; null if none
+   */
+  public default DirectFileRegion getFileRegion() {  return null;  }
+
   /**
    * Get the message's queue priority.
    * @return priority
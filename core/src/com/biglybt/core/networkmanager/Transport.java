@@ -23,6 +23,7 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 
 import com.biglybt.core.proxy.AEProxyFactory.PluginProxy;
+import com.biglybt.core.util.DirectFileRegion;
 
 /**
  * Represents a peer Transport connection (eg. a network socket).
@@ -128,6 +129,34 @@ Transport
 
   public long read( ByteBuffer[] buffers, int array_offset, int length ) throws IOException;
 
+  /**
+   * Can file regions be written straight to the underlying channel, i.e. no filter is
+   * in the way of the data
+   * @return true if writeFileRegion is supported
+   */
+  public default boolean
+  isFileRegionWriteSupported()
+  {
+	  return( false );
+  }
+
+  /**
+   * Write data to the transport directly from the given file region.
+   * @param region source of the data
+   * @param max_bytes maximum number of bytes to write
+   * @return number of bytes written
+   * @throws IOException on write error
+   */
+  public default long
+  writeFileRegion(
+	  DirectFileRegion	region,
+	  long				max_bytes )
+
+	  throws IOException
+  {
+	  throw( new IOException( "File region write not supported" ));
+  }
+
   /**
    * Set the transport to the given speed modes.
    * @param mode to change to
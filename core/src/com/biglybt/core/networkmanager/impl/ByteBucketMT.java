@@ -26,13 +26,19 @@ import com.biglybt.core.networkmanager.NetworkManager;
 import com.biglybt.core.util.Debug;
 import com.biglybt.core.util.SystemTime;
 
+/**
+ * Byte bucket shared by several read/write controller threads. All updates to the
+ * available byte count are atomic so concurrent consumers and refills don't lose
+ * each other's changes, without needing a lock on the per-write path.
+ */
+
 public class
 ByteBucketMT
 	implements ByteBucket
 {
-	  private long rate;
-	  private long burst_rate;
-	  private volatile long avail_bytes;
+	  private volatile long rate;
+	  private volatile long burst_rate;
+	  private final AtomicLong avail_bytes = new AtomicLong();
 	  private AtomicLong prev_update_time = new AtomicLong( SystemTime.getSteppedMonotonousTime());
 
 	  private volatile boolean frozen;
@@ -55,7 +61,7 @@ ByteBucketMT
 	  private ByteBucketMT( long rate_bytes_per_sec, long burst_rate ) {
 	    this.rate = rate_bytes_per_sec;
 	    this.burst_rate = burst_rate;
-	    avail_bytes = 0; //start bucket empty
+	    //start bucket empty
 	    ensureByteBucketMinBurstRate();
 	  }
 
@@ -66,11 +72,11 @@ ByteBucketMT
 	   */
 	  @Override
 	  public long getAvailableByteCount() {
-		if ( avail_bytes < NetworkManager.UNLIMITED_RATE ){
+		if ( avail_bytes.get() < NetworkManager.UNLIMITED_RATE ){
 			update_avail_byte_count();
 		}
 
-	    long res = avail_bytes;
+	    long res = avail_bytes.get();
 
 	    if ( res < 0 ){
 	    	res = 0;
@@ -85,11 +91,11 @@ ByteBucketMT
 	   */
 	  @Override
 	  public void setBytesUsed(long bytes_used ) {
-		if ( avail_bytes >= NetworkManager.UNLIMITED_RATE ){
+		if ( avail_bytes.get() >= NetworkManager.UNLIMITED_RATE ){
 		  return;
 		}
 
-	    avail_bytes -= bytes_used;
+	    avail_bytes.addAndGet( -bytes_used );
 	    //if( avail_bytes < 0 ) Debug.out( "avail_bytes < 0: " + avail_bytes);
 	  }
 
@@ -142,10 +148,8 @@ ByteBucketMT
 	    }
 	    this.rate = rate_bytes_per_sec;
 	    this.burst_rate = burst_rate;
-	    if ( avail_bytes > burst_rate ){
-	    	avail_bytes = burst_rate;
-	    }
 	    ensureByteBucketMinBurstRate();
+	    clampToBurstRate();
 	  }
 
 
@@ -154,8 +158,8 @@ ByteBucketMT
 			  return;
 		  }
 		  if ( rate == NetworkManager.UNLIMITED_RATE ){
-			  if ( avail_bytes < NetworkManager.UNLIMITED_RATE ){
-				  avail_bytes = NetworkManager.UNLIMITED_RATE;
+			  if ( avail_bytes.get() < NetworkManager.UNLIMITED_RATE ){
+				  avail_bytes.set( NetworkManager.UNLIMITED_RATE );
 			  }
 			  return;
 		  }
@@ -170,16 +174,39 @@ ByteBucketMT
 		  }while( put < now && !prev_update_time.compareAndSet( put, now ));
 
 		  if ( put < now ){
-		          
-			  avail_bytes +=((now - put) * rate) / 1000;
-		         
-		      if ( avail_bytes > burst_rate ){
-		    	  
-		    	  avail_bytes = burst_rate;
-		    	  
-		      //}else if( avail_bytes < 0 ){
-		       //Debug.out("ERROR: avail_bytes < 0: " + avail_bytes);
-		      }
+
+			  	// only the thread that advanced the update time gets here for a given interval
+
+			  long	added	= ((now - put) * rate) / 1000;
+			  long	burst	= burst_rate;
+
+			  while( true ){
+
+				  long	current = avail_bytes.get();
+
+				  long	updated = Math.min( current + added, burst );
+
+				  if ( updated == current || avail_bytes.compareAndSet( current, updated )){
+
+					  break;
+				  }
+			  }
+		  }
+	  }
+
+	  private void
+	  clampToBurstRate()
+	  {
+		  long	burst = burst_rate;
+
+		  while( true ){
+
+			  long	current = avail_bytes.get();
+
+			  if ( current <= burst || avail_bytes.compareAndSet( current, burst )){
+
+				  break;
+			  }
 		  }
 	  }
 
@@ -21,12 +21,9 @@
 package com.biglybt.core.networkmanager.impl;
 
 import java.io.IOException;
-import java.lang.ref.WeakReference;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Iterator;
-import java.util.LinkedList;
 
 import com.biglybt.core.networkmanager.NetworkManager;
 import com.biglybt.core.networkmanager.OutgoingMessageQueue;
@@ -37,20 +34,57 @@ import com.biglybt.core.peermanager.messaging.MessageStreamEncoder;
 import com.biglybt.core.util.AEMonitor;
 import com.biglybt.core.util.Debug;
 import com.biglybt.core.util.DirectByteBuffer;
+import com.biglybt.core.util.DirectFileRegion;
 import com.biglybt.core.util.TimeFormatter;
 
 
 
 /**
  * Priority-based outbound peer message queue.
+ * <p>
+ * Messages are held in an array ring (index 0 being the next to send) that grows as needed and is
+ * given back once a burst has drained. Writes gather the queued buffers into arrays kept with the
+ * queue and runs of small protocol messages (have, request, cancel...) are copied into a single
+ * per-thread buffer so they go out as one buffer rather than two or three each.
  */
 public class
 OutgoingMessageQueueImpl
 	implements OutgoingMessageQueue
 {
-  private final LinkedList<RawMessage> 		queue		= new LinkedList<>();
+  private static final int QUEUE_INITIAL_SIZE	= 8;	// must be a power of 2
+  private static final int QUEUE_SHRINK_SIZE	= 64;
+
+  private static final int GATHER_INITIAL_SIZE	= 16;
+
+  private static final int COALESCE_MAX_MESSAGE	= 64;
+  private static final int COALESCE_BUFFER_SIZE	= 4096;
+  private static final int COALESCE_MAX_RUNS	= 8;
+
+  private static final ThreadLocal<Coalescer> coalescers =
+	  new ThreadLocal<Coalescer>()
+	  {
+		  @Override
+		  protected Coalescer
+		  initialValue()
+		  {
+			  return( new Coalescer());
+		  }
+	  };
+
+  private RawMessage[]	queue		= new RawMessage[QUEUE_INITIAL_SIZE];
+  private int			queue_head;
+  private int			queue_size;
+
   private final AEMonitor	queue_mon	= new AEMonitor( "OutgoingMessageQueue:queue" );
 
+  	// reused by deliverToTransport, only touched while holding queue_mon
+
+  private ByteBuffer[]	gather_buffers;
+  private ByteBuffer[]	payload_buffers;
+  private int[]			payload_positions;
+
+  private int	allocations;	// send path allocations not yet reported to TransportStats
+
   private final ArrayList delayed_notifications = new ArrayList();
   private final AEMonitor delayed_notifications_mon = new AEMonitor( "OutgoingMessageQueue:DN" );
 
@@ -69,9 +103,15 @@ OutgoingMessageQueueImpl
   private int	progress_id;
   private int[] progress;
 
+  	// what progress points at when a message is part sent, updated in place so readers may
+  	// see a mix of old and new values (they only use it to show a percentage)
+
+  private final int[]	progress_values = new int[3];
+
   private static final boolean TRACE_HISTORY = false;  //TODO
   private static final int MAX_HISTORY_TRACES = 30;
-  private final LinkedList<RawMessage> prev_sent = new LinkedList<>();
+  private final RawMessage[] prev_sent = TRACE_HISTORY?new RawMessage[MAX_HISTORY_TRACES]:null;	// ring
+  private int prev_sent_next;
 
   private boolean	trace;
 
@@ -91,6 +131,15 @@ OutgoingMessageQueueImpl
 	transport 	= _transport;
   }
 
+  @Override
+  public boolean
+  isFileRegionWriteSupported()
+  {
+	  Transport t = transport;
+
+	  return( t != null && t.isFileRegionWriteSupported());
+  }
+
   @Override
   public int
   getMssSize()
@@ -119,6 +168,18 @@ OutgoingMessageQueueImpl
     return progress;
   }
 
+  private void
+  setProgress(
+	int		message_size,
+	int		written )
+  {
+	  progress_values[0] = message_size;
+	  progress_values[1] = written;
+	  progress_values[2] = progress_id;
+
+	  progress = progress_values;
+  }
+
 
   /**
    * Destroy this queue; i.e. perform cleanup actions.
@@ -129,15 +190,17 @@ OutgoingMessageQueueImpl
     try{
       queue_mon.enter();
 
-      while( !queue.isEmpty() ) {
-      	queue.remove( 0 ).destroy();
+      while( queue_size > 0 ) {
+      	queueRemove( 0 ).destroy();
       }
     }finally{
       queue_mon.exit();
     }
     total_size = 0;
     total_data_size = 0;
-    prev_sent.clear();
+    if( prev_sent != null ) {
+      Arrays.fill( prev_sent, null );
+    }
     listeners = new ArrayList();
     progress = null;
     progress_id++;
@@ -206,7 +269,7 @@ OutgoingMessageQueueImpl
 	  try{
 	      queue_mon.enter();
 
-	      return( queue.peek());
+	      return( queue_size==0?null:queueGet( 0 ));
 
 	  }finally{
 
@@ -261,8 +324,8 @@ OutgoingMessageQueueImpl
 	      queue_mon.enter();
 
 	      int pos = 0;
-	      for( Iterator<RawMessage> it = queue.iterator(); it.hasNext(); ) {
-	        RawMessage msg = it.next();
+	      while( pos < queue_size ) {
+	        RawMessage msg = queueGet( pos );
 	        if( rmesg.getPriority() > msg.getPriority()
 	          && msg.getRawData()[0].position(DirectByteBuffer.SS_NET) == 0 ) {  //but don't insert in front of a half-sent message
 	          break;
@@ -272,13 +335,9 @@ OutgoingMessageQueueImpl
 	      if( rmesg.isNoDelay() ) {
 	        urgent_message = rmesg;
 	      }
-	      queue.add( pos, rmesg );
+	      queueInsert( pos, rmesg );
 
-	      DirectByteBuffer[] payload = rmesg.getRawData();
-	      int	remaining = 0;
-	      for( int j=0; j < payload.length; j++ ) {
-	    	  remaining += payload[j].remaining(DirectByteBuffer.SS_NET);
-	      }
+	      int	remaining = getRemaining( rmesg );
 	      total_size += remaining;
 	      if ( rmesg.getType() == Message.TYPE_DATA_PAYLOAD ){
 	    	  total_data_size += remaining;
@@ -331,8 +390,13 @@ OutgoingMessageQueueImpl
     try{
       queue_mon.enter();
 
-      for( Iterator<RawMessage> i = queue.iterator(); i.hasNext(); ) {
-        RawMessage msg = i.next();
+      int mask = queue.length - 1;
+      int kept = 0;
+
+      for( int q=0; q < queue_size; q++ ) {
+        RawMessage msg = queueGet( q );
+
+        boolean removed = false;
 
         for( int t=0; t < message_types.length; t++ ) {
           boolean same_type = message_types[t].getID().equals( msg.getID() );
@@ -340,11 +404,7 @@ OutgoingMessageQueueImpl
           if( same_type && msg.getRawData()[0].position(DirectByteBuffer.SS_NET) == 0 ) {   //dont remove a half-sent message
             if( msg == urgent_message ) urgent_message = null;
 
-            DirectByteBuffer[] payload = msg.getRawData();
-            int remaining = 0;
-            for( int x=0; x < payload.length; x++ ) {
-            	remaining += payload[x].remaining(DirectByteBuffer.SS_NET);
-            }
+            int remaining = getRemaining( msg );
             total_size -= remaining;
             if ( msg.getType() == Message.TYPE_DATA_PAYLOAD ){
             	total_data_size -= remaining;
@@ -367,13 +427,24 @@ OutgoingMessageQueueImpl
               }
               messages_removed.add( msg );
             }
-        		i.remove();
+            removed = true;
             break;
         	}
         }
+
+        if( !removed ) {  //compact the survivors towards the head
+          queue[( queue_head + kept++ ) & mask] = msg;
+        }
+      }
+
+      for( int q=kept; q < queue_size; q++ ) {
+        queue[( queue_head + q ) & mask] = null;
       }
 
-      if ( queue.isEmpty()){
+      queue_size = kept;
+
+      if ( queue_size == 0 ){
+    	  queueDrained();
     	  progress = null;
     	  progress_id++;
       }
@@ -422,23 +493,19 @@ OutgoingMessageQueueImpl
     try{
       queue_mon.enter();
 
-      for( Iterator<RawMessage> it = queue.iterator(); it.hasNext(); ) {
-        RawMessage raw = it.next();
+      for( int q=0; q < queue_size; q++ ) {
+        RawMessage raw = queueGet( q );
 
         if( message.equals( raw.getBaseMessage() ) ) {
           if( raw.getRawData()[0].position(DirectByteBuffer.SS_NET) == 0 ) {  //dont remove a half-sent message
             if( raw == urgent_message ) urgent_message = null;
 
-            DirectByteBuffer[] payload = raw.getRawData();
-            int remaining = 0;
-            for( int x=0; x < payload.length; x++ ) {
-            	remaining += payload[x].remaining(DirectByteBuffer.SS_NET);
-            }
+            int remaining = getRemaining( raw );
             total_size -= remaining;
             if ( raw.getType() == Message.TYPE_DATA_PAYLOAD ){
             	total_data_size -= remaining;
             }
-            queue.remove( raw );
+            queueRemove( q );
             msg_removed = raw;
           }
 
@@ -446,7 +513,7 @@ OutgoingMessageQueueImpl
         }
       }
 
-      if ( queue.isEmpty()){
+      if ( queue_size == 0 ){
     	  progress = null;
     	  progress_id++;
       }
@@ -484,8 +551,139 @@ OutgoingMessageQueueImpl
   }
 
 
-  private WeakReference rawBufferCache = new WeakReference(null);
-  private WeakReference origPositionsCache = new WeakReference(null);
+  private static int
+  getRemaining(
+	RawMessage	msg )
+  {
+	  DirectByteBuffer[] payload = msg.getRawData();
+	  int remaining = 0;
+	  for( int x=0; x < payload.length; x++ ) {
+		  remaining += payload[x].remaining(DirectByteBuffer.SS_NET);
+	  }
+	  DirectFileRegion region = msg.getFileRegion();
+	  if ( region != null ){
+		  remaining += region.getRemaining();
+	  }
+	  return( remaining );
+  }
+
+  private RawMessage
+  queueGet(
+	int		index )
+  {
+	  return( queue[( queue_head + index ) & ( queue.length - 1 )]);
+  }
+
+  private void
+  queueInsert(
+	int			index,
+	RawMessage	msg )
+  {
+	  if ( queue_size == queue.length ){
+
+		  RawMessage[] new_queue = new RawMessage[queue.length*2];
+
+		  for ( int i=0;i<queue_size;i++){
+
+			  new_queue[i] = queueGet( i );
+		  }
+
+		  queue			= new_queue;
+		  queue_head	= 0;
+
+		  allocations++;
+	  }
+
+	  int	mask = queue.length - 1;
+
+	  if ( index == 0 ){
+
+		  queue_head = ( queue_head - 1 ) & mask;
+
+	  }else{
+
+			// messages normally go at or near the tail so this is rarely more than a move or two
+
+		  for ( int i=queue_size;i>index;i--){
+
+			  queue[( queue_head + i ) & mask] = queue[( queue_head + i - 1 ) & mask];
+		  }
+	  }
+
+	  queue[( queue_head + index ) & mask] = msg;
+
+	  queue_size++;
+  }
+
+  private RawMessage
+  queueRemove(
+	int		index )
+  {
+	  int	mask = queue.length - 1;
+
+	  RawMessage msg = queue[( queue_head + index ) & mask];
+
+	  if ( index == 0 ){
+
+		  queue[queue_head] = null;
+
+		  queue_head = ( queue_head + 1 ) & mask;
+
+	  }else{
+
+		  for ( int i=index;i<queue_size-1;i++){
+
+			  queue[( queue_head + i ) & mask] = queue[( queue_head + i + 1 ) & mask];
+		  }
+
+		  queue[( queue_head + queue_size - 1 ) & mask] = null;
+	  }
+
+	  queue_size--;
+
+	  if ( queue_size == 0 ){
+
+		  queueDrained();
+	  }
+
+	  return( msg );
+  }
+
+  private void
+  queueDrained()
+  {
+	  queue_head = 0;
+
+	  if ( queue.length > QUEUE_SHRINK_SIZE ){
+
+			// give back the space taken by a burst
+
+		  queue = new RawMessage[QUEUE_INITIAL_SIZE];
+
+		  allocations++;
+	  }
+  }
+
+  private void
+  growGatherArrays()
+  {
+	  int	new_size = payload_buffers.length*2;
+
+	  ByteBuffer[]	new_gather		= new ByteBuffer[new_size];
+	  ByteBuffer[]	new_payload		= new ByteBuffer[new_size];
+	  int[]			new_positions	= new int[new_size];
+
+	  System.arraycopy( gather_buffers, 0, new_gather, 0, gather_buffers.length );
+	  System.arraycopy( payload_buffers, 0, new_payload, 0, payload_buffers.length );
+	  System.arraycopy( payload_positions, 0, new_positions, 0, payload_positions.length );
+
+	  gather_buffers	= new_gather;
+	  payload_buffers	= new_payload;
+	  payload_positions	= new_positions;
+
+	  allocations += 3;
+  }
+
 
   /**
    * Deliver (write) message(s) data to the underlying transport.
@@ -497,7 +695,7 @@ OutgoingMessageQueueImpl
    * deadlock.
    * @param max_bytes maximum number of bytes to deliver
    * @param manual_listener_notify true for manual notification, false for automatic
-   * @return number of bytes delivered
+   * @return number of bytes delivered as [ data, protocol ]
    * @throws IOException on delivery error
    */
    @Override
@@ -520,202 +718,286 @@ OutgoingMessageQueueImpl
 
 	  ArrayList<RawMessage> messages_sent = null;
 
+	  int coalesced = 0;
+
 	  //System.out.println( "deliver: %=" + percent_complete + ", queue=" + queue.size());
 	  try{
 		  queue_mon.enter();
 
-		  if( !queue.isEmpty() ){
+		  if( queue_size > 0 ){
 
-			  int buffer_limit 		= 64;
+			  if ( gather_buffers == null ){
 
-			  ByteBuffer[] raw_buffers 	= (ByteBuffer[])rawBufferCache.get();
-			  if(raw_buffers == null)
-			  {
-				  raw_buffers = new ByteBuffer[buffer_limit];
-				  rawBufferCache = new WeakReference(raw_buffers);
-			  } else
-			  {
-				  Arrays.fill(raw_buffers, null);
-			  }
+				  gather_buffers		= new ByteBuffer[GATHER_INITIAL_SIZE];
+				  payload_buffers		= new ByteBuffer[GATHER_INITIAL_SIZE];
+				  payload_positions		= new int[GATHER_INITIAL_SIZE];
 
-
-			  int[] orig_positions	= (int[])origPositionsCache.get();
-			  if(orig_positions == null)
-			  {
-				  orig_positions = new int[buffer_limit];
-				  origPositionsCache = new WeakReference(orig_positions);
-			  } else
-			  {
-				  Arrays.fill(orig_positions, 0);
+				  allocations += 3;
 			  }
 
+			  Coalescer	coalescer = coalescers.get();
+
+			  coalescer.reset();
 
+			  int gather_count	= 0;
+			  int payload_count	= 0;
 
-			  int buffer_count	= 0;
+			  try{
+				  int total_sofar_excluding_free 	= 0;
+				  int total_to_write				= 0;
 
-			  int total_sofar_excluding_free 	= 0;
-			  int total_to_write				= 0;
+				  RawMessage	region_message	= null;
+				  long			region_max		= 0;
 
 outer:
-			  for( Iterator<RawMessage> i = queue.iterator(); i.hasNext(); ){
+				  for( int m=0; m < queue_size; m++ ){
 
-				  RawMessage	message = i.next();
+					  RawMessage	message = queueGet( m );
 
-				  boolean msg_is_free = message.getType() == Message.TYPE_PROTOCOL_PAYLOAD && protocol_is_free;
+					  boolean msg_is_free = message.getType() == Message.TYPE_PROTOCOL_PAYLOAD && protocol_is_free;
 
-				  DirectByteBuffer[] payloads = message.getRawData();
+					  DirectByteBuffer[] payloads = message.getRawData();
 
-				  for( int x=0; x < payloads.length; x++ ){
+					  boolean	coalesce = false;
 
-					  ByteBuffer buff = payloads[x].getBuffer( DirectByteBuffer.SS_NET );
+					  if ( message.getType() == Message.TYPE_PROTOCOL_PAYLOAD && message.getFileRegion() == null ){
 
-					  raw_buffers[buffer_count] = buff;
+						  int	rem = getRemaining( message );
 
-					  orig_positions[buffer_count] = buff.position();
+						  coalesce = rem <= COALESCE_MAX_MESSAGE && coalescer.canAccept( rem );
+					  }
 
-					  buffer_count++;
+					  if ( coalesce ){
 
-					  int rem = buff.remaining();
+						  coalesced++;
 
-					  total_to_write += rem;
+					  }else{
 
-					  if ( !msg_is_free ){
+						  coalescer.endRun();
+					  }
+
+					  for( int x=0; x < payloads.length; x++ ){
 
-						  total_sofar_excluding_free += rem;
+						  ByteBuffer buff = payloads[x].getBuffer( DirectByteBuffer.SS_NET );
 
-						  if ( total_sofar_excluding_free >= max_bytes ){
+						  if ( payload_count == payload_buffers.length ) {
 
-							  break outer;
+							  growGatherArrays();
 						  }
-					  }
 
-					  if ( buffer_count == buffer_limit ) {
+						  payload_buffers[payload_count] 	= buff;
+						  payload_positions[payload_count] 	= buff.position();
+
+						  if ( coalesce ){
+
+							  ByteBuffer run = coalescer.add( buff, payload_count );
+
+							  if ( run != null ){
 
-						  int	new_buffer_limit	= buffer_limit * 2;
+								  gather_buffers[gather_count++] = run;
+							  }
+						  }else{
+
+							  gather_buffers[gather_count++] = buff;
+						  }
+
+						  payload_count++;
+
+						  int rem = buff.remaining();
+
+						  total_to_write += rem;
+
+						  if ( !msg_is_free ){
+
+							  total_sofar_excluding_free += rem;
+
+							  if ( total_sofar_excluding_free >= max_bytes ){
+
+								  break outer;
+							  }
+						  }
+					  }
 
-						  ByteBuffer[] 	new_raw_buffers 	= new ByteBuffer[new_buffer_limit];
-						  int[]		 	new_orig_positions	= new int[new_buffer_limit];
+					  if ( message.getFileRegion() != null ){
 
-						  System.arraycopy( raw_buffers, 0, new_raw_buffers, 0, buffer_limit );
-						  System.arraycopy( orig_positions, 0, new_orig_positions, 0, buffer_limit );
+							// the file data can't be gathered with the buffers, it is written once
+							// they have all gone so nothing beyond this message can be included
 
-						  raw_buffers 		= new_raw_buffers;
-						  orig_positions	= new_orig_positions;
+						  region_message	= message;
+						  region_max		= max_bytes - total_sofar_excluding_free;
 
-						  buffer_limit 		= new_buffer_limit;
+						  break;
 					  }
 				  }
-			  }
 
-			  ByteBuffer last_buff = (ByteBuffer)raw_buffers[buffer_count - 1 ];
+				  ByteBuffer last_buff = gather_buffers[gather_count - 1 ];
 
-			  int orig_last_limit = last_buff.limit();
+				  int orig_last_limit = last_buff.limit();
 
-			  if ( total_sofar_excluding_free > max_bytes ){
+				  if ( total_sofar_excluding_free > max_bytes ){
 
-				  int reduce_by = (int)( total_sofar_excluding_free - max_bytes );
+						// a coalesced run holds the bytes of its messages in order so trimming
+						// it trims the last of them just the same
 
-				  last_buff.limit( orig_last_limit - reduce_by );
+					  int reduce_by = (int)( total_sofar_excluding_free - max_bytes );
 
-				  total_to_write -= reduce_by;
-			  }
+					  last_buff.limit( orig_last_limit - reduce_by );
 
-			  if ( total_to_write <= 0 ){
+					  total_to_write -= reduce_by;
+				  }
+
+				  if ( total_to_write <= 0 && region_message == null ){
+
+					  last_buff.limit( orig_last_limit );
+
+					  return( new int[2] );
+				  }
+
+				  if ( total_to_write > 0 ){
+
+					  transport.write( gather_buffers, 0, gather_count );
+				  }
 
 				  last_buff.limit( orig_last_limit );
 
-				  return( new int[2] );
-			  }
+				  coalescer.complete( payload_buffers );
+
+				  int region_written = 0;
 
-			  transport.write( raw_buffers, 0, buffer_count );
+				  if ( region_message != null && !last_buff.hasRemaining()){
 
-			  last_buff.limit( orig_last_limit );
+					  region_written = (int)transport.writeFileRegion( region_message.getFileRegion(), region_max );
+				  }
 
-			  int pos = 0;
-			  boolean stop = false;
+				  int pos = 0;
+				  boolean stop = false;
 
-			  while( !queue.isEmpty() && !stop ) {
-				  RawMessage msg = queue.get( 0 );
-				  DirectByteBuffer[] payloads = msg.getRawData();
+				  while( queue_size > 0 && !stop ) {
+					  RawMessage msg = queueGet( 0 );
+					  DirectByteBuffer[] payloads = msg.getRawData();
 
-				  for( int x=0; x < payloads.length; x++ ) {
-					  ByteBuffer bb = payloads[x].getBuffer( DirectByteBuffer.SS_NET );
+					  for( int x=0; x < payloads.length; x++ ) {
+						  ByteBuffer bb = payloads[x].getBuffer( DirectByteBuffer.SS_NET );
 
-					  int bytes_written = (bb.limit() - bb.remaining()) - orig_positions[ pos ];
-					  total_size -= bytes_written;
+						  int bytes_written = (bb.limit() - bb.remaining()) - payload_positions[ pos ];
+						  total_size -= bytes_written;
 
-					  if ( msg.getType() == Message.TYPE_DATA_PAYLOAD ){
-						  total_data_size -= bytes_written;
-					  }
+						  if ( msg.getType() == Message.TYPE_DATA_PAYLOAD ){
+							  total_data_size -= bytes_written;
+						  }
 
-					  if( x > 0 && msg.getType() == Message.TYPE_DATA_PAYLOAD ) {  //assumes the first buffer is message header
-						  data_written += bytes_written;
-					  }else {
-						  protocol_written += bytes_written;
-					  }
+						  if( x > 0 && msg.getType() == Message.TYPE_DATA_PAYLOAD ) {  //assumes the first buffer is message header
+							  data_written += bytes_written;
+						  }else {
+							  protocol_written += bytes_written;
+						  }
 
-					  if( bb.hasRemaining() ) {  //still data left to send in this message
-						  stop = true;  //so don't bother checking later messages for completion
+						  if( bb.hasRemaining() ) {  //still data left to send in this message
+							  stop = true;  //so don't bother checking later messages for completion
 
-						  //compute send percentage
-						  int message_size = 0;
-						  int written = 0;
+							  //compute send percentage
+							  int message_size = 0;
+							  int written = 0;
 
-						  for( int i=0; i < payloads.length; i++ ) {
-							  ByteBuffer buff = payloads[i].getBuffer( DirectByteBuffer.SS_NET );
+							  for( int i=0; i < payloads.length; i++ ) {
+								  ByteBuffer buff = payloads[i].getBuffer( DirectByteBuffer.SS_NET );
 
-							  message_size += buff.limit();
+								  message_size += buff.limit();
 
-							  if( i < x ) {  //if in front of non-empty buffer
-								  written += buff.limit();
-							  }
-							  else if( i == x ) {  //is non-empty buffer
-								  written += buff.position();
+								  if( i < x ) {  //if in front of non-empty buffer
+									  written += buff.limit();
+								  }
+								  else if( i == x ) {  //is non-empty buffer
+									  written += buff.position();
+								  }
 							  }
+
+							  setProgress( message_size, written );
+
+							  break;
 						  }
+						  else if( x == payloads.length - 1 ) {  //last payload buffer of message is empty
+							  DirectFileRegion region = msg.getFileRegion();
 
-						  progress = new int[]{ message_size, written, progress_id };
+							  if( region != null ) {  //file data follows the buffers
+								  total_size 		-= region_written;
+								  total_data_size 	-= region_written;
+								  data_written 		+= region_written;
 
-						  break;
-					  }
-					  else if( x == payloads.length - 1 ) {  //last payload buffer of message is empty
-						  if( msg == urgent_message ) urgent_message = null;
+								  if( region.hasRemaining() ) {
+									  stop = true;
 
-						  queue.remove( 0 );
+									  int message_size = region.getLength();
+									  int written = region.getPosition();
 
+									  for( int i=0; i < payloads.length; i++ ) {
+										  int limit = payloads[i].getBuffer( DirectByteBuffer.SS_NET ).limit();
 
-						  if( TRACE_HISTORY ) {
-							  prev_sent.addLast( msg );
-							  if( prev_sent.size() > MAX_HISTORY_TRACES )  prev_sent.removeFirst();
-						  }
+										  message_size += limit;
+										  written += limit;
+									  }
 
+									  setProgress( message_size, written );
 
-						  progress = null;
-						  progress_id++;
+									  break;
+								  }
+							  }
 
-						  if( manual_listener_notify ) {
-							  NotificationItem item = new NotificationItem( NotificationItem.MESSAGE_SENT );
-							  item.message = msg;
-							  try {  delayed_notifications_mon.enter();
-							  delayed_notifications.add( item );
-							  } finally {  delayed_notifications_mon.exit();  }
-						  }
-						  else {
-							  if( messages_sent == null ) {
-								  messages_sent = new ArrayList<>();
+							  if( msg == urgent_message ) urgent_message = null;
+
+							  queueRemove( 0 );
+
+
+							  if( TRACE_HISTORY ) {
+								  prev_sent[prev_sent_next] = msg;
+								  prev_sent_next = ( prev_sent_next + 1 ) % MAX_HISTORY_TRACES;
+							  }
+
+
+							  progress = null;
+							  progress_id++;
+
+							  if( manual_listener_notify ) {
+								  NotificationItem item = new NotificationItem( NotificationItem.MESSAGE_SENT );
+								  item.message = msg;
+								  try {  delayed_notifications_mon.enter();
+								  delayed_notifications.add( item );
+								  } finally {  delayed_notifications_mon.exit();  }
+
+								  allocations++;
+							  }
+							  else {
+								  if( messages_sent == null ) {
+									  messages_sent = new ArrayList<>();
+
+									  allocations++;
+								  }
+								  messages_sent.add( msg );
 							  }
-							  messages_sent.add( msg );
 						  }
-					  }
 
-					  pos++;
-					  if( pos >= buffer_count ) {
-						  stop = true;
-						  break;
+						  pos++;
+						  if( pos >= payload_count ) {
+							  stop = true;
+							  break;
+						  }
 					  }
 				  }
+			  }finally{
+
+					// don't hang on to buffers that are about to be returned to the pool
+
+				  Arrays.fill( gather_buffers, 0, gather_count, null );
+				  Arrays.fill( payload_buffers, 0, payload_count, null );
 			  }
 		  }
+
+		  if( data_written + protocol_written > 0 ){
+
+			  TransportStats.queueDelivered( data_written + protocol_written, allocations, coalesced );
+
+			  allocations = 0;
+		  }
 	  }finally{
 		  queue_mon.exit();
 	  }
@@ -726,7 +1008,7 @@ outer:
 	  if( data_written + protocol_written > 0 || messages_sent != null ) {
 
 		  if ( trace ){
-			  TimeFormatter.milliTrace( "omq:deliver: " + (data_written + protocol_written) + ", q=" + queue.size() + "/" + total_size );
+			  TimeFormatter.milliTrace( "omq:deliver: " + (data_written + protocol_written) + ", q=" + queue_size + "/" + total_size );
 		  }
 
 		  if( manual_listener_notify ) {
@@ -783,7 +1065,7 @@ outer:
 		  }
 	  }else{
 		  if ( trace ){
-			  TimeFormatter.milliTrace( "omq:deliver: 0, q=" + queue.size() + "/" + total_size );
+			  TimeFormatter.milliTrace( "omq:deliver: 0, q=" + queue_size + "/" + total_size );
 		  }
 	  }
 
@@ -797,14 +1079,14 @@ outer:
 	  try{
 		  queue_mon.enter();
 
-		  if ( queue.isEmpty()){
+		  if ( queue_size == 0 ){
 
 			  return;
 		  }
 
-		  for (int i=0;i<queue.size();i++){
+		  for (int i=0;i<queue_size;i++){
 
-			  RawMessage	msg = queue.get(i);
+			  RawMessage	msg = queueGet(i);
 
 			  msg.setNoDelay();
 
@@ -921,8 +1203,9 @@ outer:
 
       int i=0;
 
-    	for( Iterator<RawMessage> it = prev_sent.iterator(); it.hasNext(); ) {
-    		RawMessage raw = it.next();
+    	for( int h=0; prev_sent != null && h < MAX_HISTORY_TRACES; h++ ) {
+    		RawMessage raw = prev_sent[( prev_sent_next + h ) % MAX_HISTORY_TRACES];
+    		if( raw == null ) continue;
         trace.append("[#h").append(i).append("]: ")
              .append(raw.getID())
              .append(" [")
@@ -934,10 +1217,10 @@ outer:
 
 
 
-      int position = queue.size() - 1;
+      int position = queue_size - 1;
 
-      for( Iterator<RawMessage> it = queue.iterator(); it.hasNext(); ) {
-        RawMessage raw = it.next();
+      for( int q=0; q < queue_size; q++ ) {
+        RawMessage raw = queueGet( q );
 
         int pos = raw.getRawData()[0].position(DirectByteBuffer.SS_NET);
         int length = raw.getRawData()[0].limit( DirectByteBuffer.SS_NET );
@@ -1035,6 +1318,121 @@ outer:
 
 
 
+	/**
+	 * Copies runs of consecutive small messages into one buffer for the write. Each run is
+	 * exposed as a view onto the shared buffer and once the write is done the bytes taken from
+	 * each view are handed back to the message buffers it was built from, in order.
+	 */
+
+  private static class
+  Coalescer
+  {
+	  private final ByteBuffer		buffer	= ByteBuffer.allocateDirect( COALESCE_BUFFER_SIZE );
+
+	  private final ByteBuffer[]	views			= new ByteBuffer[COALESCE_MAX_RUNS];
+	  private final int[]			view_starts		= new int[COALESCE_MAX_RUNS];
+	  private final int[]			first_payloads	= new int[COALESCE_MAX_RUNS];
+	  private final int[]			end_payloads	= new int[COALESCE_MAX_RUNS];
+
+	  private int		runs;
+	  private boolean	in_run;
+
+	  Coalescer()
+	  {
+		  for ( int i=0;i<COALESCE_MAX_RUNS;i++){
+
+			  views[i] = buffer.duplicate();
+		  }
+	  }
+
+	  void
+	  reset()
+	  {
+		  buffer.clear();
+
+		  runs		= 0;
+		  in_run	= false;
+	  }
+
+	  boolean
+	  canAccept(
+		int		len )
+	  {
+		  return( buffer.remaining() >= len && ( in_run || runs < COALESCE_MAX_RUNS ));
+	  }
+
+	  void
+	  endRun()
+	  {
+		  in_run = false;
+	  }
+
+		/**
+		 * @return the view to add to the gather list if this started a new run, null otherwise
+		 */
+
+	  ByteBuffer
+	  add(
+		ByteBuffer		buff,
+		int				payload_index )
+	  {
+		  ByteBuffer	result = null;
+
+		  if ( !in_run ){
+
+			  ByteBuffer view = views[runs];
+
+			  view.clear();
+			  view.position( buffer.position());
+
+			  view_starts[runs]		= buffer.position();
+			  first_payloads[runs]	= payload_index;
+
+			  runs++;
+
+			  in_run = true;
+
+			  result = view;
+		  }
+
+		  int	pos = buff.position();
+
+		  buffer.put( buff );
+
+		  buff.position( pos );
+
+		  views[runs-1].limit( buffer.position());
+
+		  end_payloads[runs-1] = payload_index + 1;
+
+		  return( result );
+	  }
+
+	  void
+	  complete(
+		ByteBuffer[]	payload_buffers )
+	  {
+		  for ( int r=0;r<runs;r++){
+
+			  int	written = views[r].position() - view_starts[r];
+
+			  for ( int p=first_payloads[r];p<end_payloads[r] && written > 0;p++){
+
+				  ByteBuffer	buff = payload_buffers[p];
+
+				  int	len = Math.min( written, buff.remaining());
+
+				  buff.position( buff.position() + len );
+
+				  written -= len;
+			  }
+		  }
+
+		  runs = 0;
+	  }
+  }
+
+
   private static class NotificationItem {
     private static final int MESSAGE_ADDED        = 0;
     private static final int MESSAGE_REMOVED      = 1;
@@ -27,6 +27,7 @@ import java.security.KeyFactory;
 import java.security.KeyPair;
 import java.security.KeyPairGenerator;
 import java.security.PublicKey;
+import java.security.spec.AlgorithmParameterSpec;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Random;
@@ -36,6 +37,7 @@ import javax.crypto.KeyAgreement;
 import javax.crypto.interfaces.DHPublicKey;
 import javax.crypto.spec.DHParameterSpec;
 import javax.crypto.spec.DHPublicKeySpec;
+import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
 
 import com.biglybt.core.config.COConfigurationManager;
@@ -87,18 +89,19 @@ ProtocolDecoderPHE
 
 	private static boolean	crypto_setup_done;
 	private static boolean	crypto_ok;
-	//private static boolean	aes_ok;
+	private static boolean	aes_ok;
+
+		// AES is our own extension to MSE so is only ever selected between peers that both offer
+		// it. CTR as it is a stream mode the JCE can hardware accelerate, each direction gets its own
+		// key (derived from the RC4 one) so the zero IV never results in keystream reuse
 
-	/*
 	private static final String		AES_STREAM_ALG				= "AES";
-	private static final String		AES_STREAM_CIPHER			= "AES/CFB8/NoPadding";
+	private static final String		AES_STREAM_CIPHER			= "AES/CTR/NoPadding";
 	private static final int		AES_STREAM_KEY_SIZE			= 128;
 	private static final int		AES_STREAM_KEY_SIZE_BYTES	= AES_STREAM_KEY_SIZE/8;
-   	*/
 
-	//private static final byte[]		AES_STREAM_IV				=
-    //	{ 	(byte)0x15, (byte)0xE0, (byte)0x6B, (byte)0x7E, (byte)0x98, (byte)0x59, (byte)0xE4, (byte)0xA7,
-    //		(byte)0x34, (byte)0x66, (byte)0xAD, (byte)0x48, (byte)0x35, (byte)0xE2, (byte)0xD0, (byte)0x24 };
+	private static final byte[]		AES_STREAM_IV				= new byte[16];
+	private static final byte[]		AES_KEY_IV					= "keyAES".getBytes();
 
 
 	private static final String		RC4_STREAM_ALG				= "RC4";
@@ -162,17 +165,16 @@ ProtocolDecoderPHE
 
 			    rc4_cipher = new TransportCipher( RC4_STREAM_CIPHER, Cipher.DECRYPT_MODE, rc4_test_secret_key_spec );
 
-			    /*
 				try{
 					byte[]	aes_test_secret = new byte[AES_STREAM_KEY_SIZE_BYTES];
 
 					SecretKeySpec	aes_test_secret_key_spec = new SecretKeySpec(aes_test_secret, 0, AES_STREAM_KEY_SIZE_BYTES, AES_STREAM_ALG );
 
-					AlgorithmParameterSpec	spec = 	new IvParameterSpec( aes_test_secret );
+					AlgorithmParameterSpec	spec = 	new IvParameterSpec( AES_STREAM_IV );
 
-			        TCPTransportCipher aes_cipher = new TCPTransportCipher( AES_STREAM_CIPHER, Cipher.ENCRYPT_MODE, aes_test_secret_key_spec, spec );
+			        TransportCipher aes_cipher = new TransportCipher( AES_STREAM_CIPHER, Cipher.ENCRYPT_MODE, aes_test_secret_key_spec, spec );
 
-			        aes_cipher = new TCPTransportCipher( AES_STREAM_CIPHER, Cipher.DECRYPT_MODE, aes_test_secret_key_spec, spec );
+			        aes_cipher = new TransportCipher( AES_STREAM_CIPHER, Cipher.DECRYPT_MODE, aes_test_secret_key_spec, spec );
 
 			        aes_ok	= true;
 
@@ -180,7 +182,6 @@ ProtocolDecoderPHE
 
 					Logger.log(	new LogEvent(LOGID, "AES Unavailable", e ));
 				}
-		        */
 
 		        crypto_ok	= true;
 
@@ -262,14 +263,14 @@ ProtocolDecoderPHE
 	}
 
 	// private static final byte SUPPORTED_PROTOCOLS = (byte)((aes_ok?CRYPTO_AES:0) | CRYPTO_RC4 | CRYPTO_XOR | CRYPTO_PLAIN );
-	private static final byte SUPPORTED_PROTOCOLS = (byte)(CRYPTO_RC4 | CRYPTO_PLAIN );
+	private static byte SUPPORTED_PROTOCOLS = (byte)(CRYPTO_RC4 | CRYPTO_PLAIN );
 
 
 	static byte 	MIN_CRYPTO;
 
 	static{
 	    COConfigurationManager.addAndFireParameterListeners(
-	    		new String[]{ "network.transport.encrypted.min_level" },
+	    		new String[]{ "network.transport.encrypted.min_level", "network.transport.encrypted.allow.aes" },
 	    		new ParameterListener()
 	    		{
 	    			 @Override
@@ -281,6 +282,15 @@ ProtocolDecoderPHE
 	    					 Logger.log( new LogAlert(true,LogAlert.AT_ERROR,"Connection encryption unavailable, please update your Java version" ));
 	    				 }
 
+	    				 if ( COConfigurationManager.getBooleanParameter( "network.transport.encrypted.allow.aes" ) && isCryptoOK() && aes_ok ){
+
+	    					 SUPPORTED_PROTOCOLS = (byte)(CRYPTO_AES | CRYPTO_RC4 | CRYPTO_PLAIN );
+
+	    				 }else{
+
+	    					 SUPPORTED_PROTOCOLS = (byte)(CRYPTO_RC4 | CRYPTO_PLAIN );
+	    				 }
+
 	    				 String	min	= COConfigurationManager.getStringParameter( "network.transport.encrypted.min_level");
 
 	    				 if ( min.equals( "XOR" )){
@@ -344,6 +354,9 @@ ProtocolDecoderPHE
 	private TransportCipher		write_cipher;
 	private TransportCipher		read_cipher;
 
+	private byte[]				stream_key_a;
+	private byte[]				stream_key_b;
+
 	private byte[]			padding_skip_marker;
 
 	private byte			my_supported_protocols;
@@ -589,6 +602,9 @@ ProtocolDecoderPHE
 
 		    byte[]	b_key = hasher.getDigest();
 
+		    stream_key_a	= a_key;
+		    stream_key_b	= b_key;
+
 		    SecretKeySpec	secret_key_spec_a = new SecretKeySpec( a_key, RC4_STREAM_ALG );
 
 		    SecretKeySpec	secret_key_spec_b = new SecretKeySpec( b_key, RC4_STREAM_ALG );
@@ -646,6 +662,18 @@ ProtocolDecoderPHE
 	}
 	*/
 
+	private static SecretKeySpec
+	getAESKeySpec(
+		byte[]		stream_key )
+	{
+	    SHA1Hasher	hasher = new SHA1Hasher();
+
+	    hasher.update( AES_KEY_IV );
+	    hasher.update( stream_key );
+
+	    return( new SecretKeySpec( hasher.getDigest(), 0, AES_STREAM_KEY_SIZE_BYTES, AES_STREAM_ALG ));
+	}
+
 	protected void
 	handshakeComplete()
 
@@ -666,20 +694,22 @@ ProtocolDecoderPHE
 						read_cipher,
 						write_cipher );
 
-			/*
 		}else if ( selected_protocol == CRYPTO_AES ){
 
+				// the handshake itself (including any initial data) was RC4, the stream switches from here
+
 			try{
-		        SecretKeySpec	secret_key_spec = new SecretKeySpec( secret_bytes, 32, AES_STREAM_KEY_SIZE_BYTES, AES_STREAM_ALG );
+				SecretKeySpec	key_spec_a = getAESKeySpec( stream_key_a );
+				SecretKeySpec	key_spec_b = getAESKeySpec( stream_key_b );
 
-		        AlgorithmParameterSpec	spec = 	new IvParameterSpec( secret_bytes, 48, AES_STREAM_KEY_SIZE_BYTES );
+		        AlgorithmParameterSpec	spec = 	new IvParameterSpec( AES_STREAM_IV );
 
-		        write_cipher 	= new TCPTransportCipher( AES_STREAM_CIPHER, Cipher.ENCRYPT_MODE, secret_key_spec, spec );
+		        write_cipher 	= new TransportCipher( AES_STREAM_CIPHER, Cipher.ENCRYPT_MODE, outbound?key_spec_a:key_spec_b, spec );
 
-		        read_cipher 	= new TCPTransportCipher( AES_STREAM_CIPHER, Cipher.DECRYPT_MODE, secret_key_spec, spec );
+		        read_cipher 	= new TransportCipher( AES_STREAM_CIPHER, Cipher.DECRYPT_MODE, outbound?key_spec_b:key_spec_a, spec );
 
-				filter = new TCPTransportHelperFilterStreamCipher(
-						helper,
+				filter = new TransportHelperFilterStreamCipher(
+						transport,
 						read_cipher,
 						write_cipher );
 
@@ -687,8 +717,6 @@ ProtocolDecoderPHE
 
 				throw( new IOException( "AES crypto init failed: " + Debug.getNestedExceptionMessage(e)));
 			}
-		*/
-
 
 		}else{
 
@@ -1079,13 +1107,13 @@ ProtocolDecoderPHE
 
 								selected_protocol = CRYPTO_XOR;
 
-							}else if (( common_protocols & CRYPTO_RC4 )!= 0 ){
+							}else if (( common_protocols & CRYPTO_AES )!= 0 ){
 
-								selected_protocol = CRYPTO_RC4;
+								selected_protocol = CRYPTO_AES;		// before RC4, cheaper when hardware assisted
 
-							}else if (( common_protocols & CRYPTO_AES )!= 0 ){
+							}else if (( common_protocols & CRYPTO_RC4 )!= 0 ){
 
-								selected_protocol = CRYPTO_AES;
+								selected_protocol = CRYPTO_RC4;
 
 							}else{
 
@@ -1645,13 +1673,13 @@ ProtocolDecoderPHE
 
 								selected_protocol = CRYPTO_XOR;
 
-							}else if (( common_protocols & CRYPTO_RC4 )!= 0 ){
+							}else if (( common_protocols & CRYPTO_AES )!= 0 ){
 
-								selected_protocol = CRYPTO_RC4;
+								selected_protocol = CRYPTO_AES;		// before RC4, cheaper when hardware assisted
 
-							}else if (( common_protocols & CRYPTO_AES )!= 0 ){
+							}else if (( common_protocols & CRYPTO_RC4 )!= 0 ){
 
-								selected_protocol = CRYPTO_AES;
+								selected_protocol = CRYPTO_RC4;
 
 							}else{
 
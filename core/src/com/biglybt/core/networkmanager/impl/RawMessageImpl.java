@@ -23,6 +23,7 @@ import com.biglybt.core.networkmanager.RawMessage;
 import com.biglybt.core.peermanager.messaging.Message;
 import com.biglybt.core.peermanager.messaging.MessageException;
 import com.biglybt.core.util.DirectByteBuffer;
+import com.biglybt.core.util.DirectFileRegion;
 
 
 /**
@@ -33,6 +34,7 @@ import com.biglybt.core.util.DirectByteBuffer;
 public class RawMessageImpl implements RawMessage {
   private final Message message;
   private final DirectByteBuffer[] payload;
+  private final DirectFileRegion region;
   private final int priority;
   private boolean is_no_delay;
   private final Message[] to_remove;
@@ -52,8 +54,27 @@ public class RawMessageImpl implements RawMessage {
                             int _priority,
                             boolean _is_no_delay,
                             Message[] _to_remove ) {
+    this( source, raw_payload, null, _priority, _is_no_delay, _to_remove );
+  }
+
+  /**
+   * Create a new raw message whose data is followed by a file region.
+   * @param source original message
+   * @param raw_payload headers + original message data
+   * @param _region file data to be sent after the payload
+   * @param priority in queue
+   * @param is_no_delay is an urgent message
+   * @param to_remove message types to auto-remove upon queue
+   */
+  public RawMessageImpl( Message source,
+                            DirectByteBuffer[] raw_payload,
+                            DirectFileRegion _region,
+                            int _priority,
+                            boolean _is_no_delay,
+                            Message[] _to_remove ) {
     this.message = source;
     this.payload = raw_payload;
+    this.region = _region;
     this.priority = _priority;
     this.is_no_delay = _is_no_delay;
     this.to_remove = _to_remove;
@@ -93,6 +114,9 @@ public class RawMessageImpl implements RawMessage {
   @Override
   public DirectByteBuffer[] getRawData() {  return payload;  }
 
+  @Override
+  public DirectFileRegion getFileRegion() {  return region;  }
+
   @Override
   public int getPriority() {  return priority;  }
 
@@ -118,6 +142,9 @@ public class RawMessageImpl implements RawMessage {
     for( int i=0; i < payload.length; i++ ) {
       payload[i].returnToPool();
     }
+    if( region != null ) {
+      region.destroy();
+    }
   }
 
 
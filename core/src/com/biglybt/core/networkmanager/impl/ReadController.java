@@ -71,6 +71,12 @@ public class ReadController implements CoreStatsProvider, AEDiagnosticsEvidenceG
   private long	progress_count;
 
   private long		process_loop_count;
+  private long		process_wait_nanos;
+  private long		process_total_nanos;
+
+  	// per-controller copies of the stats, suffixed with the partition id
+
+  private final String[]	shard_stat_names;
   
   private volatile boolean	processing_waiting;
   private final ConcurrentLinkedQueue<RateControlledEntity>	to_deactivate = new ConcurrentLinkedQueue<>();
@@ -108,6 +114,27 @@ public class ReadController implements CoreStatsProvider, AEDiagnosticsEvidenceG
     types.add( CoreStats.ST_NET_READ_CONTROL_ENTITY_COUNT );
     types.add( CoreStats.ST_NET_READ_CONTROL_CON_COUNT );
     types.add( CoreStats.ST_NET_READ_CONTROL_READY_CON_COUNT );
+    types.add( CoreStats.ST_NET_READ_CONTROL_LOOP_TIME );
+
+    shard_stat_names = new String[]{
+    	CoreStats.ST_NET_READ_CONTROL_WAIT_COUNT + "." + partition_id,
+    	CoreStats.ST_NET_READ_CONTROL_P_COUNT + "." + partition_id,
+    	CoreStats.ST_NET_READ_CONTROL_NP_COUNT + "." + partition_id,
+    	CoreStats.ST_NET_READ_CONTROL_LOOP_COUNT + "." + partition_id,
+    	CoreStats.ST_NET_READ_CONTROL_LOOP_TIME + "." + partition_id,
+    	CoreStats.ST_NET_READ_CONTROL_ENTITY_COUNT + "." + partition_id,
+    };
+
+    String[][] shard_defs = new String[shard_stat_names.length][];
+
+    for ( int i=0;i<shard_stat_names.length;i++ ){
+
+    	shard_defs[i] = new String[]{ shard_stat_names[i], i<5?CoreStats.CUMULATIVE:CoreStats.POINT };
+
+    	types.add( shard_stat_names[i] );
+    }
+
+    CoreStats.addStatsDefinitions( shard_defs );
 
     CoreStats.registerProvider(
     	types,
@@ -184,6 +211,24 @@ public class ReadController implements CoreStatsProvider, AEDiagnosticsEvidenceG
 		  values.put( CoreStats.ST_NET_READ_CONTROL_ENTITY_COUNT, new Long( high_priority_entities.size() + normal_priority_entities.size()));
 	  }
 
+	  long	loop_time = ( process_total_nanos - process_wait_nanos )/1000000;
+
+	  if ( types.contains( CoreStats.ST_NET_READ_CONTROL_LOOP_TIME )){
+
+		  values.put( CoreStats.ST_NET_READ_CONTROL_LOOP_TIME, new Long( loop_time ));
+	  }
+
+	  long[] shard_values = {
+			  wait_count, progress_count, non_progress_count, process_loop_count, loop_time, entity_count };
+
+	  for ( int i=0;i<shard_stat_names.length;i++ ){
+
+		  if ( types.contains( shard_stat_names[i] )){
+
+			  values.put( shard_stat_names[i], new Long( shard_values[i] ));
+		  }
+	  }
+
 	  if ( 	types.contains( CoreStats.ST_NET_READ_CONTROL_CON_COUNT ) ||
 			types.contains( CoreStats.ST_NET_READ_CONTROL_READY_CON_COUNT )){
 
@@ -219,10 +264,13 @@ public class ReadController implements CoreStatsProvider, AEDiagnosticsEvidenceG
 	  boolean check_high_first = true;
 
 	  while( true ) {
-		  process_loop_count++;
 
 		  while( true ){
-			  			  
+
+			  process_loop_count++;
+
+			  long	loop_start = SystemTime.getHighPrecisionCounter();
+
 			  while( true ){
 
 				  RateControlledEntity e =  to_deactivate.poll();
@@ -242,15 +290,7 @@ public class ReadController implements CoreStatsProvider, AEDiagnosticsEvidenceG
 					  check_high_first = false;
 					  if( !doHighPriorityRead() ) {
 						  if( !doNormalPriorityRead() ) {
-							  try{
-								  processing_waiting = true;
-
-								  if ( read_waiter.waitForEvent( hasConnections()?IDLE_SLEEP_TIME:1000 )){
-									  wait_count++;
-								  }
-							  }finally{
-								  processing_waiting = false;
-							  }
+							  waitForEvent();
 						  }
 					  }
 				  }
@@ -258,24 +298,39 @@ public class ReadController implements CoreStatsProvider, AEDiagnosticsEvidenceG
 					  check_high_first = true;
 					  if( !doNormalPriorityRead() ) {
 						  if( !doHighPriorityRead() ) {
-							  try{
-								  processing_waiting = true;
-								  if ( read_waiter.waitForEvent(hasConnections()?IDLE_SLEEP_TIME:1000 )){
-									  wait_count++;
-								  }
-							  }finally{
-								  processing_waiting = false;
-							  }
+							  waitForEvent();
 						  }
 					  }
 				  }
 			  }catch( Throwable t ) {
 				  Debug.out( "readProcessorLoop() EXCEPTION: ", t );
 			  }
+
+			  process_total_nanos += SystemTime.getHighPrecisionCounter() - loop_start;
 		  }
 	  }
   }
 
+  private void
+  waitForEvent()
+  {
+	  long	wait_start = SystemTime.getHighPrecisionCounter();
+
+	  try{
+		  processing_waiting = true;
+
+		  if ( read_waiter.waitForEvent( hasConnections()?IDLE_SLEEP_TIME:1000 )){
+
+			  wait_count++;
+		  }
+	  }finally{
+
+		  processing_waiting = false;
+
+		  process_wait_nanos += SystemTime.getHighPrecisionCounter() - wait_start;
+	  }
+  }
+
   private boolean
   hasConnections()
   {
@@ -345,10 +400,14 @@ public class ReadController implements CoreStatsProvider, AEDiagnosticsEvidenceG
 
 					  	// force a wait
 
+					  long	wait_start = SystemTime.getHighPrecisionCounter();
+
 					  if ( read_waiter.waitForEvent( IDLE_SLEEP_TIME )){
 		            		wait_count++;
 					  }
 
+					  process_wait_nanos += SystemTime.getHighPrecisionCounter() - wait_start;
+
 					  return( false);
 				  }
 
@@ -356,7 +415,18 @@ public class ReadController implements CoreStatsProvider, AEDiagnosticsEvidenceG
 			  }
 		  }else{
 
-			  return( ready_entity.doProcessing( read_waiter, 0 ) > 0 );
+			  if ( ready_entity.doProcessing( read_waiter, 0 ) > 0 ){
+
+				  progress_count++;
+
+				  return( true );
+
+			  }else{
+
+				  non_progress_count++;
+
+				  return( false );
+			  }
 		  }
 	  }
 
@@ -26,10 +26,6 @@ import java.security.spec.AlgorithmParameterSpec;
 import javax.crypto.Cipher;
 import javax.crypto.spec.SecretKeySpec;
 
-import org.gudy.bouncycastle.crypto.CipherParameters;
-import org.gudy.bouncycastle.crypto.engines.RC4Engine;
-import org.gudy.bouncycastle.crypto.params.KeyParameter;
-
 import com.biglybt.core.util.Debug;
 
 public class
@@ -37,8 +33,8 @@ TransportCipher
 {
 	private static boolean	internal_rc4	= true;	// force internal as we want 160 bit and JCE no supports it
 
-	private Cipher		cipher;
-	private RC4Engine	rc4_engine;
+	private Cipher				cipher;
+	private TransportCipherRC4	rc4;
 
 	public
 	TransportCipher(
@@ -54,6 +50,7 @@ TransportCipher
     	cipher.init( mode, key_spec, params );
 	}
 
+	public
 	TransportCipher(
 		String					algorithm,
 		int						mode,
@@ -78,11 +75,7 @@ TransportCipher
 
 	    	if ( internal_rc4 ){
 
-	    		rc4_engine	= new RC4Engine();
-
-	    		CipherParameters	params = new KeyParameter(key_spec.getEncoded());
-
-	    		rc4_engine.init( mode == Cipher.ENCRYPT_MODE, params );
+	    		rc4	= new TransportCipherRC4( key_spec.getEncoded());
 	    	}
 
 	    	//System.out.println( "RC4 key: " + ByteFormatter.encodeString( key_spec.getEncoded()));
@@ -131,13 +124,13 @@ TransportCipher
 
 			result = new byte[length];
 
-			rc4_engine.processBytes( data, offset, length, result, 0 );
+			rc4.process( data, offset, length, result, 0 );
 		}
 
 		return( result );
    	}
 
-	protected void
+	public void
 	update(
 		ByteBuffer	source_buffer,
 		ByteBuffer	target_buffer )
@@ -145,33 +138,54 @@ TransportCipher
 		throws IOException
 	{
 		try{
-			// TODO: 1.5 supports update( ByteBuffer, ByteBuffer )
+			if ( cipher != null ){
+
+				cipher.update( source_buffer, target_buffer );
+
+			}else{
+
+				rc4.process( source_buffer, target_buffer );
+			}
+		}catch( Throwable e ){
 
-			byte[]	source_bytes;
-			int		offset;
-			int		length	= source_buffer.remaining();
+			throw( new IOException( Debug.getNestedExceptionMessage( e )));
+		}
+	}
 
-			if ( source_buffer.hasArray()){
+		/**
+		 * Crypts 'length' bytes of the buffer starting at 'position' in place, the buffer's
+		 * position and limit are unchanged
+		 */
 
-				source_bytes 	= source_buffer.array();
+	public void
+	updateInPlace(
+		ByteBuffer	buffer,
+		int			position,
+		int			length )
 
-				offset			= source_buffer.arrayOffset() + source_buffer.position();
+		throws IOException
+	{
+		try{
+			if ( cipher != null ){
 
-			}else{
+					// the JCE supports overlapping input and output as long as they are separate buffer objects
 
-				source_bytes 	= new byte[length];
+				ByteBuffer	source = buffer.duplicate();
 
-				offset			= 0;
+				source.limit( position + length );
+				source.position( position );
 
-				source_buffer.get( source_bytes );
-			}
+				ByteBuffer	target = buffer.duplicate();
 
-			byte[]	target_bytes = update( source_bytes, offset, length );
+				target.limit( position + length );
+				target.position( position );
 
-			source_buffer.position( source_buffer.limit());
+				cipher.update( source, target );
 
-			target_buffer.put( target_bytes );
+			}else{
 
+				rc4.process( buffer, position, buffer, position, length );
+			}
 		}catch( Throwable e ){
 
 			throw( new IOException( Debug.getNestedExceptionMessage( e )));
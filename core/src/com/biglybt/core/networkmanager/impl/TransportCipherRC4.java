@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) Bigly Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+
+package com.biglybt.core.networkmanager.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * RC4 for bulk stream data. Rather than interleaving keystream generation with the xor a
+ * byte at a time (as RC4Engine does) the keystream is generated a block at a time into a
+ * scratch buffer and then applied to the data eight bytes at a time, directly against the
+ * source and target ByteBuffers so direct buffers don't need to be copied onto the heap.
+ * Source and target may be the same buffer.
+ */
+
+class
+TransportCipherRC4
+{
+	private static final int	KEYSTREAM_SIZE	= 4096;
+
+	private final int[]		state = new int[256];
+
+	private int	x;
+	private int	y;
+
+	private final byte[]		keystream			= new byte[KEYSTREAM_SIZE];
+	private final ByteBuffer	keystream_buffer	= ByteBuffer.wrap( keystream );
+
+	TransportCipherRC4(
+		byte[]		key )
+	{
+		for ( int i=0;i<256;i++){
+
+			state[i] = i;
+		}
+
+		int	j = 0;
+
+		for ( int i=0;i<256;i++){
+
+			int	s = state[i];
+
+			j = ( j + s + ( key[ i % key.length ] & 0xff )) & 0xff;
+
+			state[i] = state[j];
+			state[j] = s;
+		}
+	}
+
+	private void
+	generate(
+		int		len )
+	{
+		int[]	s 	= state;
+		byte[]	ks	= keystream;
+
+		int	i = x;
+		int	j = y;
+
+		for ( int k=0;k<len;k++){
+
+			i = ( i + 1 ) & 0xff;
+
+			int	si = s[i];
+
+			j = ( j + si ) & 0xff;
+
+			int	sj = s[j];
+
+			s[i] = sj;
+			s[j] = si;
+
+			ks[k] = (byte)s[( si + sj ) & 0xff];
+		}
+
+		x = i;
+		y = j;
+	}
+
+	void
+	process(
+		byte[]		in,
+		int			in_offset,
+		int			length,
+		byte[]		out,
+		int			out_offset )
+	{
+		while( length > 0 ){
+
+			int	chunk = Math.min( length, KEYSTREAM_SIZE );
+
+			generate( chunk );
+
+			for ( int k=0;k<chunk;k++){
+
+				out[out_offset+k] = (byte)( in[in_offset+k] ^ keystream[k] );
+			}
+
+			in_offset	+= chunk;
+			out_offset	+= chunk;
+			length		-= chunk;
+		}
+	}
+
+		/**
+		 * Relative, consumes the source's remaining bytes and advances the target by the same
+		 */
+
+	void
+	process(
+		ByteBuffer	source,
+		ByteBuffer	target )
+	{
+		int	length = source.remaining();
+
+		if ( target.remaining() < length ){
+
+			throw( new IllegalArgumentException( "target too small" ));
+		}
+
+		int	source_pos	= source.position();
+		int	target_pos	= target.position();
+
+		process( source, source_pos, target, target_pos, length );
+
+		source.position( source_pos + length );
+		target.position( target_pos + length );
+	}
+
+		/**
+		 * Absolute, leaves position and limit alone
+		 */
+
+	void
+	process(
+		ByteBuffer	source,
+		int			source_pos,
+		ByteBuffer	target,
+		int			target_pos,
+		int			length )
+	{
+		if ( source.hasArray() && target.hasArray()){
+
+			process(
+				source.array(), source.arrayOffset() + source_pos, length,
+				target.array(), target.arrayOffset() + target_pos );
+
+			return;
+		}
+
+			// long access must agree on byte order with the keystream buffer else the xor scrambles
+
+		boolean	longs = source.order() == ByteOrder.BIG_ENDIAN && target.order() == ByteOrder.BIG_ENDIAN;
+
+		while( length > 0 ){
+
+			int	chunk = Math.min( length, KEYSTREAM_SIZE );
+
+			generate( chunk );
+
+			int	k = 0;
+
+			if ( longs ){
+
+				int	chunk_longs = chunk & ~7;
+
+				for (;k<chunk_longs;k+=8){
+
+					target.putLong( target_pos + k, source.getLong( source_pos + k ) ^ keystream_buffer.getLong( k ));
+				}
+			}
+
+			for (;k<chunk;k++){
+
+				target.put( target_pos + k, (byte)( source.get( source_pos + k ) ^ keystream[k] ));
+			}
+
+			source_pos	+= chunk;
+			target_pos	+= chunk;
+			length		-= chunk;
+		}
+	}
+}
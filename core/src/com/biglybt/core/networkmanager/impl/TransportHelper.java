@@ -23,6 +23,8 @@ import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
 
+import com.biglybt.core.util.DirectFileRegion;
+
 
 public interface
 TransportHelper
@@ -78,6 +80,22 @@ TransportHelper
 
     	throws IOException;
 
+    public default boolean
+    isFileRegionWriteSupported()
+    {
+    	return( false );
+    }
+
+    public default long
+    writeFileRegion(
+    	DirectFileRegion	region,
+    	long				max_bytes )
+
+    	throws IOException
+    {
+    	throw( new IOException( "File region write not supported" ));
+    }
+
     public void
     pauseReadSelects();
 
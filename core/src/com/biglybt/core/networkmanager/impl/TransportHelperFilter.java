@@ -22,6 +22,8 @@ package com.biglybt.core.networkmanager.impl;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 
+import com.biglybt.core.util.DirectFileRegion;
+
 public interface
 TransportHelperFilter
 {
@@ -41,6 +43,22 @@ TransportHelperFilter
 
 		throws IOException;
 
+	public default boolean
+	isFileRegionWriteSupported()
+	{
+		return( false );
+	}
+
+	public default long
+	writeFileRegion(
+		DirectFileRegion	region,
+		long				max_bytes )
+
+		throws IOException
+	{
+		throw( new IOException( "File region write not supported" ));
+	}
+
 	public boolean
 	hasBufferedWrite();
 
@@ -36,6 +36,8 @@ TransportHelperFilterStream
 	private DirectByteBuffer	write_buffer_pending_db;
 	private ByteBuffer			write_buffer_pending_byte;
 
+	private int[]				read_positions	= new int[2];
+
 	protected
 	TransportHelperFilterStream(
 		TransportHelper		_transport )
@@ -264,64 +266,38 @@ TransportHelperFilterStream
 
 		throws IOException
 	{
-		int	total_read	= 0;
-
-		DirectByteBuffer[]	copy_db = new DirectByteBuffer[buffers.length];
-		ByteBuffer[]		copy	= new ByteBuffer[buffers.length];
-
-		try{
-			for (int i=array_offset;i<array_offset+length;i++){
-
-				ByteBuffer	buffer = buffers[i];
-
-				int	size = buffer.remaining();
-
-				if ( size > 0 ){
-
-					copy_db[i]	= DirectByteBufferPool.getBuffer( DirectByteBuffer.AL_NET_CRYPT, size );
-
-					copy[i]	= copy_db[i].getBuffer( DirectByteBuffer.SS_NET );
-				}else{
+			// unlike writes (where the source may well be shared, e.g. piece data being uploaded to
+			// a number of peers) the buffers we read into are the caller's so we read straight into
+			// them and decrypt in place rather than going via copies
 
-					copy[i] = ByteBuffer.allocate(0);
-				}
-			}
+		if ( read_positions.length < buffers.length ){
 
-			total_read += transport.read( copy, array_offset, length );
+			read_positions = new int[buffers.length];
+		}
 
-			for (int i=array_offset;i<array_offset+length;i++){
+		for (int i=array_offset;i<array_offset+length;i++){
 
-				ByteBuffer	source_buffer	= copy[i];
+			read_positions[i] = buffers[i].position();
+		}
 
-				if ( source_buffer != null ){
+		long	total_read = transport.read( buffers, array_offset, length );
 
-					ByteBuffer	target_buffer 	= buffers[i];
+		for (int i=array_offset;i<array_offset+length;i++){
 
-					int	source_position	= source_buffer.position();
+			ByteBuffer	buffer = buffers[i];
 
-					if ( source_position > 0 ){
+			int	start	= read_positions[i];
+			int	len		= buffer.position() - start;
 
-						source_buffer.flip();
+			if ( len > 0 ){
 
-						cryptoIn( source_buffer, target_buffer );
-					}
-				}
+				cryptoInPlace( buffer, start, len );
 			}
+		}
 
-			// System.out.println( "...read " + total_read );
-
-			return( total_read );
-
-		}finally{
-
-			for (int i=0;i<copy_db.length;i++){
-
-				if ( copy_db[i] != null ){
+		// System.out.println( "...read " + total_read );
 
-					copy_db[i].returnToPool();
-				}
-			}
-		}
+		return( total_read );
 	}
 
 	@Override
@@ -345,4 +321,31 @@ TransportHelperFilterStream
 		ByteBuffer	target_buffer )
 
 		throws IOException;
+
+		/**
+		 * Decrypt 'length' bytes of the buffer starting at 'position' in place, without
+		 * changing its position or limit. By default this runs cryptoIn over two views of
+		 * the region which is fine for any byte-at-a-time stream transform.
+		 */
+
+	protected void
+	cryptoInPlace(
+		ByteBuffer	buffer,
+		int			position,
+		int			length )
+
+		throws IOException
+	{
+		ByteBuffer	source = buffer.duplicate();
+
+		source.limit( position + length );
+		source.position( position );
+
+		ByteBuffer	target = buffer.duplicate();
+
+		target.limit( position + length );
+		target.position( position );
+
+		cryptoIn( source, target );
+	}
 }
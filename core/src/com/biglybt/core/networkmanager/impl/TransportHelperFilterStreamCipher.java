@@ -65,6 +65,18 @@ TransportHelperFilterStreamCipher
 		read_cipher.update( source_buffer, target_buffer );
 	}
 
+	@Override
+	protected void
+	cryptoInPlace(
+		ByteBuffer	buffer,
+		int			position,
+		int			length )
+
+		throws IOException
+	{
+		read_cipher.updateInPlace( buffer, position, length );
+	}
+
 	@Override
 	public boolean
 	isEncrypted()
@@ -22,6 +22,8 @@ package com.biglybt.core.networkmanager.impl;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 
+import com.biglybt.core.util.DirectFileRegion;
+
 
 public class
 TransportHelperFilterTransparent
@@ -74,6 +76,24 @@ TransportHelperFilterTransparent
 		return( transport.write( buffers, array_offset, length ));
 	}
 
+	@Override
+	public boolean
+	isFileRegionWriteSupported()
+	{
+		return( read_insert == null && transport.isFileRegionWriteSupported());
+	}
+
+	@Override
+	public long
+	writeFileRegion(
+		DirectFileRegion	region,
+		long				max_bytes )
+
+		throws IOException
+	{
+		return( transport.writeFileRegion( region, max_bytes ));
+	}
+
 	public int
 	write(
 		ByteBuffer 		buffer,
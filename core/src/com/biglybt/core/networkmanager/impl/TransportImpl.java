@@ -29,6 +29,7 @@ import com.biglybt.core.networkmanager.TransportStartpoint;
 import com.biglybt.core.proxy.AEProxyFactory.PluginProxy;
 import com.biglybt.core.util.AEDiagnostics;
 import com.biglybt.core.util.Debug;
+import com.biglybt.core.util.DirectFileRegion;
 import com.biglybt.core.util.SystemTime;
 import com.biglybt.core.util.TimeFormatter;
 
@@ -313,6 +314,39 @@ TransportImpl
 	  	return written;
 	}
 
+	@Override
+	public boolean
+	isFileRegionWriteSupported()
+	{
+		TransportHelperFilter	f = filter;
+
+		return( f != null && f.isFileRegionWriteSupported());
+	}
+
+	@Override
+	public long
+	writeFileRegion(
+		DirectFileRegion	region,
+		long				max_bytes )
+
+		throws IOException
+	{
+	  	if ( write_select_failure != null ){
+
+	  		throw new IOException( "write_select_failure: " + write_select_failure.getMessage() );
+	  	}
+
+	  	if ( filter == null )  return 0;
+
+	  	long written = filter.writeFileRegion( region, max_bytes );
+
+	  	if ( stats != null )  stats.bytesWritten( (int)written );
+
+	  	if ( written < 1 )  requestWriteSelect();
+
+	  	return written;
+	}
+
 	  /**
 	   * Read data from the transport into the given buffers.
 	   * NOTE: Works like ScatteringByteChannel.
@@ -19,10 +19,15 @@
 
 package com.biglybt.core.networkmanager.impl;
 
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
 
+import com.biglybt.core.stats.CoreStats;
+import com.biglybt.core.stats.CoreStatsProvider;
 import com.biglybt.core.util.Timer;
 import com.biglybt.core.util.TimerEvent;
 import com.biglybt.core.util.TimerEventPerformer;
@@ -38,6 +43,61 @@ public class TransportStats {
   private long total_reads = 0;
   private long total_writes = 0;
 
+  	// outgoing message queue send path, always maintained (updated once per write that sent something)
+
+  private static final AtomicLong queue_bytes_sent		= new AtomicLong();
+  private static final AtomicLong queue_allocations		= new AtomicLong();
+  private static final AtomicLong queue_coalesced		= new AtomicLong();
+
+  static{
+    Set types = new HashSet();
+
+    types.add( CoreStats.ST_NET_QUEUE_SEND_BYTE_COUNT );
+    types.add( CoreStats.ST_NET_QUEUE_SEND_ALLOC_COUNT );
+    types.add( CoreStats.ST_NET_QUEUE_SEND_COALESCED_COUNT );
+
+    CoreStats.registerProvider(
+      types,
+      new CoreStatsProvider() {
+        @Override
+        public void updateStats( Set types, Map values ) {
+          if( types.contains( CoreStats.ST_NET_QUEUE_SEND_BYTE_COUNT ) ) {
+            values.put( CoreStats.ST_NET_QUEUE_SEND_BYTE_COUNT, new Long( getQueueBytesSent() ) );
+          }
+          if( types.contains( CoreStats.ST_NET_QUEUE_SEND_ALLOC_COUNT ) ) {
+            values.put( CoreStats.ST_NET_QUEUE_SEND_ALLOC_COUNT, new Long( getQueueAllocations() ) );
+          }
+          if( types.contains( CoreStats.ST_NET_QUEUE_SEND_COALESCED_COUNT ) ) {
+            values.put( CoreStats.ST_NET_QUEUE_SEND_COALESCED_COUNT, new Long( getQueueCoalescedMessages() ) );
+          }
+        }
+      });
+  }
+
+  static void queueDelivered( int bytes, int allocations, int coalesced_messages ) {
+    queue_bytes_sent.addAndGet( bytes );
+    if( allocations > 0 )  queue_allocations.addAndGet( allocations );
+    if( coalesced_messages > 0 )  queue_coalesced.addAndGet( coalesced_messages );
+  }
+
+  public static long getQueueBytesSent() {  return queue_bytes_sent.get();  }
+
+  /**
+   * @return number of objects allocated by outgoing message queues while sending
+   */
+  public static long getQueueAllocations() {  return queue_allocations.get();  }
+
+  /**
+   * @return number of small protocol messages that were written as part of a coalesced buffer
+   */
+  public static long getQueueCoalescedMessages() {  return queue_coalesced.get();  }
+
+  public static long getQueueAllocationsPerMB() {
+    long bytes = queue_bytes_sent.get();
+    if( bytes < 1024*1024 )  return 0;
+    return queue_allocations.get() / ( bytes / (1024*1024) );
+  }
+
 
   public TransportStats() {
     Timer printer = new Timer("TransportStats:Printer");
@@ -93,6 +153,9 @@ public class TransportStats {
 
     System.out.println( "\n***** TCP SOCKET WRITE SIZE STATS *****" );
     printSizes( write_sizes, total_writes );
+
+    System.out.println( "\n***** OUTGOING QUEUE STATS *****" );
+    System.out.println( "sent=" +getQueueBytesSent()+ ", allocations=" +getQueueAllocations()+ " (" +getQueueAllocationsPerMB()+ "/MB), coalesced=" +getQueueCoalescedMessages() );
     System.out.println( "------------------------------" );
   }
 
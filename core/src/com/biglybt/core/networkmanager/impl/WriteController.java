@@ -93,10 +93,17 @@ public class WriteController implements CoreStatsProvider, AEDiagnosticsEvidence
   private int aggressive_np_high_priority_count;
 
   private long	process_loop_time;
+  private long	process_loop_count;
+  private long	process_wait_nanos;
+  private long	process_total_nanos;
   private long	wait_count;
   private long	progress_count;
   private long	non_progress_count;
 
+  	// per-controller copies of the stats, suffixed with the partition id
+
+  private final String[]	shard_stat_names;
+
   private volatile boolean	processing_waiting;
   private final ConcurrentLinkedQueue<RateControlledEntity>	to_deactivate = new ConcurrentLinkedQueue<>();
   
@@ -136,6 +143,28 @@ public class WriteController implements CoreStatsProvider, AEDiagnosticsEvidence
     types.add( CoreStats.ST_NET_WRITE_CONTROL_CON_COUNT );
     types.add( CoreStats.ST_NET_WRITE_CONTROL_READY_CON_COUNT );
     types.add( CoreStats.ST_NET_WRITE_CONTROL_READY_BYTE_COUNT );
+    types.add( CoreStats.ST_NET_WRITE_CONTROL_LOOP_COUNT );
+    types.add( CoreStats.ST_NET_WRITE_CONTROL_LOOP_TIME );
+
+    shard_stat_names = new String[]{
+    	CoreStats.ST_NET_WRITE_CONTROL_WAIT_COUNT + "." + partition_id,
+    	CoreStats.ST_NET_WRITE_CONTROL_P_COUNT + "." + partition_id,
+    	CoreStats.ST_NET_WRITE_CONTROL_NP_COUNT + "." + partition_id,
+    	CoreStats.ST_NET_WRITE_CONTROL_LOOP_COUNT + "." + partition_id,
+    	CoreStats.ST_NET_WRITE_CONTROL_LOOP_TIME + "." + partition_id,
+    	CoreStats.ST_NET_WRITE_CONTROL_ENTITY_COUNT + "." + partition_id,
+    };
+
+    String[][] shard_defs = new String[shard_stat_names.length][];
+
+    for ( int i=0;i<shard_stat_names.length;i++ ){
+
+    	shard_defs[i] = new String[]{ shard_stat_names[i], i<5?CoreStats.CUMULATIVE:CoreStats.POINT };
+
+    	types.add( shard_stat_names[i] );
+    }
+
+    CoreStats.addStatsDefinitions( shard_defs );
 
     CoreStats.registerProvider(
     	types,
@@ -240,6 +269,29 @@ public class WriteController implements CoreStatsProvider, AEDiagnosticsEvidence
 		  values.put( CoreStats.ST_NET_WRITE_CONTROL_ENTITY_COUNT, new Long( high_priority_entities.size() + boosted_priority_entities.size() + normal_priority_entities.size()));
 	  }
 
+	  long	loop_time = ( process_total_nanos - process_wait_nanos )/1000000;
+
+	  if ( types.contains( CoreStats.ST_NET_WRITE_CONTROL_LOOP_COUNT )){
+
+		  values.put( CoreStats.ST_NET_WRITE_CONTROL_LOOP_COUNT, new Long( process_loop_count ));
+	  }
+
+	  if ( types.contains( CoreStats.ST_NET_WRITE_CONTROL_LOOP_TIME )){
+
+		  values.put( CoreStats.ST_NET_WRITE_CONTROL_LOOP_TIME, new Long( loop_time ));
+	  }
+
+	  long[] shard_values = {
+			  wait_count, progress_count, non_progress_count, process_loop_count, loop_time, entity_count };
+
+	  for ( int i=0;i<shard_stat_names.length;i++ ){
+
+		  if ( types.contains( shard_stat_names[i] )){
+
+			  values.put( shard_stat_names[i], new Long( shard_values[i] ));
+		  }
+	  }
+
 	  if ( 	types.contains( CoreStats.ST_NET_WRITE_CONTROL_CON_COUNT ) ||
 			types.contains( CoreStats.ST_NET_WRITE_CONTROL_READY_CON_COUNT ) ||
 			types.contains( CoreStats.ST_NET_WRITE_CONTROL_READY_BYTE_COUNT )){
@@ -284,7 +336,11 @@ public class WriteController implements CoreStatsProvider, AEDiagnosticsEvidence
     while( true ) {
 
       process_loop_time = SystemTime.getMonotonousTime();
-      
+
+      long	loop_start = SystemTime.getHighPrecisionCounter();
+
+      process_loop_count++;
+
       tick_count++;
       
       while( true ){
@@ -310,17 +366,7 @@ public class WriteController implements CoreStatsProvider, AEDiagnosticsEvidence
     			  
     			  if ( !doNormalPriorityWrite( tick_count )){
     				  
-    				  try{
-    					  processing_waiting = true;
-    					  
-	    				  if ( write_waiter.waitForEvent( hasConnections()?IDLE_SLEEP_TIME:1000 )){
-	    					  
-	    					  wait_count++;
-	    				  }
-    				  }finally{
-    					  
-    					  processing_waiting = false;
-    				  }
+    				  waitForEvent();
     			  }
     		  }
     	  }
@@ -331,17 +377,7 @@ public class WriteController implements CoreStatsProvider, AEDiagnosticsEvidence
     			  
     			  if ( !doHighPriorityWrite()){
     				     
-    				  try{
-    					  processing_waiting = true;
-    					  
-	    				  if ( write_waiter.waitForEvent( hasConnections()?IDLE_SLEEP_TIME:1000 )){
-	    					  
-	    					  wait_count++;
-	    				  }
-    				  }finally{
-    					  
-    					  processing_waiting = false;
-    				  }
+    				  waitForEvent();
     			  }
     		  }
     	  }
@@ -350,6 +386,8 @@ public class WriteController implements CoreStatsProvider, AEDiagnosticsEvidence
     	  Debug.out( "writeProcessorLoop() EXCEPTION: ", t );
       }
 
+      process_total_nanos += SystemTime.getHighPrecisionCounter() - loop_start;
+
       if ( process_loop_time - last_check > 5000 ){
 
     	  last_check = process_loop_time;
@@ -427,6 +465,26 @@ public class WriteController implements CoreStatsProvider, AEDiagnosticsEvidence
     }
   }
 
+  private void
+  waitForEvent()
+  {
+	  long	wait_start = SystemTime.getHighPrecisionCounter();
+
+	  try{
+		  processing_waiting = true;
+
+		  if ( write_waiter.waitForEvent( hasConnections()?IDLE_SLEEP_TIME:1000 )){
+
+			  wait_count++;
+		  }
+	  }finally{
+
+		  processing_waiting = false;
+
+		  process_wait_nanos += SystemTime.getHighPrecisionCounter() - wait_start;
+	  }
+  }
+
   private boolean
   hasConnections()
   {
@@ -34,6 +34,7 @@ import com.biglybt.core.networkmanager.impl.TransportHelper;
 import com.biglybt.core.proxy.AEProxyAddressMapper;
 import com.biglybt.core.proxy.AEProxyFactory;
 import com.biglybt.core.util.Debug;
+import com.biglybt.core.util.DirectFileRegion;
 import com.biglybt.core.util.TimeFormatter;
 
 
@@ -310,6 +311,54 @@ TCPTransportHelper
 		return written_sofar;
 	}
 
+	@Override
+	public boolean
+	isFileRegionWriteSupported()
+	{
+		return( channel != null );
+	}
+
+	@Override
+	public long
+	writeFileRegion(
+		DirectFileRegion	region,
+		long				max_bytes )
+
+		throws IOException
+	{
+		if ( channel == null ){
+
+			Debug.out( "channel == null" );
+
+			return 0;
+		}
+
+		if ( delayed_write != null ){
+
+				// delayed bytes have already been reported as written, get them out first
+
+			channel.write( delayed_write );
+
+			if ( delayed_write.hasRemaining()){
+
+				return( 0 );
+			}
+
+			delayed_write = null;
+		}
+
+			// header scattering is only of use during the handshake, by the time piece data
+			// is being sent it has long since completed
+
+		long written = region.transferTo( channel, max_bytes );
+
+		if ( trace ){
+			TimeFormatter.milliTrace( "tcp: write region " + written );
+		}
+
+		return( written );
+	}
+
 	private static final Random rnd = new Random();
 
 	private int channelWrite(ByteBuffer buf) throws IOException
@@ -24,6 +24,15 @@ import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.gudy.bouncycastle.crypto.engines.RC4Engine;
+import org.gudy.bouncycastle.crypto.params.KeyParameter;
 
 import com.biglybt.core.config.COConfigurationManager;
 import com.biglybt.core.networkmanager.VirtualChannelSelector;
@@ -416,16 +425,166 @@ PHETester
 		}
 	}
 
+		/**
+		 * Raw cipher throughput over 16K blocks (the bulk of a peer connection's traffic) for the
+		 * stream ciphers the handshake can select, compared with the original RC4 path that copied
+		 * through byte arrays. Each cipher's output is checked by decrypting with its peer.
+		 */
+
+	protected static void
+	throughput(
+		int			mb )
+
+		throws Exception
+	{
+		final int	BLOCK_SIZE	= 16*1024 + 13;
+
+		int	blocks = (int)(( mb*1024L*1024 ) / BLOCK_SIZE );
+
+		byte[]	key 	= new byte[20];
+		byte[]	data	= new byte[BLOCK_SIZE];
+
+		Random	random = new Random( 1 );
+
+		random.nextBytes( key );
+		random.nextBytes( data );
+
+		SecretKeySpec	rc4_key = new SecretKeySpec( key, "RC4" );
+		SecretKeySpec	aes_key = new SecretKeySpec( key, 0, 16, "AES" );
+
+		IvParameterSpec	iv = new IvParameterSpec( new byte[16] );
+
+		String[]	names = {
+			"RC4 byte[] (original)",
+			"RC4 heap",
+			"RC4 direct",
+			"RC4 direct in place",
+			"AES-CTR direct",
+			"AES-CTR direct in place" };
+
+		for ( int test=0;test<names.length;test++){
+
+			boolean	aes			= test >= 4;
+			boolean	in_place	= test == 3 || test == 5;
+			boolean	direct		= test != 1;
+
+			TransportCipher	enc = aes?new TransportCipher( "AES/CTR/NoPadding", Cipher.ENCRYPT_MODE, aes_key, iv ):new TransportCipher( "RC4", Cipher.ENCRYPT_MODE, rc4_key );
+			TransportCipher	dec = aes?new TransportCipher( "AES/CTR/NoPadding", Cipher.DECRYPT_MODE, aes_key, iv ):new TransportCipher( "RC4", Cipher.DECRYPT_MODE, rc4_key );
+
+			RC4Engine	engine = null;
+
+			if ( test == 0 ){
+
+				engine = new RC4Engine();
+
+				engine.init( true, new KeyParameter( key ));
+
+				engine.processBytes( new byte[1024], 0, 1024, new byte[1024], 0 );
+			}
+
+			ByteBuffer	source = direct?ByteBuffer.allocateDirect( BLOCK_SIZE ):ByteBuffer.allocate( BLOCK_SIZE );
+			ByteBuffer	target = direct?ByteBuffer.allocateDirect( BLOCK_SIZE ):ByteBuffer.allocate( BLOCK_SIZE );
+
+			for ( int pass=0;pass<2;pass++){	// first pass is warmup
+
+				long	start = System.nanoTime();
+
+				for ( int i=0;i<blocks;i++){
+
+					source.clear();
+					source.put( data );
+					source.flip();
+
+					target.clear();
+
+					if ( engine != null ){
+
+							// what TransportCipher used to do with a direct source
+
+						byte[]	in = new byte[BLOCK_SIZE];
+
+						source.get( in );
+
+						byte[]	out = new byte[BLOCK_SIZE];
+
+						engine.processBytes( in, 0, BLOCK_SIZE, out, 0 );
+
+						target.put( out );
+
+					}else if ( in_place ){
+
+						enc.updateInPlace( source, 0, BLOCK_SIZE );
+
+					}else{
+
+						enc.update( source, target );
+					}
+				}
+
+				long	elapsed = System.nanoTime() - start;
+
+				if ( pass == 1 ){
+
+					System.out.println( names[test] + ": " + ( blocks*(long)BLOCK_SIZE*1000L/Math.max( 1, elapsed )) + " MB/sec" );
+				}
+			}
+
+			if ( engine == null ){
+
+					// round trip a block through a fresh pair to check the output
+
+				TransportCipher	check_enc = aes?new TransportCipher( "AES/CTR/NoPadding", Cipher.ENCRYPT_MODE, aes_key, iv ):new TransportCipher( "RC4", Cipher.ENCRYPT_MODE, rc4_key );
+
+				source.clear();
+				source.put( data );
+				source.flip();
+
+				target.clear();
+
+				check_enc.update( source, target );
+
+				target.flip();
+
+				ByteBuffer	plain = ByteBuffer.allocate( BLOCK_SIZE );
+
+				TransportCipher	check_dec = aes?new TransportCipher( "AES/CTR/NoPadding", Cipher.DECRYPT_MODE, aes_key, iv ):new TransportCipher( "RC4", Cipher.DECRYPT_MODE, rc4_key );
+
+				check_dec.update( target, plain );
+
+				if ( !Arrays.equals( plain.array(), data )){
+
+					System.out.println( "    *** " + names[test] + " round trip failed" );
+				}
+			}
+		}
+	}
+
 	public static void
 	main(
 		String[]	args )
 	{
 		AEDiagnostics.startup( false );
 
+		if ( args.length > 0 && args[0].equals( "throughput" )){
+
+			try{
+				throughput( args.length > 1?Integer.parseInt( args[1] ):256 );
+
+			}catch( Throwable e ){
+
+				e.printStackTrace();
+			}
+
+			return;
+		}
+
 		// OUTGOING_PLAIN	= true;
 
+		boolean	aes = args.length > 0 && args[0].equals( "aes" );
+
 		COConfigurationManager.setParameter( "network.transport.encrypted.require", true );
-		COConfigurationManager.setParameter( "network.transport.encrypted.min_level", "Plain" );
+		COConfigurationManager.setParameter( "network.transport.encrypted.min_level", aes?"AES":"Plain" );
+		COConfigurationManager.setParameter( "network.transport.encrypted.allow.aes", aes );
 
 		new PHETester();
 
@@ -26,6 +26,7 @@ import com.biglybt.core.disk.DiskManagerReadRequestListener;
 import com.biglybt.core.logging.LogRelation;
 import com.biglybt.core.peermanager.PeerManagerRegistration;
 import com.biglybt.core.tracker.client.TRTrackerScraperResponse;
+import com.biglybt.core.util.DirectFileRegion;
 
 public interface
 PEPeerManagerAdapter
@@ -183,6 +184,14 @@ PEPeerManagerAdapter
 		DiskManagerReadRequest 			request,
 		DiskManagerReadRequestListener 	listener );
 
+	public default DirectFileRegion
+	getReadRegion(
+		PEPeer							peer,
+		DiskManagerReadRequest 			request )
+	{
+		return( null );
+	}
+
 	public LogRelation
 	getLogRelation();
 
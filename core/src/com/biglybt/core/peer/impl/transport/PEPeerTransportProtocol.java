@@ -4331,8 +4331,11 @@ implements PEPeerTransport
 
 		if( piece_error )
 			piece.destroy();
-		else
+		else {
+			piece.releasePieceData();	// the disk manager owns the payload now
+			piece.destroy();
 			allowReconnect = true;
+		}
 	}
 
 
@@ -39,6 +39,7 @@ public interface MessageStreamDecoder {
 
   /**
    * Get the messages decoded from the transport, if any, from the last decode op.
+   * The array may be reused by the next decode op so must not be held on to.
    * @return decoded messages, or null if no new complete messages were decoded
    */
   public Message[] removeDecodedMessages();
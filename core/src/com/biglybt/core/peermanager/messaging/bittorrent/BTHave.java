@@ -33,7 +33,9 @@ public class BTHave implements BTMessage {
   private DirectByteBuffer buffer = null;
   private String description = null;
 
-  private final int piece_number;
+  private int piece_number;
+
+  BTMessageDecoder recycler;	// set while a recycled incoming instance is live
 
 
   public BTHave( int piece_number, byte version ) {
@@ -45,6 +47,13 @@ public class BTHave implements BTMessage {
   public int getPieceNumber() {  return piece_number;  }
 
 
+  void reuse( int _piece_number ) {
+    piece_number = _piece_number;
+    buffer = null;
+    description = null;
+  }
+
+
   @Override
   public String getID() {  return BTMessage.ID_BT_HAVE;  }
   @Override
@@ -109,6 +118,9 @@ public class BTHave implements BTMessage {
   @Override
   public void destroy() {
     if( buffer != null )  buffer.returnToPool();
+
+    BTMessageDecoder r = recycler;
+    if( r != null )  r.recycle( this );
   }
 
 }
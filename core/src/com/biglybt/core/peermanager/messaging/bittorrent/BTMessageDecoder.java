@@ -23,6 +23,8 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 
+import com.biglybt.core.config.COConfigurationManager;
+import com.biglybt.core.config.ParameterListener;
 import com.biglybt.core.networkmanager.Transport;
 import com.biglybt.core.peermanager.messaging.Message;
 import com.biglybt.core.peermanager.messaging.MessageException;
@@ -34,7 +36,10 @@ import com.biglybt.core.util.DirectByteBufferPool;
 
 
 /**
- *
+ * Have, request and piece messages, which make up nearly all of the traffic on a busy
+ * connection, are decoded into message instances recycled by the decoder when destroyed.
+ * Have and request payloads are read into a buffer owned by the decoder, piece data is read
+ * into a pooled buffer that is handed on as-is to the disk manager.
  */
 public class BTMessageDecoder implements MessageStreamDecoder {
   private static final int MIN_MESSAGE_LENGTH = 1;  //for type id
@@ -44,9 +49,30 @@ public class BTMessageDecoder implements MessageStreamDecoder {
 
   private static final byte SS = DirectByteBuffer.SS_MSG;
 
+  private static final int SMALL_MESSAGE_LENGTH = 13;  //request, the biggest of the messages decoded in place
+  private static final int MAX_FREE_MESSAGES = 32;
+
+  private static boolean flyweight_enabled;
+
+  static{
+    COConfigurationManager.addAndFireParameterListener(
+      "network.bt.decoder.flyweight",
+      new ParameterListener()
+      {
+        @Override
+        public void
+        parameterChanged(
+          String name )
+        {
+          flyweight_enabled = COConfigurationManager.getBooleanParameter( name );
+        }
+      });
+  }
+
   private DirectByteBuffer payload_buffer = null;
   private final DirectByteBuffer length_buffer = DirectByteBufferPool.getBuffer( DirectByteBuffer.AL_MSG, 4 );
   private final ByteBuffer[] decode_array = new ByteBuffer[] { null, length_buffer.getBuffer( SS ) };
+  private final DirectByteBuffer small_buffer = DirectByteBufferPool.getBuffer( DirectByteBuffer.AL_MSG_BT_PAYLOAD, SMALL_MESSAGE_LENGTH );
 
 
   private boolean reading_length_mode = true;
@@ -62,11 +88,17 @@ public class BTMessageDecoder implements MessageStreamDecoder {
   private volatile boolean is_paused = false;
 
   private final ArrayList messages_last_read = new ArrayList();
+  private final Message[][] decoded_arrays = new Message[8][];
   private int protocol_bytes_last_read = 0;
   private int data_bytes_last_read = 0;
   
   private int	progress_id;
   private int[] progress;
+  private final int[] progress_buffer = new int[3];
+
+  private final ArrayList<BTHave> free_haves = new ArrayList<>();
+  private final ArrayList<BTRequest> free_requests = new ArrayList<>();
+  private final ArrayList<BTPiece> free_pieces = new ArrayList<>();
 
 
   public BTMessageDecoder() {
@@ -147,9 +179,24 @@ public class BTMessageDecoder implements MessageStreamDecoder {
 
   @Override
   public Message[] removeDecodedMessages() {
-    if( messages_last_read.isEmpty() )  return null;
+    int num = messages_last_read.size();
 
-    Message[] msgs = (Message[])messages_last_read.toArray( new Message[messages_last_read.size()] );
+    if( num == 0 )  return null;
+
+    Message[] msgs;
+
+    if( num < decoded_arrays.length ) {  //reuse, the caller only works through them before decoding again
+      msgs = decoded_arrays[ num ];
+
+      if( msgs == null ) {
+        msgs = decoded_arrays[ num ] = new Message[ num ];
+      }
+    }
+    else {
+      msgs = new Message[ num ];
+    }
+
+    messages_last_read.toArray( msgs );
 
     messages_last_read.clear();
 
@@ -249,6 +296,11 @@ public class BTMessageDecoder implements MessageStreamDecoder {
     	payload_buffer = null;
     }
 
+    if ( !small_buffer.hasBeenReturnedToPool()){
+
+    	small_buffer.returnToPool();
+    }
+
     try{
 	    for( int i=0; i < messages_last_read.size(); i++ ) {
 	      Message msg = (Message)messages_last_read.get( i );
@@ -260,6 +312,12 @@ public class BTMessageDecoder implements MessageStreamDecoder {
     }
     messages_last_read.clear();
 
+    synchronized( this ){
+      free_haves.clear();
+      free_requests.clear();
+      free_pieces.clear();
+    }
+
     return unused;
   }
 
@@ -369,10 +427,24 @@ public class BTMessageDecoder implements MessageStreamDecoder {
         }
         else {  //decode normal message
           try {
-            messages_last_read.add(createMessage(ref_buff));
+            Message msg = decodeFlyweight( ref_buff );
+
+            if( msg == null ) {
+              if( ref_buff == small_buffer ) {  //not ours to hand out
+                ref_buff = DirectByteBufferPool.getBuffer( DirectByteBuffer.AL_MSG_BT_PAYLOAD, message_length );
+                ref_buff.put( SS, small_buffer );
+                ref_buff.flip( SS );
+              }
+
+              msg = createMessage( ref_buff );
+            }
+
+            messages_last_read.add( msg );
           }
           catch( Throwable e ) {
-            ref_buff.returnToPoolIfNotFree();
+            if( ref_buff != small_buffer ) {
+              ref_buff.returnToPoolIfNotFree();
+            }
 
         	// maintain unexpected errors as such so they get logged later
 
@@ -390,7 +462,10 @@ public class BTMessageDecoder implements MessageStreamDecoder {
         progress_id++;
       }
       else {  //only partial received so far
-    	  progress = new int[]{ message_length, payload_buffer.position( SS ), progress_id };
+    	  progress_buffer[0] = message_length;
+    	  progress_buffer[1] = payload_buffer.position( SS );
+    	  progress_buffer[2] = progress_id;
+    	  progress = progress_buffer;
       }
     }
 
@@ -428,6 +503,11 @@ public class BTMessageDecoder implements MessageStreamDecoder {
         else if( message_length < MIN_MESSAGE_LENGTH || message_length > MAX_MESSAGE_LENGTH ) {
           throw new IOException( "Invalid message length given for BT message decode: " + message_length );
         }
+        else if( flyweight_enabled && message_length <= SMALL_MESSAGE_LENGTH ) {  //small message, read in place
+          small_buffer.position( SS, 0 );
+          small_buffer.limit( SS, message_length );
+          payload_buffer = small_buffer;
+        }
         else {  //normal message
           payload_buffer = DirectByteBufferPool.getBuffer( DirectByteBuffer.AL_MSG_BT_PAYLOAD, message_length );
         }
@@ -453,6 +533,120 @@ public class BTMessageDecoder implements MessageStreamDecoder {
     is_paused = false;
   }
 
+  /**
+   * Decode have, request and piece messages straight into recycled instances.
+   * @return null for any other message, or a malformed one, to leave it to createMessage
+   */
+  private Message decodeFlyweight( DirectByteBuffer buff ) {
+    if( !flyweight_enabled )  return null;
+
+    int pos = buff.position( SS );
+    int len = buff.limit( SS ) - pos;
+
+    switch( buff.get( SS, pos ) ) {
+      case BTMessage.SUBID_BT_HAVE: {
+        if( len != 5 )  return null;
+
+        int number = buff.getInt( SS, pos + 1 );
+
+        if( number < 0 )  return null;
+
+        if( buff != small_buffer )  buff.returnToPool();
+
+        return getHave( number );
+      }
+
+      case BTMessage.SUBID_BT_REQUEST: {
+        if( len != 13 )  return null;
+
+        int number = buff.getInt( SS, pos + 1 );
+        int offset = buff.getInt( SS, pos + 5 );
+        int length = buff.getInt( SS, pos + 9 );
+
+        if( number < 0 || offset < 0 || length < 0 )  return null;
+
+        if( buff != small_buffer )  buff.returnToPool();
+
+        return getRequest( number, offset, length );
+      }
+
+      case BTMessage.SUBID_BT_PIECE: {
+        if( len < 9 || buff == small_buffer )  return null;
+
+        int number = buff.getInt( SS, pos + 1 );
+        int offset = buff.getInt( SS, pos + 5 );
+
+        if( number < 0 || offset < 0 )  return null;
+
+        buff.position( SS, pos + 9 );  //the rest is the block data, passed on without copying
+
+        return getPiece( number, offset, buff );
+      }
+
+      default: {
+        return null;
+      }
+    }
+  }
+
+
+  private synchronized BTHave getHave( int number ) {
+    int num = free_haves.size();
+
+    BTHave have = num == 0 ? new BTHave( number, BTMessageFactory.MESSAGE_VERSION_INITIAL ) : free_haves.remove( num - 1 );
+
+    have.reuse( number );
+    have.recycler = this;
+
+    return have;
+  }
+
+  private synchronized BTRequest getRequest( int number, int offset, int length ) {
+    int num = free_requests.size();
+
+    BTRequest request = num == 0 ? new BTRequest( number, offset, length, BTMessageFactory.MESSAGE_VERSION_INITIAL ) : free_requests.remove( num - 1 );
+
+    request.reuse( number, offset, length );
+    request.recycler = this;
+
+    return request;
+  }
+
+  private synchronized BTPiece getPiece( int number, int offset, DirectByteBuffer data ) {
+    int num = free_pieces.size();
+
+    BTPiece piece = num == 0 ? new BTPiece( number, offset, data, BTMessageFactory.MESSAGE_VERSION_INITIAL ) : free_pieces.remove( num - 1 );
+
+    piece.reuse( number, offset, data );
+    piece.recycler = this;
+
+    return piece;
+  }
+
+  // Called on destroy, the recycler check stops a message destroyed twice from being handed out twice.
+
+  synchronized void recycle( BTHave have ) {
+    if( have.recycler == this ) {
+      have.recycler = null;
+      if( !destroyed && free_haves.size() < MAX_FREE_MESSAGES )  free_haves.add( have );
+    }
+  }
+
+  synchronized void recycle( BTRequest request ) {
+    if( request.recycler == this ) {
+      request.recycler = null;
+      if( !destroyed && free_requests.size() < MAX_FREE_MESSAGES )  free_requests.add( request );
+    }
+  }
+
+  synchronized void recycle( BTPiece piece ) {
+    if( piece.recycler == this ) {
+      piece.recycler = null;
+      if( !destroyed && free_pieces.size() < MAX_FREE_MESSAGES )  free_pieces.add( piece );
+    }
+  }
+
+
   // Overridden by LTMessageDecoder.
   protected Message createMessage(DirectByteBuffer ref_buff) throws MessageException {
       try {return BTMessageFactory.createBTMessage(ref_buff);}
@@ -24,6 +24,7 @@ import com.biglybt.core.peermanager.messaging.Message;
 import com.biglybt.core.peermanager.messaging.MessageException;
 import com.biglybt.core.util.DirectByteBuffer;
 import com.biglybt.core.util.DirectByteBufferPool;
+import com.biglybt.core.util.DirectFileRegion;
 
 
 /**
@@ -31,29 +32,74 @@ import com.biglybt.core.util.DirectByteBufferPool;
  */
 public class BTPiece implements BTMessage {
   private final byte version;
-  private final DirectByteBuffer[] buffer = new DirectByteBuffer[ 2 ];
+  private final DirectByteBuffer[] buffer;
+  private final DirectFileRegion region;
   private String description;
 
-  private final int piece_number;
-  private final int piece_offset;
-  private final int piece_length;
+  private int piece_number;
+  private int piece_offset;
+  private int piece_length;
+
+  BTMessageDecoder recycler;	// set while a recycled incoming instance is live
 
 
   public BTPiece( int piece_number, int piece_offset, DirectByteBuffer data, byte version ) {
     this.piece_number = piece_number;
     this.piece_offset = piece_offset;
     this.piece_length = data == null ? 0 : data.remaining( DirectByteBuffer.SS_MSG );
+    buffer = new DirectByteBuffer[ 2 ];
     buffer[1] = data;
+    region = null;
     this.version = version;
   }
 
+  private BTPiece( int piece_number, int piece_offset, DirectFileRegion region, byte version, boolean from_region ) {
+    this.piece_number = piece_number;
+    this.piece_offset = piece_offset;
+    this.piece_length = region.getLength();
+    buffer = new DirectByteBuffer[ 1 ];
+    this.region = region;
+    this.version = version;
+  }
+
+  /**
+   * Create an outgoing piece message whose data is sent directly from file.
+   * Only the piece header is returned by getData(), the data itself follows via the region.
+   */
+  public static BTPiece createFromRegion( int piece_number, int piece_offset, DirectFileRegion region, byte version ) {
+    return new BTPiece( piece_number, piece_offset, region, version, true );
+  }
+
 
 
   public int getPieceNumber() {  return piece_number;  }
 
   public int getPieceOffset() {  return piece_offset;  }
 
-  public DirectByteBuffer getPieceData() {  return buffer[1];  }
+  /**
+   * @return the piece data, null if this piece is sent from a file region
+   */
+  public DirectByteBuffer getPieceData() {  return region == null ? buffer[1] : null;  }
+
+  public DirectFileRegion getFileRegion() {  return region;  }
+
+  /**
+   * Take the piece data away from the message, e.g. once it has been handed on to the disk
+   * manager for writing, so that destroying the message no longer returns it to the pool.
+   */
+  public void releasePieceData() {
+    if( region == null )  buffer[1] = null;
+  }
+
+
+  void reuse( int _piece_number, int _piece_offset, DirectByteBuffer data ) {
+    piece_number = _piece_number;
+    piece_offset = _piece_offset;
+    piece_length = data.remaining( DirectByteBuffer.SS_MSG );
+    buffer[0] = null;
+    buffer[1] = data;
+    description = null;
+  }
 
 
 
@@ -125,6 +171,13 @@ public class BTPiece implements BTMessage {
   @Override
   public void destroy() {
     if( buffer[0] != null ) buffer[0].returnToPool();
-    if( buffer[1] != null ) buffer[1].returnToPool();
+    if( region == null ) {
+      if( buffer[1] != null ) buffer[1].returnToPool();
+    }else {
+      region.destroy();
+    }
+
+    BTMessageDecoder r = recycler;
+    if( r != null )  r.recycle( this );
   }
 }
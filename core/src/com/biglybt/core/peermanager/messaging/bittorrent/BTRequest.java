@@ -35,10 +35,12 @@ public class BTRequest implements BTMessage {
   private DirectByteBuffer buffer = null;
   private String description = null;
 
-  private final int piece_number;
-  private final int piece_offset;
-  private final int length;
-  private final int hashcode;
+  private int piece_number;
+  private int piece_offset;
+  private int length;
+  private int hashcode;
+
+  BTMessageDecoder recycler;	// set while a recycled incoming instance is live
 
 
   public BTRequest( int piece_number, int piece_offset, int length, byte version ) {
@@ -57,6 +59,16 @@ public class BTRequest implements BTMessage {
   public int getLength() {  return length;  }
 
 
+  void reuse( int _piece_number, int _piece_offset, int _length ) {
+    piece_number = _piece_number;
+    piece_offset = _piece_offset;
+    length = _length;
+    hashcode = piece_number + piece_offset + length;
+    buffer = null;
+    description = null;
+  }
+
+
 
   @Override
   public String getID() {  return BTMessage.ID_BT_REQUEST;  }
@@ -133,6 +145,9 @@ public class BTRequest implements BTMessage {
   @Override
   public void destroy() {
     if( buffer != null )  buffer.returnToPool();
+
+    BTMessageDecoder r = recycler;
+    if( r != null )  r.recycle( this );
   }
 
 
@@ -0,0 +1,298 @@
+/*
+ * Copyright (C) Bigly Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+
+package com.biglybt.core.peermanager.piecepicker.impl;
+
+import java.util.Arrays;
+
+/**
+ * Piece availability counts with the pieces grouped into buckets by count. Each bucket
+ * is an intrusive doubly linked list over piece numbers so moving a piece up or down
+ * one level on a have/bitfield/disconnect is O(1), as is tracking the min and max
+ * levels. Walking the rarest pieces only touches the low buckets rather than every piece.
+ * <p>
+ * Not thread safe, the piece picker serialises access with its availability monitor.
+ */
+
+public class
+PieceAvailabilityIndex
+{
+	private static final int	NONE	= -1;
+
+	private final int		nb_pieces;
+
+	private final int[]		counts;
+	private final int[]		next;
+	private final int[]		prev;
+
+	private int[]			heads;
+	private int[]			sizes;
+
+	private int				min;
+	private int				max;
+	private long			total;
+
+	public
+	PieceAvailabilityIndex(
+		int		_nb_pieces )
+	{
+		nb_pieces	= _nb_pieces;
+
+		counts	= new int[nb_pieces];
+		next	= new int[nb_pieces];
+		prev	= new int[nb_pieces];
+
+		heads	= new int[16];
+		sizes	= new int[16];
+
+		set( counts );
+	}
+
+		/**
+		 * Replaces all counts, e.g. after a full recompute
+		 */
+
+	public void
+	set(
+		int[]	new_counts )
+	{
+		Arrays.fill( heads, NONE );
+		Arrays.fill( sizes, 0 );
+
+		total	= 0;
+		min		= nb_pieces==0?0:Integer.MAX_VALUE;
+		max		= 0;
+
+		for ( int i=nb_pieces-1;i>=0;i--){
+
+				// link in reverse so each bucket ends up in ascending piece order
+
+			int	count = new_counts[i];
+
+			counts[i] = count;
+
+			link( i, count );
+
+			total += count;
+
+			if ( count < min ){
+
+				min = count;
+			}
+
+			if ( count > max ){
+
+				max = count;
+			}
+		}
+	}
+
+	public int
+	get(
+		int		piece )
+	{
+		return( counts[piece] );
+	}
+
+	public void
+	increment(
+		int		piece )
+	{
+		int	count = counts[piece];
+
+		unlink( piece, count );
+
+		count++;
+
+		counts[piece] = count;
+
+		link( piece, count );
+
+		total++;
+
+		if ( count > max ){
+
+			max = count;
+		}
+
+		if ( count-1 == min && sizes[min] == 0 ){
+
+			min = count;
+		}
+	}
+
+		/**
+		 * @param floor the count won't be decremented at or below this
+		 * @return false if the count was already at the floor
+		 */
+
+	public boolean
+	decrement(
+		int		piece,
+		int		floor )
+	{
+		int	count = counts[piece];
+
+		if ( count <= floor ){
+
+			return( false );
+		}
+
+		unlink( piece, count );
+
+		count--;
+
+		counts[piece] = count;
+
+		link( piece, count );
+
+		total--;
+
+		if ( count < min ){
+
+			min = count;
+		}
+
+		if ( count+1 == max && sizes[max] == 0 ){
+
+			max = count;
+		}
+
+		return( true );
+	}
+
+	public int
+	getMin()
+	{
+		return( min );
+	}
+
+	public int
+	getMax()
+	{
+		return( max );
+	}
+
+		/**
+		 * @return sum of all counts
+		 */
+
+	public long
+	getTotal()
+	{
+		return( total );
+	}
+
+	public int
+	getBucketSize(
+		int		count )
+	{
+		return( count < sizes.length?sizes[count]:0 );
+	}
+
+		/**
+		 * Iteration over a bucket: first piece with the given count, NONE (-1) if there are none
+		 */
+
+	public int
+	getFirst(
+		int		count )
+	{
+		return( count < heads.length?heads[count]:NONE );
+	}
+
+		/**
+		 * @return next piece in the same bucket, NONE (-1) at the end
+		 */
+
+	public int
+	getNext(
+		int		piece )
+	{
+		return( next[piece] );
+	}
+
+	public int[]
+	getCounts()
+	{
+		return( counts.clone());
+	}
+
+	private void
+	link(
+		int		piece,
+		int		count )
+	{
+		if ( count >= heads.length ){
+
+			int	old_len = heads.length;
+
+			int	new_len = Math.max( old_len*2, count+1 );
+
+			int[]	new_heads = new int[new_len];
+			int[]	new_sizes = new int[new_len];
+
+			System.arraycopy( heads, 0, new_heads, 0, old_len );
+			System.arraycopy( sizes, 0, new_sizes, 0, old_len );
+
+			Arrays.fill( new_heads, old_len, new_len, NONE );
+
+			heads	= new_heads;
+			sizes	= new_sizes;
+		}
+
+		int	head = heads[count];
+
+		next[piece]	= head;
+		prev[piece]	= NONE;
+
+		if ( head != NONE ){
+
+			prev[head] = piece;
+		}
+
+		heads[count] = piece;
+
+		sizes[count]++;
+	}
+
+	private void
+	unlink(
+		int		piece,
+		int		count )
+	{
+		int	p = prev[piece];
+		int	n = next[piece];
+
+		if ( p == NONE ){
+
+			heads[count] = n;
+
+		}else{
+
+			next[p] = n;
+		}
+
+		if ( n != NONE ){
+
+			prev[n] = p;
+		}
+
+		sizes[count]--;
+	}
+}
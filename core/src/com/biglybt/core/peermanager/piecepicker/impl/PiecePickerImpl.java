@@ -144,8 +144,8 @@ implements PiecePicker
 
 	protected volatile int	nbPiecesDone;
 
-	/** asynchronously updated availability */
-	protected volatile int[]	availabilityAsynch;
+	/** incrementally updated availability, bucketed by count */
+	private final PieceAvailabilityIndex	availabilityIndex;
 	/** indicates availability needs to be recomputed due to detected drift */
 	protected volatile long		availabilityDrift;
 	private long				timeAvailRebuild =TIME_AVAIL_REBUILD;
@@ -153,6 +153,19 @@ implements PiecePicker
 	/** periodically updated consistent view of availability for calculating */
 	protected volatile int[]	availability;
 
+	/**
+	 * pieces not done with availability <= globalMinOthers in the current snapshot, in
+	 * ascending order, null if not worth using. Lets the rarest-first scan skip everything else
+	 */
+	private volatile int[]		rarestCandidates;
+	private volatile int		rarestCandidatesLevel;
+	private volatile boolean	rarestCandidatesValid;
+
+	private final Object		activePiecesLock	= new Object();
+	private final boolean[]		activePieceFlags;
+	/** sorted numbers of active pieces (those with a PEPiece) */
+	private volatile int[]		activePieceNumbers	= new int[0];
+
 	private long				time_last_avail;
 	protected volatile long	availabilityChange;
 	private volatile long		availabilityComputeChange;
@@ -284,6 +297,8 @@ implements PiecePicker
 
 		// now do stuff related to availability
 		availability =new int[nbPieces];  //always needed
+		availabilityIndex = new PieceAvailabilityIndex(nbPieces);
+		activePieceFlags = new boolean[nbPieces];
 
 
 		hasNeededUndonePiece =false;
@@ -308,6 +323,8 @@ implements PiecePicker
 		if (hasNeededUndonePiece)
 			neededUndonePieceChange++;
 
+		availabilityIndex.set(availability);
+
 		updateAvailability();
 
 		// with availability charged and primed, ready for peer messages
@@ -315,6 +332,12 @@ implements PiecePicker
 		peerManagerListener =new PEPeerManagerListenerImpl();
 		peerControl.addListener(peerManagerListener);
 
+		for (int i =0; i <nbPieces; i++)
+		{
+			if (pePieces[i] !=null)
+				setPieceActive(i, true);
+		}
+
 
 		// now do stuff related to starting/continuing pieces
 		rarestStartedPieces = new ArrayList();
@@ -354,10 +377,7 @@ implements PiecePicker
 		// peer is null if called from disk-manager callback
 		try
 		{	availabilityMon.enter();
-		if ( availabilityAsynch == null ){
-			availabilityAsynch = (int[])availability.clone();
-		}
-		++availabilityAsynch[pieceNumber];
+		availabilityIndex.increment(pieceNumber);
 		availabilityChange++;
 		} finally {availabilityMon.exit();}
 
@@ -390,11 +410,10 @@ implements PiecePicker
 
 			if (Constants.isCVSVersion())
 			{
-				final int[]   old_availability =availabilityAsynch ==null ?availability :availabilityAsynch;
 				int	errors	= 0;
 
 				for (int i=0;i<new_availability.length;i++){
-					if ( new_availability[i] != old_availability[i]){
+					if ( new_availability[i] != availabilityIndex.get(i)){
 						errors++;
 					}
 				}
@@ -410,7 +429,7 @@ implements PiecePicker
 					timeAvailRebuild++;
 			}
 
-			availabilityAsynch	= new_availability;
+			availabilityIndex.set(new_availability);
 
 			availabilityDrift =0;
 			availabilityChange++;
@@ -420,63 +439,74 @@ implements PiecePicker
 			return;
 		}
 
+		int allMin;
+		int allMax;
+		int rarestMin =Integer.MAX_VALUE;
+		int total;
+		int rarestActive =0;
+		long totalAvail;
+		long newBytesUnavailable;
+
 		try
 		{	availabilityMon.enter();
 		time_last_avail =now;
 		availabilityComputeChange =availabilityChange;
 
-		// take a snapshot of availabilityAsynch
-		if ( availabilityAsynch != null ){
-			availability 		= availabilityAsynch;
-			availabilityAsynch	= null;
-		}
-		} finally {availabilityMon.exit();}
+		// take a snapshot of the index, the levels are walked from the rarest up so
+		// only the pieces at or below the rarest wanted level are visited
 
-		int i;
-		int allMin =Integer.MAX_VALUE;
-		int allMax =0;
-		int rarestMin =Integer.MAX_VALUE;
-		for (i =0; i <nbPieces; i++)
-		{
-			final int avail =availability[i];
-			final DiskManagerPiece dmPiece =dmPieces[i];
-			final PEPiece	pePiece = pePieces[i];
+		final int[] snapshot = availabilityIndex.getCounts();
 
-			if (avail >0 &&avail <rarestMin && dmPiece.isDownloadable() && (pePiece == null || pePiece.isRequestable()))
-				rarestMin =avail;	// most important targets for near future requests from others
+		allMin =nbPieces ==0 ?0 :availabilityIndex.getMin();
+		allMax =availabilityIndex.getMax();
+
+		for (int level =Math.max(1, allMin); level <=allMax &&rarestMin ==Integer.MAX_VALUE; level++)
+		{
+			for (int i =availabilityIndex.getFirst(level); i >=0; i =availabilityIndex.getNext(i))
+			{
+				final PEPiece	pePiece = pePieces[i];
 
-			if (avail <allMin)
-				allMin =avail;
-			if (avail > allMax)
-				allMax =avail;
+				if (dmPieces[i].isDownloadable() && (pePiece == null || pePiece.isRequestable()))
+				{
+					rarestMin =level;	// most important targets for near future requests from others
+					break;
+				}
+			}
 		}
-		// copy updated local variables into globals
-		globalMin =allMin;
-		globalMax =allMax;
-		globalMinOthers =rarestMin;
 
-		int total =0;
-		int rarestActive =0;
-		long totalAvail =0;
-		long newBytesUnavailable = 0;
-		for (i =0; i <nbPieces; i++ )
-		{
-			final int avail =availability[i];
-			final DiskManagerPiece dmPiece =dmPieces[i];
-			final PEPiece	pePiece = pePieces[i];
+		final int rarestLimit =Math.min(rarestMin, allMax);
 
-			if (avail >0)
+		for (int level =Math.max(1, allMin); level <=rarestLimit; level++)
+		{
+			for (int i =availabilityIndex.getFirst(level); i >=0; i =availabilityIndex.getNext(i))
 			{
-				if (avail >allMin)
-					total++;
-				if (avail <=rarestMin &&dmPiece.isDownloadable() && pePiece != null && !pePiece.isRequested())
+				final PEPiece	pePiece = pePieces[i];
+
+				if (dmPieces[i].isDownloadable() && pePiece != null && !pePiece.isRequested())
 					rarestActive++;
-				totalAvail +=avail;
-			} else {
-				newBytesUnavailable += dmPiece.getLength();
 			}
 		}
+
+		total =nbPieces -availabilityIndex.getBucketSize(allMin);
+		totalAvail =availabilityIndex.getTotal();
+
+		final int unavailable =availabilityIndex.getBucketSize(0);
+		newBytesUnavailable =(long)unavailable *pieceSize;
+		if (unavailable >0 &&snapshot[nbPieces -1] ==0)
+			newBytesUnavailable -=pieceSize -dmPieces[nbPieces -1].getLength();
+
+		rarestCandidatesLevel =rarestMin;
+		rarestCandidates =rarestMin ==Integer.MAX_VALUE ?null :buildRarestCandidates(rarestMin);
+		rarestCandidatesValid =true;
+
+		availability =snapshot;
+		} finally {availabilityMon.exit();}
+
 		// copy updated local variables into globals
+		globalMin =allMin;
+		globalMax =allMax;
+		globalMinOthers =rarestMin;
+
 		float newGlobalAvail = (total /(float) nbPieces) +allMin;
 		if ( globalAvail >= 1.0 &&  newGlobalAvail < 1.0 ){
 			timeAvailLessThanOne = now;
@@ -491,6 +521,75 @@ implements PiecePicker
 		/(1 +peerControl.getNbSeeds() +peerControl.getNbPeers());
 	}
 
+	/**
+	 * Collects the pieces that are not done at or below the given level. Must be called with
+	 * availabilityMon held
+	 * @return sorted piece numbers, null if they make up a large part of the torrent in which
+	 * case scanning everything is just as good
+	 */
+	private int[] buildRarestCandidates(int maxLevel)
+	{
+		final int limit =nbPieces /4;
+
+		int count =0;
+		for (int level =0; level <=maxLevel; level++)
+		{
+			count +=availabilityIndex.getBucketSize(level);
+			if (count >limit)
+				return null;
+		}
+
+		int[] result =new int[count];
+		int pos =0;
+		for (int level =0; level <=maxLevel; level++)
+		{
+			for (int i =availabilityIndex.getFirst(level); i >=0; i =availabilityIndex.getNext(i))
+			{
+				if (!dmPieces[i].isDone())
+					result[pos++] =i;
+			}
+		}
+
+		if (pos <count)
+			result =Arrays.copyOf(result, pos);
+
+		Arrays.sort(result);
+
+		return result;
+	}
+
+	private void setPieceActive(int pieceNumber, boolean active)
+	{
+		synchronized(activePiecesLock)
+		{
+			if (activePieceFlags[pieceNumber] ==active)
+				return;
+
+			activePieceFlags[pieceNumber] =active;
+
+			final int[] old =activePieceNumbers;
+			final int[] result =new int[active ?old.length +1 :old.length -1];
+			int pos =0;
+			boolean added =false;
+			for (int i =0; i <old.length; i++)
+			{
+				final int n =old[i];
+				if (n ==pieceNumber)
+					continue;
+				if (active &&!added &&n >pieceNumber)
+				{
+					result[pos++] =pieceNumber;
+					added =true;
+				}
+				result[pos++] =n;
+			}
+			if (active &&!added)
+				result[pos++] =pieceNumber;
+
+			activePieceNumbers =result;
+		}
+	}
+
 	private int[] recomputeAvailability()
 	{
 		if (availabilityDrift >0 &&availabilityDrift !=nbPieces &&Logger.isEnabled())
@@ -1610,7 +1709,7 @@ implements PiecePicker
 	 */
 	protected final int findPieceToDownload(PEPeerTransport pt, int nbWanted)
 	{
-		final int pieceNumber = getRequestCandidate(pt);
+		final int pieceNumber = getRequestCandidate(pt, true);
 		if (pieceNumber <0)
 		{
 			// probably should have found something since chose to try; probably not interested anymore
@@ -2062,7 +2161,12 @@ implements PiecePicker
 	 *
 	 * @return int with pieceNumberto be requested or -1 if no request could be found
 	 */
-	private int getRequestCandidate(final PEPeerTransport pt )
+	/**
+	 * @param useRarestIndex if the rarest candidates can be used to restrict the scan to rare and
+	 * active pieces. If no rare piece turns out to be startable a full scan is made instead, as
+	 * the non-rare pieces matter in that case, so the outcome is the same either way
+	 */
+	private int getRequestCandidate(final PEPeerTransport pt, final boolean useRarestIndex )
 	{
 		if (pt ==null ||pt.getPeerState() !=PEPeer.TRANSFERING)
 			return -1;
@@ -2175,9 +2279,75 @@ implements PiecePicker
 
         CopyOnWriteSet<Integer>	forced = forced_pieces;
 
+        	// rarest-first can just look at the rare pieces plus the active ones (for resuming) as long
+        	// as nothing overrides the snapshot availability or adds per-peer priorities
+
+        int[]	rarest	= null;
+        int[]	active	= null;
+
+        if ( 	useRarestIndex && rarestAllowed && rarestCandidatesValid && rarestCandidatesLevel == globalMinOthers &&
+        		peerPriorities == null && sequentialDownload == 0 &&
+        		( forced == null || forced.isEmpty()) &&
+        		( !enable_request_hints || request_hint_piece_number == -1 )){
+
+        	rarest	= rarestCandidates;
+        	active	= activePieceNumbers;
+
+        	if ( rarest != null && rarest.length + active.length > ( endI - startI + 1 ) / 2 ){
+
+        		rarest = null;
+        	}
+        }
+
+        int	rarestPos	= 0;
+        int	activePos	= 0;
+
+        i = startI - 1;
+
 			// Try to continue a piece already loaded, according to priority
 
-        for (i =startI; i <=endI; i++){
+        while( true ){
+
+        	if ( rarest == null ){
+
+        		if ( ++i > endI ){
+
+        			break;
+        		}
+        	}else{
+
+        			// merge the two sorted lists
+
+        		final int r = rarestPos < rarest.length?rarest[rarestPos]:Integer.MAX_VALUE;
+        		final int a = activePos < active.length?active[activePos]:Integer.MAX_VALUE;
+
+        		if ( r <= a ){
+
+        			i = r;
+
+        			rarestPos++;
+
+        			if ( r == a ){
+
+        				activePos++;
+        			}
+        		}else{
+
+        			i = a;
+
+        			activePos++;
+        		}
+
+        		if ( i > endI ){
+
+        			break;
+        		}
+
+        		if ( i < startI ){
+
+        			continue;
+        		}
+        	}
 
         		// is the piece available from this peer?
 
@@ -2374,6 +2544,13 @@ implements PiecePicker
         	}
         }
 
+		if ( rarest != null && !startIsRarest ){
+
+				// no rare piece to start so the rest of the pieces come into play
+
+			return( getRequestCandidate( pt, false ));
+		}
+
 		/*
 		// don't start pieces when snubbed, unless it's the only peer with that piece
 		// returns -1 if no piece to resume is found
@@ -3250,6 +3427,18 @@ implements PiecePicker
 			final PEPeerListenerImpl peerListener =(PEPeerListenerImpl)peerListeners.remove(peer);
 			peer.removeListener(peerListener);
 		}
+
+		@Override
+		public final void pieceAdded(final PEPeerManager manager, PEPiece piece, PEPeer for_peer)
+		{
+			setPieceActive(piece.getPieceNumber(), true);
+		}
+
+		@Override
+		public final void pieceRemoved(final PEPeerManager manager, PEPiece piece)
+		{
+			setPieceActive(piece.getPieceNumber(), false);
+		}
 	}
 
 	/**
@@ -3295,13 +3484,10 @@ implements PiecePicker
 				return;
 			try
 			{	availabilityMon.enter();
-			if ( availabilityAsynch == null ){
-				availabilityAsynch = (int[])availability.clone();
-			}
 			for (int i =peerHavePieces.start; i <=peerHavePieces.end; i++)
 			{
 				if ( peerHavePieces.flags[i] ){
-					++availabilityAsynch[i];
+					availabilityIndex.increment(i);
 				}
 			}
 			availabilityChange++;
@@ -3320,17 +3506,11 @@ implements PiecePicker
 				return;
 			try
 			{	availabilityMon.enter();
-			if (availabilityAsynch ==null)
-			{
-				availabilityAsynch = (int[])availability.clone();
-			}
 			for (int i =peerHavePieces.start; i <=peerHavePieces.end; i++)
 			{
 				if (peerHavePieces.flags[i])
 				{
-					if (availabilityAsynch[i] >(dmPieces[i].isDone() ?1 :0))
-						--availabilityAsynch[i];
-					else
+					if (!availabilityIndex.decrement(i, dmPieces[i].isDone() ?1 :0))
 						availabilityDrift++;
 				}
 			}
@@ -3421,14 +3601,11 @@ implements PiecePicker
 			{
 				try
 				{   availabilityMon.enter();
-				if ( availabilityAsynch == null ){
-					availabilityAsynch = (int[])availability.clone();
-				}
-				if (availabilityAsynch[pieceNumber] >0)
-					--availabilityAsynch[pieceNumber];
-				else
+				if (!availabilityIndex.decrement(pieceNumber, 0))
 					availabilityDrift++;
 				availabilityChange++;
+				// piece is wanted again but won't be in the rarest candidates until the next update
+				rarestCandidatesValid =false;
 				} finally {availabilityMon.exit();}
 				nbPiecesDone--;
 				if (dmPiece.calcNeeded() &&!hasNeededUndonePiece)
@@ -21,17 +21,24 @@ package com.biglybt.core.peermanager.utils;
 
 import java.util.*;
 
+import com.biglybt.core.config.COConfigurationManager;
+import com.biglybt.core.config.ConfigKeys;
+import com.biglybt.core.config.ParameterListener;
 import com.biglybt.core.disk.DiskManagerReadRequest;
 import com.biglybt.core.disk.DiskManagerReadRequestListener;
 import com.biglybt.core.networkmanager.OutgoingMessageQueue;
 import com.biglybt.core.peer.PEPeer;
 import com.biglybt.core.peermanager.messaging.Message;
+import com.biglybt.core.peermanager.messaging.MessageStreamEncoder;
 import com.biglybt.core.peermanager.messaging.bittorrent.BTMessage;
+import com.biglybt.core.peermanager.messaging.bittorrent.BTMessageEncoder;
 import com.biglybt.core.peermanager.messaging.bittorrent.BTPiece;
+import com.biglybt.core.peermanager.messaging.bittorrent.ltep.LTMessageEncoder;
 import com.biglybt.core.util.AEMonitor;
 import com.biglybt.core.util.Constants;
 import com.biglybt.core.util.Debug;
 import com.biglybt.core.util.DirectByteBuffer;
+import com.biglybt.core.util.DirectFileRegion;
 import com.biglybt.core.util.SystemTime;
 
 
@@ -95,52 +102,29 @@ public class OutgoingBTPieceMessageHandler {
 
 
 
+  private static volatile boolean	zero_copy_enabled;
+
+  static{
+	  COConfigurationManager.addAndFireParameterListener(
+		ConfigKeys.Connection.BCFG_NETWORK_TCP_WRITE_ZERO_COPY_ENABLE,
+		new ParameterListener()
+		{
+			@Override
+			public void
+			parameterChanged(
+				String	name )
+			{
+				zero_copy_enabled = COConfigurationManager.getBooleanParameter( name );
+			}
+		});
+  }
+
   private final DiskManagerReadRequestListener read_req_listener = new DiskManagerReadRequestListener() {
     @Override
     public void readCompleted(DiskManagerReadRequest request, DirectByteBuffer data ) {
-      try{
-      	lock_mon.enter();
-
-      	if( !loading_messages.contains( request ) || destroyed ) { //was canceled
-      	  data.returnToPool();
-      	  return;
-      	}
-      	
-      	loading_messages.remove( request );
-
-        BTPiece msg = new BTPiece( request.getPieceNumber(), request.getOffset(), data, piece_version );
-        
-        	// message moved from loading->queued, no need to update 'active'
-        
-        queued_messages.put( msg, request );
-
-        outgoing_message_queue.addMessage( msg, true );
-        
-        if ( recent_messages != null ){
-        	
-        	long now = SystemTime.getMonotonousTime();
-        	
-        	if ( now - recent_messages_last_access > 60*1000 ){
-        		
-        		recent_messages = null;
-        		
-        		recent_messages_last_access = -1;
-        		
-        	}else{
-        	
-        		trimRecentMessages();
-        		
-        		recent_messages.add( request );
-        	}
-        }
-      }
-      finally{
-      	lock_mon.exit();
-      }
-
-      outgoing_message_queue.doListenerNotifications();
+      pieceLoaded( request, data, null );
     }
-    
+
     @Override
     public void
     readFailed(
@@ -192,6 +176,65 @@ public class OutgoingBTPieceMessageHandler {
   };
 
 
+  private void
+  pieceLoaded(
+	DiskManagerReadRequest	request,
+	DirectByteBuffer		data,
+	DirectFileRegion		region )
+  {
+      try{
+      	lock_mon.enter();
+
+      	if( !loading_messages.contains( request ) || destroyed ) { //was canceled
+      	  if ( region == null ){
+      		data.returnToPool();
+      	  }else{
+      		region.destroy();
+      	  }
+      	  return;
+      	}
+      	
+      	loading_messages.remove( request );
+
+        BTPiece msg;
+
+        if ( region == null ){
+        	msg = new BTPiece( request.getPieceNumber(), request.getOffset(), data, piece_version );
+        }else{
+        	msg = BTPiece.createFromRegion( request.getPieceNumber(), request.getOffset(), region, piece_version );
+        }
+
+        	// message moved from loading->queued, no need to update 'active'
+        
+        queued_messages.put( msg, request );
+
+        outgoing_message_queue.addMessage( msg, true );
+        
+        if ( recent_messages != null ){
+        	
+        	long now = SystemTime.getMonotonousTime();
+        	
+        	if ( now - recent_messages_last_access > 60*1000 ){
+        		
+        		recent_messages = null;
+        		
+        		recent_messages_last_access = -1;
+        		
+        	}else{
+        	
+        		trimRecentMessages();
+        		
+        		recent_messages.add( request );
+        	}
+        }
+      }
+      finally{
+      	lock_mon.exit();
+      }
+
+      outgoing_message_queue.doListenerNotifications();
+  }
+
   private final OutgoingMessageQueue.MessageQueueListener sent_message_listener = new OutgoingMessageQueue.MessageQueueListener() {
     @Override
     public boolean messageAdded(Message message ) {   return true;   }
@@ -525,13 +568,40 @@ public class OutgoingBTPieceMessageHandler {
 
     if ( to_submit != null ){
     	
+    	boolean	zero_copy = zero_copy_enabled && isZeroCopyPossible();
+    	
     	for (DiskManagerReadRequest req: to_submit ){
     		
+    		if ( zero_copy ){
+    			
+    				// data that can go straight from file to socket doesn't need reading
+    			
+    			DirectFileRegion region = peer.getManager().getAdapter().getReadRegion( peer, req );
+    			
+    			if ( region != null ){
+    				
+    				pieceLoaded( req, null, region );
+    				
+    				continue;
+    			}
+    		}
+    		
     		peer.getManager().getAdapter().enqueueReadRequest( peer, req, read_req_listener );
     	}
     }
   }
 
+  private boolean
+  isZeroCopyPossible()
+  {
+	  	// other encoders (e.g. AZ, HTTP) don't carry the piece as a BT header followed by the data
+	  
+	  MessageStreamEncoder encoder = outgoing_message_queue.getEncoder();
+	  
+	  return(	( encoder instanceof BTMessageEncoder || encoder instanceof LTMessageEncoder ) &&
+			  	outgoing_message_queue.isFileRegionWriteSupported());
+  }
+
   /**
 	 * Get a list of piece numbers being requested
 	 */
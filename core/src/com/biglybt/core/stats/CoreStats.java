@@ -60,6 +60,28 @@ CoreStats
 	public static final String ST_DISK_WRITE_IO_TIME			= "disk.write.io.time";
 	public static final String ST_DISK_WRITE_IO_COUNT			= "disk.write.io.count";
 
+	public static final String ST_DISK_HASH_REQUEST_COUNT		= "disk.hash.request.count";
+	public static final String ST_DISK_HASH_BYTES_TOTAL			= "disk.hash.bytes.total";
+	public static final String ST_DISK_HASH_TIME				= "disk.hash.time";				// ms, summed over threads
+	public static final String ST_DISK_HASH_RATE				= "disk.hash.rate";				// bytes/sec
+	public static final String ST_DISK_HASH_RATE_PER_CORE		= "disk.hash.rate.per.core";	// bytes/sec per busy core
+
+		// MEMORY - direct byte buffer pool, suffixed with .<size class> and only present when
+		// the thread cached pool is in use
+
+	public static final String ST_MEMORY_DBB_ALLOC_COUNT		= "memory.dbb.alloc.count";
+	public static final String ST_MEMORY_DBB_FREE_COUNT			= "memory.dbb.free.count";
+	public static final String ST_MEMORY_DBB_IN_USE				= "memory.dbb.inuse";
+	public static final String ST_MEMORY_DBB_IN_USE_MAX			= "memory.dbb.inuse.max";
+	public static final String ST_MEMORY_DBB_CENTRAL_COUNT		= "memory.dbb.central.count";
+
+		// TORRENT metadata held in memory
+
+	public static final String ST_TORRENT_PIECES_LOAD_COUNT		= "torrent.pieces.load.count";		// piece hashes re-read from disk
+	public static final String ST_TORRENT_PIECES_EVICT_COUNT	= "torrent.pieces.evict.count";
+	public static final String ST_TORRENT_PIECES_BYTES			= "torrent.pieces.bytes";			// approximate heap
+	public static final String ST_DOWNLOAD_STATE_LOAD_COUNT		= "download.state.load.count";		// full state loaded for a cached summary
+
 		// NETWORK
 
 	public static final String ST_NET_WRITE_CONTROL_WAIT_COUNT			= "net.write.control.wait.count";
@@ -69,6 +91,8 @@ CoreStats
 	public static final String ST_NET_WRITE_CONTROL_CON_COUNT			= "net.write.control.con.count";
 	public static final String ST_NET_WRITE_CONTROL_READY_CON_COUNT		= "net.write.control.ready.con.count";
 	public static final String ST_NET_WRITE_CONTROL_READY_BYTE_COUNT	= "net.write.control.ready.byte.count";
+	public static final String ST_NET_WRITE_CONTROL_LOOP_COUNT			= "net.write.control.loop.count";
+	public static final String ST_NET_WRITE_CONTROL_LOOP_TIME			= "net.write.control.loop.time";		// ms spent processing, excludes waits
 
 	public static final String ST_NET_READ_CONTROL_LOOP_COUNT			= "net.read.control.loop.count";
 	public static final String ST_NET_READ_CONTROL_NP_COUNT				= "net.read.control.np.count";
@@ -77,6 +101,11 @@ CoreStats
 	public static final String ST_NET_READ_CONTROL_ENTITY_COUNT			= "net.read.control.entity.count";
 	public static final String ST_NET_READ_CONTROL_CON_COUNT			= "net.read.control.con.count";
 	public static final String ST_NET_READ_CONTROL_READY_CON_COUNT		= "net.read.control.ready.con.count";
+	public static final String ST_NET_READ_CONTROL_LOOP_TIME			= "net.read.control.loop.time";			// ms spent processing, excludes waits
+
+	public static final String ST_NET_QUEUE_SEND_BYTE_COUNT				= "net.queue.send.byte.count";
+	public static final String ST_NET_QUEUE_SEND_ALLOC_COUNT			= "net.queue.send.alloc.count";			// objects allocated by the send path
+	public static final String ST_NET_QUEUE_SEND_COALESCED_COUNT		= "net.queue.send.coalesced.count";		// small messages written via a shared buffer
 
 		// TCP
 
@@ -138,6 +167,8 @@ CoreStats
 	public static final String ST_TRACKER_ANNOUNCE_TIME		= "tracker.announce.time";
 	public static final String ST_TRACKER_SCRAPE_COUNT		= "tracker.scrape.count";
 	public static final String ST_TRACKER_SCRAPE_TIME		= "tracker.scrape.time";
+	public static final String ST_TRACKER_ANNOUNCE_RATE		= "tracker.announce.rate";
+	public static final String ST_TRACKER_ANNOUNCE_P99		= "tracker.announce.latency.p99";
 
 		// xfer (persistent)
 
@@ -177,6 +208,17 @@ CoreStats
 		{ ST_DISK_WRITE_IO_TIME,					CUMULATIVE },
 		{ ST_DISK_WRITE_IO_COUNT,					CUMULATIVE },
 
+		{ ST_DISK_HASH_REQUEST_COUNT,				CUMULATIVE },
+		{ ST_DISK_HASH_BYTES_TOTAL,					CUMULATIVE },
+		{ ST_DISK_HASH_TIME,						CUMULATIVE },
+		{ ST_DISK_HASH_RATE,						POINT },
+		{ ST_DISK_HASH_RATE_PER_CORE,				POINT },
+
+		{ ST_TORRENT_PIECES_LOAD_COUNT,				CUMULATIVE },
+		{ ST_TORRENT_PIECES_EVICT_COUNT,			CUMULATIVE },
+		{ ST_TORRENT_PIECES_BYTES,					POINT },
+		{ ST_DOWNLOAD_STATE_LOAD_COUNT,				CUMULATIVE },
+
 		{ ST_NET_WRITE_CONTROL_WAIT_COUNT,			CUMULATIVE },
 		{ ST_NET_WRITE_CONTROL_P_COUNT,				CUMULATIVE },
 		{ ST_NET_WRITE_CONTROL_NP_COUNT,			CUMULATIVE },
@@ -184,6 +226,8 @@ CoreStats
 		{ ST_NET_WRITE_CONTROL_CON_COUNT,			POINT },
 		{ ST_NET_WRITE_CONTROL_READY_CON_COUNT,		POINT },
 		{ ST_NET_WRITE_CONTROL_READY_BYTE_COUNT,	POINT },
+		{ ST_NET_WRITE_CONTROL_LOOP_COUNT,			CUMULATIVE },
+		{ ST_NET_WRITE_CONTROL_LOOP_TIME,			CUMULATIVE },
 
 		{ ST_NET_READ_CONTROL_LOOP_COUNT,			CUMULATIVE },
 		{ ST_NET_READ_CONTROL_P_COUNT,				CUMULATIVE },
@@ -192,6 +236,11 @@ CoreStats
 		{ ST_NET_READ_CONTROL_ENTITY_COUNT,			POINT },
 		{ ST_NET_READ_CONTROL_CON_COUNT,			POINT },
 		{ ST_NET_READ_CONTROL_READY_CON_COUNT,		POINT },
+		{ ST_NET_READ_CONTROL_LOOP_TIME,			CUMULATIVE },
+
+		{ ST_NET_QUEUE_SEND_BYTE_COUNT,				CUMULATIVE },
+		{ ST_NET_QUEUE_SEND_ALLOC_COUNT,			CUMULATIVE },
+		{ ST_NET_QUEUE_SEND_COALESCED_COUNT,		CUMULATIVE },
 
 		{ ST_NET_TCP_OUT_CONNECT_QUEUE_LENGTH,		POINT },
 		{ ST_NET_TCP_OUT_PENDING_QUEUE_LENGTH,		POINT },
@@ -238,6 +287,8 @@ CoreStats
 		{ ST_TRACKER_ANNOUNCE_TIME,					CUMULATIVE },
 		{ ST_TRACKER_SCRAPE_COUNT,					CUMULATIVE },
 		{ ST_TRACKER_SCRAPE_TIME,					CUMULATIVE },
+		{ ST_TRACKER_ANNOUNCE_RATE,					POINT },
+		{ ST_TRACKER_ANNOUNCE_P99,					POINT },
 
 		{ ST_XFER_UPLOADED_PROTOCOL_BYTES,			CUMULATIVE },
 		{ ST_XFER_UPLOADED_DATA_BYTES,				CUMULATIVE },
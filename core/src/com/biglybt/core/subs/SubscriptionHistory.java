@@ -25,6 +25,11 @@ SubscriptionHistory
 {
 	public static final int	DEFAULT_CHECK_INTERVAL_MINS		= -1;	// Switched from 120 to -1 when configurable default introduced, use this to select configured default
 
+	public static final int	RESULTS_ALL				= 0;
+	public static final int	RESULTS_NON_DELETED		= 1;
+	public static final int	RESULTS_UNREAD			= 2;	// non-deleted and unread
+	public static final int	RESULTS_READ			= 3;	// non-deleted and read
+
 	public boolean
 	isEnabled();
 
@@ -124,6 +129,24 @@ SubscriptionHistory
 	getResults(
 		boolean		include_deleted );
 
+		/**
+		 * Pages through the results in the order they were found, only the results returned
+		 * are read from disk
+		 * @param filter	one of the RESULTS_ constants
+		 * @param start		number of matching results to skip
+		 * @param max		-1 for no limit
+		 */
+
+	public SubscriptionResult[]
+	getResults(
+		int			filter,
+		int			start,
+		int			max );
+
+	public int
+	getResultCount(
+		int			filter );
+
 	public SubscriptionResult
 	getResult(
 		String		result_id );
@@ -726,6 +726,30 @@ SubscriptionHistoryImpl
 		}
 	}
 
+	@Override
+	public SubscriptionResult[]
+	getResults(
+		int			filter,
+		int			start,
+		int			max )
+	{
+		synchronized( this ){
+
+			return( manager.getResults( subs, filter, start, max ));
+		}
+	}
+
+	@Override
+	public int
+	getResultCount(
+		int			filter )
+	{
+		synchronized( this ){
+
+			return( manager.getResultCount( subs, filter ));
+		}
+	}
+
 	@Override
 	public SubscriptionResult
 	getResult(
@@ -1010,57 +1034,27 @@ SubscriptionHistoryImpl
 		String[] 		result_ids,
 		boolean[]		reads )
 	{
-		ByteArrayHashMap<Boolean> rid_map = new ByteArrayHashMap<>();
+		Map<String,Boolean> rid_map = new HashMap<>( result_ids.length*2 );
 
 		for (int i=0;i<result_ids.length;i++){
 
-			rid_map.put( Base32.decode( result_ids[i]), Boolean.valueOf(reads[i]));
+			rid_map.put( Base32.encode( Base32.decode( result_ids[i] )), Boolean.valueOf(reads[i]));
 		}
 
-		boolean	changed = false;
+		boolean	changed;
 
 		List<SubscriptionResultImpl>	new_unread_results = new ArrayList<>( result_ids.length );
 
 		synchronized( this ){
 
-			LinkedHashMap<String,SubscriptionResultImpl> results_map = manager.loadResults( subs );
+				// only the read state is written, the full result set isn't loaded or rewritten
 
-			SubscriptionResultImpl[] results = results_map.values().toArray( new SubscriptionResultImpl[results_map.size()] );
-
-			for (int i=0;i<results.length;i++){
-
-				SubscriptionResultImpl result = results[i];
-
-				if ( result.isDeleted()){
-
-					continue;
-				}
-
-				Boolean	b_read = (Boolean)rid_map.get( result.getKey1());
-
-				if ( b_read != null ){
-
-					boolean	read = b_read.booleanValue();
-
-					if ( result.getRead() != read ){
-
-						changed = true;
-
-						result.setReadInternal( read );
-
-						if ( !read ){
-
-							new_unread_results.add( result );
-						}
-					}
-				}
-			}
+			changed = manager.markResults( subs, rid_map, new_unread_results );
 
 			if ( changed ){
 
-				updateReadUnread( results );
-
-				manager.saveResults( subs, results, new_unread_results );
+				num_read	= manager.getResultCount( subs, RESULTS_READ );
+				num_unread	= manager.getResultCount( subs, RESULTS_UNREAD );
 			}
 		}
 
@@ -2601,7 +2601,7 @@ SubscriptionImpl
 			latest_unread_result_time = 0;
 			
 			disp.dispatch(()->{
-				getHistory().getResults( false );
+				manager.loadUnreadResultState( this );
 			});	
 		}
 		
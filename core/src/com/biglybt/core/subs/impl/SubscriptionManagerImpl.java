@@ -326,6 +326,28 @@ SubscriptionManagerImpl
 
 	private Map<SubscriptionImpl,Object[]>		result_cache = new HashMap<>();
 
+	private static final int	MAX_OPEN_RESULT_STORES	= 16;
+
+		// access ordered, only touched while holding result_cache
+
+	private Map<SubscriptionImpl,SubscriptionResultStore>	result_stores =
+		new LinkedHashMap<SubscriptionImpl,SubscriptionResultStore>( MAX_OPEN_RESULT_STORES, 0.75f, true )
+		{
+			@Override
+			protected boolean
+			removeEldestEntry(
+				Map.Entry<SubscriptionImpl,SubscriptionResultStore>		eldest )
+			{
+				if ( size() > MAX_OPEN_RESULT_STORES ){
+
+					eldest.getValue().close();
+
+					return( true );
+				}
+
+				return( false );
+			}
+		};
 
 	protected
 	SubscriptionManagerImpl(
@@ -2347,6 +2369,17 @@ SubscriptionManagerImpl
 			synchronized( result_cache ){
 
 				result_cache.remove( subs );
+
+				SubscriptionResultStore store = result_stores.remove( subs );
+
+				if ( store != null ){
+
+					store.close();
+				}
+
+				SubscriptionResultStore.deleteFiles( getResultStoreFile( subs ));
+
+				getMigratedResultsFile( subs ).delete();
 			}
 
 			File vuze_file = getVuzeFile( subs );
@@ -3218,6 +3251,28 @@ SubscriptionManagerImpl
  		return( FileUtil.newFile( dir, ByteFormatter.encodeString( subs.getShortID()) + ".results" ));
 	}
 
+	private File
+	getMigratedResultsFile(
+		SubscriptionImpl 		subs )
+
+		throws IOException
+	{
+ 		File dir = getSubsDir();
+
+ 		return( FileUtil.newFile( dir, ByteFormatter.encodeString( subs.getShortID()) + ".results.migrated" ));
+	}
+
+	protected File
+	getResultStoreFile(
+		SubscriptionImpl 		subs )
+
+		throws IOException
+	{
+ 		File dir = getSubsDir();
+
+ 		return( FileUtil.newFile( dir, ByteFormatter.encodeString( subs.getShortID()) + ".resultstore" ));
+	}
+
 	@Override
 	public int
 	getKnownSubscriptionCount()
@@ -7539,41 +7594,17 @@ SubscriptionManagerImpl
 			results = new LinkedHashMap<String,SubscriptionResultImpl>(1024);
 
 			try{
-				File	f = getResultsFile( subs );
-
-				Map	map = FileUtil.readResilientFile( f );
+				SubscriptionResultStore store = getResultStore( subs );
 
-				List	list = (List)map.get( "results" );
-
-				if ( list != null ){
-
-					SubscriptionHistoryImpl	history = (SubscriptionHistoryImpl)subs.getHistory();
-
-					for (int i=0;i<list.size();i++){
-
-						Map	result_map =(Map)list.get(i);
+				List<SubscriptionResultImpl> stored = store.getResults((SubscriptionHistoryImpl)subs.getHistory(), SubscriptionHistory.RESULTS_ALL, 0, -1 );
 
-						try{
-							SubscriptionResultImpl result = new SubscriptionResultImpl( history, result_map );
-
-							results.put( result.getID(), result );
-
-							if ( !( result.isDeleted() || result.getRead())){
-							
-								long time_found = result.getTimeFound();
-								
-								if ( time_found > latest_unread_result ){
-									
-									latest_unread_result = time_found;
-								}
-							}
-						}catch( Throwable e ){
+				for ( SubscriptionResultImpl result: stored ){
 
-							log( "Failed to decode result '" + result_map + "'", e );
-						}
-					}
+					results.put( result.getID(), result );
 				}
 
+				latest_unread_result = store.getNewestUnreadTime();
+
 			}catch( Throwable e ){
 
 				log( "Failed to load results for '" + subs.getName() + "' - continuing with empty result set", e );
@@ -7611,6 +7642,350 @@ SubscriptionManagerImpl
 		return( results );
 	}
 
+		/**
+		 * Caller must hold result_cache
+		 */
+
+	private SubscriptionResultStore
+	getResultStore(
+		SubscriptionImpl		subs )
+
+		throws IOException
+	{
+		SubscriptionResultStore store = result_stores.get( subs );
+
+		if ( store != null && !store.isFailed()){
+
+			return( store );
+		}
+
+		store = new SubscriptionResultStore( getResultStoreFile( subs ));
+
+		File legacy_file = getResultsFile( subs );
+
+		if ( 	legacy_file.exists() ||
+				FileUtil.newFile( legacy_file.getParentFile(), legacy_file.getName() + ".bak" ).exists()){
+
+				// migrate from the old single map file, the store is written before the old
+				// file is moved aside so an interrupted migration is simply repeated
+
+			if ( store.size() == 0 ){
+
+				Map	map = FileUtil.readResilientFile( legacy_file );
+
+				List	list = (List)map.get( "results" );
+
+				if ( list != null ){
+
+					SubscriptionHistoryImpl	history = (SubscriptionHistoryImpl)subs.getHistory();
+
+					List<SubscriptionResultImpl> legacy_results = new ArrayList<>( list.size());
+
+					for (int i=0;i<list.size();i++){
+
+						Map	result_map =(Map)list.get(i);
+
+						try{
+							legacy_results.add( new SubscriptionResultImpl( history, result_map ));
+
+						}catch( Throwable e ){
+
+							log( "Failed to decode result '" + result_map + "'", e );
+						}
+					}
+
+					store.save( legacy_results.toArray( new SubscriptionResultImpl[legacy_results.size()] ));
+				}
+			}
+
+			if ( !store.isFailed()){
+
+					// keep the old file for a while in case of downgrade
+
+				File	migrated_file	= getMigratedResultsFile( subs );
+				File	legacy_bak		= FileUtil.newFile( legacy_file.getParentFile(), legacy_file.getName() + ".bak" );
+
+				migrated_file.delete();
+
+				if ( legacy_file.exists()){
+
+					legacy_file.renameTo( migrated_file );
+
+				}else{
+
+					legacy_bak.renameTo( migrated_file );
+				}
+
+				FileUtil.deleteResilientFile( legacy_file );
+			}
+		}
+
+		result_stores.put( subs, store );
+
+		return( store );
+	}
+
+	protected SubscriptionResultImpl[]
+	getResults(
+		SubscriptionImpl		subs,
+		int						filter,
+		int						start,
+		int						max )
+	{
+		synchronized( result_cache ){
+
+			Object[]	entry = result_cache.get( subs );
+
+			if ( entry != null ){
+
+					// already in memory, no point going to disk
+
+				entry[1] = SystemTime.getMonotonousTime();
+
+				LinkedHashMap<String,SubscriptionResultImpl>	results = (LinkedHashMap<String,SubscriptionResultImpl>)entry[0];
+
+				List<SubscriptionResultImpl>	page = new ArrayList<>();
+
+				int	skipped = 0;
+
+				for ( SubscriptionResultImpl result: results.values()){
+
+					if ( max >= 0 && page.size() >= max ){
+
+						break;
+					}
+
+					if ( matchesFilter( result, filter )){
+
+						if ( skipped < start ){
+
+							skipped++;
+
+						}else{
+
+							page.add( result );
+						}
+					}
+				}
+
+				return( page.toArray( new SubscriptionResultImpl[page.size()] ));
+			}
+
+			try{
+				List<SubscriptionResultImpl> page = getResultStore( subs ).getResults((SubscriptionHistoryImpl)subs.getHistory(), filter, start, max );
+
+				return( page.toArray( new SubscriptionResultImpl[page.size()] ));
+
+			}catch( Throwable e ){
+
+				log( "Failed to load results for '" + subs.getName() + "'", e );
+
+				return( new SubscriptionResultImpl[0] );
+			}
+		}
+	}
+
+	protected int
+	getResultCount(
+		SubscriptionImpl		subs,
+		int						filter )
+	{
+		synchronized( result_cache ){
+
+			Object[]	entry = result_cache.get( subs );
+
+			if ( entry != null ){
+
+				LinkedHashMap<String,SubscriptionResultImpl>	results = (LinkedHashMap<String,SubscriptionResultImpl>)entry[0];
+
+				int	count = 0;
+
+				for ( SubscriptionResultImpl result: results.values()){
+
+					if ( matchesFilter( result, filter )){
+
+						count++;
+					}
+				}
+
+				return( count );
+			}
+
+			try{
+				return( getResultStore( subs ).getCount( filter ));
+
+			}catch( Throwable e ){
+
+				log( "Failed to count results for '" + subs.getName() + "'", e );
+
+				return( 0 );
+			}
+		}
+	}
+
+	private static boolean
+	matchesFilter(
+		SubscriptionResultImpl		result,
+		int							filter )
+	{
+		switch( filter ){
+
+			case SubscriptionHistory.RESULTS_NON_DELETED:{
+
+				return( !result.isDeleted());
+			}
+			case SubscriptionHistory.RESULTS_UNREAD:{
+
+				return( !( result.isDeleted() || result.getRead()));
+			}
+			case SubscriptionHistory.RESULTS_READ:{
+
+				return( !result.isDeleted() && result.getRead());
+			}
+			default:{
+
+				return( true );
+			}
+		}
+	}
+
+		/**
+		 * Updates read state in place, only the results that become unread are loaded (for
+		 * auto-download and new result processing) if the full set isn't already in memory
+		 * @return true if anything changed
+		 */
+
+	protected boolean
+	markResults(
+		SubscriptionImpl				subs,
+		Map<String,Boolean>				reads,
+		List<SubscriptionResultImpl>	new_unread_results )
+	{
+		long latest_unread_result;
+
+		synchronized( result_cache ){
+
+			try{
+				SubscriptionResultStore store = getResultStore( subs );
+
+				List<String> changed = store.setRead( reads );
+
+				if ( changed.isEmpty()){
+
+					return( false );
+				}
+
+				Object[]	entry = result_cache.get( subs );
+
+				List<String>	unread_ids = new ArrayList<>( changed.size());
+
+				for ( String id: changed ){
+
+					boolean read = reads.get( id );
+
+					if ( entry != null ){
+
+						SubscriptionResultImpl result = ((LinkedHashMap<String,SubscriptionResultImpl>)entry[0]).get( id );
+
+						if ( result != null ){
+
+							result.setReadInternal( read );
+
+							if ( !read ){
+
+								new_unread_results.add( result );
+							}
+						}
+					}else if ( !read ){
+
+						unread_ids.add( id );
+					}
+				}
+
+				if ( !unread_ids.isEmpty()){
+
+					new_unread_results.addAll( store.getResults((SubscriptionHistoryImpl)subs.getHistory(), unread_ids ));
+				}
+
+				latest_unread_result = store.getNewestUnreadTime();
+
+			}catch( Throwable e ){
+
+				log( "Failed to mark results for '" + subs.getName() + "'", e );
+
+				return( false );
+			}
+		}
+
+		subs.setNewestUnreadResultTime( latest_unread_result );
+
+		if ( !new_unread_results.isEmpty()){
+
+			processResults( subs, new_unread_results, true );
+		}
+
+		return( true );
+	}
+
+		/**
+		 * Picks up the newest unread time and runs any pending library check against the unread
+		 * results without loading the full set
+		 */
+
+	protected void
+	loadUnreadResultState(
+		SubscriptionImpl			subs )
+	{
+		List<SubscriptionResultImpl>	unread = null;
+
+		long latest_unread_result = 0;
+
+		synchronized( result_cache ){
+
+			if ( !result_cache.containsKey( subs )){
+
+				Integer mut = (Integer)subs.getUserData( LIB_MUTATION_KEY );
+
+				boolean check_results = mut == null || mut != lib_mutation_count.get();
+
+				subs.setUserData( LIB_MUTATION_KEY, lib_mutation_count.get());
+
+				try{
+					SubscriptionResultStore store = getResultStore( subs );
+
+					latest_unread_result = store.getNewestUnreadTime();
+
+					if ( check_results ){
+
+							// the library check only acts on unread results
+
+						unread = store.getResults((SubscriptionHistoryImpl)subs.getHistory(), SubscriptionHistory.RESULTS_UNREAD, 0, -1 );
+					}
+				}catch( Throwable e ){
+
+					log( "Failed to load results for '" + subs.getName() + "'", e );
+				}
+			}else{
+
+				latest_unread_result = -1;
+			}
+		}
+
+		if ( latest_unread_result == -1 ){
+
+			loadResults( subs );
+
+			return;
+		}
+
+		subs.setNewestUnreadResultTime( latest_unread_result );
+
+		if ( unread != null && !unread.isEmpty()){
+
+			processResults( subs, unread, false );
+		}
+	}
+
 	protected void
   	setCategoryOnExisting(
   		SubscriptionImpl	subscription,
@@ -7875,20 +8250,9 @@ SubscriptionManagerImpl
 					}
 				}
 				
-				File	f = getResultsFile( subs );
-
-				Map	map = new HashMap();
-
-				List<Map>	list = new ArrayList<>( results.length );
+				SubscriptionResultStore store = getResultStore( subs );
 
-				map.put( "results", list );
-
-				for ( SubscriptionResultImpl result: saved_results ){
-					
-					list.add( result.toBEncodedMap());
-				}
-				
-				FileUtil.writeResilientFileIncrementally( f, map );
+				store.save( saved_results.toArray( new SubscriptionResultImpl[saved_results.size()] ));
 
 			}catch( Throwable e ){
 
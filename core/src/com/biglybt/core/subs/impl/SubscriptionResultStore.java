@@ -0,0 +1,956 @@
+/*
+ * Copyright (C) Bigly Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+
+package com.biglybt.core.subs.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+import java.util.zip.CRC32;
+
+import com.biglybt.core.subs.SubscriptionHistory;
+import com.biglybt.core.util.BDecoder;
+import com.biglybt.core.util.BEncoder;
+import com.biglybt.core.util.Constants;
+import com.biglybt.core.util.Debug;
+import com.biglybt.core.util.FileUtil;
+
+/**
+ * Per-subscription result file made up of appended records with an in-memory index of result id
+ * to the position of its current body plus its read/deleted state, so results can be counted,
+ * filtered and paged without decoding the whole set and a save only appends what changed. A read
+ * state change is a small flags record rather than a copy of the result. Dead records are dropped
+ * by copying the live ones to a new file once they outweigh the live data. The new file replaces
+ * the old one by renaming the old one aside first, an interrupted swap is completed on open.
+ * <pre>
+ *   int magic | int version
+ *   entries: byte type | byte id_len | id
+ *     RT_RESULT: byte flags | int time_found_secs | int crc | int body_len | bencoded body
+ *     RT_FLAGS:  byte flags
+ *     RT_REMOVE: -
+ * </pre>
+ * The body is the result's bencoded map without the read state. A torn entry at the end is
+ * truncated on open. Index order is the order results were first added which is the order they
+ * are returned in. Not thread safe, the manager only uses it while holding its result cache lock.
+ */
+
+class
+SubscriptionResultStore
+{
+	private static final int	MAGIC	= 0x42425352;	// BBSR
+	private static final int	VERSION	= 1;
+
+	private static final int	HEADER_SIZE	= 8;
+
+	private static final byte	RT_RESULT	= 1;
+	private static final byte	RT_FLAGS	= 2;
+	private static final byte	RT_REMOVE	= 3;
+
+	private static final byte	FL_READ		= 0x01;
+	private static final byte	FL_DELETED	= 0x02;
+
+	private static final int	RESULT_HEADER_SIZE	= 1 + 4 + 4 + 4;
+
+	private static final int	MAX_BODY_SIZE	= 4*1024*1024;
+
+	private static final long	COMPACT_SLACK	= 256*1024;
+
+	private static final String	SUFFIX_COMPACT	= ".compact";
+	private static final String	SUFFIX_OLD		= ".old";
+
+	protected static void
+	deleteFiles(
+		File		file )
+	{
+		file.delete();
+
+		getSideFile( file, SUFFIX_COMPACT ).delete();
+		getSideFile( file, SUFFIX_OLD ).delete();
+	}
+
+	private static File
+	getSideFile(
+		File		file,
+		String		suffix )
+	{
+		return( FileUtil.newFile( file.getParentFile(), file.getName() + suffix ));
+	}
+
+	private final File		file;
+
+	private RandomAccessFile	raf;
+	private FileChannel			channel;
+
+	private long	file_end;
+	private long	live_bytes;
+
+	private final LinkedHashMap<String,Entry>	index = new LinkedHashMap<>();
+
+	private final ByteBuffer	entry_header = ByteBuffer.allocate( 2 + 255 + RESULT_HEADER_SIZE );
+
+	private boolean	failed;
+
+	protected
+	SubscriptionResultStore(
+		File		_file )
+	{
+		file	= _file;
+
+		try{
+			open();
+
+		}catch( Throwable e ){
+
+			Debug.out( "Failed to open subscription result store " + file, e );
+
+			closeFile();
+
+			failed = true;
+		}
+	}
+
+	private void
+	open()
+
+		throws IOException
+	{
+		recoverCompaction();
+
+		raf		= new RandomAccessFile( file, "rw" );
+		channel	= raf.getChannel();
+
+		long	size = channel.size();
+
+		if ( size < HEADER_SIZE ){
+
+			resetFile();
+
+			return;
+		}
+
+		ByteBuffer	header = ByteBuffer.allocate( HEADER_SIZE );
+
+		readFully( header, 0 );
+
+		if ( header.getInt( 0 ) != MAGIC || header.getInt( 4 ) != VERSION ){
+
+			resetFile();
+
+			return;
+		}
+
+		long	pos = HEADER_SIZE;
+
+		while( pos < size ){
+
+			entry_header.clear();
+			entry_header.limit( 2 );
+
+			if ( !readFully( entry_header, pos )){
+
+				break;
+			}
+
+			byte	type	= entry_header.get( 0 );
+			int		id_len	= entry_header.get( 1 )&0xff;
+
+			int	rest;
+
+			if ( type == RT_RESULT ){
+
+				rest = RESULT_HEADER_SIZE;
+
+			}else if ( type == RT_FLAGS ){
+
+				rest = 1;
+
+			}else if ( type == RT_REMOVE ){
+
+				rest = 0;
+
+			}else{
+
+				break;
+			}
+
+			entry_header.clear();
+			entry_header.limit( id_len + rest );
+
+			if ( !readFully( entry_header, pos + 2 )){
+
+				break;
+			}
+
+			byte[]	id_bytes = new byte[id_len];
+
+			entry_header.get( id_bytes );
+
+			String	id = new String( id_bytes, Constants.UTF_8 );
+
+			long	next_pos = pos + 2 + id_len + rest;
+
+			if ( type == RT_RESULT ){
+
+				byte	flags		= entry_header.get();
+				int		time_found	= entry_header.getInt();
+				int		crc			= entry_header.getInt();
+				int		body_len	= entry_header.getInt();
+
+				if ( body_len < 0 || body_len > MAX_BODY_SIZE || next_pos + body_len > size ){
+
+					break;
+				}
+
+				Entry	entry = new Entry( next_pos, body_len, crc, time_found, flags );
+
+				Entry	existing = index.put( id, entry );
+
+				if ( existing != null ){
+
+					live_bytes -= existing.getSize( id );
+				}
+
+				live_bytes += entry.getSize( id );
+
+				next_pos += body_len;
+
+			}else if ( type == RT_FLAGS ){
+
+				Entry	existing = index.get( id );
+
+				if ( existing != null ){
+
+					existing.flags = entry_header.get();
+				}
+			}else{
+
+				Entry	existing = index.remove( id );
+
+				if ( existing != null ){
+
+					live_bytes -= existing.getSize( id );
+				}
+			}
+
+			pos = next_pos;
+		}
+
+		if ( pos < size ){
+
+				// torn or corrupt tail, drop it
+
+			channel.truncate( pos );
+		}
+
+		file_end = pos;
+
+		channel.position( file_end );
+	}
+
+	private void
+	resetFile()
+
+		throws IOException
+	{
+		channel.truncate( 0 );
+
+		ByteBuffer	header = ByteBuffer.allocate( HEADER_SIZE );
+
+		header.putInt( MAGIC );
+		header.putInt( VERSION );
+
+		header.flip();
+
+		channel.write( header, 0 );
+
+		file_end = HEADER_SIZE;
+
+		channel.position( file_end );
+
+		index.clear();
+
+		live_bytes = 0;
+	}
+
+	private boolean
+	readFully(
+		ByteBuffer	buffer,
+		long		pos )
+
+		throws IOException
+	{
+		while( buffer.hasRemaining()){
+
+			int	len = channel.read( buffer, pos );
+
+			if ( len <= 0 ){
+
+				return( false );
+			}
+
+			pos += len;
+		}
+
+		buffer.flip();
+
+		return( true );
+	}
+
+	private void
+	writeFully(
+		ByteBuffer	buffer )
+
+		throws IOException
+	{
+		while( buffer.hasRemaining()){
+
+			channel.write( buffer );
+		}
+	}
+
+	private long
+	writeEntry(
+		byte		type,
+		String		id,
+		byte		flags,
+		int			time_found,
+		int			crc,
+		byte[]		body )
+
+		throws IOException
+	{
+		byte[]	id_bytes = id.getBytes( Constants.UTF_8 );
+
+		entry_header.clear();
+
+		entry_header.put( type );
+		entry_header.put((byte)id_bytes.length );
+		entry_header.put( id_bytes );
+
+		if ( type == RT_RESULT ){
+
+			entry_header.put( flags );
+			entry_header.putInt( time_found );
+			entry_header.putInt( crc );
+			entry_header.putInt( body.length );
+
+		}else if ( type == RT_FLAGS ){
+
+			entry_header.put( flags );
+		}
+
+		entry_header.flip();
+
+		file_end += entry_header.remaining();
+
+		writeFully( entry_header );
+
+		long	body_pos = file_end;
+
+		if ( body != null ){
+
+			writeFully( ByteBuffer.wrap( body ));
+
+			file_end += body.length;
+		}
+
+		return( body_pos );
+	}
+
+	private static byte
+	getFlags(
+		SubscriptionResultImpl	result )
+	{
+		return((byte)(( result.getRead()?FL_READ:0 ) | ( result.isDeleted()?FL_DELETED:0 )));
+	}
+
+	private static boolean
+	matches(
+		int		filter,
+		byte	flags )
+	{
+		switch( filter ){
+
+			case SubscriptionHistory.RESULTS_NON_DELETED:{
+
+				return(( flags & FL_DELETED ) == 0 );
+			}
+			case SubscriptionHistory.RESULTS_UNREAD:{
+
+				return(( flags & ( FL_DELETED | FL_READ )) == 0 );
+			}
+			case SubscriptionHistory.RESULTS_READ:{
+
+				return(( flags & ( FL_DELETED | FL_READ )) == FL_READ );
+			}
+			default:{
+
+				return( true );
+			}
+		}
+	}
+
+	protected boolean
+	isFailed()
+	{
+		return( failed );
+	}
+
+	protected int
+	size()
+	{
+		return( index.size());
+	}
+
+	protected int
+	getCount(
+		int		filter )
+	{
+		if ( filter == SubscriptionHistory.RESULTS_ALL ){
+
+			return( index.size());
+		}
+
+		int	count = 0;
+
+		for ( Entry entry: index.values()){
+
+			if ( matches( filter, entry.flags )){
+
+				count++;
+			}
+		}
+
+		return( count );
+	}
+
+	protected long
+	getNewestUnreadTime()
+	{
+		long	newest = 0;
+
+		for ( Entry entry: index.values()){
+
+			if ( matches( SubscriptionHistory.RESULTS_UNREAD, entry.flags )){
+
+				newest = Math.max( newest, entry.time_found*1000L );
+			}
+		}
+
+		return( newest );
+	}
+
+		/**
+		 * @param max -1 for no limit
+		 */
+
+	protected List<SubscriptionResultImpl>
+	getResults(
+		SubscriptionHistoryImpl		history,
+		int							filter,
+		int							start,
+		int							max )
+	{
+		List<SubscriptionResultImpl>	results = new ArrayList<>( max<0?index.size():Math.min( max, index.size()));
+
+		if ( failed ){
+
+			return( results );
+		}
+
+		try{
+			int	skipped = 0;
+
+			for ( Map.Entry<String,Entry> e: index.entrySet()){
+
+				Entry	entry = e.getValue();
+
+				if ( !matches( filter, entry.flags )){
+
+					continue;
+				}
+
+				if ( skipped < start ){
+
+					skipped++;
+
+					continue;
+				}
+
+				if ( max >= 0 && results.size() >= max ){
+
+					break;
+				}
+
+				SubscriptionResultImpl	result = readResult( history, e.getKey(), entry );
+
+				if ( result != null ){
+
+					results.add( result );
+				}
+			}
+		}catch( Throwable e ){
+
+			fail( e );
+		}
+
+		return( results );
+	}
+
+	protected List<SubscriptionResultImpl>
+	getResults(
+		SubscriptionHistoryImpl		history,
+		Collection<String>			ids )
+	{
+		List<SubscriptionResultImpl>	results = new ArrayList<>( ids.size());
+
+		if ( failed ){
+
+			return( results );
+		}
+
+		try{
+			for ( String id: ids ){
+
+				Entry	entry = index.get( id );
+
+				if ( entry != null ){
+
+					SubscriptionResultImpl	result = readResult( history, id, entry );
+
+					if ( result != null ){
+
+						results.add( result );
+					}
+				}
+			}
+		}catch( Throwable e ){
+
+			fail( e );
+		}
+
+		return( results );
+	}
+
+	private SubscriptionResultImpl
+	readResult(
+		SubscriptionHistoryImpl		history,
+		String						id,
+		Entry						entry )
+
+		throws IOException
+	{
+		ByteBuffer	bb = ByteBuffer.allocate( entry.len );
+
+		if ( !readFully( bb, entry.pos )){
+
+			throw( new IOException( "Record truncated" ));
+		}
+
+		Map	map = BDecoder.decode( bb.array());
+
+		map.put( "read", new Long(( entry.flags & FL_READ ) != 0?1:0 ));
+
+		try{
+			return( new SubscriptionResultImpl( history, map ));
+
+		}catch( Throwable e ){
+
+				// one bad result shouldn't lose the rest
+
+			Debug.out( "Failed to decode result " + id, e );
+
+			return( null );
+		}
+	}
+
+		/**
+		 * Brings the store into line with the supplied results, only results that have changed
+		 * since they were last saved are written, results not in the list are removed
+		 */
+
+	protected void
+	save(
+		SubscriptionResultImpl[]	results )
+	{
+		if ( failed ){
+
+			return;
+		}
+
+		try{
+			Set<String>	ids = new HashSet<>( results.length*2 );
+
+			CRC32	crc32 = new CRC32();
+
+			for ( SubscriptionResultImpl result: results ){
+
+				String	id = result.getID();
+
+				if ( !ids.add( id )){
+
+					continue;
+				}
+
+				Map	map = result.toBEncodedMap();
+
+				map.remove( "read" );
+
+				byte[]	body = BEncoder.encode( map );
+
+				crc32.reset();
+
+				crc32.update( body );
+
+				int		crc		= (int)crc32.getValue();
+				byte	flags	= getFlags( result );
+
+				Entry	existing = index.get( id );
+
+				if ( existing == null || existing.crc != crc || existing.len != body.length ){
+
+					int	time_found = result.isDeleted()?0:(int)( result.getTimeFound()/1000 );
+
+					long	body_pos = writeEntry( RT_RESULT, id, flags, time_found, crc, body );
+
+					Entry	entry = new Entry( body_pos, body.length, crc, time_found, flags );
+
+					if ( existing != null ){
+
+						live_bytes -= existing.getSize( id );
+					}
+
+					live_bytes += entry.getSize( id );
+
+					index.put( id, entry );
+
+				}else if ( existing.flags != flags ){
+
+					writeEntry( RT_FLAGS, id, flags, 0, 0, null );
+
+					existing.flags = flags;
+				}
+			}
+
+			if ( ids.size() < index.size()){
+
+				Iterator<Map.Entry<String,Entry>>	it = index.entrySet().iterator();
+
+				while( it.hasNext()){
+
+					Map.Entry<String,Entry>	e = it.next();
+
+					String	id = e.getKey();
+
+					if ( !ids.contains( id )){
+
+						writeEntry( RT_REMOVE, id, (byte)0, 0, 0, null );
+
+						live_bytes -= e.getValue().getSize( id );
+
+						it.remove();
+					}
+				}
+			}
+
+			channel.force( false );
+
+			checkCompaction();
+
+		}catch( Throwable e ){
+
+			fail( e );
+		}
+	}
+
+		/**
+		 * Updates the read state of the given (non-deleted) results
+		 * @return ids of the results whose state actually changed
+		 */
+
+	protected List<String>
+	setRead(
+		Map<String,Boolean>		reads )
+	{
+		List<String>	changed = new ArrayList<>( reads.size());
+
+		if ( failed ){
+
+			return( changed );
+		}
+
+		try{
+			for ( Map.Entry<String,Boolean> e: reads.entrySet()){
+
+				String	id		= e.getKey();
+				Entry	entry	= index.get( id );
+
+				if ( entry == null || ( entry.flags & FL_DELETED ) != 0 ){
+
+					continue;
+				}
+
+				byte	flags = (byte)( e.getValue()?( entry.flags | FL_READ ):( entry.flags & ~FL_READ ));
+
+				if ( flags != entry.flags ){
+
+					writeEntry( RT_FLAGS, id, flags, 0, 0, null );
+
+					entry.flags = flags;
+
+					changed.add( id );
+				}
+			}
+
+			if ( !changed.isEmpty()){
+
+				channel.force( false );
+			}
+		}catch( Throwable e ){
+
+			fail( e );
+		}
+
+		return( changed );
+	}
+
+		/**
+		 * A compacted copy is complete before the live file is renamed aside so if the live file
+		 * is missing the copy is adopted, failing that the old file is put back. Once the live
+		 * file exists anything left over is stale.
+		 */
+
+	private void
+	recoverCompaction()
+
+		throws IOException
+	{
+		File	temp	= getSideFile( file, SUFFIX_COMPACT );
+		File	old		= getSideFile( file, SUFFIX_OLD );
+
+		if ( !file.exists()){
+
+			if ( temp.exists() && old.exists()){
+
+				if ( !temp.renameTo( file )){
+
+					throw( new IOException( "Failed to rename " + temp + " to " + file ));
+				}
+			}else if ( old.exists()){
+
+				if ( !old.renameTo( file )){
+
+					throw( new IOException( "Failed to rename " + old + " to " + file ));
+				}
+			}
+		}
+
+		temp.delete();
+		old.delete();
+	}
+
+	private void
+	checkCompaction()
+
+		throws IOException
+	{
+		if ( file_end - HEADER_SIZE <= 2*live_bytes + COMPACT_SLACK ){
+
+			return;
+		}
+
+		File	temp	= getSideFile( file, SUFFIX_COMPACT );
+		File	old		= getSideFile( file, SUFFIX_OLD );
+
+		temp.delete();
+		old.delete();
+
+		LinkedHashMap<String,Entry>	new_index = new LinkedHashMap<>( index.size()*2 );
+
+		RandomAccessFile	temp_raf = new RandomAccessFile( temp, "rw" );
+
+		try{
+			FileChannel	temp_channel = temp_raf.getChannel();
+
+			ByteBuffer	header = ByteBuffer.allocate( HEADER_SIZE );
+
+			header.putInt( MAGIC );
+			header.putInt( VERSION );
+
+			header.flip();
+
+			temp_channel.write( header );
+
+			long	pos = HEADER_SIZE;
+
+			for ( Map.Entry<String,Entry> e: index.entrySet()){
+
+				String	id		= e.getKey();
+				Entry	entry	= e.getValue();
+
+				byte[]	id_bytes = id.getBytes( Constants.UTF_8 );
+
+				ByteBuffer	bb = ByteBuffer.allocate( 2 + id_bytes.length + RESULT_HEADER_SIZE + entry.len );
+
+				bb.put( RT_RESULT );
+				bb.put((byte)id_bytes.length );
+				bb.put( id_bytes );
+				bb.put( entry.flags );
+				bb.putInt( entry.time_found );
+				bb.putInt( entry.crc );
+				bb.putInt( entry.len );
+
+				int	body_offset = bb.position();
+
+				ByteBuffer	body = bb.slice();
+
+				if ( !readFully( body, entry.pos )){
+
+					throw( new IOException( "Record truncated" ));
+				}
+
+				bb.position( 0 );
+
+				while( bb.hasRemaining()){
+
+					temp_channel.write( bb );
+				}
+
+				new_index.put( id, new Entry( pos + body_offset, entry.len, entry.crc, entry.time_found, entry.flags ));
+
+				pos += bb.limit();
+			}
+
+			temp_channel.force( false );
+
+		}finally{
+
+			temp_raf.close();
+		}
+
+		closeFile();
+
+			// never without one of the two complete files, see recoverCompaction
+
+		if ( !file.renameTo( old )){
+
+			temp.delete();
+
+			throw( new IOException( "Failed to rename " + file + " to " + old ));
+		}
+
+		if ( !temp.renameTo( file )){
+
+			old.renameTo( file );
+
+			throw( new IOException( "Failed to replace " + file + " with compacted copy" ));
+		}
+
+		old.delete();
+
+		raf		= new RandomAccessFile( file, "rw" );
+		channel	= raf.getChannel();
+
+		file_end = channel.size();
+
+		channel.position( file_end );
+
+		index.clear();
+		index.putAll( new_index );
+	}
+
+	protected void
+	close()
+	{
+		closeFile();
+
+		failed = true;
+	}
+
+	protected void
+	delete()
+	{
+		close();
+
+		deleteFiles( file );
+	}
+
+	private void
+	fail(
+		Throwable	e )
+	{
+			// the file is re-checked when the store is next opened
+
+		Debug.out( "Subscription result store " + file + " failed", e );
+
+		closeFile();
+
+		failed = true;
+	}
+
+	private void
+	closeFile()
+	{
+		if ( raf != null ){
+
+			try{
+				raf.close();
+
+			}catch( Throwable e ){
+			}
+
+			raf		= null;
+			channel	= null;
+		}
+	}
+
+	private static class
+	Entry
+	{
+		final long	pos;
+		final int	len;
+		final int	crc;
+		final int	time_found;
+
+		byte	flags;
+
+		Entry(
+			long	_pos,
+			int		_len,
+			int		_crc,
+			int		_time_found,
+			byte	_flags )
+		{
+			pos			= _pos;
+			len			= _len;
+			crc			= _crc;
+			time_found	= _time_found;
+			flags		= _flags;
+		}
+
+		int
+		getSize(
+			String	id )
+		{
+			return( 2 + id.length() + RESULT_HEADER_SIZE + len );
+		}
+	}
+}
@@ -85,6 +85,7 @@ TagPropertyConstraintHandler
 	private static final Object DM_SAVE_PATH					= new Object();
 
 	private static final Object DM_PEER_SETS					= new Object();
+	private static final Object DM_KW_SNAPSHOT					= new Object();
 	private static final Object DM_RATES						= new Object();
 	
 	private static final Object DM_TRACKERS						= new Object();
@@ -113,6 +114,8 @@ TagPropertyConstraintHandler
 	final Map<Tag,Map<DownloadManager,Long>>			apply_history 		= new HashMap<>();
 
 	private final AsyncDispatcher	dispatcher = new AsyncDispatcher( "tag:constraints" );
+	
+	private long	timed_tick;		// only used on the dispatcher
 
 	private final FrequencyLimitedDispatcher	freq_lim_dispatcher =
 		new FrequencyLimitedDispatcher(
@@ -822,7 +825,7 @@ TagPropertyConstraintHandler
 									
 										GlobalManager gm = core.getGlobalManager();
 
-										apply( gm.getDownloadManagers(), time_constraints );
+										applyTimed( gm.getDownloadManagers(), time_constraints );
 									}
 									
 									if ( !ps_changed.isEmpty()){
@@ -1285,6 +1288,36 @@ TagPropertyConstraintHandler
 			});
 	}
 	
+	private void
+	applyTimed(
+		List<DownloadManager> 	dms,
+		List<TagConstraint>		cons )	
+	{
+		synchronized( constrained_tags ){
+
+			if ( !initialised ){
+
+				return;
+			}
+		}
+
+		dispatcher.dispatch(
+			new AERunnable()
+			{
+				@Override
+				public void
+				runSupport()
+				{
+					long tick = timed_tick++;
+					
+					for ( TagConstraint con: cons ){
+
+						con.applyTimed( dms, tick );
+					}
+				}
+			});
+	}
+	
 	private boolean
 	applyAll()
 	{
@@ -1410,6 +1443,15 @@ TagPropertyConstraintHandler
 		private boolean			must_check_dependencies;
 		
 		private Average			activity_average = Average.getInstance( 1000, 60 );
+		private Average			eval_time_average = Average.getInstance( 1000, 60 );
+		
+		private long					keyword_mask;
+		private ConstraintExprFunction	keyword_source;
+		private boolean					incremental_ok	= true;
+		
+		private long							last_timed_tick	= -1;
+		private Map<DownloadManager,Boolean>	timed_results	= new IdentityHashMap<>();
+		private long							timed_skipped;
 		
 		private String 			error;
 		
@@ -1473,9 +1515,18 @@ TagPropertyConstraintHandler
 		{
 			String result = activity_average.getAverage() + "/" +  TimeFormatter.getLongSuffix( TimeFormatter.TS_SECOND );
 			
+				// eval time is in micros per second, i.e. the share of a core the constraint is using
+			
+			result += ", eval " + eval_time_average.getAverage() + "us/" +  TimeFormatter.getLongSuffix( TimeFormatter.TS_SECOND );
+			
 			if ( Constants.IS_CVS_VERSION ){
 				
 				result +=  ", " + "DS=" + depends_on_download_state + ", DL=" + depends_on_level;
+				
+				if ( depends_on_level == DEP_TIME ){
+					
+					result += ", INC=" + isIncremental() + ", SKIP=" + timed_skipped;
+				}
 			}
 			
 			return( result );
@@ -2017,37 +2068,225 @@ TagPropertyConstraintHandler
 							}
 						}
 						
-						if ( handler.isStopping()){
+						applyResult( existing, dm, true );
+					}
+				}
+			}else{
 
-							return;
-						}
+				if ( auto_remove ){
 
-						if ( !tag_maybe_null.hasTaggable( dm ) && canAddTaggable( dm )){
+					applyResult( existing, dm, false );
+				}
+			}
+		}
 
-							tag_maybe_null.addTaggable( dm );
-						}
-					}
+		private void
+		applyResult(
+			Set<Taggable>		existing,
+			DownloadManager		dm,
+			boolean				result )
+		{
+			if ( existing.contains( dm ) == result ){
+				
+				return;
+			}
+			
+			if ( handler.isStopping()){
+
+				return;
+			}
+
+			if ( result ){
+				
+				if ( !tag_maybe_null.hasTaggable( dm ) && canAddTaggable( dm )){
+
+					tag_maybe_null.addTaggable( dm );
 				}
 			}else{
+				
+				if ( tag_maybe_null.hasTaggable( dm )){
+					
+					tag_maybe_null.removeTaggable( dm );
+				}
+			}
+		}
+		
+		private boolean
+		isIncremental()
+		{
+			return( incremental_ok && !must_check_dependencies && !new_only );
+		}
+		
+			/**
+			 * Used for the periodic re-evaluation of time dependent constraints. Where the constraint
+			 * only uses keywords and functions whose values are captured by the download's snapshot
+			 * a download is only re-tested if one of these has changed since the previous tick
+			 */
+		
+		private void
+		applyTimed(
+			List<DownloadManager>	dms,
+			long					tick )
+		{
+			if ( !isIncremental()){
+				
+				apply( dms );
+				
+				return;
+			}
+			
+			if ( expr == null ){
 
-				if ( auto_remove ){
+				return;
+			}
+
+			if ( handler.isStopping()){
+
+				return;
+			}
 
-					if ( existing.contains( dm )){
+			if ( !canProcess( this, dms )){
 
-						if ( handler.isStopping()){
+				return;
+			}
 
-							return;
-						}
+				// results are only reusable if we were evaluated against the previous snapshot
+			
+			boolean	consecutive = last_timed_tick == tick - 1;
+			
+			last_timed_tick = tick;
+			
+			if ( !consecutive ){
+				
+				timed_results.clear();
+			}
+			
+			Set<Taggable>	existing = tag_maybe_null.getTagged();
+
+			long	mask = keyword_mask | KW_MASK_STATE;
+			
+			for ( DownloadManager dm: dms ){
+
+				if ( handler.isStopping()){
+
+					return;
+					
+				}else  if ( ignoreDownload( dm )){
 
-						if ( tag_maybe_null.hasTaggable( dm )){
+					continue;
+				}
+				
+				List<Tag> dm_tags = handler.tag_manager.getTagsForTaggable( dm );
+
+				long changed = updateSnapshot( dm, dm_tags, tick );
+				
+				Boolean	last = timed_results.get( dm );
+				
+				if ( last != null && ( changed & mask ) == 0 ){
+					
+						// inputs unchanged so the result is too, only need to act if the tag has been
+						// changed by something else
+					
+					if ( existing.contains( dm ) == last || !( last?auto_add:auto_remove )){
 						
-							tag_maybe_null.removeTaggable( dm );
-						}
+						timed_skipped++;
+						
+						continue;
 					}
 				}
+				
+				boolean result = testConstraint( dm, null );
+				
+				timed_results.put( dm, result );
+				
+				if ( result?auto_add:auto_remove ){
+				
+					applyResult( existing, dm, result );
+				}
+			}
+			
+			if ( timed_results.size() > dms.size()){
+				
+				timed_results.keySet().retainAll( new HashSet<>( dms ));
 			}
 		}
 		
+		private long
+		updateSnapshot(
+			DownloadManager		dm,
+			List<Tag>			dm_tags,
+			long				tick )
+		{
+			KeywordSnapshot snapshot = (KeywordSnapshot)dm.getUserData( DM_KW_SNAPSHOT );
+			
+			if ( snapshot == null ){
+				
+				snapshot = new KeywordSnapshot();
+				
+				dm.setUserData( DM_KW_SNAPSHOT, snapshot );
+			}
+			
+			if ( snapshot.tick != tick ){
+				
+				snapshot.tick		= tick;
+				snapshot.computed	= 0;
+				snapshot.changed	= 0;
+				
+				Object[] state = {
+					dm.getState(),
+					dm.isForceStart(),
+					dm.isPaused(),
+					dm.isDownloadComplete( false ),
+					dm.getDownloadState().getFlag( DownloadManagerState.FLAG_METADATA_DOWNLOAD ),
+					dm.getDownloadState().getFlag( DownloadManagerState.FLAG_LOW_NOISE ),
+					new HashSet<>( dm_tags ),
+					dm.getUserData( DM_PEER_SETS ) };
+				
+				if ( !Arrays.equals( state, snapshot.state )){
+					
+					snapshot.state	= state;
+					snapshot.changed |= KW_MASK_STATE;
+				}
+			}
+			
+			long	todo = keyword_mask & ~snapshot.computed;
+			
+			while( todo != 0 ){
+				
+				int	kw = Long.numberOfTrailingZeros( todo );
+				
+				long	bit = 1L << kw;
+				
+				todo &= ~bit;
+				
+				Object value = keyword_source.getKeywordValue( dm, dm_tags, kw );
+				
+				Object old_value = snapshot.values[kw];
+				
+				boolean same;
+				
+				if ( value instanceof String[] && old_value instanceof String[] ){
+					
+					same = Arrays.equals((String[])value, (String[])old_value );
+					
+				}else{
+					
+					same = value != null && value.equals( old_value );
+				}
+				
+				if ( !same ){
+					
+					snapshot.values[kw] = value;
+					
+					snapshot.changed |= bit;
+				}
+				
+				snapshot.computed |= bit;
+			}
+			
+			return( snapshot.changed );
+		}
+		
 		private boolean
 		ignoreDownload(
 			DownloadManager dm )
@@ -2130,8 +2369,12 @@ TagPropertyConstraintHandler
 				
 				Map<String,Object>	context = new HashMap<>();
 				
+				long start = SystemTime.getHighPrecisionCounter();
+				
 				Object o_result = expr.eval( context, dm, dm_tags, debug );
 				
+				eval_time_average.addValue(( SystemTime.getHighPrecisionCounter() - start )/1000 );
+				
 				if ( o_result instanceof Number ){
 					
 					o_result = ((Number)o_result).intValue() != 0;
@@ -2323,6 +2566,22 @@ TagPropertyConstraintHandler
 								
 								depends_on_level = Math.max( depends_on_level, kw_details[1] );
 							}
+							
+							kw_details = keyword_map.get(((String)obj).toLowerCase( Locale.US ));
+							
+							if ( kw_details != null ){
+								
+								int kw = kw_details[0];
+								
+								keyword_mask |= 1L << kw;
+								
+								if ( kw == KW_TAG_AGE || kw == KW_TAG_NAMES ){
+									
+										// values depend on the constraint's tag, not just the download
+									
+									incremental_ok = false;
+								}
+							}
 						}
 					}
 				}catch( Throwable e ){
@@ -2940,9 +3199,110 @@ TagPropertyConstraintHandler
 			fn_map.put( "isbuddyfp", FT_IS_FRIEND_FP );
 		}
 		
+			/**
+			 * Functions whose result is determined by their arguments and the download state, tags
+			 * and peer sets that make up a download's keyword snapshot
+			 */
+		
+		private static boolean
+		isIncrementalFunction(
+			int		fn_type )
+		{
+			switch( fn_type ){
+				case FT_GE:
+				case FT_GT:
+				case FT_LE:
+				case FT_LT:
+				case FT_EQ:
+				case FT_NEQ:
+				case FT_CONTAINS:
+				case FT_MATCHES:
+				case FT_LOWERCASE:
+				case FT_PLUS:
+				case FT_MINUS:
+				case FT_MULT:
+				case FT_DIV:
+				case FT_REM:
+				case FT_MIN:
+				case FT_MAX:
+				case FT_IF_THEN_ELSE:
+				case FT_HOURS_TO_SECS:
+				case FT_DAYS_TO_SECS:
+				case FT_WEEKS_TO_SECS:
+				case FT_TO_MB:
+				case FT_TO_MiB:
+				case FT_TO_GB:
+				case FT_TO_GiB:
+				case FT_LENGTH:
+				case FT_COUNT:
+				case FT_HAS_TAG:
+				case FT_HAS_TAG_GROUP:
+				case FT_IS_PRIVATE:
+				case FT_IS_COMPLETE:
+				case FT_IS_FORCE_START:
+				case FT_IS_STOPPED:
+				case FT_IS_PAUSED:
+				case FT_IS_ERROR:
+				case FT_IS_MAGNET:
+				case FT_IS_LOW_NOISE:
+				case FT_IS_SEEDING:
+				case FT_IS_DOWNLOADING:
+				case FT_IS_RUNNING:
+				case FT_IS_QUEUED:{
+					
+					return( true );
+				}
+				default:{
+					
+					return( false );
+				}
+			}
+		}
+		
+		private static class
+		KeywordSnapshot
+		{
+			private long		tick	= -1;
+			
+			private long		computed;
+			private long		changed;
+			
+			private Object[]	state;
+			
+			private final Object[]	values = new Object[64];
+		}
+		
+		private static class
+		ConstraintKeyword
+		{
+			private final String	name;
+			private final int		kw;
+			
+			private
+			ConstraintKeyword(
+				String		_name,
+				int			_kw )
+			{
+				name	= _name;
+				kw		= _kw;
+			}
+			
+			@Override
+			public String
+			toString()
+			{
+				return( name );
+			}
+		}
+		
 		private static final int	DEP_STATIC		= 0;
 		private static final int	DEP_RUNNING		= 1;
 		private static final int	DEP_TIME		= 2;
+
+			// keyword ids are < 64 so a constraint's keyword dependencies fit in a long, the top bit
+			// stands for the download state/tags/peer sets that the eligible functions read
+		
+		private static final long	KW_MASK_STATE	= 1L << 63;
 		
 		static final Map<String,int[]>	keyword_map = new HashMap<>();
 
@@ -3169,6 +3529,16 @@ TagPropertyConstraintHandler
 				
 				fn_type = _fn_type;
 				
+				if ( !isIncrementalFunction( fn_type )){
+					
+					incremental_ok = false;
+				}
+				
+				if ( keyword_source == null ){
+					
+					keyword_source = this;
+				}
+				
 				int num_params = params.length;
 				
 				boolean	params_ok = false;
@@ -4887,6 +5257,17 @@ TagPropertyConstraintHandler
 						
 						return( arg );
 						
+					}else if ( arg instanceof ConstraintKeyword ){
+						
+						Object result = getKeywordValue( dm, tags, ((ConstraintKeyword)arg).kw );
+						
+						if ( result == null ){
+							
+							throw( new Exception( "Invalid constraint string: " + arg ));
+						}
+						
+						return( result );
+						
 					}else if ( arg instanceof String ){
 	
 						String s_arg = (String)arg;
@@ -4896,6 +5277,20 @@ TagPropertyConstraintHandler
 							return( s_arg.substring( 1, s_arg.length() - 1 ).replace("\\\"", "\""));
 						}
 						
+							// keywords first, failing a number parse for each one on every evaluation is expensive
+						
+						ConstraintKeyword keyword = getKeyword( args, index );
+						
+						if ( keyword != null ){
+							
+							Object result = getKeywordValue( dm, tags, keyword.kw );
+							
+							if ( result != null ){
+								
+								return( result );
+							}
+						}
+						
 						try{
 							if ( s_arg.startsWith( "0x" )){
 								
@@ -4916,14 +5311,7 @@ TagPropertyConstraintHandler
 							
 						}
 						
-						Object result = getKeywordValue( dm, tags, s_arg );
-						
-						if ( result != null ){
-							
-							return( result );
-						}
-						
-						result = getNumericSupport(dm, tags, args, index);
+						Object result = getNumericSupport(dm, tags, args, index);
 						
 						if ( result != null ){
 							
@@ -5055,13 +5443,13 @@ TagPropertyConstraintHandler
 				try{
 					Object arg = args[index];
 	
-					if ( arg instanceof String ){
+					if ( arg instanceof String || arg instanceof ConstraintKeyword ){
 						
 						String[] result;
 						
-						String str = (String)arg;
+						String str = arg.toString();
 						
-						if ( GeneralUtils.startsWithDoubleQuote( str ) && GeneralUtils.endsWithDoubleQuote( str )){
+						if ( arg instanceof String && GeneralUtils.startsWithDoubleQuote( str ) && GeneralUtils.endsWithDoubleQuote( str )){
 
 							result = new String[]{ str.substring( 1, str.length() - 1 ).replace("\\\"", "\"")};
 							
@@ -5073,7 +5461,9 @@ TagPropertyConstraintHandler
 							
 						}else{
 						
-							Object o_result = getKeywordValue( dm, tags, str );
+							ConstraintKeyword keyword = getKeyword( args, index );
+							
+							Object o_result = keyword==null?null:getKeywordValue( dm, tags, keyword.kw );
 								
 							if ( o_result == null ){
 			
@@ -5139,12 +5529,25 @@ TagPropertyConstraintHandler
 				}
 			}
 			
-			private Object
-			getKeywordValue(
-				DownloadManager		dm,
-				List<Tag>			tags,
-				String				str )
+				/**
+				 * Resolves a keyword argument, replacing it with the typed form so that subsequent
+				 * evaluations go straight to the value
+				 */
+			
+			private ConstraintKeyword
+			getKeyword(
+				Object[]	args,
+				int			index )
 			{
+				Object arg = args[index];
+				
+				if ( arg instanceof ConstraintKeyword ){
+					
+					return((ConstraintKeyword)arg );
+				}
+				
+				String str = (String)arg;
+				
 				int[] kw_details = keyword_map.get( str.toLowerCase( Locale.US ));
 
 				if ( kw_details == null ){
@@ -5152,8 +5555,19 @@ TagPropertyConstraintHandler
 					return( null );
 				}
 				
-				int kw = kw_details[0];
+				ConstraintKeyword keyword = new ConstraintKeyword( str, kw_details[0] );
+				
+				args[index] = keyword;
 				
+				return( keyword );
+			}
+			
+			private Object
+			getKeywordValue(
+				DownloadManager		dm,
+				List<Tag>			tags,
+				int					kw )
+			{
 				switch( kw ){
 					case KW_SHARE_RATIO:{
 	
@@ -6064,12 +6478,27 @@ TagPropertyConstraintHandler
 			{
 				Object arg = args[index];
 				
-				String str = (String)arg;
+				String str = arg.toString();
 
 				Number result = 0;
 
 				try{
-					if ( str.equals( Constants.INFINITY_STRING )){
+					if ( arg instanceof ConstraintKeyword ){
+						
+						result = null;
+						
+						Object o_result = getKeywordValue( dm, tags, ((ConstraintKeyword)arg).kw );
+						
+						if ( o_result instanceof Number ){
+							
+							return((Number)o_result);
+						}
+						
+						setError( "Invalid constraint keyword, numeric expected: " + str );
+						
+						return( result );
+						
+					}else if ( str.equals( Constants.INFINITY_STRING )){
 						
 						result = Integer.MAX_VALUE;
 						
@@ -6138,7 +6567,9 @@ TagPropertyConstraintHandler
 
 						result = null;	// don't cache any results below as they are variable
 
-						Object o_result = getKeywordValue( dm, tags, str );
+						ConstraintKeyword keyword = getKeyword( args, index );
+						
+						Object o_result = keyword==null?null:getKeywordValue( dm, tags, keyword.kw );
 							
 						if ( o_result instanceof Number ){
 							
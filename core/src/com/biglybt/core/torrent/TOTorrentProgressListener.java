@@ -31,4 +31,16 @@ TOTorrentProgressListener
 	public void
 	reportCurrentTask(
 		String	task_description );
+
+		/**
+		 * Average hashing rate of the current pass (V1 and V2 hash separately) so far, reported at
+		 * most once a second and once more when the pass completes
+		 * @param bytes_per_second
+		 */
+
+	public default void
+	reportHashRate(
+		long	bytes_per_second )
+	{
+	}
 }
@@ -171,6 +171,9 @@ TOTorrentCreateImpl
 
 	private int	reported_progress;
 
+	private long	hash_start_time;
+	private long	hash_rate_reported_time;
+
 	private Set<String>	ignore_set = new HashSet<>();
 
 	private Map<String,File>	linkage_map;
@@ -378,6 +381,8 @@ TOTorrentCreateImpl
 			((TOTorrentProgressListener)progress_listeners.get(i)).reportProgress( 0 );
 		}
 
+		startHashing();
+
 		boolean add_other_per_file_hashes 	= add_other_hashes&&!getSimpleTorrent();
 
 		file_hasher =
@@ -431,6 +436,8 @@ TOTorrentCreateImpl
 
 			setPieces( file_hasher.getPieces());
 
+			hashingComplete();
+
 			if ( add_other_hashes ){
 
 				byte[]	sha1_digest = file_hasher.getSHA1Digest();
@@ -461,6 +468,8 @@ TOTorrentCreateImpl
 			((TOTorrentProgressListener)progress_listeners.get(i)).reportProgress( 0 );
 		}
 
+		startHashing();
+
 		TOTorrentCreateV2Impl v2_creator = 
 			new TOTorrentCreateV2Impl( 
 				torrent_base, 
@@ -520,6 +529,8 @@ TOTorrentCreateImpl
 		
 		pieceHashed( (int)piece_count_no_pad );
 		
+		hashingComplete();
+		
 		if ( add_v1 ){
 						
 			if ( v2_creator.getTotalFileSize() != total_file_size_no_pad ){
@@ -706,6 +717,52 @@ TOTorrentCreateImpl
 				((TOTorrentProgressListener)progress_listeners.get(i)).reportProgress( reported_progress );
 			}
 		}
+
+		long	now = SystemTime.getMonotonousTime();
+
+		if ( now - hash_rate_reported_time >= 1000 ){
+
+			hash_rate_reported_time = now;
+
+			reportHashRate( piece_number, now );
+		}
+	}
+
+	private void
+	startHashing()
+	{
+		hash_start_time			= SystemTime.getMonotonousTime();
+		hash_rate_reported_time	= hash_start_time;
+	}
+
+	private void
+	hashingComplete()
+	{
+		reportHashRate( piece_count_no_pad, SystemTime.getMonotonousTime());
+	}
+
+	private void
+	reportHashRate(
+		long		pieces_hashed,
+		long		now )
+	{
+		if ( progress_listeners.size() == 0 ){
+
+			return;
+		}
+
+			// piece counts include padding and a partial last piece, cap at the real total
+
+		long	bytes = Math.min( pieces_hashed*piece_length, total_file_size_no_pad<0?Long.MAX_VALUE:total_file_size_no_pad );
+
+		long	elapsed = Math.max( 1, now - hash_start_time );
+
+		long	rate = bytes*1000/elapsed;
+
+		for (int i=0;i<progress_listeners.size();i++){
+
+			((TOTorrentProgressListener)progress_listeners.get(i)).reportHashRate( rate );
+		}
 	}
 
 	protected long
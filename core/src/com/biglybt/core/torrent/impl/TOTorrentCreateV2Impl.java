@@ -20,6 +20,8 @@ package com.biglybt.core.torrent.impl;
 
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.*;
 
 import com.biglybt.core.torrent.TOTorrentException;
@@ -33,10 +35,16 @@ TOTorrentCreateV2Impl
 	private final static int block_size = 16*1024;
 
 	private final static int digest_length = SHA256.DIGEST_LENGTH;
+	
+		// leaves are hashed a chunk at a time on the pipeline
+	
+	private final static int chunk_size = 64*block_size;
 
 	private final File		root;
 	private final long		piece_size;
 	private final Adapter	adapter;
+	
+	private final TOTorrentHashPipeline	pipeline;
 		
 	private ByteArrayHashMap<byte[]>	piece_layers 	= new ByteArrayHashMap<>();
 
@@ -106,6 +114,8 @@ TOTorrentCreateV2Impl
 		root		= _root;
 		piece_size 	= _piece_size;
 		adapter		= _adapter;
+		
+		pipeline	= new TOTorrentHashPipeline( "V2", chunk_size );
 	}
 	
 	protected Map<String,Object>
@@ -322,8 +332,6 @@ TOTorrentCreateV2Impl
 		try{
 			MessageDigest sha256 = MessageDigest.getInstance( "SHA-256" );
 												
-			byte[]	buffer = new byte[block_size];
-				
 			File link = adapter.resolveFile( file_index + synthetic_pad_file_count, file, relative_path );
 			
 			file_index++;
@@ -357,12 +365,18 @@ TOTorrentCreateV2Impl
 					leaf_count = 1;
 				}
 				
-				FileInputStream fis = FileUtil.newFileInputStream(file);
+				final byte[][]	leaves = new byte[(int)(( file_length + block_size - 1 )/block_size )][];
 				
-				List<byte[]> leaf_digests = new ArrayList<>( leaf_count );
+				int	leaves_read = 0;
+				
+				FileInputStream fis = FileUtil.newFileInputStream(file);
 	
-				try{				
-					while( true ){
+				try{
+					FileChannel	channel = fis.getChannel();
+					
+					long	file_rem = file_length;
+					
+					while( file_rem > 0 ){
 
 						if ( adapter.cancelled()){
 
@@ -370,28 +384,81 @@ TOTorrentCreateV2Impl
 															TOTorrentException.RT_CANCELLED ));
 						}
 
-						int len = fis.read( buffer );
+						byte[]	chunk = pipeline.getBuffer();
 						
-						if ( len <= 0 ){
+						int	chunk_len = 0;
+						
+						int	chunk_max = (int)Math.min( chunk_size, file_rem );
+						
+						while( chunk_len < chunk_max ){
+							
+							int len = channel.read( ByteBuffer.wrap( chunk, chunk_len, chunk_max - chunk_len ));
+							
+							if ( len <= 0 ){
+								
+								break;
+							}
+							
+							chunk_len += len;
+						}
+						
+						if ( chunk_len == 0 ){
+							
+							pipeline.returnBuffer( chunk );
 							
 							break;
 						}
 						
-						sha256.update( buffer, 0, len );
+						final int	first_leaf = leaves_read;
 						
-						byte[] digest = sha256.digest();
+						leaves_read += ( chunk_len + block_size - 1 )/block_size;
 						
-						file_bytes_hashed += len;
+						pipeline.submit(
+							chunk,
+							chunk_len,
+							new TOTorrentHashPipeline.HashTask()
+							{
+								@Override
+								public void
+								hash(
+									byte[]		data,
+									int			length )
+								
+									throws Throwable
+								{
+									MessageDigest leaf_sha256 = MessageDigest.getInstance( "SHA-256" );
+									
+									int	leaf = first_leaf;
+									
+									for ( int pos=0;pos<length;pos+=block_size ){
+										
+										leaf_sha256.update( data, pos, Math.min( block_size, length - pos ));
+										
+										leaves[leaf++] = leaf_sha256.digest();
+									}
+								}
+							});
+						
+						file_rem -= chunk_len;
+						
+							// read rather than hashed, the difference is bounded by the pipeline's buffers
+						
+						file_bytes_hashed += chunk_len;
 						
 						adapter.reportHashedBytes( file_bytes_hashed );
-						
-						leaf_digests.add( digest );
 					}
+					
+					pipeline.waitForCompletion();
+					
 				}finally{
 					
 					fis.close();
 				}
 				
+				List<byte[]> leaf_digests = new ArrayList<>( leaf_count );
+
+				leaf_digests.addAll( Arrays.asList( leaves ).subList( 0, leaves_read ));
+				
 				byte[]	zero_buffer = new byte[digest_length];
 
 				while( leaf_digests.size() < leaf_count ){
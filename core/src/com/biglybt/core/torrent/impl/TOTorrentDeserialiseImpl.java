@@ -24,6 +24,7 @@ package com.biglybt.core.torrent.impl;
 import java.io.*;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.zip.GZIPInputStream;
 
@@ -302,8 +303,19 @@ TOTorrentDeserialiseImpl
 
 			decoder.setVerifyMapOrder( true );
 
+				// the flat piece hashes are split up below so take a view rather than a copy
+
+			decoder.setSliceKeys( Collections.singleton( TK_PIECES ));
+
 			Map meta_data = decoder.decodeByteArray( bytes.getBytes());
 
+				// "pieces" could be used as a key elsewhere (e.g. plugin properties) so only leave
+				// the info one as a view
+
+			Object	info = meta_data.get( TK_INFO );
+
+			materialiseSlices( meta_data, info instanceof Map?((Map)info).get( TK_PIECES ):null );
+
 			bytes.release();
 			
 			// print( "", "", meta_data );
@@ -317,6 +329,62 @@ TOTorrentDeserialiseImpl
 		}
 	}
 
+	private static void
+	materialiseSlices(
+		Object		o,
+		Object		keep )
+	{
+		if ( o instanceof Map ){
+
+			for ( Object e: ((Map)o).entrySet()){
+
+				Map.Entry	entry = (Map.Entry)e;
+
+				Object	value = entry.getValue();
+
+				if ( value instanceof ByteBuffer ){
+
+					if ( value != keep ){
+
+						ByteBuffer	bb = ((ByteBuffer)value).duplicate();
+
+						byte[]	bytes = new byte[bb.remaining()];
+
+						bb.get( bytes );
+
+						entry.setValue( bytes );
+					}
+				}else{
+
+					materialiseSlices( value, keep );
+				}
+			}
+		}else if ( o instanceof List ){
+
+			List	l = (List)o;
+
+			for ( int i=0;i<l.size();i++){
+
+				Object	value = l.get(i);
+
+				if ( value instanceof ByteBuffer ){
+
+					ByteBuffer	bb = ((ByteBuffer)value).duplicate();
+
+					byte[]	bytes = new byte[bb.remaining()];
+
+					bb.get( bytes );
+
+					l.set( i, bytes );
+
+				}else{
+
+					materialiseSlices( value, keep );
+				}
+			}
+		}
+	}
+
 	protected void
 	construct(
 		Map		meta_data )
@@ -869,7 +937,22 @@ TOTorrentDeserialiseImpl
 				setHashFromInfo( info );
 			}
 			
-			byte[]	flat_pieces = (byte[])info.get( TK_PIECES );
+			Object	o_pieces = info.get( TK_PIECES );
+
+			ByteBuffer	flat_pieces;
+
+			if ( o_pieces instanceof ByteBuffer ){
+
+				flat_pieces = ((ByteBuffer)o_pieces).duplicate();
+
+			}else if ( o_pieces instanceof byte[] ){
+
+				flat_pieces = ByteBuffer.wrap((byte[])o_pieces );
+
+			}else{
+
+				flat_pieces = null;
+			}
 
 			if ( flat_pieces == null ){
 				
@@ -882,7 +965,7 @@ TOTorrentDeserialiseImpl
 	
 				int	pieces_required = (int)((total_length + (piece_length-1)) / piece_length);
 	
-				int		pieces_supplied = flat_pieces.length/20;
+				int		pieces_supplied = flat_pieces.remaining()/20;
 	
 				if ( pieces_supplied < pieces_required ){
 	
@@ -899,7 +982,7 @@ TOTorrentDeserialiseImpl
 	
 				for (int i=0;i<pieces.length;i++){
 	
-					System.arraycopy( flat_pieces, i*20, pieces[i], 0, 20 );
+					flat_pieces.get( pieces[i] );
 				}
 	
 				setPieces( pieces );
@@ -21,11 +21,10 @@
 package com.biglybt.core.torrent.impl;
 
 
-import java.io.BufferedInputStream;
-import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.*;
 
 import com.biglybt.core.torrent.TOTorrentException;
@@ -41,9 +40,13 @@ TOTorrentFileHasher
 	private final boolean	do_other_per_file_hash;
 	private final int		piece_length;
 
-	private final List<byte[]>	pieces = new LinkedList<>();
+		// entries are placeholders until the piece's hash completes on the pipeline
 
-	private final byte[]	buffer;
+	private final List<byte[]>	pieces = new ArrayList<>();
+
+	private final TOTorrentHashPipeline	pipeline;
+
+	private byte[]			buffer;
 	private int				buffer_pos;
 
 	private SHA1Hasher					overall_sha1_hash;
@@ -57,6 +60,9 @@ TOTorrentFileHasher
 
 	private final TOTorrentFileHasherListener	listener;
 
+	private int			pieces_hashed;
+	private int			pieces_reported;
+	
 	private boolean		skip_hashing;
 	
 	private boolean		cancelled;
@@ -78,7 +84,7 @@ TOTorrentFileHasher
 		piece_length			= _piece_length;
 		listener				= _listener;
 
-		buffer = new byte[piece_length];
+		pipeline = new TOTorrentHashPipeline( "V1", piece_length );
 	}
 	
 	protected void
@@ -121,7 +127,7 @@ TOTorrentFileHasher
 		}else{
 			long		file_length = 0;
 	
-			InputStream is = null;
+			FileInputStream	fis = null;
 	
 			SHA1Hasher	sha1_hash		= null;
 			ED2KHasher	ed2k_hash		= null;
@@ -133,7 +139,12 @@ TOTorrentFileHasher
 					ed2k_hash		= new ED2KHasher();
 				}
 	
-				is = new BufferedInputStream(FileUtil.newFileInputStream( _file ), 65536);
+				fis = FileUtil.newFileInputStream( _file );
+	
+				FileChannel	channel = fis.getChannel();
+	
+					// reads go straight into the piece buffer, up to a whole piece at a time, so once
+					// the first partial piece of a file is filled reads are piece aligned
 	
 				while(true){
 	
@@ -143,7 +154,12 @@ TOTorrentFileHasher
 														TOTorrentException.RT_CANCELLED ));
 					}
 	
-					int	len = is.read( buffer, buffer_pos, piece_length - buffer_pos );
+					if ( buffer == null ){
+	
+						buffer = pipeline.getBuffer();
+					}
+	
+					int	len = channel.read( ByteBuffer.wrap( buffer, buffer_pos, piece_length - buffer_pos ));
 	
 					if ( len > 0 ){
 	
@@ -153,31 +169,13 @@ TOTorrentFileHasher
 							ed2k_hash.update( buffer, buffer_pos, len );
 						}
 	
-	
 						file_length += len;
 	
 						buffer_pos += len;
 	
 						if ( buffer_pos == piece_length ){
 	
-							// hash this piece
-	
-							byte[] hash = new SHA1Hasher().calculateHash(buffer);
-	
-							if ( overall_sha1_hash != null ){
-	
-								overall_sha1_hash.update( buffer );
-								overall_ed2k_hash.update( buffer );
-							}
-	
-							pieces.add( hash );
-	
-							if ( listener != null ){
-	
-								listener.pieceHashed( pieces.size() );
-							}
-	
-							buffer_pos = 0;
+							hashPiece();
 						}
 					}else{
 	
@@ -200,9 +198,9 @@ TOTorrentFileHasher
 				throw( new TOTorrentException( 	"TOTorrentFileHasher: file read fails '" + e.toString() + "'",
 												TOTorrentException.RT_READ_FAILS ));
 			}finally {
-				if (is != null) {
+				if (fis != null) {
 					try {
-						is.close();
+						fis.close();
 					}
 					catch (Exception e) {
 					}
@@ -240,74 +238,118 @@ TOTorrentFileHasher
 			}
 		}else{
 			
-			InputStream is = null;
-
-			try{
-	
-				is = new ByteArrayInputStream( new byte[ pad_length ]);
+			int	rem = pad_length;
 	
-				while(true){
-	
-					if ( cancelled ){
-	
-						throw( new TOTorrentException( 	"TOTorrentCreate: operation cancelled",
-														TOTorrentException.RT_CANCELLED ));
-					}
-	
-					int	len = is.read( buffer, buffer_pos, piece_length - buffer_pos );
-	
-					if ( len > 0 ){
-	
-	
-						buffer_pos += len;
+			while( rem > 0 ){
 	
-						if ( buffer_pos == piece_length ){
+				if ( cancelled ){
 	
-							// hash this piece
+					throw( new TOTorrentException( 	"TOTorrentCreate: operation cancelled",
+													TOTorrentException.RT_CANCELLED ));
+				}
 	
-							byte[] hash = new SHA1Hasher().calculateHash(buffer);
+				if ( buffer == null ){
 	
-							if ( overall_sha1_hash != null ){
+					buffer = pipeline.getBuffer();
+				}
 	
-								overall_sha1_hash.update( buffer );
-								overall_ed2k_hash.update( buffer );
-							}
+				int	len = Math.min( rem, piece_length - buffer_pos );
 	
-							pieces.add( hash );
+				Arrays.fill( buffer, buffer_pos, buffer_pos + len, (byte)0 );
 	
-							if ( listener != null ){
+				rem -= len;
 	
-								listener.pieceHashed( pieces.size() );
-							}
+				buffer_pos += len;
 	
-							buffer_pos = 0;
-						}
-					}else{
+				if ( buffer_pos == piece_length ){
 	
-						break;
-					}
+					hashPiece();
 				}
+			}
+		}
+	}
 	
-			}catch( TOTorrentException e ){
-	
-				throw( e );
-	
-			}catch( Throwable e ){
-	
-				throw( new TOTorrentException( 	"TOTorrentFileHasher: file read fails '" + e.toString() + "'",
-												TOTorrentException.RT_READ_FAILS ));
-			}finally {
-				if (is != null) {
-					try {
-						is.close();
-					}
-					catch (Exception e) {
+		/**
+		 * Hands the current buffer over to the pipeline. The overall hashes have to see the data in
+		 * order so they're updated here before the buffer is given up
+		 */
+
+	private void
+	hashPiece()
+
+		throws TOTorrentException
+	{
+		final int	piece_number;
+
+		synchronized( pieces ){
+
+			piece_number = pieces.size();
+
+			pieces.add( null );
+		}
+
+		if ( overall_sha1_hash != null ){
+
+			overall_sha1_hash.update( buffer, 0, buffer_pos );
+			overall_ed2k_hash.update( buffer, 0, buffer_pos );
+		}
+
+		byte[]	piece_buffer	= buffer;
+		int		piece_len		= buffer_pos;
+
+		buffer		= null;
+		buffer_pos	= 0;
+
+		pipeline.submit(
+			piece_buffer,
+			piece_len,
+			new TOTorrentHashPipeline.HashTask()
+			{
+				@Override
+				public void
+				hash(
+					byte[]		data,
+					int			length )
+				{
+					byte[] hash = new SHA1Hasher().calculateHash( ByteBuffer.wrap( data, 0, length ));
+
+					synchronized( pieces ){
+
+						pieces.set( piece_number, hash );
+
+						pieces_hashed++;
 					}
 				}
+			});
+
+		reportProgress();
+	}
+
+		/**
+		 * Listener is only ever called from the creating thread
+		 */
+
+	private void
+	reportProgress()
+	{
+		if ( listener != null ){
+
+			int	hashed;
+
+			synchronized( pieces ){
+
+				hashed = pieces_hashed;
+			}
+
+			if ( hashed != pieces_reported ){
+
+				pieces_reported = hashed;
+
+				listener.pieceHashed( hashed );
 			}
 		}
 	}
-	
+
 	protected byte[]
 	getPerFileSHA1Digest()
 	{
@@ -328,25 +370,19 @@ TOTorrentFileHasher
 		try{
 			if ( buffer_pos > 0 ){
 
-				byte[] rem = new byte[buffer_pos];
-
-				System.arraycopy( buffer, 0, rem, 0, buffer_pos );
-
-				pieces.add(new SHA1Hasher().calculateHash(rem));
+				hashPiece();
+			}
 
-				if ( overall_sha1_hash != null ){
+			if ( buffer != null ){
 
-					overall_sha1_hash.update( rem );
-					overall_ed2k_hash.update( rem );
-				}
+				pipeline.returnBuffer( buffer );
 
-				if ( listener != null ){
+				buffer = null;
+			}
 
-					listener.pieceHashed( pieces.size() );
-				}
+			pipeline.waitForCompletion();
 
-				buffer_pos = 0;
-			}
+			reportProgress();
 
 			if ( overall_sha1_hash != null && sha1_digest == null ){
 
@@ -354,11 +390,17 @@ TOTorrentFileHasher
 				ed2k_digest	= overall_ed2k_hash.getDigest();
 			}
 
-			byte[][] res = new byte[pieces.size()][];
+			synchronized( pieces ){
 
-			pieces.toArray( res );
+				byte[][] res = new byte[pieces.size()][];
+
+				pieces.toArray( res );
+
+				return( res );
+			}
+		}catch( TOTorrentException e ){
 
-			return( res );
+			throw( e );
 
 		}catch( Throwable e ){
 
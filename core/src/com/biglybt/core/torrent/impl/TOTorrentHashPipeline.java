@@ -0,0 +1,254 @@
+/*
+ * Copyright (C) Bigly Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+
+package com.biglybt.core.torrent.impl;
+
+import java.util.LinkedList;
+
+import com.biglybt.core.torrent.TOTorrentException;
+import com.biglybt.core.util.AERunnable;
+import com.biglybt.core.util.AESemaphore;
+import com.biglybt.core.util.ThreadPool;
+
+/**
+ * Hands filled read buffers off to a pool of hashing threads so that file reading and hashing
+ * overlap and hashing is spread across cores. The number of buffers is bounded so the reader
+ * blocks once the hashers fall behind. Callers place each result by an index they allocate before
+ * submitting so results don't depend on completion order.
+ * <p>
+ * Thread count comes from system property 'az.create.torrent.hash.threads', defaulting to the
+ * number of processors - with one thread tasks are run inline on the caller's thread.
+ */
+
+class
+TOTorrentHashPipeline
+{
+	private static final long	MAX_BUFFERED_BYTES	= 64*1024*1024;
+
+	protected static int
+	getThreadCount()
+	{
+		int	threads;
+
+		try{
+			threads = Integer.parseInt( System.getProperty( "az.create.torrent.hash.threads", "0" ));
+
+		}catch( Throwable e ){
+
+			threads = 0;
+		}
+
+		if ( threads <= 0 ){
+
+			threads = Runtime.getRuntime().availableProcessors();
+		}
+
+		return( Math.max( 1, Math.min( threads, 32 )));
+	}
+
+	private final int					buffer_size;
+	private final int					max_buffers;
+
+	private final ThreadPool<AERunnable>	pool;
+
+	private final LinkedList<byte[]>	free_buffers	= new LinkedList<>();
+	private final AESemaphore			buffer_sem;
+
+	private int					buffers_allocated;
+
+	private volatile Throwable	error;
+
+	protected
+	TOTorrentHashPipeline(
+		String		name,
+		int			_buffer_size )
+	{
+		buffer_size	= _buffer_size;
+
+		int	threads = getThreadCount();
+
+		if ( threads == 1 ){
+
+			pool		= null;
+			max_buffers	= 1;
+
+		}else{
+
+			pool = new ThreadPool<>( "TOTorrentCreate:" + name, threads );
+
+				// one per thread plus one being filled, within reason for big pieces
+
+			max_buffers = (int)Math.max( 2, Math.min( threads + 1, MAX_BUFFERED_BYTES / buffer_size ));
+		}
+
+		buffer_sem = new AESemaphore( "TOTorrentHashPipeline", max_buffers );
+	}
+
+	protected int
+	getBufferSize()
+	{
+		return( buffer_size );
+	}
+
+		/**
+		 * Blocks until a buffer is free, contents are undefined
+		 */
+
+	protected byte[]
+	getBuffer()
+
+		throws TOTorrentException
+	{
+		buffer_sem.reserve();
+
+		checkError();
+
+		synchronized( free_buffers ){
+
+			if ( free_buffers.isEmpty()){
+
+				buffers_allocated++;
+
+				return( new byte[buffer_size] );
+			}
+
+			return( free_buffers.removeFirst());
+		}
+	}
+
+		/**
+		 * Buffer must have come from getBuffer and is given up by the caller, it is freed once the
+		 * task has run
+		 */
+
+	protected void
+	submit(
+		final byte[]		buffer,
+		final int			length,
+		final HashTask		task )
+
+		throws TOTorrentException
+	{
+		if ( pool == null ){
+
+			try{
+				task.hash( buffer, length );
+
+			}catch( Throwable e ){
+
+				error = e;
+
+			}finally{
+
+				returnBuffer( buffer );
+			}
+
+			checkError();
+
+		}else{
+
+			pool.run(
+				new AERunnable()
+				{
+					@Override
+					public void
+					runSupport()
+					{
+						try{
+							if ( error == null ){
+
+								task.hash( buffer, length );
+							}
+						}catch( Throwable e ){
+
+							error = e;
+
+						}finally{
+
+							returnBuffer( buffer );
+						}
+					}
+				});
+		}
+	}
+
+	protected void
+	returnBuffer(
+		byte[]		buffer )
+	{
+		synchronized( free_buffers ){
+
+			free_buffers.add( buffer );
+		}
+
+		buffer_sem.release();
+	}
+
+		/**
+		 * Waits for all submitted tasks to finish, buffers already taken must have been submitted or
+		 * returned
+		 */
+
+	protected void
+	waitForCompletion()
+
+		throws TOTorrentException
+	{
+		for ( int i=0;i<max_buffers;i++){
+
+			buffer_sem.reserve();
+		}
+
+		for ( int i=0;i<max_buffers;i++){
+
+			buffer_sem.release();
+		}
+
+		checkError();
+	}
+
+	private void
+	checkError()
+
+		throws TOTorrentException
+	{
+		Throwable e = error;
+
+		if ( e != null ){
+
+			if ( e instanceof TOTorrentException ){
+
+				throw((TOTorrentException)e );
+			}
+
+			throw( new TOTorrentException( 	"TOTorrentHashPipeline: hash fails '" + e.toString() + "'",
+											TOTorrentException.RT_HASH_FAILS ));
+		}
+	}
+
+	protected interface
+	HashTask
+	{
+		public void
+		hash(
+			byte[]		buffer,
+			int			length )
+
+			throws Throwable;
+	}
+}
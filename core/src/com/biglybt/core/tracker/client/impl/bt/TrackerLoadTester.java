@@ -20,11 +20,22 @@
  */
 package com.biglybt.core.tracker.client.impl.bt;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
 import java.net.URL;
 import java.net.URLConnection;
 import java.net.URLEncoder;
 
+import com.biglybt.core.tracker.protocol.udp.PRUDPPacketRequestAnnounce2;
+import com.biglybt.core.tracker.protocol.udp.PRUDPPacketRequestConnect;
+import com.biglybt.core.tracker.protocol.udp.PRUDPPacketTracker;
 import com.biglybt.core.util.Constants;
+import com.biglybt.net.udp.uc.PRUDPPacket;
+import com.biglybt.net.udp.uc.PRUDPPacketRequest;
 
 /**
  * @author Olivier Chalouhi
@@ -45,13 +56,134 @@ public class TrackerLoadTester {
     }
   }
 
+  /**
+   * Usage: &lt;torrents&gt; &lt;clients per torrent&gt; for HTTP announces to localhost:6969, or
+   * udp &lt;host:port&gt; &lt;torrents&gt; &lt;clients per torrent&gt; &lt;seconds&gt; [&lt;in flight&gt;]
+   * to drive a UDP tracker as hard as it will go and report packets/sec
+   */
   public static void main(String args[]) {
+    if(args.length >= 5 && args[0].equals("udp")) {
+      String[] bits = args[1].split(":");
+      InetSocketAddress target = new InetSocketAddress(bits[0], Integer.parseInt(bits[1]));
+      int window = args.length > 5 ? Integer.parseInt(args[5]) : 256;
+      udpLoad(target, Integer.parseInt(args[2]), Integer.parseInt(args[3]), Integer.parseInt(args[4]), window);
+      return;
+    }
     if(args.length < 2) return;
     int nbTorrents = Integer.parseInt(args[0]);
     int nbClientsPerTorrent = Integer.parseInt(args[1]);
     new TrackerLoadTester(nbTorrents,nbClientsPerTorrent);
   }
 
+  /**
+   * Keeps 'window' announces in flight, sending another as each reply comes in. Announces are
+   * serialised up front (cycling through torrents x clients) so that the generator itself isn't
+   * the bottleneck. The connection id is refreshed every minute as the tracker expires them.
+   */
+  private static void udpLoad(InetSocketAddress target, int nbTorrents, int nbClientsPerTorrent, int seconds, int window) {
+    try {
+      DatagramSocket socket = new DatagramSocket();
+      socket.setReceiveBufferSize(4*1024*1024);
+      socket.setSendBufferSize(4*1024*1024);
+      socket.setSoTimeout(1000);
+
+      int total = Math.min(nbTorrents * nbClientsPerTorrent, 100000);
+
+      byte[] buffer = new byte[PRUDPPacket.MAX_PACKET_SIZE];
+      DatagramPacket reply = new DatagramPacket(buffer, buffer.length);
+
+      long start = System.currentTimeMillis();
+      long end = start + seconds*1000L;
+      long lastReport = start;
+      long lastConnect = 0;
+      long sent = 0, replies = 0, errors = 0, timeouts = 0, lastReplies = 0;
+
+      byte[][] announces = null;
+      int next = 0;
+
+      while(System.currentTimeMillis() < end) {
+        if(System.currentTimeMillis() - lastConnect > 60*1000) {
+          long connectionId = connect(socket, target, buffer, reply);
+          // fill the window on the first connect only, later ones just refresh the id
+          boolean first = announces == null;
+          announces = new byte[total][];
+          for(int i = 0 ; i < total ; i++) {
+            PRUDPPacketRequestAnnounce2 announce = new PRUDPPacketRequestAnnounce2(connectionId);
+            int port = 6881 + (i % nbClientsPerTorrent);
+            announce.setDetails(generate20BytesHash((i / nbClientsPerTorrent) + 1), generate20BytesHash(i + 1),
+                0, PRUDPPacketRequestAnnounce2.EV_UPDATE, 0, i, 50, i % 2 == 0 ? 0 : 1000, (short)port, 0);
+            announces[i] = serialise(announce);
+          }
+          lastConnect = System.currentTimeMillis();
+          for(int i = 0 ; first && i < window ; i++) {
+            byte[] data = announces[next++ % total];
+            socket.send(new DatagramPacket(data, data.length, target));
+            sent++;
+          }
+        }
+        try {
+          socket.receive(reply);
+          int action = ((buffer[0]&0xff)<<24)|((buffer[1]&0xff)<<16)|((buffer[2]&0xff)<<8)|(buffer[3]&0xff);
+          if(action == PRUDPPacketTracker.ACT_REPLY_ANNOUNCE) {
+            replies++;
+          } else {
+            errors++;
+          }
+          byte[] data = announces[next++ % total];
+          socket.send(new DatagramPacket(data, data.length, target));
+          sent++;
+        } catch(SocketTimeoutException e) {
+          // replies lost, refill the window
+          timeouts++;
+          for(int i = 0 ; i < window ; i++) {
+            byte[] data = announces[next++ % total];
+            socket.send(new DatagramPacket(data, data.length, target));
+            sent++;
+          }
+        }
+        long now = System.currentTimeMillis();
+        if(now - lastReport >= 1000) {
+          System.out.println("replies/sec=" + ((replies - lastReplies)*1000/(now - lastReport)) + ", sent=" + sent + ", replies=" + replies + ", errors=" + errors + ", timeouts=" + timeouts);
+          lastReport = now;
+          lastReplies = replies;
+        }
+      }
+      long elapsed = System.currentTimeMillis() - start;
+      System.out.println("total: " + replies + " replies in " + elapsed + "ms = " + (replies*1000/elapsed) + " packets/sec, " + errors + " errors");
+      socket.close();
+    } catch(Exception e) {
+      e.printStackTrace();
+    }
+  }
+
+  private static long connect(DatagramSocket socket, InetSocketAddress target, byte[] buffer, DatagramPacket reply) throws Exception {
+    for(int i = 0 ; i < 10 ; i++) {
+      byte[] data = serialise(new PRUDPPacketRequestConnect());
+      socket.send(new DatagramPacket(data, data.length, target));
+      try {
+        while(true) {
+          socket.receive(reply);
+          int action = ((buffer[0]&0xff)<<24)|((buffer[1]&0xff)<<16)|((buffer[2]&0xff)<<8)|(buffer[3]&0xff);
+          if(action == PRUDPPacketTracker.ACT_REPLY_CONNECT && reply.getLength() >= 16) {
+            long id = 0;
+            for(int j = 8 ; j < 16 ; j++) {
+              id = (id << 8) | (buffer[j]&0xff);
+            }
+            return id;
+          }
+        }
+      } catch(SocketTimeoutException e) {
+      }
+    }
+    throw new Exception("No connect reply from " + target);
+  }
+
+  private static byte[] serialise(PRUDPPacketRequest request) throws Exception {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    request.serialise(new DataOutputStream(baos));
+    return baos.toByteArray();
+  }
+
   private void announce(String trackerURL,byte[] hash,byte[] peerId,int port) {
     try {
       String strUrl = trackerURL
@@ -69,7 +201,7 @@ public class TrackerLoadTester {
     }
   }
 
-  private byte[] generate20BytesHash(int iter) {
+  private static byte[] generate20BytesHash(int iter) {
     byte[] result = new byte[20];
     int pos = 0;
     while(iter > 0) {
@@ -48,4 +48,18 @@ TRTrackerServerStats
 
 	public long
 	getScrapeTime();
+
+		/**
+		 * @return announces per second averaged over the last few samples
+		 */
+
+	public long
+	getAnnouncesPerSecond();
+
+		/**
+		 * @return 99th percentile announce processing time in microseconds over the last minute or two
+		 */
+
+	public long
+	getAnnounceLatencyP99();
 }
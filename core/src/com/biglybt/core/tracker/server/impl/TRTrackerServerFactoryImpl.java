@@ -66,6 +66,8 @@ TRTrackerServerFactoryImpl
 		types.add( CoreStats.ST_TRACKER_ANNOUNCE_TIME );
 		types.add( CoreStats.ST_TRACKER_SCRAPE_COUNT );
 		types.add( CoreStats.ST_TRACKER_SCRAPE_TIME );
+		types.add( CoreStats.ST_TRACKER_ANNOUNCE_RATE );
+		types.add( CoreStats.ST_TRACKER_ANNOUNCE_P99 );
 
 		CoreStats.registerProvider(
 			types,
@@ -83,6 +85,8 @@ TRTrackerServerFactoryImpl
 					long	announce_time	= 0;
 					long	scrape_count	= 0;
 					long	scrape_time		= 0;
+					long	announce_rate	= 0;
+					long	announce_p99	= 0;
 
 					Iterator it = servers.iterator();
 
@@ -96,6 +100,8 @@ TRTrackerServerFactoryImpl
 						announce_time	+= stats.getAnnounceTime();
 						scrape_count 	+= stats.getScrapeCount();
 						scrape_time		+= stats.getScrapeTime();
+						announce_rate	+= stats.getAnnouncesPerSecond();
+						announce_p99	= Math.max( announce_p99, stats.getAnnounceLatencyP99());
 					}
 
 					if ( types.contains( CoreStats.ST_TRACKER_READ_BYTES )){
@@ -122,6 +128,14 @@ TRTrackerServerFactoryImpl
 
 						values.put( CoreStats.ST_TRACKER_SCRAPE_TIME, new Long( scrape_time ));
 					}
+					if ( types.contains( CoreStats.ST_TRACKER_ANNOUNCE_RATE )){
+
+						values.put( CoreStats.ST_TRACKER_ANNOUNCE_RATE, new Long( announce_rate ));
+					}
+					if ( types.contains( CoreStats.ST_TRACKER_ANNOUNCE_P99 )){
+
+						values.put( CoreStats.ST_TRACKER_ANNOUNCE_P99, new Long( announce_p99 ));
+					}
 				}
 			});
 	}
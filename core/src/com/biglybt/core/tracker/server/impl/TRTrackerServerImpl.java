@@ -25,6 +25,7 @@ import java.net.InetSocketAddress;
 import java.net.URL;
 import java.net.URLDecoder;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.biglybt.core.Core;
 import com.biglybt.core.CoreFactory;
@@ -68,9 +69,11 @@ TRTrackerServerImpl
 
 	public static final List<String>	banned_clients = new ArrayList<>();
 
-		// torrent map is static across all protocol servers
+		// torrent map is static across all protocol servers. updates are made under class_mon but
+		// lookups and iterations aren't as every announce and scrape needs one and they would
+		// otherwise serialise on the class monitor
 
-	private static final Map		torrent_map = new HashMap();
+	private static final Map<HashWrapper,TRTrackerServerTorrentImpl>	torrent_map = new ConcurrentHashMap<>();
 
 	private static final Map		link_map	= new HashMap();
 
@@ -906,20 +909,9 @@ TRTrackerServerImpl
 
 				int	clients = 0;
 
-				try{
-					class_mon.enter();
-
-					Iterator	it = torrent_map.values().iterator();
-
-					while(it.hasNext()){
-
-						TRTrackerServerTorrentImpl	t = (TRTrackerServerTorrentImpl)it.next();
-
-						clients += t.getPeerCount();
-					}
-				}finally{
+				for ( TRTrackerServerTorrentImpl t: torrent_map.values()){
 
-					class_mon.exit();
+					clients += t.getPeerCount();
 				}
 
 				if ( inc_by > 0 && inc_per > 0 ){
@@ -949,20 +941,12 @@ TRTrackerServerImpl
 
 					time_to_go = TIMEOUT_CHECK;
 
-					try{
-						class_mon.enter();
-
-						Iterator	it = torrent_map.values().iterator();
-
-						while(it.hasNext()){
-
-							TRTrackerServerTorrentImpl	t = (TRTrackerServerTorrentImpl)it.next();
+						// each torrent takes its own monitor, no need to block new torrents for the
+						// duration of the sweep
 
-							t.checkTimeouts();
-						}
-					}finally{
+					for ( TRTrackerServerTorrentImpl t: torrent_map.values()){
 
-						class_mon.exit();
+						t.checkTimeouts();
 					}
 				}
 
@@ -1002,17 +986,7 @@ TRTrackerServerImpl
 
 			// don't invoke listeners when synched, deadlock possible
 
-		TRTrackerServerTorrentImpl	entry;
-
-		try{
-			class_mon.enter();
-
-			entry = (TRTrackerServerTorrentImpl)torrent_map.get( hash );
-
-		}finally{
-
-			class_mon.exit();
-		}
+		TRTrackerServerTorrentImpl	entry = torrent_map.get( hash );
 
 		if ( entry == null ){
 
@@ -1031,7 +1005,7 @@ TRTrackerServerImpl
 
 					// double check in-case added in parallel
 
-				entry = (TRTrackerServerTorrentImpl)torrent_map.get( hash );
+				entry = torrent_map.get( hash );
 
 				if ( entry == null ){
 
@@ -1073,7 +1047,7 @@ TRTrackerServerImpl
 		try{
 			class_mon.enter();
 
-			TRTrackerServerTorrentImpl	entry = (TRTrackerServerTorrentImpl)torrent_map.get( hash );
+			TRTrackerServerTorrentImpl	entry = torrent_map.get( hash );
 
 			if ( entry != null ){
 
@@ -1116,15 +1090,7 @@ TRTrackerServerImpl
 	getTorrent(
 		byte[]		hash )
 	{
-		try{
-			class_mon.enter();
-
-			return((TRTrackerServerTorrentImpl)torrent_map.get(new HashWrapper(hash)));
-
-		}finally{
-
-			class_mon.exit();
-		}
+		return( torrent_map.get(new HashWrapper(hash)));
 	}
 
 	public TRTrackerServerTorrentImpl
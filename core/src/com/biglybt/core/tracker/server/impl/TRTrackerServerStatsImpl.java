@@ -27,6 +27,7 @@ package com.biglybt.core.tracker.server.impl;
 
 import com.biglybt.core.tracker.server.TRTrackerServerRequest;
 import com.biglybt.core.tracker.server.TRTrackerServerStats;
+import com.biglybt.core.util.SystemTime;
 
 public class
 TRTrackerServerStatsImpl
@@ -43,6 +44,25 @@ TRTrackerServerStatsImpl
 	private long		announce_time;
 	private long		scrape_time;
 
+		// announce latency histogram, 4 buckets per power of two of microseconds. updates aren't
+		// synchronised for the same reason as the counters above, an occasional lost increment
+		// doesn't matter. we keep the previous window too so the percentile doesn't collapse
+		// just after a rotation
+
+	private static final int	LATENCY_SUB_BUCKETS	= 4;
+	private static final int	LATENCY_BUCKETS		= 32*LATENCY_SUB_BUCKETS;
+	private static final long	LATENCY_WINDOW		= 60*1000;
+
+	private volatile long[]		latency_current		= new long[LATENCY_BUCKETS];
+	private volatile long[]		latency_previous	= new long[LATENCY_BUCKETS];
+	private volatile long		latency_window_start	= SystemTime.getMonotonousTime();
+
+	private static final long	RATE_SAMPLE_PERIOD	= 10*1000;
+
+	private long		rate_sample_time	= SystemTime.getMonotonousTime();
+	private long		rate_sample_count;
+	private long		announce_rate;
+
 	protected
 	TRTrackerServerStatsImpl(
 		TRTrackerServerImpl	_server )
@@ -98,6 +118,17 @@ TRTrackerServerStatsImpl
 
 			announce_time += time;
 
+			long	now = SystemTime.getMonotonousTime();
+
+			if ( now - latency_window_start > LATENCY_WINDOW ){
+
+				latency_window_start	= now;
+				latency_previous		= latency_current;
+				latency_current			= new long[LATENCY_BUCKETS];
+			}
+
+			latency_current[getLatencyBucket( time/1000 )]++;
+
 		}else{
 
 			scrape_time += time;
@@ -131,4 +162,104 @@ TRTrackerServerStatsImpl
 	{
 		return( scrape_time );
 	}
+
+	@Override
+	public long
+	getAnnouncesPerSecond()
+	{
+		synchronized( this ){
+
+			long	now = SystemTime.getMonotonousTime();
+
+			long	elapsed = now - rate_sample_time;
+
+			if ( elapsed >= RATE_SAMPLE_PERIOD ){
+
+				long	count = announces;
+
+				announce_rate = ( count - rate_sample_count )*1000/elapsed;
+
+				rate_sample_time	= now;
+				rate_sample_count	= count;
+			}
+
+			return( announce_rate );
+		}
+	}
+
+	@Override
+	public long
+	getAnnounceLatencyP99()
+	{
+		long[]	current		= latency_current;
+		long[]	previous	= latency_previous;
+
+		long[]	counts = new long[LATENCY_BUCKETS];
+
+		long	total = 0;
+
+		for ( int i=0;i<LATENCY_BUCKETS;i++){
+
+			counts[i] = current[i] + previous[i];
+
+			total += counts[i];
+		}
+
+		if ( total == 0 ){
+
+			return( 0 );
+		}
+
+		long	target 	= total - total/100;
+		long	seen	= 0;
+
+		for ( int i=0;i<LATENCY_BUCKETS;i++){
+
+			seen += counts[i];
+
+			if ( seen >= target ){
+
+				return( getLatencyBucketLimit( i ));
+			}
+		}
+
+		return( getLatencyBucketLimit( LATENCY_BUCKETS-1 ));
+	}
+
+	private static int
+	getLatencyBucket(
+		long	micros )
+	{
+		if ( micros < LATENCY_SUB_BUCKETS ){
+
+			return( micros<0?0:(int)micros );
+		}
+
+		int	exp = 63 - Long.numberOfLeadingZeros( micros );	// >= 2
+
+		int	sub = (int)(( micros >>> ( exp - 2 )) & ( LATENCY_SUB_BUCKETS - 1 ));
+
+		int	bucket = ( exp - 1 )*LATENCY_SUB_BUCKETS + sub;
+
+		return( Math.min( bucket, LATENCY_BUCKETS-1 ));
+	}
+
+		/**
+		 * @return upper bound (exclusive) of the bucket in microseconds
+		 */
+
+	private static long
+	getLatencyBucketLimit(
+		int		bucket )
+	{
+		if ( bucket < LATENCY_SUB_BUCKETS ){
+
+			return( bucket + 1 );
+		}
+
+		int	exp = bucket/LATENCY_SUB_BUCKETS + 1;
+		int	sub	= bucket%LATENCY_SUB_BUCKETS;
+
+		return(( (long)( LATENCY_SUB_BUCKETS + sub + 1 )) << ( exp - 2 ));
+	}
 }
@@ -42,6 +42,10 @@ TRTrackerServerTorrentImpl
 
 	public static final int	MIN_CACHE_ENTRY_SIZE		= 10;
 
+		// cache slots are num_peers/10, so this caches responses of up to 10240 peers
+
+	private static final int	MAX_CACHE_SLOTS				= 1024;
+
 	public static final int MAX_UPLOAD_BYTES_PER_SEC	= 3*1024*1024;  //3MBs
 	public static final int MAX_DOWNLOAD_BYTES_PER_SEC	= MAX_UPLOAD_BYTES_PER_SEC;
 
@@ -89,7 +93,7 @@ TRTrackerServerTorrentImpl
 	private long			last_scrape_calc_time;
 	private Map				last_scrape;
 
-	private final LinkedHashMap		announce_cache	= new LinkedHashMap();
+	private announceCacheEntry[]	announce_cache	= new announceCacheEntry[0];
 
 	private final TRTrackerServerTorrentStatsImpl	stats;
 
@@ -1249,43 +1253,30 @@ TRTrackerServerTorrentImpl
 
 					// remove stuff that's too old
 
-				Iterator	it = announce_cache.keySet().iterator();
-
-				while( it.hasNext() ){
+				for (int i=0;i<announce_cache.length;i++){
 
-					Integer	key = (Integer)it.next();
+					announceCacheEntry	entry = announce_cache[i];
 
-					announceCacheEntry	entry = (announceCacheEntry)announce_cache.get( key );
+					if ( entry != null && now - entry.getTime() > cache_millis ){
 
-					if ( now - entry.getTime() > cache_millis ){
-
-						it.remove();
+						announce_cache[i] = null;
 					}
 				}
 
 					// look for an entry with a reasonable num_want
 					// e.g. for 100 look between 50 and 100
 
-				for (int i=num_want/10;i>num_want/20;i--){
+				for (int i=Math.min(num_want/10,announce_cache.length-1);i>num_want/20;i--){
 
-					announceCacheEntry	entry = (announceCacheEntry)announce_cache.get(new Integer(i));
-
-					if( entry != null ){
-
-						if ( now - entry.getTime() > cache_millis ){
-
-							announce_cache.remove( new Integer(i));
-
-						}else{
+					announceCacheEntry	entry = announce_cache[i];
 
-								// make sure this is compatible
+						// stale entries have been cleared above, make sure this is compatible
 
-							if ( 	entry.getSendPeerIds() == send_peer_ids &&
-									entry.getCompactMode() == compact_mode ){
+					if ( 	entry != null &&
+							entry.getSendPeerIds() == send_peer_ids &&
+							entry.getCompactMode() == compact_mode ){
 
-								return( entry.getData());
-							}
-						}
+						return( entry.getData());
 					}
 				}
 
@@ -2223,7 +2214,21 @@ TRTrackerServerTorrentImpl
 
 			if ( add_to_cache ){
 
-				announce_cache.put( new Integer((num_peers_returned+9)/10), new announceCacheEntry( root, send_peer_ids, compact_mode ));
+				int	slot = (num_peers_returned+9)/10;
+
+				if ( slot < MAX_CACHE_SLOTS ){
+
+					if ( slot >= announce_cache.length ){
+
+						announceCacheEntry[]	new_cache = new announceCacheEntry[slot+1];
+
+						System.arraycopy( announce_cache, 0, new_cache, 0, announce_cache.length );
+
+						announce_cache = new_cache;
+					}
+
+					announce_cache[slot] = new announceCacheEntry( root, send_peer_ids, compact_mode );
+				}
 			}
 
 			return( root );
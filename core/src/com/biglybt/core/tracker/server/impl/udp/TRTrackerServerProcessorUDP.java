@@ -59,6 +59,7 @@ TRTrackerServerProcessorUDP
 	private final TRTrackerServerUDP		server;
 	private final DatagramSocket			socket;
 	private final DatagramPacket			request_dg;
+	private final List<DatagramPacket>		reply_batch;
 
 	private static final Map<Long,connectionData>				connection_id_map 	= new LinkedHashMap<>();
 	private static final Map<String,List<connectionData>>		connection_ip_map 	= new HashMap<>();
@@ -80,6 +81,24 @@ TRTrackerServerProcessorUDP
 		server			= _server;
 		socket			= _socket;
 		request_dg		= _packet;
+		reply_batch		= null;
+	}
+
+		/**
+		 * Batch mode constructor - the reply is added to the batch for the caller to send
+		 * rather than being sent directly
+		 */
+
+	protected
+	TRTrackerServerProcessorUDP(
+		TRTrackerServerUDP		_server,
+		DatagramPacket			_packet,
+		List<DatagramPacket>	_reply_batch )
+	{
+		server			= _server;
+		socket			= null;
+		request_dg		= _packet;
+		reply_batch		= _reply_batch;
 	}
 
 	@Override
@@ -140,9 +159,12 @@ TRTrackerServerProcessorUDP
 
 			PRUDPPacketRequest	request = PRUDPPacketRequest.deserialiseRequest( null, is );
 
-			Logger.log(new LogEvent(LOGID,
-					"TRTrackerServerProcessorUDP: packet received: "
-							+ request.getString()));
+			if ( Logger.isEnabled()){
+
+				Logger.log(new LogEvent(LOGID,
+						"TRTrackerServerProcessorUDP: packet received: "
+								+ request.getString()));
+			}
 
 			PRUDPPacket					reply 	= null;
 			TRTrackerServerTorrentImpl	torrent	= null;
@@ -292,7 +314,14 @@ TRTrackerServerProcessorUDP
 
 				DatagramPacket reply_packet = new DatagramPacket(output_buffer, output_buffer.length,address,request_dg.getPort());
 
-				socket.send( reply_packet );
+				if ( reply_batch == null ){
+
+					socket.send( reply_packet );
+
+				}else{
+
+					reply_batch.add( reply_packet );
+				}
 
 				server.updateStats( request_type, torrent, input_buffer.length, output_buffer.length );
 			}
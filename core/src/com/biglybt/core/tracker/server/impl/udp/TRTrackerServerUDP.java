@@ -29,6 +29,12 @@ import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 import com.biglybt.core.config.COConfigurationManager;
@@ -39,6 +45,7 @@ import com.biglybt.core.logging.Logger;
 import com.biglybt.core.networkmanager.admin.NetworkAdmin;
 import com.biglybt.core.tracker.server.TRTrackerServerRequestListener;
 import com.biglybt.core.tracker.server.impl.TRTrackerServerImpl;
+import com.biglybt.core.util.AERunnable;
 import com.biglybt.core.util.AEThread;
 import com.biglybt.core.util.ThreadPool;
 import com.biglybt.net.udp.uc.PRUDPPacket;
@@ -58,6 +65,9 @@ TRTrackerServerUDP
 
 	private DatagramSocket	dg_socket;
 
+	private DatagramChannel	dg_channel;
+	private Selector		dg_selector;
+
 	private volatile boolean	closed;
 
 	public
@@ -79,39 +89,111 @@ TRTrackerServerUDP
 
 			InetSocketAddress	address;
 
-			DatagramSocket	socket;
-
 			if ( bind_ip == null ){
 
 				address = new InetSocketAddress(InetAddress.getByName("127.0.0.1"),port);
 
-				socket = new DatagramSocket( port );
-
 			}else{
 
 				current_bind_ip = bind_ip;
 
 				address = new InetSocketAddress( bind_ip, port);
-
-				socket = new DatagramSocket(address);
 			}
 
-			socket.setReuseAddress(true);
+			final int	batch_size = COConfigurationManager.getIntParameter( "Tracker UDP Batch Size" );
+
+			if ( batch_size > 1 ){
+
+				DatagramChannel	channel 	= null;
+				Selector		selector	= null;
+
+				try{
+					channel = DatagramChannel.open();
+
+					channel.bind( bind_ip==null?new InetSocketAddress( port ):address );
+
+					channel.socket().setReuseAddress( true );
+
+					channel.configureBlocking( false );
+
+					selector = Selector.open();
+
+					channel.register( selector, SelectionKey.OP_READ );
+
+					dg_channel	= channel;
+					dg_selector	= selector;
+
+				}catch( Throwable e ){
+
+					Logger.log(new LogEvent(LOGID,
+							"TRTrackerServerUDP: batch mode unavailable on port " + port + ", falling back to per-packet", e));
+
+						// release the port before the per-packet socket tries to bind it
 
-			dg_socket 	= socket;
+					if ( selector != null ){
+
+						try{
+							selector.close();
+
+						}catch( Throwable f ){
+						}
+					}
+
+					if ( channel != null ){
+
+						try{
+							channel.close();
+
+						}catch( Throwable f ){
+						}
+					}
+				}
+			}
 
 			final InetSocketAddress	f_address	= address;
 
-			Thread recv_thread =
-				new AEThread("TRTrackerServerUDP:recv.loop")
-				{
-					@Override
-					public void
-					runSupport()
+			Thread recv_thread;
+
+			if ( dg_channel != null ){
+
+				recv_thread =
+					new AEThread("TRTrackerServerUDP:recv.loop")
 					{
-						recvLoop( dg_socket, f_address );
-					}
-				};
+						@Override
+						public void
+						runSupport()
+						{
+							recvLoopBatched( dg_channel, dg_selector, batch_size );
+						}
+					};
+			}else{
+
+				DatagramSocket	socket;
+
+				if ( bind_ip == null ){
+
+					socket = new DatagramSocket( port );
+
+				}else{
+
+					socket = new DatagramSocket(address);
+				}
+
+				socket.setReuseAddress(true);
+
+				dg_socket 	= socket;
+
+				recv_thread =
+					new AEThread("TRTrackerServerUDP:recv.loop")
+					{
+						@Override
+						public void
+						runSupport()
+						{
+							recvLoop( dg_socket, f_address );
+						}
+					};
+			}
 
 			recv_thread.setDaemon( true );
 
@@ -187,6 +269,145 @@ TRTrackerServerUDP
 		}
 	}
 
+		/**
+		 * Drains all the datagrams available on each wakeup (up to the batch size) and hands them
+		 * to the thread pool as a single task which processes them in turn and then sends the
+		 * replies, rather than paying the task dispatch cost per packet. If the pool is busy
+		 * the dispatch blocks and the next batch builds up in the socket's receive buffer
+		 */
+
+	protected void
+	recvLoopBatched(
+		DatagramChannel		channel,
+		Selector			selector,
+		int					batch_size )
+	{
+		long	successful_accepts 	= 0;
+		long	failed_accepts		= 0;
+
+		ByteBuffer	buffer = ByteBuffer.allocateDirect( PRUDPPacket.MAX_PACKET_SIZE );
+
+		while( !closed ){
+
+			try{
+				selector.select();
+
+				selector.selectedKeys().clear();
+
+				List<DatagramPacket>	batch = null;
+
+				while( batch == null || batch.size() < batch_size ){
+
+					buffer.clear();
+
+					InetSocketAddress	from = (InetSocketAddress)channel.receive( buffer );
+
+					if ( from == null ){
+
+						break;
+					}
+
+					successful_accepts++;
+
+					failed_accepts	= 0;
+
+					String	ip = from.getAddress().getHostAddress();
+
+					if ( isIPFiltered( ip )){
+
+						continue;
+					}
+
+					buffer.flip();
+
+					byte[]	data = new byte[buffer.remaining()];
+
+					buffer.get( data );
+
+					if ( batch == null ){
+
+						batch = new ArrayList<>( batch_size );
+					}
+
+					batch.add( new DatagramPacket( data, data.length, from ));
+				}
+
+				if ( batch != null ){
+
+					final List<DatagramPacket>	f_batch = batch;
+
+					thread_pool.run(
+						new AERunnable()
+						{
+							@Override
+							public void
+							runSupport()
+							{
+								processBatch( channel, f_batch );
+							}
+						});
+				}
+			}catch( Throwable e ){
+
+				if ( !closed ){
+
+					failed_accepts++;
+
+					Logger.log(new LogEvent(LOGID,
+							"TRTrackerServer: receive failed on port " + port, e));
+
+					if (( failed_accepts > 100 && successful_accepts == 0 ) || failed_accepts > 1000 ){
+
+						Logger.logTextResource(new LogAlert(LogAlert.UNREPEATABLE,
+								LogAlert.AT_ERROR, "Network.alert.acceptfail"), new String[] {
+								"" + port, "UDP" });
+
+						break;
+					}
+				}
+			}
+		}
+	}
+
+	protected void
+	processBatch(
+		DatagramChannel			channel,
+		List<DatagramPacket>	batch )
+	{
+		List<DatagramPacket>	replies = new ArrayList<>( batch.size());
+
+		for ( DatagramPacket packet: batch ){
+
+			TRTrackerServerProcessorUDP	processor = new TRTrackerServerProcessorUDP( this, packet, replies );
+
+			try{
+				processor.runSupport();
+
+			}finally{
+
+				processor.taskCompleted();
+			}
+		}
+
+		for ( DatagramPacket reply: replies ){
+
+			try{
+					// non-blocking, if the send buffer is full the reply is dropped just as it
+					// could be anywhere else on the way back and the client will retry
+
+				channel.send( ByteBuffer.wrap( reply.getData(), reply.getOffset(), reply.getLength()), reply.getSocketAddress());
+
+			}catch( Throwable e ){
+
+				if ( !closed ){
+
+					Logger.log(new LogEvent(LOGID,
+							"TRTrackerServerUDP: send failed on port " + port, e));
+				}
+			}
+		}
+	}
+
 	@Override
 	public int
 	getPort()
@@ -229,8 +450,16 @@ TRTrackerServerUDP
 		closed = true;
 
 		try{
-			dg_socket.close();
+			if ( dg_channel != null ){
+
+				dg_channel.close();
 
+				dg_selector.close();
+
+			}else{
+
+				dg_socket.close();
+			}
 		}catch( Throwable e ){
 
 		}
@@ -72,6 +72,8 @@ public class BDecoder
 
 	private MapDecodeListener mapDecodeListener;
 
+	private Set<String>	slice_keys;
+
 	public boolean force_utf8_keys;
 	
 	public void
@@ -206,7 +208,7 @@ public class BDecoder
 
 	// used externally
 	public Map<String, Object> decodeByteBuffer(ByteBuffer buffer, boolean internKeys) throws IOException {
-		InputStream is = new BDecoderInputStreamArray(buffer);
+		InputStream is = buffer.hasArray()?new BDecoderInputStreamArray(buffer):new BDecoderInputStreamBuffer(buffer);
 		Map<String,Object> result = decode(is,internKeys);
 		buffer.position(buffer.limit()-is.available());
 		return result;
@@ -1389,7 +1391,7 @@ public class BDecoder
   }
 	 */
 
-	private byte[]
+	private Object
 	getByteArrayFromStream(
 		InputStream dbis,
 		String		context )
@@ -1410,6 +1412,11 @@ public class BDecoder
 			throw( new IOException( "Byte array length too large (" + length + ")"));
 		}
 
+		if ( slice_keys != null && dbis instanceof SliceableInputStream && slice_keys.contains( context )){
+
+			return(((SliceableInputStream)dbis).slice( length ));
+		}
+
 		byte[] tempArray = new byte[length];
 
 		getByteArrayFromStream(dbis, length, tempArray);
@@ -1475,6 +1482,20 @@ public class BDecoder
 			throw (new IOException("BDecoder::getByteArrayFromStream: truncated"));
 	}
 
+		/**
+		 * View mode: byte string values of dictionary entries with these keys are returned as
+		 * ByteBuffer slices of the source rather than copied into byte[]s. Only applies when
+		 * decoding from a byte[] or ByteBuffer, callers must expect a ByteBuffer for the keys
+		 * given. Slices share the source so keep it unmodified while they are in use.
+		 */
+
+	public void
+	setSliceKeys(
+		Set<String>		keys )
+	{
+		slice_keys = keys;
+	}
+
 	public void
 	setVerifyMapOrder(
 		boolean	b )
@@ -1921,10 +1942,21 @@ public class BDecoder
 		}
 	}
 */
+	private interface
+	SliceableInputStream
+	{
+		public ByteBuffer
+		slice(
+			int		length )
+
+			throws IOException;
+	}
+
 	private static class
 	BDecoderInputStreamArray
 
 		extends InputStream
+		implements SliceableInputStream
 	{
 		final private byte[] bytes;
 		private int pos = 0;
@@ -2037,6 +2069,397 @@ public class BDecoder
 		{
 			pos = markPos;
 		}
+
+		@Override
+		public ByteBuffer
+		slice(
+			int		length )
+
+			throws IOException
+		{
+			if ( length > overPos - pos ){
+
+				throw (new IOException("BDecoder::slice: truncated"));
+			}
+
+			ByteBuffer	result = ByteBuffer.wrap( bytes, pos, length ).slice();
+
+			pos += length;
+
+			return( result );
+		}
+	}
+
+		/**
+		 * Reads from a direct or mapped buffer using absolute gets so the buffer's position is
+		 * only updated by the caller when decoding completes
+		 */
+
+	private static class
+	BDecoderInputStreamBuffer
+
+		extends InputStream
+		implements SliceableInputStream
+	{
+		final private ByteBuffer	buffer;
+		private int 				pos;
+		private int 				markPos;
+		private final int 			overPos;
+
+		private
+		BDecoderInputStreamBuffer(
+			ByteBuffer	_buffer )
+		{
+			buffer	= _buffer;
+			pos		= buffer.position();
+			overPos	= buffer.limit();
+		}
+
+		@Override
+		public int
+		read()
+		{
+			if ( pos < overPos ){
+
+				return( buffer.get( pos++ ) & 0xFF );
+			}
+
+			return( -1 );
+		}
+
+		@Override
+		public int
+		read(
+			byte[] 	b,
+			int		offset,
+			int		length )
+		{
+			if ( pos < overPos ){
+
+				int toRead = Math.min( length, overPos - pos );
+
+				ByteBuffer	dup = buffer.duplicate();
+
+				dup.limit( pos + toRead ).position( pos );
+
+				dup.get( b, offset, toRead );
+
+				pos += toRead;
+
+				return( toRead );
+			}
+
+			return( -1 );
+		}
+
+		@Override
+		public int
+		available()
+		{
+			return( overPos - pos );
+		}
+
+		@Override
+		public boolean
+		markSupported()
+		{
+			return( true );
+		}
+
+		@Override
+		public void
+		mark(
+			int	limit )
+		{
+			markPos = pos;
+		}
+
+		@Override
+		public void
+		reset()
+		{
+			pos = markPos;
+		}
+
+		@Override
+		public ByteBuffer
+		slice(
+			int		length )
+
+			throws IOException
+		{
+			if ( length > overPos - pos ){
+
+				throw (new IOException("BDecoder::slice: truncated"));
+			}
+
+			ByteBuffer	dup = buffer.duplicate();
+
+			dup.limit( pos + length ).position( pos );
+
+			pos += length;
+
+			return( dup.slice());
+		}
+	}
+
+		/**
+		 * SAX style events from {@link BDecoder#visit(ByteBuffer, Visitor)}. Keys and byte
+		 * strings are passed as a view of the source buffer with position and limit set to the
+		 * bytes - the view is reused so slice() or copy it to retain it beyond the call
+		 */
+
+	public interface
+	Visitor
+	{
+		public void
+		mapStart()
+
+			throws IOException;
+
+		public void
+		mapKey(
+			ByteBuffer	key )
+
+			throws IOException;
+
+		public void
+		mapEnd()
+
+			throws IOException;
+
+		public void
+		listStart()
+
+			throws IOException;
+
+		public void
+		listEnd()
+
+			throws IOException;
+
+		public void
+		valueLong(
+			long		value )
+
+			throws IOException;
+
+		public void
+		valueBytes(
+			ByteBuffer	value )
+
+			throws IOException;
+	}
+
+	private static final int MAX_VISIT_NESTING	= 1024;
+
+		/**
+		 * Streams the single bencoded value starting at the buffer's position to the visitor
+		 * without building any intermediate structures. The buffer may be heap, direct or
+		 * mapped, on return its position is after the value.
+		 */
+
+	public static void
+	visit(
+		ByteBuffer		buffer,
+		Visitor			visitor )
+
+		throws IOException
+	{
+		ByteBuffer	view = buffer.duplicate();
+
+		int	pos 	= buffer.position();
+		int	limit	= buffer.limit();
+
+		boolean[]	is_map		= new boolean[MAX_VISIT_NESTING];
+		boolean[]	want_key	= new boolean[MAX_VISIT_NESTING];
+
+		int	depth = 0;
+
+		do{
+			if ( pos >= limit ){
+
+				throw( new BEncodingException( "BDecoder: invalid input data, unexpected end" ));
+			}
+
+			int	b = buffer.get( pos );
+
+			boolean	in_map = depth > 0 && is_map[depth-1];
+
+			if ( b == 'e' && depth > 0 && ( !in_map || want_key[depth-1] )){
+
+				pos++;
+
+				depth--;
+
+				if ( in_map ){
+
+					visitor.mapEnd();
+
+				}else{
+
+					visitor.listEnd();
+				}
+
+				continue;
+			}
+
+			if ( in_map && want_key[depth-1] ){
+
+				if ( b < '0' || b > '9' ){
+
+					throw( new BEncodingException( "BDecoder: invalid dictionary key at " + pos ));
+				}
+
+				pos = visitBytes( buffer, view, pos, limit );
+
+				visitor.mapKey( view );
+
+				want_key[depth-1] = false;
+
+				continue;
+			}
+
+			if ( in_map ){
+
+					// whatever follows is this entry's value, next thing at this level is a key
+
+				want_key[depth-1] = true;
+			}
+
+			if ( b == 'd' || b == 'l' ){
+
+				if ( depth == MAX_VISIT_NESTING ){
+
+					throw( new BEncodingException( "BDecoder: nesting too deep" ));
+				}
+
+				pos++;
+
+				boolean	map = b == 'd';
+
+				is_map[depth]	= map;
+				want_key[depth]	= map;
+
+				depth++;
+
+				if ( map ){
+
+					visitor.mapStart();
+
+				}else{
+
+					visitor.listStart();
+				}
+
+			}else if ( b == 'i' ){
+
+				pos++;
+
+				boolean	negative = false;
+
+				if ( pos < limit && buffer.get( pos ) == '-' ){
+
+					negative = true;
+
+					pos++;
+				}
+
+				long	value 	= 0;
+				int		digits	= 0;
+
+				while( true ){
+
+					if ( pos >= limit ){
+
+						throw( new BEncodingException( "BDecoder: invalid input data, unterminated integer" ));
+					}
+
+					int	c = buffer.get( pos++ );
+
+					if ( c == 'e' ){
+
+						break;
+					}
+
+					if ( c < '0' || c > '9' || ++digits > 19 ){
+
+						throw( new BEncodingException( "BDecoder: invalid integer at " + pos ));
+					}
+
+					value = value*10 + ( c - '0' );
+				}
+
+				if ( digits == 0 ){
+
+					throw( new BEncodingException( "BDecoder: empty integer at " + pos ));
+				}
+
+				visitor.valueLong( negative?-value:value );
+
+			}else if ( b >= '0' && b <= '9' ){
+
+				pos = visitBytes( buffer, view, pos, limit );
+
+				visitor.valueBytes( view );
+
+			}else{
+
+				throw( new BEncodingException( "BDecoder: unknown command '" + b + "' at " + pos ));
+			}
+		}while( depth > 0 );
+
+		buffer.position( pos );
+	}
+
+	private static int
+	visitBytes(
+		ByteBuffer		buffer,
+		ByteBuffer		view,
+		int				pos,
+		int				limit )
+
+		throws IOException
+	{
+		long	length = 0;
+
+		while( true ){
+
+			if ( pos >= limit ){
+
+				throw( new BEncodingException( "BDecoder: invalid input data, unterminated length" ));
+			}
+
+			int	c = buffer.get( pos++ );
+
+			if ( c == ':' ){
+
+				break;
+			}
+
+			if ( c < '0' || c > '9' ){
+
+				throw( new BEncodingException( "BDecoder: invalid length at " + pos ));
+			}
+
+			length = length*10 + ( c - '0' );
+
+			if ( length > MAX_BYTE_ARRAY_SIZE ){
+
+				throw( new IOException( "Byte array length too large (" + length + ")"));
+			}
+		}
+
+		if ( pos + length > limit ){
+
+			throw( new BEncodingException( "BDecoder: invalid input data, truncated byte string" ));
+		}
+
+		view.limit( limit );
+		view.position( pos );
+		view.limit( pos + (int)length );
+
+		return( pos + (int)length );
 	}
 
 	public interface MapDecodeListener {
@@ -324,7 +324,7 @@ BEncoder
        }else if( object instanceof ByteBuffer ){
 
        		ByteBuffer  bb = (ByteBuffer)object;
-       		writeInt(bb.limit());
+       		writeInt(bb.remaining());
        		writeChar(':');
             writeByteBuffer(bb);
 
@@ -513,7 +513,27 @@ BEncoder
 	
 		throws IOException
     {
-    	writeBytes( bb.array(), bb.arrayOffset() + bb.position(), bb.remaining());
+    	if ( bb.hasArray()){
+
+    		writeBytes( bb.array(), bb.arrayOffset() + bb.position(), bb.remaining());
+
+    	}else{
+
+    			// direct/mapped/read-only, copy through a small chunk without moving its position
+
+    		ByteBuffer	dup = bb.duplicate();
+
+    		byte[]	chunk = new byte[Math.min( dup.remaining(), 16*1024 )];
+
+    		while( dup.hasRemaining()){
+
+    			int	len = Math.min( dup.remaining(), chunk.length );
+
+    			dup.get( chunk, 0, len );
+
+    			writeBytes( chunk, 0, len );
+    		}
+    	}
     }
 
     private String
@@ -572,6 +592,255 @@ BEncoder
     }
 
 
+    	/**
+    	 * Writes bencoding to a stream as the structure is walked, for large documents that
+    	 * would otherwise have to be assembled as a Map first. Dictionary keys must be supplied
+    	 * in sorted (raw byte) order as required by the encoding, this is checked.
+    	 */
+
+    public static class
+    StreamWriter
+    {
+    	private static final int MAX_NESTING	= 1024;
+
+    	private final BEncoder		encoder = new BEncoder();
+
+    	private final boolean[]		is_map		= new boolean[MAX_NESTING];
+    	private final byte[][]		last_key	= new byte[MAX_NESTING][];
+
+    	private int		depth;
+    	private boolean	key_pending;
+
+    	public
+    	StreamWriter(
+    		OutputStream	os )
+    	{
+    		encoder.current_os = os;
+    	}
+
+    	public StreamWriter
+    	mapStart()
+
+    		throws IOException
+    	{
+    		push( true );
+
+    		encoder.writeChar( 'd' );
+
+    		return( this );
+    	}
+
+    	public StreamWriter
+    	listStart()
+
+    		throws IOException
+    	{
+    		push( false );
+
+    		encoder.writeChar( 'l' );
+
+    		return( this );
+    	}
+
+    	public StreamWriter
+    	end()
+
+    		throws IOException
+    	{
+    		if ( depth == 0 || key_pending ){
+
+    			throw( new IOException( "BEncoder: end without matching start" ));
+    		}
+
+    		depth--;
+
+    		last_key[depth] = null;
+
+    		encoder.writeChar( 'e' );
+
+    		return( this );
+    	}
+
+    	public StreamWriter
+    	key(
+    		String		key )
+
+    		throws IOException
+    	{
+    		return( key( key.getBytes( Constants.DEFAULT_ENCODING_CHARSET )));
+    	}
+
+    	public StreamWriter
+    	key(
+    		byte[]		key )
+
+    		throws IOException
+    	{
+    		if ( depth == 0 || !is_map[depth-1] || key_pending ){
+
+    			throw( new IOException( "BEncoder: key not expected" ));
+    		}
+
+    		byte[]	prev = last_key[depth-1];
+
+    		if ( prev != null && compareKeys( prev, key ) >= 0 ){
+
+    			throw( new IOException( "BEncoder: key '" + new String( key, Constants.BYTE_ENCODING_CHARSET ) + "' out of order" ));
+    		}
+
+    		last_key[depth-1] = key;
+
+    		encoder.writeInt( key.length );
+    		encoder.writeChar( ':' );
+    		encoder.writeBytes( key );
+
+    		key_pending = true;
+
+    		return( this );
+    	}
+
+    	public StreamWriter
+    	value(
+    		long		value )
+
+    		throws IOException
+    	{
+    		preValue();
+
+    		encoder.writeChar( 'i' );
+    		encoder.writeLong( value );
+    		encoder.writeChar( 'e' );
+
+    		return( this );
+    	}
+
+    	public StreamWriter
+    	value(
+    		byte[]		value )
+
+    		throws IOException
+    	{
+    		preValue();
+
+    		encoder.writeInt( value.length );
+    		encoder.writeChar( ':' );
+    		encoder.writeBytes( value );
+
+    		return( this );
+    	}
+
+    	public StreamWriter
+    	value(
+    		ByteBuffer	value )
+
+    		throws IOException
+    	{
+    		preValue();
+
+    		encoder.writeInt( value.remaining());
+    		encoder.writeChar( ':' );
+    		encoder.writeByteBuffer( value );
+
+    		return( this );
+    	}
+
+    		/**
+    		 * Writes any value supported by {@link BEncoder#encode(Map)}, e.g. a small sub-map
+    		 */
+
+    	public StreamWriter
+    	value(
+    		Object		value )
+
+    		throws IOException
+    	{
+    		preValue();
+
+    		if ( !encoder.encodeObject( value, false )){
+
+    			throw( new IOException( "BEncoder: unsupported value type " + value.getClass()));
+    		}
+
+    		return( this );
+    	}
+
+    		/**
+    		 * Flushes buffered output, the structure must be complete
+    		 */
+
+    	public void
+    	finish()
+
+    		throws IOException
+    	{
+    		if ( depth != 0 ){
+
+    			throw( new IOException( "BEncoder: " + depth + " unterminated containers" ));
+    		}
+
+    		if ( encoder.current_buffer_pos > 0 ){
+
+    			encoder.current_os.write( encoder.current_buffer, 0, encoder.current_buffer_pos );
+
+    			encoder.current_buffer_pos = 0;
+    		}
+
+    		encoder.current_os.flush();
+    	}
+
+    	private void
+    	push(
+    		boolean	map )
+
+    		throws IOException
+    	{
+    		preValue();
+
+    		if ( depth == MAX_NESTING ){
+
+    			throw( new IOException( "BEncoder: nesting too deep" ));
+    		}
+
+    		is_map[depth++] = map;
+    	}
+
+    	private void
+    	preValue()
+
+    		throws IOException
+    	{
+    		if ( depth > 0 && is_map[depth-1] ){
+
+    			if ( !key_pending ){
+
+    				throw( new IOException( "BEncoder: value without key" ));
+    			}
+
+    			key_pending = false;
+    		}
+    	}
+
+    	private static int
+    	compareKeys(
+    		byte[]	k1,
+    		byte[]	k2 )
+    	{
+    		int	len = Math.min( k1.length, k2.length );
+
+    		for ( int i=0;i<len;i++){
+
+    			int	diff = ( k1[i]&0xff ) - ( k2[i]&0xff );
+
+    			if ( diff != 0 ){
+
+    				return( diff );
+    			}
+    		}
+
+    		return( k1.length - k2.length );
+    	}
+    }
+
     private static Object
     normaliseObject(
     	Object		o )
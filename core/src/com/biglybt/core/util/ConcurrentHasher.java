@@ -26,30 +26,81 @@ package com.biglybt.core.util;
 
 import java.nio.ByteBuffer;
 import java.security.MessageDigest;
-import java.util.ArrayList;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.biglybt.core.config.COConfigurationManager;
 import com.biglybt.core.config.ParameterListener;
+import com.biglybt.core.stats.CoreStats;
+import com.biglybt.core.stats.CoreStatsProvider;
 
 public class
 ConcurrentHasher
 {
+		// a task hashes up to this many pieces/bytes before handing the worker back to the pool
+
+	private static final int	BATCH_MAX_PIECES	= 8;
+	private static final int	BATCH_MAX_BYTES		= 16*1024*1024;
+
+	private static final int	THROUGHPUT_PERIOD	= 2*1000;
 
 	protected static final ConcurrentHasher		singleton	= new ConcurrentHasher();
 
 	protected int			processor_num;
 
-	protected final List<ConcurrentHasherRequest>				requests		= new LinkedList<>();
+	private final ForkJoinPool	pool;
+
+	private final ConcurrentLinkedQueue<ConcurrentHasherRequest>	requests	= new ConcurrentLinkedQueue<>();
+
+	private final AtomicInteger		active_tasks	= new AtomicInteger();
+
+	private final ThreadLocal<SHA1Hasher>		v1_hashers =
+		new ThreadLocal<SHA1Hasher>()
+		{
+			@Override
+			protected SHA1Hasher
+			initialValue()
+			{
+				return( new SHA1Hasher());
+			}
+		};
 
-	protected final List<SHA1Hasher>	v1_hashers			= new LinkedList<>();
-	protected final List<MessageDigest>	v2_hashers			= new LinkedList<>();
+	private final ThreadLocal<MessageDigest>	v2_hashers =
+		new ThreadLocal<MessageDigest>()
+		{
+			@Override
+			protected MessageDigest
+			initialValue()
+			{
+				try{
+					return( MessageDigest.getInstance( "SHA-256" ));
+
+				}catch( Throwable e ){
+
+					Debug.out( e );
+
+					return( null );
+				}
+			}
+		};
 
-	protected final AESemaphore		request_sem		= new AESemaphore("ConcHashReqQ");
 	protected final AESemaphore		scheduler_sem	= new AESemaphore("ConcHashSched");
 
-	protected final AEMonitor			requests_mon	= new AEMonitor( "ConcurrentHasher:R" );
+	private final AtomicLong	stats_requests	= new AtomicLong();
+	private final AtomicLong	stats_bytes		= new AtomicLong();
+	private final AtomicLong	stats_nanos		= new AtomicLong();
+
+	private long	throughput_last_time	= -1;
+	private long	throughput_last_bytes;
+	private long	throughput_last_nanos;
+	private long	throughput_rate;
+	private long	throughput_core_rate;
 
 	private static boolean friendly_hashing;
 
@@ -98,138 +149,292 @@ ConcurrentHasher
 			scheduler_sem.release();
 		}
 
-		final ThreadPool pool	= new ThreadPool( "ConcurrentHasher", processor_num<64?64:128 );
+			// work-stealing pool so that idle workers pick up the leaf hashing of large v2 pieces
 
-		new AEThread2("ConcurrentHasher:scheduler", true )
-		{
-			@Override
-			public void
-			run()
-			{
-				while(true){
-
-						// get a request to run
-
-					request_sem.reserve();
-
-						// now extract the request
-
-					final ConcurrentHasherRequest	req;
-					final SHA1Hasher				v1_hasher;
-					final MessageDigest				v2_hasher;
-
-					try{
-						requests_mon.enter();
-
-						req	= requests.remove(0);
-
-						if ( req.getHashVersion() == 1 ){
-							
-							v2_hasher = null;
-							
-							if ( v1_hashers.size() == 0 ){
-	
-								v1_hasher = new SHA1Hasher();
-	
-							}else{
-	
-								v1_hasher	= v1_hashers.remove(0);
-							}
-						}else{
-							v1_hasher = null;
-							
-							if ( v2_hashers.size() == 0 ){
-	
-								try{
-									v2_hasher = MessageDigest.getInstance( "SHA-256" );
-									
-								}catch( Throwable e ){
-									
-									Debug.out( e );
-									
-									req.cancel();
-									
-									continue;
-								}
-	
-							}else{
-	
-								v2_hasher	= v2_hashers.remove(0);
-							}
+		pool = new ForkJoinPool(
+					processor_num,
+					new ForkJoinPool.ForkJoinWorkerThreadFactory()
+					{
+						private int	next_id;
+
+						@Override
+						public synchronized ForkJoinWorkerThread
+						newThread(
+							ForkJoinPool	pool )
+						{
+							ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread( pool );
+
+							thread.setName( "ConcurrentHasher:" + next_id++ );
+
+							thread.setDaemon( true );
+
+							return( thread );
 						}
-					}finally{
+					},
+					null,
+					true );
 
-						requests_mon.exit();
+		Set<String>	types = new HashSet<>();
+
+		types.add( CoreStats.ST_DISK_HASH_REQUEST_COUNT );
+		types.add( CoreStats.ST_DISK_HASH_BYTES_TOTAL );
+		types.add( CoreStats.ST_DISK_HASH_TIME );
+		types.add( CoreStats.ST_DISK_HASH_RATE );
+		types.add( CoreStats.ST_DISK_HASH_RATE_PER_CORE );
+
+		CoreStats.registerProvider(
+			types,
+			new CoreStatsProvider()
+			{
+				@Override
+				public void
+				updateStats(
+					Set<String>			types,
+					Map<String,Object>	values )
+				{
+					if ( types.contains( CoreStats.ST_DISK_HASH_REQUEST_COUNT )){
+
+						values.put( CoreStats.ST_DISK_HASH_REQUEST_COUNT, stats_requests.get());
 					}
 
-					pool.run(
-							new AERunnable()
-							{
-								@Override
-								public void
-								runSupport()
-								{
-									try{
-										if ( v1_hasher != null ){
-										
-											req.run( v1_hasher );
-										}else{
-											
-											req.run( v2_hasher );
-										}
-									}finally{
-										try{
-											requests_mon.enter();
+					if ( types.contains( CoreStats.ST_DISK_HASH_BYTES_TOTAL )){
 
-											if ( v1_hasher != null ){
-											
-												v1_hashers.add( v1_hasher );
-												
-											}else{
-												
-												v2_hashers.add( v2_hasher );
-											}
-										}finally{
+						values.put( CoreStats.ST_DISK_HASH_BYTES_TOTAL, stats_bytes.get());
+					}
 
-											requests_mon.exit();
-										}
+					if ( types.contains( CoreStats.ST_DISK_HASH_TIME )){
 
-										if ( friendly_hashing && req.isLowPriority()){
+						values.put( CoreStats.ST_DISK_HASH_TIME, stats_nanos.get()/1000000 );
+					}
 
-											try{
-												int	size = req.getSize();
+					if ( 	types.contains( CoreStats.ST_DISK_HASH_RATE ) ||
+							types.contains( CoreStats.ST_DISK_HASH_RATE_PER_CORE )){
 
-													// pieces can be several MB so delay based on size
+						long[] rates = getThroughput();
 
-												final int max = 250;
-												final int min = 50;
+						values.put( CoreStats.ST_DISK_HASH_RATE, rates[0] );
+						values.put( CoreStats.ST_DISK_HASH_RATE_PER_CORE, rates[1] );
+					}
+				}
+			});
+	}
+
+	protected MessageDigest
+	getV2Hasher()
+	{
+		return( v2_hashers.get());
+	}
+
+	protected ForkJoinPool
+	getPool()
+	{
+		return( pool );
+	}
+
+	private void
+	schedule()
+	{
+			// one task per processor at most, each drains the queue in batches
+
+		while( true ){
+
+			int	active = active_tasks.get();
+
+			if ( active >= processor_num ){
+
+				return;
+			}
 
-												size = size/1024;	// in K
+			if ( active_tasks.compareAndSet( active, active+1 )){
 
-												size = size/8;
+				break;
+			}
+		}
+
+		executeBatch();
+	}
+
+	private void
+	executeBatch()
+	{
+		pool.execute(
+			new Runnable()
+			{
+				@Override
+				public void
+				run()
+				{
+					runBatch();
+				}
+			});
+	}
 
-													// 4MB -> 500
-													// 1MB -> 125
+	void
+	runBatch()
+	{
+		int		pieces	= 0;
+		long	bytes	= 0;
+
+		while( true ){
 
-												size = Math.min( size, max );
-												size = Math.max( size, min );
+			ConcurrentHasherRequest req = requests.poll();
 
-												Thread.sleep( size );
+			if ( req == null ){
 
-											}catch( Throwable e ){
+				active_tasks.decrementAndGet();
 
-												Debug.printStackTrace( e );
-											}
-										}
+					// re-check to avoid losing a request added after we found the queue empty
 
-										scheduler_sem.release();
-									}
-								}
-							});
+				if ( !requests.isEmpty()){
 
+					schedule();
 				}
+
+				return;
+			}
+
+			int	delay = 0;
+
+			try{
+				delay = runRequest( req );
+
+			}catch( Throwable e ){
+
+				Debug.out( e );
+
+			}finally{
+
+				scheduler_sem.release();
 			}
-		}.start();
+
+			if ( delay > 0 ){
+
+					// friendly hashing, the task keeps its slot but gives the worker back
+					// while it waits
+
+				SimpleTimer.addEvent(
+					"ConcurrentHasher:friendly",
+					SystemTime.getOffsetTime( delay ),
+					new TimerEventPerformer()
+					{
+						@Override
+						public void
+						perform(
+							TimerEvent event )
+						{
+							executeBatch();
+						}
+					});
+
+				return;
+			}
+
+			pieces++;
+			bytes += req.getSize();
+
+			if ( pieces >= BATCH_MAX_PIECES || bytes >= BATCH_MAX_BYTES ){
+
+					// resubmit rather than hog the worker so other tasks (e.g. stolen leaf
+					// hashing) get a look in
+
+				executeBatch();
+
+				return;
+			}
+		}
+	}
+
+		/**
+		 * @return millis to wait before the next request for friendly hashing, 0 for none
+		 */
+
+	private int
+	runRequest(
+		ConcurrentHasherRequest		req )
+	{
+		if ( req.getHashVersion() == 1 ){
+
+			req.run( v1_hashers.get());
+
+		}else{
+
+			MessageDigest v2_hasher = v2_hashers.get();
+
+			if ( v2_hasher == null ){
+
+				req.cancel();
+
+				return( 0 );
+			}
+
+			req.run( v2_hasher );
+		}
+
+		stats_requests.incrementAndGet();
+		stats_bytes.addAndGet( req.getSize());
+		stats_nanos.addAndGet( req.getHashNanos());
+
+		if ( friendly_hashing && req.isLowPriority()){
+
+			int	size = req.getSize();
+
+				// pieces can be several MB so delay based on size
+
+			final int max = 250;
+			final int min = 50;
+
+			size = size/1024;	// in K
+
+			size = size/8;
+
+				// 4MB -> 500
+				// 1MB -> 125
+
+			size = Math.min( size, max );
+			size = Math.max( size, min );
+
+			return( size );
+		}
+
+		return( 0 );
+	}
+
+		/**
+		 * @return [ overall bytes/sec, bytes/sec per busy core ] over the recent past
+		 */
+
+	public synchronized long[]
+	getThroughput()
+	{
+		long	now 	= SystemTime.getMonotonousTime();
+		long	bytes	= stats_bytes.get();
+		long	nanos	= stats_nanos.get();
+
+		if ( throughput_last_time == -1 ){
+
+			throughput_last_time	= now;
+			throughput_last_bytes	= bytes;
+			throughput_last_nanos	= nanos;
+
+		}else{
+
+			long	elapsed = now - throughput_last_time;
+
+			if ( elapsed >= THROUGHPUT_PERIOD ){
+
+				long	byte_diff	= bytes - throughput_last_bytes;
+				long	nano_diff	= nanos - throughput_last_nanos;
+
+				throughput_rate			= byte_diff*1000/elapsed;
+				throughput_core_rate	= nano_diff==0?0:(long)( byte_diff*1000000000.0/nano_diff );
+
+				throughput_last_time	= now;
+				throughput_last_bytes	= bytes;
+				throughput_last_nanos	= nanos;
+			}
+		}
+
+		return( new long[]{ throughput_rate, throughput_core_rate });
 	}
 
 		/**
@@ -276,17 +481,9 @@ ConcurrentHasher
 
 		scheduler_sem.reserve();
 
-		try{
-			requests_mon.enter();
-
-			requests.add( req );
-
-		}finally{
-
-			requests_mon.exit();
-		}
+		requests.add( req );
 
-		request_sem.release();
+		schedule();
 
 		return( req );
 	}
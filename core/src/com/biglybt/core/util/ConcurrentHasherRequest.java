@@ -22,6 +22,8 @@ package com.biglybt.core.util;
 import java.nio.ByteBuffer;
 import java.security.MessageDigest;
 import java.util.*;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
 
 /**
  * @author parg
@@ -31,6 +33,14 @@ import java.util.*;
 public class
 ConcurrentHasherRequest
 {
+	private static final int	V2_BLOCK_SIZE			= 16*1024;
+
+		// pieces with at least this many leaf blocks have their leaves hashed in parallel
+
+	private static final int	V2_PARALLEL_MIN_BLOCKS	= 64;
+	private static final int	V2_PARALLEL_SPLIT		= 16;
+
+	private final ConcurrentHasher				concurrent_hasher;
 	private final int							hash_version;
 	private final ByteBuffer					buffer;
 	private final int							piece_size;
@@ -45,6 +55,8 @@ ConcurrentHasherRequest
 	private boolean								cancelled;
 	private final boolean						low_priority;
 
+	private long								hash_nanos;
+
 	private final AESemaphore	sem = new AESemaphore("ConcHashRequest");
 
 	protected
@@ -57,6 +69,7 @@ ConcurrentHasherRequest
 		ConcurrentHasherRequestListener		_listener,
 		boolean								_low_priorty )
 	{
+		concurrent_hasher	= _concurrent_hasher;
 		hash_version		= _hash_version;
 		buffer				= _buffer;
 		piece_size			= _piece_size;
@@ -140,6 +153,16 @@ ConcurrentHasherRequest
 		return( low_priority );
 	}
 
+		/**
+		 * @return the time spent hashing, summed across threads if hashed in parallel
+		 */
+
+	protected long
+	getHashNanos()
+	{
+		return( hash_nanos );
+	}
+
 	protected void
 	run(
 		SHA1Hasher	hasher )
@@ -152,7 +175,11 @@ ConcurrentHasherRequest
 
 			}else{
 
+				long	start = System.nanoTime();
+
 				result = hasher.calculateHash( buffer );
+
+				hash_nanos = System.nanoTime() - start;
 			}
 
 			sem.releaseForever();
@@ -188,31 +215,53 @@ ConcurrentHasherRequest
 
 			}else{
 
-				int block_size = 16*1024;
-				
+				int block_size = V2_BLOCK_SIZE;
+
 				int	rem = buffer.remaining();
-				int pos	= buffer.position();
-								
-				List<byte[]> leaf_digests = new ArrayList<>( piece_size / block_size );
-				
-				while( rem > 0 ){
-				
-					buffer.position( pos );
-					
-					int len = Math.min( rem, block_size );
-					
-					buffer.limit( pos + len );
-					
-					hasher.update( buffer );
-				
-					byte[] digest = hasher.digest();
-					
-					leaf_digests.add( digest );
-					
-					rem -= len;
-					pos += len;
+
+				int	num_blocks = ( rem + block_size - 1 ) / block_size;
+
+				List<byte[]> leaf_digests;
+
+				if ( num_blocks >= V2_PARALLEL_MIN_BLOCKS && ForkJoinTask.inForkJoinPool()){
+
+					byte[][] digests = new byte[num_blocks][];
+
+					hash_nanos = new LeafTask( buffer, digests, 0, num_blocks ).invoke();
+
+					leaf_digests = new ArrayList<>( Math.max( num_blocks, piece_size / block_size ));
+
+					Collections.addAll( leaf_digests, digests );
+
+				}else{
+
+					long	start = System.nanoTime();
+
+					int pos	= buffer.position();
+
+					leaf_digests = new ArrayList<>( piece_size / block_size );
+
+					while( rem > 0 ){
+
+						buffer.position( pos );
+
+						int len = Math.min( rem, block_size );
+
+						buffer.limit( pos + len );
+
+						hasher.update( buffer );
+
+						byte[] digest = hasher.digest();
+
+						leaf_digests.add( digest );
+
+						rem -= len;
+						pos += len;
+					}
+
+					hash_nanos = System.nanoTime() - start;
 				}
-					
+
 				byte[]	zero_buffer = new byte[hasher.getDigestLength()];
 
 				long leaf_count;
@@ -297,4 +346,69 @@ ConcurrentHasherRequest
 		}
 	}
 	
+	private class
+	LeafTask
+		extends RecursiveTask<Long>
+	{
+		private final ByteBuffer	source;
+		private final byte[][]		digests;
+		private final int			from;
+		private final int			to;
+
+		LeafTask(
+			ByteBuffer		_source,
+			byte[][]		_digests,
+			int				_from,
+			int				_to )
+		{
+			source		= _source;
+			digests		= _digests;
+			from		= _from;
+			to			= _to;
+		}
+
+		@Override
+		protected Long
+		compute()
+		{
+			if ( to - from > V2_PARALLEL_SPLIT ){
+
+				int mid = ( from + to ) >>> 1;
+
+				LeafTask	left	= new LeafTask( source, digests, from, mid );
+				LeafTask	right	= new LeafTask( source, digests, mid, to );
+
+				left.fork();
+
+				long	nanos = right.compute();
+
+				return( nanos + left.join());
+			}
+
+			long	start = System.nanoTime();
+
+			MessageDigest	hasher = concurrent_hasher.getV2Hasher();
+
+				// each task works on its own view of the buffer
+
+			ByteBuffer	view = source.duplicate();
+
+			int	base	= source.position();
+			int	end		= source.limit();
+
+			for ( int i=from;i<to;i++){
+
+				int	pos = base + i*V2_BLOCK_SIZE;
+
+				view.limit( Math.min( end, pos + V2_BLOCK_SIZE ));
+				view.position( pos );
+
+				hasher.update( view );
+
+				digests[i] = hasher.digest();
+			}
+
+			return( System.nanoTime() - start );
+		}
+	}
 }
@@ -19,6 +19,7 @@
  */
 package com.biglybt.core.util;
 
+import com.biglybt.core.config.COConfigurationManager;
 
 
 public abstract class
@@ -37,7 +38,16 @@ DirectByteBufferPool
 			Debug.outNoStack( "******** USE_HEAP_BUFFERS MODE DEPRECATED ********" );
 		}
 
-		impl = new DirectByteBufferPoolReal();
+			// thread cached mode avoids monitor contention on allocate/free at high connection counts
+
+		if ( COConfigurationManager.getBooleanParameter( "memory.dbb.pool.thread.cache" )){
+
+			impl = new DirectByteBufferPoolCached();
+
+		}else{
+
+			impl = new DirectByteBufferPoolReal();
+		}
 	}
 
 
@@ -0,0 +1,707 @@
+/*
+ * Copyright (C) Bigly Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+
+package com.biglybt.core.util;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.biglybt.core.disk.DiskManager;
+import com.biglybt.core.internat.MessageText;
+import com.biglybt.core.logging.LogAlert;
+import com.biglybt.core.logging.Logger;
+import com.biglybt.core.stats.CoreStats;
+import com.biglybt.core.stats.CoreStatsProvider;
+
+/**
+ * Buffer pool that avoids monitors on the allocate/free paths. Each thread keeps a small
+ * cache of free buffers per size class and only goes to the shared, lock-free free list
+ * for the size class when its cache is empty (allocation) or full (free), in which case
+ * buffers are moved in batches. Buffers of 2K and under are carved out of 4K chunks as
+ * with the standard pool.
+ * <p>
+ * Compaction can only trim the central lists, so it also bumps a flush generation that makes
+ * each thread hand its whole cache back to the central lists on its next allocate or free. What
+ * one compaction flushes the next one trims.
+ */
+
+public class
+DirectByteBufferPoolCached
+	extends DirectByteBufferPool
+{
+	private static final boolean disable_gc = System.getProperty( "az.disable.explicit.gc", "0" ).equals( "1" );
+
+	private static final int START_POWER		= 12;	// 4096
+	private static final int END_POWER			= 28;
+
+	private static final int[]	EXTRA_BUCKETS	= { DiskManager.BLOCK_SIZE + 128 };
+
+	private static final int[]	SLICE_SIZES		= { 8, 16, 32, 64, 128, 256, 512, 1024, 2048 };
+
+	private static final int	SLICE_CHUNK_SIZE	= 4096;
+
+		// per-thread cache limits for each size class
+
+	private static final int	THREAD_CACHE_CLASS_BYTES	= 128*1024;
+	private static final int	THREAD_CACHE_MAX_ENTRIES	= 64;
+
+	private static final long	COMPACTION_CHECK_PERIOD	= 2*60*1000;
+	private static final long	MAX_FREE_BYTES			= 10*1024*1024;
+	private static final long	MIN_FREE_BYTES			= 1*1024*1024;
+
+	private final SizeClass[]	classes;
+
+	private volatile int	flush_generation;
+
+	private final ThreadLocal<ThreadCache>	thread_cache =
+		new ThreadLocal<ThreadCache>()
+		{
+			@Override
+			protected ThreadCache
+			initialValue()
+			{
+				return( new ThreadCache());
+			}
+		};
+
+	protected
+	DirectByteBufferPoolCached()
+	{
+		List<Integer>	sizes = new ArrayList<>();
+
+		for ( int s: SLICE_SIZES ){
+
+			sizes.add( s );
+		}
+
+		for ( int p=START_POWER; p<=END_POWER; p++ ){
+
+			sizes.add( 1<<p );
+		}
+
+		for ( int s: EXTRA_BUCKETS ){
+
+			sizes.add( s );
+		}
+
+		Collections.sort( sizes );
+
+		classes = new SizeClass[ sizes.size()];
+
+		for ( int i=0;i<classes.length;i++){
+
+			classes[i] = new SizeClass( i, sizes.get(i));
+		}
+
+		SimpleTimer.addPeriodicEvent(
+			"DirectBBCached:compact",
+			COMPACTION_CHECK_PERIOD,
+			new TimerEventPerformer()
+			{
+				@Override
+				public void
+				perform(
+					TimerEvent	event )
+				{
+					compact();
+				}
+			});
+
+		registerStats();
+
+		AEDiagnostics.addEvidenceGenerator(
+			new AEDiagnosticsEvidenceGenerator()
+			{
+				@Override
+				public void
+				generate(
+					IndentWriter		writer )
+				{
+					generateEvidence( writer );
+				}
+			});
+	}
+
+	private SizeClass
+	getClassForLength(
+		int		length )
+	{
+		int	low		= 0;
+		int	high	= classes.length - 1;
+
+		while( low < high ){
+
+			int	mid = ( low + high ) >>> 1;
+
+			if ( classes[mid].size < length ){
+
+				low = mid + 1;
+
+			}else{
+
+				high = mid;
+			}
+		}
+
+		return( classes[low] );
+	}
+
+	private SizeClass
+	getClassForCapacity(
+		int		capacity )
+	{
+		SizeClass	sc = getClassForLength( capacity );
+
+		return( sc.size == capacity?sc:null );
+	}
+
+	@Override
+	protected DirectByteBuffer
+	getBufferSupport(
+		byte		allocator,
+		int			length )
+	{
+		if ( length < 1 ){
+
+			Debug.out( "requested length [" +length+ "] < 1" );
+
+			return( null );
+		}
+
+		if ( length > DirectByteBufferPoolReal.MAX_SIZE ){
+
+			Debug.out( "requested length [" +length+ "] > MAX_SIZE [" +DirectByteBufferPoolReal.MAX_SIZE+ "]" );
+
+			return( null );
+		}
+
+		SizeClass	sc = getClassForLength( length );
+
+		ByteBuffer	buff = thread_cache.get().allocate( sc );
+
+			// clear doesn't actually zero the data, it just sets pos to 0 etc.
+
+		buff.clear();
+
+		buff.limit( length );
+
+		sc.allocated();
+
+		return( new DirectByteBuffer( allocator, buff, this ));
+	}
+
+	@Override
+	protected void
+	returnBufferSupport(
+		DirectByteBuffer	dbb )
+	{
+		ByteBuffer	buff = dbb.getBufferInternal();
+
+		if ( buff == null ){
+
+			Debug.out( "Returned dbb has null delegate" );
+
+			throw( new RuntimeException( "Returned dbb has null delegate" ));
+		}
+
+		SizeClass	sc = getClassForCapacity( buff.capacity());
+
+		if ( sc == null ){
+
+			Debug.out( "Invalid buffer given; could not find proper size class" );
+
+			return;
+		}
+
+		sc.freed();
+
+		thread_cache.get().free( sc, buff );
+	}
+
+	private ByteBuffer
+	allocateDirect(
+		int		size )
+	{
+		try{
+			return( ByteBuffer.allocateDirect( size ));
+
+		}catch( OutOfMemoryError e ){
+
+				// drop everything we're holding on to and give the gc a chance, thread caches
+				// will follow on their next use
+
+			flush_generation++;
+
+			for ( SizeClass sc: classes ){
+
+				sc.clearCentral();
+			}
+
+			if ( !disable_gc ){
+
+				System.runFinalization();
+				System.gc();
+			}
+
+			try{
+				return( ByteBuffer.allocateDirect( size ));
+
+			}catch( OutOfMemoryError f ){
+
+				String msg = MessageText.getString( "direct.memory.too.small" );
+
+				Debug.out( msg );
+
+				Logger.log( new LogAlert( LogAlert.UNREPEATABLE, LogAlert.AT_ERROR, msg ));
+
+				throw( f );
+			}
+		}
+	}
+
+	void
+	compact()
+	{
+			// get thread caches flushed so they're subject to trimming next time round
+
+		flush_generation++;
+
+		long	free_bytes = 0;
+
+		for ( SizeClass sc: classes ){
+
+			free_bytes += (long)sc.central_count.get() * sc.size;
+		}
+
+		if ( free_bytes < MIN_FREE_BYTES ){
+
+			return;
+		}
+
+			// same pressure as the standard pool: down to 50% of the limit if over it,
+			// otherwise between 50% and 100% depending on how full we are
+
+		float	remaining_factor;
+
+		if ( free_bytes > MAX_FREE_BYTES ){
+
+			remaining_factor = 0.5f * MAX_FREE_BYTES / (float)free_bytes;
+
+		}else{
+
+			remaining_factor = 1.0f - 0.5f * free_bytes / (float)MAX_FREE_BYTES;
+		}
+
+		for ( SizeClass sc: classes ){
+
+			sc.trimCentral((int)( sc.central_count.get() * remaining_factor ));
+		}
+	}
+
+	private void
+	registerStats()
+	{
+		String[][]	defs 	= new String[classes.length*5][];
+		Set<String>	types	= new HashSet<>();
+
+		int	pos = 0;
+
+		for ( SizeClass sc: classes ){
+
+			for ( int i=0;i<sc.stat_names.length;i++){
+
+				String	name = sc.stat_names[i];
+
+				defs[pos++] = new String[]{ name, i<2||i==4?CoreStats.CUMULATIVE:CoreStats.POINT };
+
+				types.add( name );
+			}
+		}
+
+		CoreStats.addStatsDefinitions( defs );
+
+		CoreStats.registerProvider(
+			types,
+			new CoreStatsProvider()
+			{
+				@Override
+				public void
+				updateStats(
+					Set<String>				types,
+					Map<String, Object>		values )
+				{
+					for ( SizeClass sc: classes ){
+
+						long[]	stats = sc.getStats();
+
+						for ( int i=0;i<stats.length;i++){
+
+							String	name = sc.stat_names[i];
+
+							if ( types.contains( name )){
+
+								values.put( name, stats[i] );
+							}
+						}
+					}
+				}
+			});
+	}
+
+	void
+	generateEvidence(
+		IndentWriter	writer )
+	{
+		writer.println( "DirectByteBuffer Pool (thread cached)" );
+
+		try{
+			writer.indent();
+
+			for ( SizeClass sc: classes ){
+
+				long[]	stats = sc.getStats();
+
+				if ( stats[0] == 0 ){
+
+					continue;
+				}
+
+				writer.println(
+					sc.size + ": alloc=" + stats[0] + ", free=" + stats[1] + ", in use=" + stats[2] +
+					", max in use=" + stats[3] + ", central=" + stats[4] + ", central free=" + sc.central_count.get());
+			}
+		}finally{
+
+			writer.exdent();
+		}
+	}
+
+	private class
+	SizeClass
+	{
+		final int		index;
+		final int		size;
+		final boolean	is_slice;
+		final int		thread_cache_max;
+
+		final String[]	stat_names;
+
+		final ConcurrentLinkedQueue<ByteBuffer>	central		= new ConcurrentLinkedQueue<>();
+		final AtomicInteger						central_count	= new AtomicInteger();
+
+		final AtomicLong	alloc_count		= new AtomicLong();
+		final AtomicLong	free_count		= new AtomicLong();
+		final AtomicLong	in_use			= new AtomicLong();
+		final AtomicLong	in_use_max		= new AtomicLong();
+		final AtomicLong	central_allocs	= new AtomicLong();
+
+		SizeClass(
+			int		_index,
+			int		_size )
+		{
+			index		= _index;
+			size		= _size;
+			is_slice	= size < SLICE_CHUNK_SIZE;
+
+			thread_cache_max = Math.min( THREAD_CACHE_MAX_ENTRIES, THREAD_CACHE_CLASS_BYTES/size );
+
+			stat_names = new String[]{
+				CoreStats.ST_MEMORY_DBB_ALLOC_COUNT + "." + size,
+				CoreStats.ST_MEMORY_DBB_FREE_COUNT + "." + size,
+				CoreStats.ST_MEMORY_DBB_IN_USE + "." + size,
+				CoreStats.ST_MEMORY_DBB_IN_USE_MAX + "." + size,
+				CoreStats.ST_MEMORY_DBB_CENTRAL_COUNT + "." + size,
+			};
+		}
+
+		void
+		allocated()
+		{
+			alloc_count.incrementAndGet();
+
+			long	now = in_use.incrementAndGet();
+
+			while( true ){
+
+				long	max = in_use_max.get();
+
+				if ( now <= max || in_use_max.compareAndSet( max, now )){
+
+					break;
+				}
+			}
+		}
+
+		void
+		freed()
+		{
+			free_count.incrementAndGet();
+
+			in_use.decrementAndGet();
+		}
+
+			/**
+			 * Moves up to max buffers from the central list into the target array
+			 * @return number moved
+			 */
+
+		int
+		takeCentral(
+			ByteBuffer[]	target,
+			int				max )
+		{
+			central_allocs.incrementAndGet();
+
+			int	num = 0;
+
+			while( num < max ){
+
+				ByteBuffer	b = central.poll();
+
+				if ( b == null ){
+
+					break;
+				}
+
+				central_count.decrementAndGet();
+
+				target[num++] = b;
+			}
+
+			if ( num == 0 ){
+
+				num = allocateNew( target, max );
+			}
+
+			return( num );
+		}
+
+		private int
+		allocateNew(
+			ByteBuffer[]	target,
+			int				max )
+		{
+			if ( !is_slice ){
+
+				target[0] = allocateDirect( size );
+
+				return( 1 );
+			}
+
+			ByteBuffer	chunk = allocateDirect( SLICE_CHUNK_SIZE );
+
+			int	count = SLICE_CHUNK_SIZE / size;
+
+			int	num = 0;
+
+			for ( int i=0;i<count;i++){
+
+				chunk.limit((i+1)*size );
+				chunk.position( i*size );
+
+				ByteBuffer	slice = chunk.slice();
+
+				if ( num < max ){
+
+					target[num++] = slice;
+
+				}else{
+
+					putCentral( slice );
+				}
+			}
+
+			return( num );
+		}
+
+		void
+		putCentral(
+			ByteBuffer	b )
+		{
+			central.offer( b );
+
+			central_count.incrementAndGet();
+		}
+
+		void
+		trimCentral(
+			int		target )
+		{
+			while( central_count.get() > target ){
+
+				if ( central.poll() == null ){
+
+					break;
+				}
+
+				central_count.decrementAndGet();
+			}
+		}
+
+		void
+		clearCentral()
+		{
+			trimCentral( 0 );
+		}
+
+		long[]
+		getStats()
+		{
+			return( new long[]{ alloc_count.get(), free_count.get(), in_use.get(), in_use_max.get(), central_allocs.get() });
+		}
+	}
+
+	private class
+	ThreadCache
+	{
+		private final ByteBuffer[][]	free_lists	= new ByteBuffer[classes.length][];
+		private final int[]				free_counts	= new int[classes.length];
+
+		private int		generation	= flush_generation;
+
+		private void
+		checkFlush()
+		{
+			int	current = flush_generation;
+
+			if ( generation == current ){
+
+				return;
+			}
+
+			generation = current;
+
+			for ( int i=0;i<free_lists.length;i++){
+
+				ByteBuffer[]	list = free_lists[i];
+
+				int	count = free_counts[i];
+
+				for ( int j=0;j<count;j++){
+
+					classes[i].putCentral( list[j] );
+
+					list[j] = null;
+				}
+
+				free_counts[i] = 0;
+			}
+		}
+
+		ByteBuffer
+		allocate(
+			SizeClass	sc )
+		{
+			checkFlush();
+
+			int	index = sc.index;
+
+			int	max = sc.thread_cache_max;
+
+			if ( max == 0 ){
+
+					// large buffers aren't cached per-thread
+
+				ByteBuffer[]	temp = new ByteBuffer[1];
+
+				sc.takeCentral( temp, 1 );
+
+				return( temp[0] );
+			}
+
+			ByteBuffer[]	list = free_lists[index];
+
+			if ( list == null ){
+
+				list = free_lists[index] = new ByteBuffer[max];
+			}
+
+			int	count = free_counts[index];
+
+			if ( count == 0 ){
+
+					// refill half the cache in one go
+
+				count = sc.takeCentral( list, Math.max( 1, max/2 ));
+			}
+
+			count--;
+
+			ByteBuffer	b = list[count];
+
+			list[count] = null;
+
+			free_counts[index] = count;
+
+			return( b );
+		}
+
+		void
+		free(
+			SizeClass	sc,
+			ByteBuffer	buffer )
+		{
+			checkFlush();
+
+			int	index = sc.index;
+
+			int	max = sc.thread_cache_max;
+
+			if ( max == 0 ){
+
+				sc.putCentral( buffer );
+
+				return;
+			}
+
+			ByteBuffer[]	list = free_lists[index];
+
+			if ( list == null ){
+
+				list = free_lists[index] = new ByteBuffer[max];
+			}
+
+			int	count = free_counts[index];
+
+			if ( count == max ){
+
+					// cache full, flush the older half to the central list
+
+				int	flush = Math.max( 1, max/2 );
+
+				for ( int i=0;i<flush;i++){
+
+					sc.putCentral( list[i] );
+				}
+
+				System.arraycopy( list, flush, list, 0, count - flush );
+
+				count -= flush;
+
+				Arrays.fill( list, count, max, null );
+			}
+
+			list[count++] = buffer;
+
+			free_counts[index] = count;
+		}
+	}
+}
@@ -0,0 +1,395 @@
+/*
+ * Copyright (C) Bigly Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+
+package com.biglybt.core.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.*;
+
+import com.biglybt.core.diskmanager.file.impl.FMFileAccess.FileAccessor;
+
+/**
+ * A region of a file that is written straight to a channel with FileChannel.transferTo
+ * instead of being read into a DirectByteBuffer first. Regions of the same file share
+ * a read-only channel which is closed once it has been idle for a while, or explicitly
+ * when the owning file is closed so we don't hold on to files that are about to be
+ * moved or deleted.
+ */
+
+public class
+DirectFileRegion
+{
+	private static final int	IDLE_CLOSE_MILLIS	= 10*1000;
+
+	private static final Map<File,SharedChannel>	channels = new HashMap<>();
+
+	private static final AEMonitor	class_mon	= new AEMonitor( "DirectFileRegion" );
+
+	private static TimerEventPeriodic	idle_timer;
+
+	private static long	total_created;
+	private static long	total_transferred;
+
+	static{
+		AEDiagnostics.addEvidenceGenerator(
+			new AEDiagnosticsEvidenceGenerator()
+			{
+				@Override
+				public void
+				generate(
+					IndentWriter		writer )
+				{
+					generateEvidence( writer );
+				}
+			});
+	}
+
+		/**
+		 * @return the region or null if the file couldn't be opened
+		 */
+
+	public static DirectFileRegion
+	create(
+		File		file,
+		long		position,
+		int			length )
+	{
+		SharedChannel	channel = acquire( file );
+
+		if ( channel == null ){
+
+			return( null );
+		}
+
+		return( new DirectFileRegion( channel, position, length ));
+	}
+
+	private static SharedChannel
+	acquire(
+		File		file )
+	{
+		try{
+			class_mon.enter();
+
+			SharedChannel	channel = channels.get( file );
+
+			if ( channel == null ){
+
+				FileAccessor	fa = FileUtil.newFileAccessor( file, "r", false );
+
+				channel = new SharedChannel( fa );
+
+				channels.put( file, channel );
+
+				if ( idle_timer == null ){
+
+					idle_timer =
+						SimpleTimer.addPeriodicEvent(
+							"DirectFileRegion:idle",
+							IDLE_CLOSE_MILLIS/2,
+							new TimerEventPerformer()
+							{
+								@Override
+								public void
+								perform(
+									TimerEvent	event )
+								{
+									closeIdleChannels();
+								}
+							});
+				}
+			}
+
+			channel.ref_count++;
+
+			total_created++;
+
+			return( channel );
+
+		}catch( Throwable e ){
+
+			return( null );
+
+		}finally{
+
+			class_mon.exit();
+		}
+	}
+
+	private static void
+	release(
+		SharedChannel	channel )
+	{
+		try{
+			class_mon.enter();
+
+			channel.ref_count--;
+
+			channel.last_used = SystemTime.getMonotonousTime();
+
+			if ( channel.ref_count == 0 && channel.close_pending ){
+
+				channel.close();
+			}
+		}finally{
+
+			class_mon.exit();
+		}
+	}
+
+	static void
+	closeIdleChannels()
+	{
+		try{
+			class_mon.enter();
+
+			long	now = SystemTime.getMonotonousTime();
+
+			Iterator<SharedChannel>	it = channels.values().iterator();
+
+			while( it.hasNext()){
+
+				SharedChannel	channel = it.next();
+
+				if ( channel.ref_count == 0 && now - channel.last_used >= IDLE_CLOSE_MILLIS ){
+
+					it.remove();
+
+					channel.close();
+				}
+			}
+
+			if ( channels.isEmpty() && idle_timer != null ){
+
+				idle_timer.cancel();
+
+				idle_timer = null;
+			}
+		}finally{
+
+			class_mon.exit();
+		}
+	}
+
+		/**
+		 * Stops regions being created against the file and closes its channel as soon as any
+		 * regions in progress have completed
+		 */
+
+	public static void
+	closeChannels(
+		File		file )
+	{
+		try{
+			class_mon.enter();
+
+			if ( channels.isEmpty()){
+
+				return;
+			}
+
+			SharedChannel	channel = channels.remove( file );
+
+			if ( channel != null ){
+
+				if ( channel.ref_count == 0 ){
+
+					channel.close();
+
+				}else{
+
+					channel.close_pending = true;
+				}
+			}
+		}finally{
+
+			class_mon.exit();
+		}
+	}
+
+	static void
+	generateEvidence(
+		IndentWriter	writer )
+	{
+		writer.println( "Direct File Regions" );
+
+		try{
+			writer.indent();
+
+			try{
+				class_mon.enter();
+
+				int	active = 0;
+
+				for ( SharedChannel channel: channels.values()){
+
+					active += channel.ref_count;
+				}
+
+				writer.println(
+					"channels=" + channels.size() + ", active regions=" + active +
+					", created=" + total_created + ", transferred=" + DisplayFormatters.formatByteCountToKiBEtc( total_transferred ));
+
+			}finally{
+
+				class_mon.exit();
+			}
+		}finally{
+
+			writer.exdent();
+		}
+	}
+
+	private final SharedChannel		channel;
+	private final long				position;
+	private final int				length;
+
+	private int			done;
+	private boolean		destroyed;
+
+	private
+	DirectFileRegion(
+		SharedChannel	_channel,
+		long			_position,
+		int				_length )
+	{
+		channel		= _channel;
+		position	= _position;
+		length		= _length;
+	}
+
+	public int
+	getLength()
+	{
+		return( length );
+	}
+
+		/**
+		 * @return number of bytes already transferred
+		 */
+
+	public int
+	getPosition()
+	{
+		return( done );
+	}
+
+	public int
+	getRemaining()
+	{
+		return( length - done );
+	}
+
+	public boolean
+	hasRemaining()
+	{
+		return( done < length );
+	}
+
+	public long
+	transferTo(
+		WritableByteChannel		target,
+		long					max_bytes )
+
+		throws IOException
+	{
+		if ( destroyed ){
+
+			throw( new IOException( "region destroyed" ));
+		}
+
+		long	to_transfer = Math.min( length - done, max_bytes );
+
+		if ( to_transfer <= 0 ){
+
+			return( 0 );
+		}
+
+		FileChannel	fc = channel.fa.getChannel();
+
+		long	written = fc.transferTo( position + done, to_transfer, target );
+
+		if ( written == 0 && fc.size() < position + length ){
+
+				// transferTo just returns 0 beyond the end of file, don't stall forever
+
+			throw( new IOException( "file truncated" ));
+		}
+
+		done += written;
+
+		try{
+			class_mon.enter();
+
+			total_transferred += written;
+
+		}finally{
+
+			class_mon.exit();
+		}
+
+		return( written );
+	}
+
+	public void
+	destroy()
+	{
+		synchronized( this ){
+
+			if ( destroyed ){
+
+				return;
+			}
+
+			destroyed = true;
+		}
+
+		release( channel );
+	}
+
+	private static class
+	SharedChannel
+	{
+		final FileAccessor		fa;
+
+		int			ref_count;
+		long		last_used;
+		boolean		close_pending;
+
+		SharedChannel(
+			FileAccessor	_fa )
+		{
+			fa		= _fa;
+		}
+
+		void
+		close()
+		{
+			try{
+				fa.close();
+
+			}catch( Throwable e ){
+
+				Debug.printStackTrace( e );
+			}
+		}
+	}
+}
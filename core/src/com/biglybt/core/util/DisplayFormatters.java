@@ -808,6 +808,24 @@ DisplayFormatters
   		return "";
 	}
 
+		/**
+		 * Recent hashing throughput, shared by all downloads that are being checked
+		 * @return e.g. " @ 1.20 GB/s, 150 MB/s/core" or "" if nothing is being hashed
+		 */
+
+	private static String
+	formatHashRate()
+	{
+		long[] rates = ConcurrentHasher.getSingleton().getThroughput();
+
+		if ( rates[0] <= 0 ){
+
+			return( "" );
+		}
+
+		return( " @ " + formatByteCountToKiBEtcPerSec( rates[0] ) + ", " + formatByteCountToKiBEtcPerSec( rates[1] ) + "/core" );
+	}
+
 	public static String
 	formatDownloadStatus(
 		DownloadManager		manager )
@@ -883,7 +901,7 @@ DisplayFormatters
 						if ( done != -1 ){
 
 							// tmp = ManagerItem_seeding + " + " + ManagerItem_checking + ": "	+ formatPercentFromThousands(done);
-							tmp = formatPercentFromThousands(done) + " " + ManagerItem_checking + "; " + ManagerItem_seeding;
+							tmp = formatPercentFromThousands(done) + " " + ManagerItem_checking + formatHashRate() + "; " + ManagerItem_seeding;
 						}
 					}
 				}
@@ -958,7 +976,7 @@ DisplayFormatters
 			}
 			case DownloadManager.STATE_CHECKING:
 				tmp = ManagerItem_checking + ": "
-						+ formatPercentFromThousands(manager.getStats().getCompleted());
+						+ formatPercentFromThousands(manager.getStats().getCompleted()) + formatHashRate();
 				break;
 
 			case DownloadManager.STATE_FINISHING:
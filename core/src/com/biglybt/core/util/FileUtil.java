@@ -64,6 +64,9 @@ public class FileUtil {
 
 
   private static final int	RESERVED_FILE_HANDLE_COUNT	= 4;
+
+  private static final int	RESILIENT_FILE_ARRAY_DECODE_MAX	= 16*1024*1024;
+
   private static boolean    first_reservation		= true;
   private static boolean	is_my_lock_file			= false;
   private static final List		reserved_file_handles 	= new ArrayList();
@@ -1480,7 +1483,49 @@ public class FileUtil {
   				decoder.setRecoveryMode( true );
   			}
 
-	    	Map	res = decoder.decodeStream(bin, !skip_key_intern);
+	    	Map	res;
+
+	    	long	file_length = file.length();
+
+	    	if ( file_length <= RESILIENT_FILE_ARRAY_DECODE_MAX ){
+
+	    			// decoding from an array avoids the per-byte mark/reset overhead of the
+	    			// buffered stream which dominates for the larger config files
+
+	    		byte[]	data = new byte[(int)file_length];
+
+	    		int	pos = 0;
+
+	    		while( pos < data.length ){
+
+	    			int	len = bin.read( data, pos, data.length - pos );
+
+	    			if ( len <= 0 ){
+
+	    				break;
+	    			}
+
+	    			pos += len;
+	    		}
+
+	    		if ( pos == data.length && bin.read() == -1 ){
+
+	    			res = decoder.decodeByteArray( data, 0, pos, !skip_key_intern );
+
+	    		}else{
+
+	    				// changed length under us, fall back to reading it as a stream
+
+	    			bin.close();
+
+	    			bin = new BufferedInputStream( newFileInputStream(file), 16384 );
+
+	    			res = decoder.decodeStream(bin, !skip_key_intern);
+	    		}
+	    	}else{
+
+	    		res = decoder.decodeStream(bin, !skip_key_intern);
+	    	}
 
 	    	if ( using_backup && !recovery_mode ){
 
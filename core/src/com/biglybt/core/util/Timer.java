@@ -34,6 +34,13 @@ public class Timer
 	implements	SystemTime.ChangeListener
 {
 	private static final boolean DEBUG_TIMERS = true;
+
+		// periodic events with the same frequency can be put on a common schedule so they fire together.
+		// Off by default as an event's first run (and the run after a reschedule) can then be anywhere
+		// from half to one and a half periods away
+
+	private static final boolean COALESCE_PERIODIC = System.getProperty( "az.timer.coalesce.periodic", "0" ).equals( "1" );
+
 	private static ArrayList<WeakReference<Timer>> timers = null;
 	static final AEMonitor timers_mon = new AEMonitor("timers list");
 
@@ -42,7 +49,11 @@ public class Timer
 	
 	private ThreadPoolParent<TimerEvent>	thread_pool;
 
-	private Set<TimerEvent>	events = new TreeSet<>();
+	private final TimerWheel	events = new TimerWheel( SystemTime.getCurrentTime());
+
+		// frequency -> a time on that frequency's schedule
+
+	private final Map<Long,Long>	periodic_anchors = new HashMap<>();
 
 	private long	unique_id_next	= 0;
 
@@ -57,6 +68,18 @@ public class Timer
 	
 	private AEThread2		current_thread;
 	private DelayedEvent	current_wakeup;
+
+		// dispatch latency: 'late' is from when the event was due to handing it to the thread pool,
+		// 'queue' is from there to it starting to run
+
+	private final Object	stats_lock = new Object();
+
+	private long	dispatch_count;
+	private long	dispatch_late_total;
+	private long	dispatch_late_max;
+	private long	dispatch_late_over_second;
+	private long	dispatch_queue_total;
+	private long	dispatch_queue_max;
 	
 	public
 	Timer(
@@ -138,7 +161,7 @@ public class Timer
 			
 		}else{
 			
-			TimerEvent ev = events.iterator().next();
+			TimerEvent ev = events.getFirst();
 		
 			long lag = SystemTime.getCurrentTime()-ev.getWhen();
 		
@@ -162,26 +185,16 @@ public class Timer
 	public synchronized List<TimerEvent>
 	getEvents()
 	{
-		return(new ArrayList<>(events));
+		return( events.getSortedEvents());
 	}
 	
 	public synchronized List<TimerEvent>
 	getEvents(
 		long	up_to_when )
 	{
-		List<TimerEvent>	result = new ArrayList<>( events.size());
-				
-		for ( TimerEvent ev: events ){
-			
-			if ( ev.getWhen() < up_to_when ){
-				
-				result.add( ev );
-				
-			}else{
-				
-				break;
-			}
-		}
+		List<TimerEvent>	result = events.getEvents( up_to_when );
+		
+		Collections.sort( result );
 		
 		return( result );
 	}
@@ -197,19 +210,7 @@ public class Timer
 	getEventCount(
 		long	up_to_when )
 	{
-		int	result = 0;
-		
-		for ( TimerEvent ev: events ){
-			
-			if ( ev.getWhen() >= up_to_when ){
-			
-				break;
-			}
-			
-			result++;
-		}
-		
-		return( result );
+		return( events.getEvents( up_to_when ).size());
 	}
 	
 	public void
@@ -313,7 +314,9 @@ public class Timer
 
 						long	now = SystemTime.getCurrentTime();
 
-						TimerEvent	next_event = (TimerEvent)events.iterator().next();
+						events.advance( now );
+
+						TimerEvent	next_event = events.getFirst();
 
 						long	when = next_event.getWhen();
 
@@ -378,9 +381,9 @@ public class Timer
 
 					long	now = SystemTime.getCurrentTime();
 
-					Iterator<TimerEvent>	it = events.iterator();
+					events.advance( now );
 
-					TimerEvent	next_event = it.next();
+					TimerEvent	next_event = events.getFirst();
 
 					long rem = next_event.getWhen() - now;
 
@@ -388,7 +391,9 @@ public class Timer
 
 						event_to_run = next_event;
 
-						it.remove();
+						events.remove( next_event );
+
+						eventDispatched( -rem );
 
 						/*
 						if ( rem < -100 ){
@@ -424,6 +429,122 @@ public class Timer
 	{
 		thread_pool.runTask( event );
 	}
+
+	private void
+	eventDispatched(
+		long		late )
+	{
+		if ( late < 0 ){
+
+			late = 0;
+		}
+
+		synchronized( stats_lock ){
+
+			dispatch_count++;
+
+			dispatch_late_total += late;
+
+			if ( late > dispatch_late_max ){
+
+				dispatch_late_max = late;
+			}
+
+			if ( late > 1000 ){
+
+				dispatch_late_over_second++;
+			}
+		}
+	}
+
+	protected void
+	eventStarted(
+		TimerEvent		event )
+	{
+		long	exec_start = event.getExecutionStartMonoTime();
+
+		if ( exec_start == -1 ){
+
+			return;
+		}
+
+		long	queued = SystemTime.getMonotonousTime() - exec_start;
+
+		synchronized( stats_lock ){
+
+			dispatch_queue_total += queued;
+
+			if ( queued > dispatch_queue_max ){
+
+				dispatch_queue_max = queued;
+			}
+		}
+	}
+
+	protected String
+	getDispatchStats()
+	{
+		synchronized( stats_lock ){
+
+			long	count = Math.max( 1, dispatch_count );
+
+			return( "dispatched=" + dispatch_count +
+					", late avg=" + ( dispatch_late_total/count ) + "ms max=" + dispatch_late_max + "ms >1s=" + dispatch_late_over_second +
+					", queue avg=" + ( dispatch_queue_total/count ) + "ms max=" + dispatch_queue_max + "ms" );
+		}
+	}
+
+		/**
+		 * Time for a periodic event's next run, normally 'frequency' from now. When coalescing this
+		 * is moved to the nearest point on the schedule shared by all periodic events with the same
+		 * frequency, so consecutive runs are between half and one and a half periods apart
+		 */
+
+	protected synchronized long
+	getPeriodicWhen(
+		long		frequency,
+		boolean		absolute,
+		long		now )
+	{
+		long	when = now + frequency;
+
+		if ( !COALESCE_PERIODIC || absolute || frequency < 2*SystemTime.TIME_GRANULARITY_MILLIS ){
+
+			return( when );
+		}
+
+		Long	anchor = periodic_anchors.get( frequency );
+
+		if ( anchor == null ){
+
+			periodic_anchors.put( frequency, when );
+
+			return( when );
+		}
+
+		long	offset = Math.floorMod( when - anchor, frequency );
+
+		if ( offset < frequency/2 ){
+
+			when -= offset;
+
+		}else{
+
+			when += frequency - offset;
+		}
+
+		return( when );
+	}
+
+	private void
+	shiftPeriodicAnchors(
+		long		offset )
+	{
+		for ( Map.Entry<Long,Long> entry: periodic_anchors.entrySet()){
+
+			entry.setValue( entry.getValue() + offset );
+		}
+	}
 	
 	@Override
 	public void
@@ -437,9 +558,7 @@ public class Timer
 
 			synchronized( this ){
 
-				Iterator<TimerEvent>	it = events.iterator();
-
-				List<TimerEvent>	updated_events = new ArrayList<>(events.size());
+				Iterator<TimerEvent>	it = events.getEvents().iterator();
 
 				while (it.hasNext()){
 
@@ -485,15 +604,13 @@ public class Timer
 							event.setWhen( new_when );
 						}
 					}
-
-					updated_events.add( event );
 				}
 
-					// resort - we have to use an alternative list of events as input because if we just throw the
-					// treeset in the constructor optimises things under the assumption that the original set
-					// was correctly sorted...
+					// times have changed under the wheel, re-queue everything
 
-				events = new TreeSet<>(updated_events);
+				events.rebuild( current_time );
+
+				shiftPeriodicAnchors( offset );
 			}
 		}
 	}
@@ -513,7 +630,7 @@ public class Timer
 
 			synchronized( this ){
 
-				Iterator<TimerEvent>	it = events.iterator();
+				Iterator<TimerEvent>	it = events.getEvents().iterator();
 
 				boolean	updated = false;
 
@@ -553,7 +670,7 @@ public class Timer
 
 				if ( updated ){
 
-					events = new TreeSet<>(new ArrayList<>(events));
+					events.rebuild( current_time );
 				}
 
 				// must have this notify here as the scheduling code uses the current time to calculate
@@ -572,11 +689,7 @@ public class Timer
 
 		synchronized (this) {
 
-				// as we're adjusting all events by the same amount the ordering remains valid
-
-			Iterator<TimerEvent> it = events.iterator();
-
-			boolean resort = false;
+			Iterator<TimerEvent> it = events.getEvents().iterator();
 
 			while (it.hasNext()) {
 
@@ -591,8 +704,6 @@ public class Timer
 
 					// Debug.out( "Ignoring wrap around for " + event.getName());
 
-					resort = true;
-
 				}else{
 
 					// System.out.println( "    adjusted: " + old_when + " -> " + new_when );
@@ -601,10 +712,9 @@ public class Timer
 				}
 			}
 
-			if ( resort ){
+			events.rebuild( SystemTime.getCurrentTime());
 
-				events = new TreeSet<>(new ArrayList<>(events));
-			}
+			shiftPeriodicAnchors( offset );
 
 			wakeup();
 		}
@@ -776,9 +886,7 @@ public class Timer
 	cancelEvent(
 		TimerEvent	event )
 	{
-		if ( events.contains( event )){
-
-			events.remove( event );
+		if ( events.remove( event )){
 
 			// System.out.println( "event cancelled (" + event.getWhen() + ") - queue = " + events.size());
 
@@ -830,11 +938,7 @@ public class Timer
 	{
 		System.out.println( "Timer '" + thread_pool.getName() + "': dump" );
 
-		Iterator<TimerEvent>	it = events.iterator();
-
-		while(it.hasNext()){
-
-			TimerEvent	ev = it.next();
+		for ( TimerEvent ev: events.getSortedEvents()){
 
 			System.out.println( "\t" + ev.getString());
 		}
@@ -869,6 +973,8 @@ public class Timer
 							lines.add(timer.thread_pool.getName() + ", "
 									+ events.size() + " events:");
 
+							lines.add("  " + timer.getDispatchStats());
+
 							Iterator<TimerEvent> it = events.iterator();
 							
 							while (it.hasNext()){
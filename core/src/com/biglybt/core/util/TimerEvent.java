@@ -44,6 +44,12 @@ TimerEvent
 
 	private volatile long exec_start = -1;
 
+		// owned by the Timer's wheel, under the Timer's lock
+
+	int				wheel_slot	= TimerWheel.NOT_QUEUED;
+	TimerEvent		wheel_prev;
+	TimerEvent		wheel_next;
+
 	protected
 	TimerEvent(
 		Timer					_timer,
@@ -131,6 +137,8 @@ TimerEvent
 	public void
 	runSupport()
 	{
+		timer.eventStarted( this );
+
 		performer.perform( this );
 	}
 
@@ -51,7 +51,7 @@ TimerEventPeriodic
 
 		long	 now = SystemTime.getCurrentTime();
 
-		current_event = timer.addEvent(	now, now + frequency, absolute, this );
+		current_event = timer.addEvent(	now, timer.getPeriodicWhen( frequency, absolute, now ), absolute, this );
 	}
 
 	public void
@@ -114,7 +114,7 @@ TimerEventPeriodic
 
 					long	 now = SystemTime.getCurrentTime();
 
-					current_event = timer.addEvent(name, now, now + frequency, absolute, this );
+					current_event = timer.addEvent(name, now, timer.getPeriodicWhen( frequency, absolute, now ), absolute, this );
 				}
 			}
 		}
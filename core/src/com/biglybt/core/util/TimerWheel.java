@@ -0,0 +1,465 @@
+/*
+ * Copyright (C) Bigly Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+
+package com.biglybt.core.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Hierarchical timing wheel holding a Timer's pending events. Time is in ticks of 16ms and each
+ * level has 64 slots, a slot on level L spanning 64^L ticks. An event goes on the lowest level
+ * whose 64 slot block also contains the wheel's base tick, so everything on level L is earlier than
+ * everything on level L+1 and within a level the lowest occupied slot holds the earliest events.
+ * Events beyond the top level are kept on an overflow list.
+ * <p>
+ * There's no ticking - the base is only moved forward (to at most the earliest event) when the
+ * owner asks, at which point any slot the base has moved into is cascaded down a level. Events
+ * due before the base are placed on the base's slot. Adds and removes are constant time, slots are
+ * unsorted linked lists of the events themselves and are scanned when the earliest event is needed.
+ * <p>
+ * Not thread safe, the Timer synchronizes.
+ */
+
+class
+TimerWheel
+{
+	private static final int	TICK_SHIFT	= 4;
+
+	private static final int	SLOT_BITS	= 6;
+	private static final int	SLOTS		= 1 << SLOT_BITS;
+	private static final int	LEVELS		= 6;
+
+	private static final int	OVERFLOW	= LEVELS*SLOTS;
+
+	static final int	NOT_QUEUED	= -1;
+
+	private final TimerEvent[]	slots		= new TimerEvent[ OVERFLOW + 1 ];
+	private final long[]		occupied	= new long[ LEVELS ];
+
+	private long		base_tick;
+
+	private int			size;
+
+		// cached earliest event, null when unknown (or empty)
+
+	private TimerEvent	first;
+
+	TimerWheel(
+		long		now )
+	{
+		base_tick = toTick( now );
+	}
+
+	private static long
+	toTick(
+		long		when )
+	{
+		return( when >> TICK_SHIFT );
+	}
+
+	int
+	size()
+	{
+		return( size );
+	}
+
+	boolean
+	isEmpty()
+	{
+		return( size == 0 );
+	}
+
+	void
+	add(
+		TimerEvent		event )
+	{
+		if ( event.wheel_slot != NOT_QUEUED ){
+
+			throw( new IllegalStateException( "Event already queued" ));
+		}
+
+		place( event );
+
+		if ( size == 0 ){
+
+			first = event;
+
+		}else if ( first != null && event.compareTo( first ) < 0 ){
+
+			first = event;
+		}
+
+		size++;
+	}
+
+	boolean
+	remove(
+		TimerEvent		event )
+	{
+		if ( event.wheel_slot == NOT_QUEUED ){
+
+			return( false );
+		}
+
+		unlink( event );
+
+		size--;
+
+		if ( event == first ){
+
+			first = null;
+		}
+
+		return( true );
+	}
+
+	boolean
+	contains(
+		TimerEvent		event )
+	{
+		return( event.wheel_slot != NOT_QUEUED );
+	}
+
+	TimerEvent
+	getFirst()
+	{
+		if ( size == 0 ){
+
+			return( null );
+		}
+
+		if ( first == null ){
+
+			first = findFirst();
+		}
+
+		return( first );
+	}
+
+		/**
+		 * Moves the base towards 'now', never past the earliest event, cascading events on any slots
+		 * that the base enters
+		 */
+
+	void
+	advance(
+		long		now )
+	{
+		long	target = toTick( now );
+
+		TimerEvent	ev = getFirst();
+
+		if ( ev != null ){
+
+			target = Math.min( target, toTick( ev.getWhen()));
+		}
+
+		long	old_base = base_tick;
+
+		if ( target <= old_base ){
+
+			return;
+		}
+
+		base_tick = target;
+
+		if ( ( old_base >> ( SLOT_BITS*LEVELS )) != ( target >> ( SLOT_BITS*LEVELS ))){
+
+			cascade( OVERFLOW );
+		}
+
+		for ( int level=LEVELS-1;level>=1;level-- ){
+
+			int	shift = SLOT_BITS*level;
+
+			if (( old_base >> shift ) != ( target >> shift )){
+
+				cascade( level*SLOTS + (int)(( target >> shift ) & ( SLOTS - 1 )));
+			}
+		}
+	}
+
+		/**
+		 * Unsorted, events remain queued
+		 */
+
+	List<TimerEvent>
+	getEvents()
+	{
+		List<TimerEvent>	result = new ArrayList<>( size );
+
+		for ( TimerEvent head: slots ){
+
+			TimerEvent ev = head;
+
+			while( ev != null ){
+
+				result.add( ev );
+
+				ev = ev.wheel_next;
+			}
+		}
+
+		return( result );
+	}
+
+		/**
+		 * Unsorted events due before 'up_to_when'. Occupied slots are visited in time order and the
+		 * walk stops at the first that starts after it
+		 */
+
+	List<TimerEvent>
+	getEvents(
+		long		up_to_when )
+	{
+		List<TimerEvent>	result = new ArrayList<>();
+
+		long	up_to_tick = toTick( up_to_when );
+
+		for ( int level=0;level<LEVELS;level++){
+
+			int	shift = SLOT_BITS*level;
+
+			long	block = ( base_tick >> ( shift + SLOT_BITS )) << ( shift + SLOT_BITS );
+
+			long	bits = occupied[level];
+
+			while( bits != 0 ){
+
+				int	index = Long.numberOfTrailingZeros( bits );
+
+				bits &= bits - 1;
+
+				long	slot_start = block | ((long)index << shift );
+
+					// base's slot also holds anything overdue
+
+				if ( slot_start > up_to_tick && slot_start != base_tick ){
+
+					return( result );
+				}
+
+				addEvents( slots[ level*SLOTS + index ], up_to_when, result );
+			}
+		}
+
+		addEvents( slots[ OVERFLOW ], up_to_when, result );
+
+		return( result );
+	}
+
+	private static void
+	addEvents(
+		TimerEvent			ev,
+		long				up_to_when,
+		List<TimerEvent>	result )
+	{
+		while( ev != null ){
+
+			if ( ev.getWhen() < up_to_when ){
+
+				result.add( ev );
+			}
+
+			ev = ev.wheel_next;
+		}
+	}
+
+	List<TimerEvent>
+	getSortedEvents()
+	{
+		List<TimerEvent>	result = getEvents();
+
+		Collections.sort( result );
+
+		return( result );
+	}
+
+		/**
+		 * For when event times have been changed in place, re-queues everything relative to 'now'
+		 */
+
+	void
+	rebuild(
+		long		now )
+	{
+		List<TimerEvent>	events = getEvents();
+
+		for ( TimerEvent ev: events ){
+
+			ev.wheel_slot	= NOT_QUEUED;
+			ev.wheel_next	= null;
+			ev.wheel_prev	= null;
+		}
+
+		for ( int i=0;i<slots.length;i++){
+
+			slots[i] = null;
+		}
+
+		for ( int i=0;i<LEVELS;i++){
+
+			occupied[i] = 0;
+		}
+
+		size	= 0;
+		first	= null;
+
+		base_tick = toTick( now );
+
+		for ( TimerEvent ev: events ){
+
+			add( ev );
+		}
+	}
+
+	private void
+	place(
+		TimerEvent		event )
+	{
+		long	tick = Math.max( toTick( event.getWhen()), base_tick );
+
+		long	diff = tick ^ base_tick;
+
+		int	level = diff==0?0:(( 63 - Long.numberOfLeadingZeros( diff )) / SLOT_BITS );
+
+		int	slot;
+
+		if ( level >= LEVELS ){
+
+			slot = OVERFLOW;
+
+		}else{
+
+			int	index = (int)(( tick >> ( SLOT_BITS*level )) & ( SLOTS - 1 ));
+
+			slot = level*SLOTS + index;
+
+			occupied[level] |= 1L << index;
+		}
+
+		TimerEvent	head = slots[slot];
+
+		event.wheel_slot	= slot;
+		event.wheel_prev	= null;
+		event.wheel_next	= head;
+
+		if ( head != null ){
+
+			head.wheel_prev = event;
+		}
+
+		slots[slot] = event;
+	}
+
+	private void
+	unlink(
+		TimerEvent		event )
+	{
+		int	slot = event.wheel_slot;
+
+		TimerEvent	prev = event.wheel_prev;
+		TimerEvent	next = event.wheel_next;
+
+		if ( prev == null ){
+
+			slots[slot] = next;
+
+			if ( next == null && slot != OVERFLOW ){
+
+				occupied[ slot / SLOTS ] &= ~( 1L << ( slot % SLOTS ));
+			}
+		}else{
+
+			prev.wheel_next = next;
+		}
+
+		if ( next != null ){
+
+			next.wheel_prev = prev;
+		}
+
+		event.wheel_slot	= NOT_QUEUED;
+		event.wheel_next	= null;
+		event.wheel_prev	= null;
+	}
+
+	private void
+	cascade(
+		int		slot )
+	{
+		TimerEvent	ev = slots[slot];
+
+		if ( ev == null ){
+
+			return;
+		}
+
+		slots[slot] = null;
+
+		if ( slot != OVERFLOW ){
+
+			occupied[ slot / SLOTS ] &= ~( 1L << ( slot % SLOTS ));
+		}
+
+		while( ev != null ){
+
+			TimerEvent	next = ev.wheel_next;
+
+			place( ev );
+
+			ev = next;
+		}
+	}
+
+	private TimerEvent
+	findFirst()
+	{
+		int	slot = OVERFLOW;
+
+		for ( int level=0;level<LEVELS;level++){
+
+			long	bits = occupied[level];
+
+			if ( bits != 0 ){
+
+				slot = level*SLOTS + Long.numberOfTrailingZeros( bits );
+
+				break;
+			}
+		}
+
+		TimerEvent	result = null;
+
+		TimerEvent	ev = slots[slot];
+
+		while( ev != null ){
+
+			if ( result == null || ev.compareTo( result ) < 0 ){
+
+				result = ev;
+			}
+
+			ev = ev.wheel_next;
+		}
+
+		return( result );
+	}
+}
@@ -47,6 +47,8 @@ import com.biglybt.core.logging.LogRelation;
 import com.biglybt.core.lws.LWSTorrent;
 import com.biglybt.core.proxy.AEProxyFactory;
 import com.biglybt.core.proxy.AEProxyFactory.PluginProxy;
+import com.biglybt.core.stats.CoreStats;
+import com.biglybt.core.stats.CoreStatsProvider;
 import com.biglybt.core.torrent.*;
 import com.biglybt.core.torrent.TOTorrentFactory.TorrentDataHolder;
 import com.biglybt.pif.utils.resourcedownloader.ResourceDownloader;
@@ -3408,9 +3410,32 @@ TorrentUtils
 
 	private static final int	PIECE_HASH_TIMEOUT	= 3*60*1000;
 
+	private static final int	PIECE_HASH_BUDGET_PERIOD	= 10*1000;
+
 	static final Map	torrent_delegates = new WeakHashMap();
 
+		// optional limit on the piece hashes held in memory across all torrents, least recently
+		// read are discarded first and re-read from the state file on next access
+
+	static volatile long	piece_hash_budget;
+
+	static final AtomicLong	piece_hash_load_count	= new AtomicLong();
+	static final AtomicLong	piece_hash_evict_count	= new AtomicLong();
+
 	static{
+		COConfigurationManager.addAndFireParameterListener(
+			"torrent.metadata.memory.budget.mb",
+			new ParameterListener()
+			{
+				@Override
+				public void
+				parameterChanged(
+					String name )
+				{
+					piece_hash_budget = COConfigurationManager.getIntParameter( name, 0 )*1024L*1024;
+				}
+			});
+
 		SimpleTimer.addPeriodicEvent(
 			"TorrentUtils:pieceDiscard",
 			PIECE_HASH_TIMEOUT/2,
@@ -3434,6 +3459,132 @@ TorrentUtils
 					}
 				}
 			});
+
+		SimpleTimer.addPeriodicEvent(
+			"TorrentUtils:pieceBudget",
+			PIECE_HASH_BUDGET_PERIOD,
+			new TimerEventPerformer()
+			{
+				@Override
+				public void
+				perform(
+					TimerEvent	event )
+				{
+					if ( piece_hash_budget > 0 ){
+
+						enforcePieceHashBudget();
+					}
+				}
+			});
+
+		Set<String>	types = new HashSet<>();
+
+		types.add( CoreStats.ST_TORRENT_PIECES_LOAD_COUNT );
+		types.add( CoreStats.ST_TORRENT_PIECES_EVICT_COUNT );
+		types.add( CoreStats.ST_TORRENT_PIECES_BYTES );
+
+		CoreStats.registerProvider(
+			types,
+			new CoreStatsProvider()
+			{
+				@Override
+				public void
+				updateStats(
+					Set<String>				types,
+					Map<String, Object>		values )
+				{
+					if ( types.contains( CoreStats.ST_TORRENT_PIECES_LOAD_COUNT )){
+
+						values.put( CoreStats.ST_TORRENT_PIECES_LOAD_COUNT, piece_hash_load_count.get());
+					}
+
+					if ( types.contains( CoreStats.ST_TORRENT_PIECES_EVICT_COUNT )){
+
+						values.put( CoreStats.ST_TORRENT_PIECES_EVICT_COUNT, piece_hash_evict_count.get());
+					}
+
+					if ( types.contains( CoreStats.ST_TORRENT_PIECES_BYTES )){
+
+						long	total = 0;
+
+						synchronized( torrent_delegates ){
+
+							for ( Object o: torrent_delegates.keySet()){
+
+								total += ((torrentDelegate)o).getPiecesMemory();
+							}
+						}
+
+						values.put( CoreStats.ST_TORRENT_PIECES_BYTES, total );
+					}
+				}
+			});
+	}
+
+	static void
+	enforcePieceHashBudget()
+	{
+		long	budget = piece_hash_budget;
+
+		List<torrentDelegate>	loaded = new ArrayList<>();
+
+		long	total = 0;
+
+		synchronized( torrent_delegates ){
+
+			for ( Object o: torrent_delegates.keySet()){
+
+				torrentDelegate	td = (torrentDelegate)o;
+
+				long	mem = td.getPiecesMemory();
+
+				if ( mem > 0 ){
+
+					loaded.add( td );
+
+					total += mem;
+				}
+			}
+		}
+
+		if ( total <= budget ){
+
+			return;
+		}
+
+		Collections.sort(
+			loaded,
+			new Comparator<torrentDelegate>()
+			{
+				@Override
+				public int
+				compare(
+					torrentDelegate o1,
+					torrentDelegate o2 )
+				{
+					return( Long.compare( o1.last_pieces_read_time, o2.last_pieces_read_time ));
+				}
+			});
+
+		long	now = SystemTime.getCurrentTime();
+
+		for ( torrentDelegate td: loaded ){
+
+			if ( total <= budget ){
+
+				break;
+			}
+
+			total -= td.getPiecesMemory();
+
+			td.discardPieces( now, true );
+		}
+	}
+
+	public static long
+	getPieceHashBudget()
+	{
+		return( piece_hash_budget );
 	}
 
 	static final HashSet	torrentFluffKeyset = new HashSet(2);
@@ -3477,7 +3628,7 @@ TorrentUtils
 
 		private boolean			fluff_dirty;
 
-		private long			last_pieces_read_time	= SystemTime.getCurrentTime();
+		volatile long			last_pieces_read_time	= SystemTime.getCurrentTime();
 
 		private URL							url_mod_last_pre;
 		private URL							url_mod_last_post;
@@ -3776,6 +3927,8 @@ TorrentUtils
 							// System.out.println( "clearing pieces for '" + new String(getName()) + "'");
 
 							delegate.setPieces( null );
+
+							piece_hash_evict_count.incrementAndGet();
 						}finally{
 
 							getMonitor().exit();
@@ -3860,6 +4013,8 @@ TorrentUtils
 		   			byte[][] res	= temp.getPieces();
 
 		   			delegate.setPieces( res );
+
+		   			piece_hash_load_count.incrementAndGet();
 		   		}
 
 		   		if ( do_fluff ){
@@ -3882,6 +4037,29 @@ TorrentUtils
 	   		return( new boolean[]{ do_pieces, do_fluff });
 		}
 
+			/**
+			 * @return approximate heap used by the piece hashes, 0 if they are discarded
+			 */
+
+		long
+		getPiecesMemory()
+		{
+			try{
+				byte[][]	pieces = delegate.getPieces();
+
+				if ( pieces == null || pieces.length == 0 ){
+
+					return( 0 );
+				}
+
+				return( 16 + pieces.length*( 16L + pieces[0].length + 4 ));
+
+			}catch( Throwable e ){
+
+				return( 0 );
+			}
+		}
+
 			/**
 			 * peeks the pieces, will return null if they are discarded
 			 * @return
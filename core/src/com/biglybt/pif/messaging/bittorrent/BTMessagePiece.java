@@ -42,6 +42,13 @@ public class BTMessagePiece extends MessageAdapter {
 
   public int getPieceOffset() {  return piece.getPieceOffset();  }
 
-  public ByteBuffer getPieceData() {  return piece.getPieceData().getBuffer( DirectByteBuffer.SS_EXTERNAL );  }
+  /**
+   * @return piece data, null if the data is being sent directly from file
+   */
+  public ByteBuffer getPieceData() {
+    DirectByteBuffer data = piece.getPieceData();
+
+    return data == null ? null : data.getBuffer( DirectByteBuffer.SS_EXTERNAL );
+  }
 
 }
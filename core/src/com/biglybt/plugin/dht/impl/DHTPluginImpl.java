@@ -472,7 +472,9 @@ DHTPluginImpl
 				   	",dir=" + dbv_details[DHTDBStats.VD_DIRECT_SIZE]+
 				   	",ind=" + dbv_details[DHTDBStats.VD_INDIRECT_SIZE]+
 				   	",div_f=" + dbv_details[DHTDBStats.VD_DIV_FREQ]+
-				   	",div_s=" + dbv_details[DHTDBStats.VD_DIV_SIZE] );
+				   	",div_s=" + dbv_details[DHTDBStats.VD_DIV_SIZE]+
+				   	",mem/key=" + d_stats.getMemoryPerKey()+
+				   	",persisted=" + d_stats.getPersistedSize());
 
 		DHTNATPuncher np = dht.getNATPuncher();
 
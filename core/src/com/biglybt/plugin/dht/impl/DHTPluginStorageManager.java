@@ -29,6 +29,8 @@ import java.util.*;
 
 import com.biglybt.core.config.COConfigurationManager;
 import com.biglybt.core.dht.*;
+import com.biglybt.core.dht.db.DHTDBFactory;
+import com.biglybt.core.dht.db.DHTDBValueStore;
 import com.biglybt.core.dht.impl.DHTLog;
 import com.biglybt.core.dht.transport.DHTTransportContact;
 import com.biglybt.core.dht.transport.DHTTransportValue;
@@ -62,6 +64,8 @@ DHTPluginStorageManager
 
 	public static final int			MAX_STORAGE_KEYS	= 65536;
 
+	private static final long		VALUE_STORE_MAX_BYTES	= 16*1024*1024;
+
 	private int				network;
 	private DHTLogger		log;
 	private File			data_dir;
@@ -1700,6 +1704,18 @@ DHTPluginStorageManager
 		}
 	}
 
+	@Override
+	public DHTDBValueStore
+	getValueStore()
+	{
+		if ( !COConfigurationManager.getBooleanParameter( "dht.values.persist.enable" )){
+
+			return( null );
+		}
+
+		return( DHTDBFactory.createValueStore( FileUtil.newFile( data_dir, "values.dat" ), VALUE_STORE_MAX_BYTES ));
+	}
+
 	@Override
 	public byte[]
 	getStorageForKey(
@@ -317,6 +317,18 @@ DefaultRankCalculator
 	compareToIgnoreStopped(
 		DefaultRankCalculator	other );
 	
+		/**
+		 * Captures the current values of the inputs to the ordering
+		 * @return true if any of them have changed since the last call
+		 */
+	
+	public boolean
+	updateSortKey();
+	
+	public int
+	compareSortKey(
+		DefaultRankCalculator	other );
+	
 	public Object
 	getUserData(
 		Object		key );
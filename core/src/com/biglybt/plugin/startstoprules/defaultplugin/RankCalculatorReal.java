@@ -236,6 +236,20 @@ RankCalculatorReal
 	int lastModifiedShareRatio = 0;
 	boolean lastScrapeResultOk = false;
 
+	// snapshot of the above (and download state) used by the process cycle sort so that only
+	// downloads whose inputs have changed need to move
+	
+	private boolean	sortKeyValid;
+	private boolean	sortStopped;
+	private boolean	sortFP;
+	private boolean	sortComplete;
+	private int		sortRank;
+	private int		sortPeers;
+	private int		sortShareRatio;
+	private int		sortPosition;
+	private int		sortRankType;
+	private boolean	sortPreferLarger;
+
 	private RankCalculatorSlotReserver	reservedSlot;
 	private long	lastActivationAnnounce;
 	
@@ -449,6 +463,109 @@ RankCalculatorReal
 		return dl.getPosition() - dlData.dl.getPosition();
 	}
 	
+	@Override
+	public boolean
+	updateSortKey()
+	{
+		int state = dl.getState();
+		
+		boolean	stopped		= state == Download.ST_STOPPED || state == Download.ST_ERROR;
+		boolean	complete	= dl.isComplete();
+		int		rank		= dl.getSeedingRank().getRank();
+		int		position	= dl.getPosition();
+		
+		if ( 	sortKeyValid &&
+				sortStopped == stopped &&
+				sortFP == bIsFirstPriority &&
+				sortComplete == complete &&
+				sortRank == rank &&
+				sortPeers == lastModifiedScrapeResultPeers &&
+				sortShareRatio == lastModifiedShareRatio &&
+				sortPosition == position &&
+				sortRankType == iRankType &&
+				sortPreferLarger == bPreferLargerSwarms ){
+			
+			return( false );
+		}
+		
+		sortKeyValid		= true;
+		sortStopped			= stopped;
+		sortFP				= bIsFirstPriority;
+		sortComplete		= complete;
+		sortRank			= rank;
+		sortPeers			= lastModifiedScrapeResultPeers;
+		sortShareRatio		= lastModifiedShareRatio;
+		sortPosition		= position;
+		sortRankType		= iRankType;
+		sortPreferLarger	= bPreferLargerSwarms;
+		
+		return( true );
+	}
+	
+		/**
+		 * Same ordering as compareTo but against the values captured by the last updateSortKey
+		 */
+	
+	@Override
+	public int
+	compareSortKey(
+		DefaultRankCalculator obj )
+	{
+		if ( !( obj instanceof RankCalculatorReal )){
+			
+			return( 1 );
+		}
+		
+		RankCalculatorReal dlData = (RankCalculatorReal)obj;
+		
+		if ( sortStopped && dlData.sortStopped ){
+			return( sortPosition - dlData.sortPosition );
+		}else if ( sortStopped ){
+			return( 1 );
+		}else if ( dlData.sortStopped ){
+			return( -1 );
+		}
+		
+		if ( dlData.sortFP != sortFP ){
+			return( sortFP?-1:1 );
+		}
+
+		if ( dlData.sortComplete != sortComplete ){
+			return( sortComplete?1:-1 );
+		}
+
+		if ( sortRankType == StartStopRulesDefaultPlugin.RANK_NONE ){
+			return( sortPosition - dlData.sortPosition );
+		}
+
+		int value = dlData.sortRank - sortRank;
+		
+		if ( value != 0 ){
+			return( value );
+		}
+		
+		if ( sortRankType != StartStopRulesDefaultPlugin.RANK_TIMED ){
+			
+			if ( sortPreferLarger ){
+				value = dlData.sortPeers - sortPeers;
+			}else{
+				value = sortPeers - dlData.sortPeers;
+			}
+			
+			if ( value != 0 ){
+				return( value );
+			}
+
+			value = sortShareRatio - dlData.sortShareRatio;
+			
+			if ( value != 0 ){
+				return( value );
+			}
+		}
+
+		return( sortPosition - dlData.sortPosition );
+	}
+	
 	public Object
 	getRelatedTo()
 	{
@@ -2331,7 +2448,8 @@ RankCalculatorReal
 						(verbose||downloadSR.getLightSeedEligibility()!=0?"":(ls_str+"\n"))+ 
 						(verbose||reservedSlot==null?"":(has_slot+"\n"))+ "\n" +
 						"TRACE:\n" + sTrace +
-						"  Free Slots: " + rules.getSlotStatus();
+						"  Free Slots: " + rules.getSlotStatus() + "\n" +
+						"  Last Cycle: " + rules.getProcessStatus();
 			}else{
 				tt = null;
 			}
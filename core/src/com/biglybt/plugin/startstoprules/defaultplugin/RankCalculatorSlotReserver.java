@@ -62,6 +62,21 @@ RankCalculatorSlotReserver
 		}
 	}
 	
+	@Override
+	public boolean
+	updateSortKey()
+	{
+		return( false );
+	}
+	
+	@Override
+	public int
+	compareSortKey(
+		DefaultRankCalculator obj )
+	{
+		return( compareTo( obj ));
+	}
+	
 	public int
 	getState()
 	{
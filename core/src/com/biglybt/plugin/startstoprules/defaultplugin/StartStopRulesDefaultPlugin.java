@@ -243,6 +243,8 @@ public class StartStopRulesDefaultPlugin implements Plugin,
 	
 	private String slotStatus = "";
 	
+	private String processStatus = "";
+	
 	public static void
 	load(
 		PluginInterface		plugin_interface )
@@ -1643,6 +1645,27 @@ public class StartStopRulesDefaultPlugin implements Plugin,
 
 	private long processTotalZeroRecalcs = 0;
 
+	private long processTotalTouched = 0;
+
+	private long processTotalSorts = 0;
+
+	private int processLastTouched = 0;
+	
+	private DefaultRankCalculator[] processLastSorted;
+	
+	private static final Comparator<DefaultRankCalculator> SORT_KEY_COMPARATOR =
+		new Comparator<DefaultRankCalculator>()
+		{
+			@Override
+			public int
+			compare(
+				DefaultRankCalculator d1,
+				DefaultRankCalculator d2 )
+			{
+				return( d1.compareSortKey( d2 ));
+			}
+		};
+
 	private long lastDebugNoChangesMono = -1;
 	
 	protected void process() {
@@ -1773,20 +1796,32 @@ public class StartStopRulesDefaultPlugin implements Plugin,
 
 			// Sort: SeedingRank Desc, Position Desc
 			
-			// unfortunately the comparables aren't stable and can result in TimSort throwing a wobbly and
-			// 'general contract violated' exception. We don't really care so...
+			// the array stays in last cycle's order and is sorted against a snapshot of each download's
+			// inputs, so nothing can change under the sort (which used to upset TimSort) and with only
+			// a few downloads having moved the sort is close to linear. Nothing changed = no sort
+			
+			int touched = 0;
 			
-			for ( int i=0;i<10;i++){
+			for ( DefaultRankCalculator dlData: dlDataArray ){
 				
-				try{
-					Arrays.sort(dlDataArray);
+				if ( dlData.updateSortKey()){
 					
-					break;
-					
-				}catch( IllegalArgumentException e ){
+					touched++;
 				}
 			}
 			
+			if ( touched > 0 || dlDataArray != processLastSorted ){
+				
+				Arrays.sort( dlDataArray, SORT_KEY_COMPARATOR );
+				
+				processLastSorted = dlDataArray;
+				
+				processTotalSorts++;
+			}
+			
+			processLastTouched	= touched;
+			processTotalTouched += touched;
+			
 			ProcessVars vars = new ProcessVars();
 
 			ProcessVarsComplete	cvars = vars.comp;
@@ -2053,7 +2088,8 @@ public class StartStopRulesDefaultPlugin implements Plugin,
 				processCount++;
 				long timeTaken = (SystemTime.getMonotonousTime() - nowMono);
 				if (bDebugLog) {
-					log.log(LoggerChannel.LT_INFORMATION, "process() took " + timeTaken);
+					processStatus = timeTaken + "ms, " + processLastTouched + " of " + rankCalculatorMap.size() + " changed";
+					log.log(LoggerChannel.LT_INFORMATION, "process() took " + processStatus );
 				}
 				processTotalMS += timeTaken;
 				if (timeTaken > processMaxMS) {
@@ -3621,6 +3657,12 @@ public class StartStopRulesDefaultPlugin implements Plugin,
 		return( slotStatus );
 	}
 	
+	protected String
+	getProcessStatus()
+	{
+		return( processStatus );
+	}
+	
 	@Override
 	public void generate(IndentWriter writer) {
 		writer.println("StartStopRules Manager");
@@ -3652,6 +3694,8 @@ public class StartStopRulesDefaultPlugin implements Plugin,
 					writer.println("# process cycle with 0 recalcs: "
 							+ processTotalZeroRecalcs);
 				}
+				writer.println("Avg # changed per process cycle: "
+						+ (processTotalTouched / processCount) + "; sorts = " + processTotalSorts);
 			}
 
 		} catch (Exception e) {
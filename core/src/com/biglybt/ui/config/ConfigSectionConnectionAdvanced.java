@@ -399,6 +399,11 @@ public class ConfigSectionConnectionAdvanced
 							ICFG_NETWORK_TCP_WRITE_SELECT_MIN_TIME))
 				}));
 
+		// zero copy
+
+		add(new BooleanParameterImpl(BCFG_NETWORK_TCP_WRITE_ZERO_COPY_ENABLE,
+				"ConfigView.section.connection.advanced.zero_copy"), listSocket);
+
 		add(new ParameterGroupImpl(
 				"ConfigView.section.connection.advanced.socket.group", listSocket));
 		
@@ -167,6 +167,16 @@ public class ConfigSectionFilePerformance
 				"ConfigView.section.file.perf.cache.enable.read");
 		add(disk_cache_read, Parameter.MODE_INTERMEDIATE);
 
+		// diskmanager.perf.cache.prefetch.enable
+
+		BooleanParameterImpl disk_cache_prefetch = new BooleanParameterImpl(
+				BCFG_DISKMANAGER_PERF_CACHE_PREFETCH_ENABLE,
+				"ConfigView.section.file.perf.cache.prefetch.enable");
+		add(disk_cache_prefetch, Parameter.MODE_ADVANCED);
+		disk_cache_prefetch.setIndent(1, true);
+
+		disk_cache_read.addEnabledOnSelection(disk_cache_prefetch);
+
 		// diskmanager.perf.cache.enable.write
 
 		BooleanParameterImpl disk_cache_write = new BooleanParameterImpl(
@@ -188,8 +198,16 @@ public class ConfigSectionFilePerformance
 				"ConfigView.section.file.perf.cache.trace");
 		add(disk_cache_trace, Parameter.MODE_INTERMEDIATE);
 
+		// diskmanager.perf.cache.segments
+
+		IntParameterImpl disk_cache_segments = new IntParameterImpl(
+				ICFG_DISKMANAGER_PERF_CACHE_SEGMENTS,
+				"ConfigView.section.file.perf.cache.segments", 0, 256);
+		add(disk_cache_segments, Parameter.MODE_ADVANCED);
+
 		disk_cache.addEnabledOnSelection(cache_not_smaller_than, disk_cache_trace,
-				disk_cache_read, disk_cache_write, disk_cache_flush, disk_cache_trace);
+				disk_cache_read, disk_cache_write, disk_cache_flush, disk_cache_trace,
+				disk_cache_segments);
 
 		// Max Open Files
 
@@ -223,6 +241,18 @@ public class ConfigSectionFilePerformance
 		check_piece_limit.setSuffixLabelKey(
 				"ConfigView.section.file.readmblimit.explain");
 
+		// mapped region pool
+
+		IntParameterImpl mmap_pool_limit = new IntParameterImpl(
+				ICFG_DISKMANAGER_PERF_MMAP_POOL_MAXMB, "", 0, Integer.MAX_VALUE);
+		add(mmap_pool_limit, Parameter.MODE_ADVANCED);
+		mmap_pool_limit.setLabelText(MessageText.getString(
+				"ConfigView.section.file.mmappoolmblimit", new String[]{
+						DisplayFormatters.getUnitBase10(DisplayFormatters.UNIT_MB)
+				}));
+		mmap_pool_limit.setSuffixLabelKey(
+				"ConfigView.section.file.mmappoolmblimit.explain");
+
 		disk_cache.addEnabledOnSelection(cache_size);
 	}
 }
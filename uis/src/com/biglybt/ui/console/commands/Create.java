@@ -24,6 +24,7 @@ import com.biglybt.core.torrent.TOTorrentCreator;
 import com.biglybt.core.torrent.TOTorrentFactory;
 import com.biglybt.core.torrent.TOTorrentProgressListener;
 import com.biglybt.core.util.Debug;
+import com.biglybt.core.util.DisplayFormatters;
 import com.biglybt.ui.console.ConsoleInput;
 
 /**
@@ -115,6 +116,14 @@ public class Create extends IConsoleCommand {
 					{
 						ci.out.println( "\t" + task_description );
 					}
+
+					@Override
+					public void
+					reportHashRate(
+						long	bytes_per_second )
+					{
+						ci.out.println( "\t\t" + DisplayFormatters.formatByteCountToKiBEtcPerSec( bytes_per_second ));
+					}
 				});
 
 			TOTorrent torrent = creator.create();
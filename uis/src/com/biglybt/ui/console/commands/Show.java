@@ -661,7 +661,9 @@ public class Show extends IConsoleCommand {
 						   	",dir=" + dbv_details[DHTDBStats.VD_DIRECT_SIZE]+
 						   	",ind=" + dbv_details[DHTDBStats.VD_INDIRECT_SIZE]+
 						   	",div_f=" + dbv_details[DHTDBStats.VD_DIV_FREQ]+
-						   	",div_s=" + dbv_details[DHTDBStats.VD_DIV_SIZE] );
+						   	",div_s=" + dbv_details[DHTDBStats.VD_DIV_SIZE]+
+						   	",mem/key=" + d_stats.getMemoryPerKey()+
+						   	",persisted=" + d_stats.getPersistedSize());
 
 				dht.getRouter().print();
 			}
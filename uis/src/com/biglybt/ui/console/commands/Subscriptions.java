@@ -209,31 +209,18 @@ public class Subscriptions extends IConsoleCommand {
 
 					int	index = 1;
 
-					int	total_read		= 0;
-					int total_unread	= 0;
+					SubscriptionHistory history = current_sub.getHistory();
 
 					current_results = new ArrayList<>();
 
-					SubscriptionResult[] results = current_sub.getHistory().getResults( false );
+						// only pull in the results being listed
+
+					SubscriptionResult[] results = history.getResults( do_all?SubscriptionHistory.RESULTS_NON_DELETED:SubscriptionHistory.RESULTS_UNREAD, 0, -1 );
 
 					for ( SubscriptionResult result: results ){
 
 						boolean is_read = result.getRead();
 
-						if ( is_read ){
-
-							total_read++;
-
-						}else{
-
-							total_unread++;
-						}
-
-						if ( is_read && !do_all ){
-
-							continue;
-						}
-
 						current_results.add( result );
 
 						Map map = result.toJSONMap();
@@ -255,7 +242,7 @@ public class Subscriptions extends IConsoleCommand {
 					}
 
 					ci.out.println("> -----");
-					ci.out.println("Total read=" + total_read + ", unread=" + total_unread );
+					ci.out.println("Total read=" + history.getResultCount( SubscriptionHistory.RESULTS_READ ) + ", unread=" + history.getResultCount( SubscriptionHistory.RESULTS_UNREAD ));
 
 				}else if ( 	cmd.equals( "set_autodownload" )){
 